@@ -0,0 +1,110 @@
+package cn.luliangwei.docker.demo.benchmark;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.luliangwei.docker.demo.util.ApiKeyRateLimiter;
+
+/**
+ * 按apiKey限流在64线程竞争下的基准测试.
+ * </p>
+ * <pre>
+ *  limiter: {@link ApiKeyRateLimiter}，每个apiKey一次CAS.
+ *  locked: 相同的GCRA计算，每个apiKey的状态改为 synchronized 保护，作为对照.
+ *  keys=1 时所有线程争用同一个apiKey，竞争最激烈；keys 增大后竞争分散到不同的状态上.
+ *  permitsPerSecond 很大时几乎都放行，每次都要写状态；很小时几乎都被拒绝，只读不写.
+ *  与 HmacSignatureBuilderBenchmark 中单次签名的耗时对比，可以看出在签名之前限流的代价.
+ *  运行: mvn -P benchmarks verify -Djmh.includes=ApiKeyRateLimiterBenchmark
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+public class ApiKeyRateLimiterBenchmark {
+
+    @Param({ "1", "64", "10000" })
+    public int keys;
+
+    @Param({ "1000000000", "10" })
+    public double permitsPerSecond;
+
+    private String[] apiKeys;
+    private ApiKeyRateLimiter limiter;
+    private LockedLimiter locked;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        apiKeys = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            apiKeys[i] = Fixtures.API_KEY + '-' + i;
+        }
+        limiter = new ApiKeyRateLimiter(permitsPerSecond, 100, 5, TimeUnit.MINUTES);
+        locked = new LockedLimiter(permitsPerSecond, 100);
+    }
+
+    @Benchmark
+    public long limiter() {
+        return limiter.tryAcquire(apiKeys[ThreadLocalRandom.current().nextInt(keys)]);
+    }
+
+    @Benchmark
+    public long locked() {
+        return locked.tryAcquire(apiKeys[ThreadLocalRandom.current().nextInt(keys)]);
+    }
+
+    // 对照组: 与 ApiKeyRateLimiter 相同的计算，状态由锁保护
+    private static final class LockedLimiter {
+
+        private final ConcurrentHashMap<String, long[]> buckets = new ConcurrentHashMap<String, long[]>();
+        private final long emissionNanos;
+        private final long toleranceNanos;
+
+        LockedLimiter(double permitsPerSecond, int burst) {
+            this.emissionNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+            this.toleranceNanos = emissionNanos * burst;
+        }
+
+        long tryAcquire(String apiKey) {
+            final long now = System.nanoTime();
+            long[] tat = buckets.get(apiKey);
+            if (tat == null) {
+                final long[] created = { now };
+                tat = buckets.putIfAbsent(apiKey, created);
+                if (tat == null) {
+                    tat = created;
+                }
+            }
+            synchronized (tat) {
+                final long next = (tat[0] - now > 0 ? tat[0] : now) + emissionNanos;
+                final long wait = next - now - toleranceNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                tat[0] = next;
+                return 0;
+            }
+        }
+    }
+}
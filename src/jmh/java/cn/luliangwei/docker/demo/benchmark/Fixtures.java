@@ -0,0 +1,39 @@
+package cn.luliangwei.docker.demo.benchmark;
+
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder;
+
+/**
+ * 基准测试共用的测试数据.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+final class Fixtures {
+
+    static final String API_KEY = "bench-api-key";
+    static final byte[] API_SECRET = "bench-api-secret-0123456789".getBytes();
+
+    private Fixtures() {
+    }
+
+    /**
+     * 构造一个填充了全部请求头字段的HMAC建造器.
+     *
+     * @param algorithm
+     *            HMAC的算法
+     * @return HMAC建造器
+     */
+    static HmacSignatureBuilder signedRequest(String algorithm) {
+        return new HmacSignatureBuilder()
+                .algorithm(algorithm)
+                .apiKey(API_KEY)
+                .apiSecret(API_SECRET)
+                .contentType("application/json")
+                .date("Wed, 02 Nov 2016 03:25:54 GMT")
+                .host("signit.cn")
+                .method("POST")
+                .nonce("6m0S4nyH1dg7K2gh")
+                .resource("/v1/users")
+                .scheme("https");
+    }
+}
@@ -0,0 +1,61 @@
+package cn.luliangwei.docker.demo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.luliangwei.docker.demo.util.HmacHeaderSigner;
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder;
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder.BuilderMode;
+
+/**
+ * 仅请求头签名的基准测试.
+ * </p>
+ * <pre>
+ *  对比每次新建 HmacSignatureBuilder 与复用预计算前缀的 HmacHeaderSigner.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HmacHeaderSignerBenchmark {
+
+    @Param({ "HmacSHA256", "HmacSHA384", "HmacSHA512" })
+    public String algorithm;
+
+    private HmacHeaderSigner signer;
+    private long sequence;
+
+    @Setup
+    public void setUp() throws Exception {
+        signer = new HmacHeaderSigner(algorithm, HmacSignatureBuilder.DEFAULT_CHARSET,
+                HmacSignatureBuilder.DEFAULT_DELIMITER, Fixtures.API_KEY, Fixtures.API_SECRET, "application/json");
+    }
+
+    @Benchmark
+    public byte[] builder() {
+        return Fixtures.signedRequest(algorithm).nonce(Long.toString(sequence++)).build(BuilderMode.ONLY_HEADER);
+    }
+
+    @Benchmark
+    public byte[] prefixSigner() {
+        return signer.sign("Wed, 02 Nov 2016 03:25:54 GMT", "signit.cn", "POST", Long.toString(sequence++),
+                "/v1/users", "https");
+    }
+}
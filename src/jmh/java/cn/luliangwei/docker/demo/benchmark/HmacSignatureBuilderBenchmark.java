@@ -0,0 +1,87 @@
+package cn.luliangwei.docker.demo.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder;
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder.BuilderMode;
+
+/**
+ * HMAC签名构建与校验的基准测试.
+ * </p>
+ * <pre>
+ *  按算法、请求数据大小和构建模式组合测试签名构建与校验的耗时.
+ *  运行: mvn -P benchmarks verify -Djmh.includes=HmacSignatureBuilderBenchmark
+ *  观察分配: 追加 -Djmh.args="-prof gc"，gc.alloc.rate.norm 即每次构建或校验分配的字节数.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HmacSignatureBuilderBenchmark {
+
+    @Param({ "HmacSHA256", "HmacSHA384", "HmacSHA512" })
+    public String algorithm;
+
+    @Param({ "0", "1024", "65536", "1048576", "16777216" })
+    public int payloadSize;
+
+    @Param({ "FULL", "ONLY_HEADER" })
+    public BuilderMode builderMode;
+
+    private HmacSignatureBuilder builder;
+    private String expectedHex;
+    private String expectedBase64;
+
+    @Setup
+    public void setUp() {
+        final byte[] payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+        builder = Fixtures.signedRequest(algorithm).payload(payload);
+        expectedHex = builder.buildAsHex(builderMode);
+        expectedBase64 = builder.buildAsBase64(builderMode);
+    }
+
+    @Benchmark
+    public byte[] build() {
+        return builder.build(builderMode);
+    }
+
+    @Benchmark
+    public String buildAsHex() {
+        return builder.buildAsHex(builderMode);
+    }
+
+    @Benchmark
+    public String buildAsBase64() {
+        return builder.buildAsBase64(builderMode);
+    }
+
+    @Benchmark
+    public boolean isHashEqualsWithHex() {
+        return builder.isHashEqualsWithHex(expectedHex, builderMode);
+    }
+
+    @Benchmark
+    public boolean isHashEqualsWithBase64() {
+        return builder.isHashEqualsWithBase64(expectedBase64, builderMode);
+    }
+}
@@ -0,0 +1,99 @@
+package cn.luliangwei.docker.demo.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.luliangwei.docker.demo.metrics.LatencyTimer;
+import cn.luliangwei.docker.demo.metrics.MetricsRegistry;
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder;
+
+/**
+ * 指标记录开销的基准测试.
+ * </p>
+ * <pre>
+ *  record: 单次 LatencyTimer.record 的耗时，所有线程共用一个统计，可用 -t 观察多线程竞争下的开销.
+ *  timed: 两次 System.nanoTime 加一次 record，即每个被统计的请求额外付出的代价.
+ *  hmacBuild / hmacBuildTimed: 签名构建本身与加上统计后的耗时，二者之差即相对开销.
+ *  scrape: 按Prometheus文本格式输出 20 个耗时统计的耗时，每次读取都会合并窗口内的直方图.
+ *  运行: mvn -P benchmarks verify -Djmh.includes=MetricsOverheadBenchmark -Djmh.args="-t 4"
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    private static final int TIMERS = 20;
+
+    private MetricsRegistry registry;
+    private LatencyTimer timer;
+
+    // 建造器不是线程安全的，每个线程各用一个
+    @State(Scope.Thread)
+    public static class PerThread {
+
+        final HmacSignatureBuilder builder = Fixtures.signedRequest("HmacSHA256");
+        long value;
+    }
+
+    @Setup
+    public void setUp() {
+        registry = new MetricsRegistry(60, TimeUnit.SECONDS, 0.5, 0.9, 0.99, 0.999);
+        for (int i = 0; i < TIMERS; i++) {
+            final LatencyTimer each = registry.timer("bench.timer" + i, "benchmark");
+            for (int j = 1; j <= 10000; j++) {
+                each.record(j * 1000L);
+            }
+        }
+        timer = registry.timer("bench.timer0", "benchmark");
+    }
+
+    @Benchmark
+    public void record(PerThread state) {
+        // 每次记录不同的值，覆盖直方图的多个桶
+        state.value = (state.value + 7919) & 0xFFFFF;
+        timer.record(state.value);
+    }
+
+    @Benchmark
+    public void timed() {
+        timer.recordSince(System.nanoTime());
+    }
+
+    @Benchmark
+    public byte[] hmacBuild(PerThread state) {
+        return state.builder.build();
+    }
+
+    @Benchmark
+    public byte[] hmacBuildTimed(PerThread state) {
+        final long start = System.nanoTime();
+        final byte[] signature = state.builder.build();
+        timer.recordSince(start);
+        return signature;
+    }
+
+    @Benchmark
+    public int scrape() throws IOException {
+        final StringBuilder out = new StringBuilder(16384);
+        registry.writePrometheus(out);
+        return out.length();
+    }
+}
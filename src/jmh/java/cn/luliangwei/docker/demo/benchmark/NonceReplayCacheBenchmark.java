@@ -0,0 +1,91 @@
+package cn.luliangwei.docker.demo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.luliangwei.docker.demo.util.NonceReplayCache;
+
+/**
+ * 防重放缓存的基准测试.
+ * </p>
+ * <pre>
+ *  record: 多线程下记录首次出现的随机数的吞吐量（精确模式/布隆过滤器模式）.
+ *  replay: 重放请求的判定吞吐量.
+ *  每次迭代开始时重建缓存，falsePositives 计数器给出布隆过滤器模式下首次出现的随机数被误判为重放的次数.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class NonceReplayCacheBenchmark {
+
+    private static final long CLOCK_SKEW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    @State(Scope.Benchmark)
+    public static class Cache {
+
+        @Param({ "exact", "bloom" })
+        public String mode;
+
+        @Param({ "1000000" })
+        public long expectedNonces;
+
+        NonceReplayCache cache;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            cache = "bloom".equals(mode) ? new NonceReplayCache(CLOCK_SKEW_MILLIS, expectedNonces, 0.0001)
+                    : new NonceReplayCache(CLOCK_SKEW_MILLIS);
+            cache.checkAndRecord(Fixtures.API_KEY, "replayed", System.currentTimeMillis());
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long falsePositives;
+
+        private final String prefix = Thread.currentThread().getName() + '-' + System.nanoTime() + '-';
+        private long sequence;
+
+        String nextNonce() {
+            return prefix + sequence++;
+        }
+    }
+
+    @Benchmark
+    public boolean record(Cache state, Counters counters) {
+        final boolean accepted = state.cache.checkAndRecord(Fixtures.API_KEY, counters.nextNonce(),
+                System.currentTimeMillis());
+        if (!accepted) {
+            counters.falsePositives++;
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    public boolean replay(Cache state) {
+        return state.cache.checkAndRecord(Fixtures.API_KEY, "replayed", System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,106 @@
+package cn.luliangwei.docker.demo.benchmark;
+
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.luliangwei.docker.demo.util.SignatureCodec;
+
+/**
+ * 签名摘要值编解码的基准测试.
+ * </p>
+ * <pre>
+ *  对比 SignatureCodec 与原 javax.xml.bind.DatatypeConverter 路径的编码及校验耗时.
+ *  JDK 11 及以上由 benchmarks 配置中的 jaxb-api 提供 DatatypeConverter.
+ *  运行: mvn -P benchmarks verify -Djmh.includes=SignatureCodecBenchmark -Djmh.args="-prof gc"
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureCodecBenchmark {
+
+    // HmacSHA256/384/512 的摘要长度
+    @Param({ "32", "48", "64" })
+    public int digestLength;
+
+    private byte[] digest;
+    private String hex;
+    private String base64;
+    private char[] buffer;
+
+    @Setup
+    public void setUp() {
+        digest = new byte[digestLength];
+        new Random(digestLength).nextBytes(digest);
+        hex = DatatypeConverter.printHexBinary(digest);
+        base64 = DatatypeConverter.printBase64Binary(digest);
+        buffer = new char[SignatureCodec.hexLength(digestLength)];
+    }
+
+    @Benchmark
+    public String hexEncodeDatatypeConverter() {
+        return DatatypeConverter.printHexBinary(digest);
+    }
+
+    @Benchmark
+    public String hexEncodeCodec() {
+        return SignatureCodec.encodeHex(digest);
+    }
+
+    @Benchmark
+    public char[] hexEncodeCodecIntoBuffer() {
+        SignatureCodec.encodeHex(digest, 0, digest.length, buffer, 0);
+        return buffer;
+    }
+
+    @Benchmark
+    public String base64EncodeDatatypeConverter() {
+        return DatatypeConverter.printBase64Binary(digest);
+    }
+
+    @Benchmark
+    public String base64EncodeCodec() {
+        return SignatureCodec.encodeBase64(digest);
+    }
+
+    @Benchmark
+    public boolean hexVerifyDatatypeConverter() {
+        return MessageDigest.isEqual(digest, DatatypeConverter.parseHexBinary(hex));
+    }
+
+    @Benchmark
+    public boolean hexVerifyCodec() {
+        return SignatureCodec.matchesHex(digest, hex);
+    }
+
+    @Benchmark
+    public boolean base64VerifyDatatypeConverter() {
+        return MessageDigest.isEqual(digest, DatatypeConverter.parseBase64Binary(base64));
+    }
+
+    @Benchmark
+    public boolean base64VerifyCodec() {
+        return SignatureCodec.matchesBase64(digest, base64);
+    }
+}
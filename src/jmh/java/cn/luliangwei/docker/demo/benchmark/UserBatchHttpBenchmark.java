@@ -0,0 +1,144 @@
+package cn.luliangwei.docker.demo.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import cn.luliangwei.docker.demo.Application;
+
+/**
+ * 批量查询与逐个查询的端到端对比.
+ * </p>
+ * <pre>
+ *  在随机端口上启动应用并加载 100000 个用户，每次操作查询 batchSize 个随机名称（约 1/10 不存在）:
+ *  singleCalls: 逐个 GET /users?name=，复用 keep-alive 连接.
+ *  batch: 一次 POST /users/batch，读取完整的 NDJSON 响应.
+ *  两者的耗时都是查询 batchSize 个名称的总耗时，可直接比较；names/s = batchSize / 耗时.
+ *  运行: mvn -P benchmarks verify -Djmh.includes=UserBatchHttpBenchmark
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserBatchHttpBenchmark {
+
+    private static final int USERS = 100000;
+
+    @Param({ "10", "100", "1000" })
+    public int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private File roster;
+    private String baseUrl;
+    private String[] names;
+    private byte[] batchBody;
+    private final byte[] buffer = new byte[64 * 1024];
+
+    @Setup
+    public void setUp() throws IOException {
+        roster = File.createTempFile("users-", ".csv");
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(roster), "UTF-8");
+        try {
+            writer.write("name,age,phone,address\n");
+            for (int i = 0; i < USERS; i++) {
+                writer.write("user-" + i + "," + (18 + i % 60) + "," + String.format("1%010d", i) + ",科技园B-"
+                        + (i % 1000) + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        context = SpringApplication.run(Application.class, "--server.port=0", "--management.port=-1",
+                "--hmac.auth.enabled=false", "--user.repository.roster=" + roster.getAbsolutePath());
+        baseUrl = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port");
+
+        final Random random = new Random(batchSize);
+        names = new String[batchSize];
+        final StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < batchSize; i++) {
+            names[i] = random.nextInt(10) == 0 ? "missing-" + i : "user-" + random.nextInt(USERS);
+            body.append(i == 0 ? "\"" : ",\"").append(names[i]).append('"');
+        }
+        batchBody = body.append(']').toString().getBytes("UTF-8");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        roster.delete();
+    }
+
+    @Benchmark
+    public long singleCalls() throws IOException {
+        long bytes = 0;
+        for (String name : names) {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(
+                    baseUrl + "/users?name=" + URLEncoder.encode(name, "UTF-8")).openConnection();
+            bytes += drain(connection);
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public long batch() throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/users/batch")
+                .openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setFixedLengthStreamingMode(batchBody.length);
+        final OutputStream out = connection.getOutputStream();
+        try {
+            out.write(batchBody);
+        } finally {
+            out.close();
+        }
+        return drain(connection);
+    }
+
+    // 读完并关闭响应，连接才会回到 keep-alive 缓存中被复用
+    private long drain(HttpURLConnection connection) throws IOException {
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            throw new IOException("unexpected status " + connection.getResponseCode());
+        }
+        final InputStream in = connection.getInputStream();
+        long bytes = 0;
+        try {
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                bytes += n;
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,142 @@
+package cn.luliangwei.docker.demo.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.template.HtmlTemplate;
+import cn.luliangwei.docker.demo.template.JsonWriter;
+
+/**
+ * 用户信息页面渲染的基准测试.
+ * </p>
+ * <pre>
+ *  concat: 原 UserService 的字符串拼接，再按UTF-8编码为响应字节.
+ *  template: 预编译模板直接写入输出流.
+ *  json: Accept: application/json 时由 JsonWriter 直接写出的JSON对象.
+ *  运行: mvn -P benchmarks verify -Djmh.includes=UserPageRenderBenchmark -Djmh.args="-prof gc"
+ *  -prof gc 的 gc.alloc.rate.norm 即每次渲染分配的字节数.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserPageRenderBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] NAME = JsonWriter.fieldName("name");
+    private static final byte[] FOUND = JsonWriter.fieldName("found");
+    private static final byte[] AGE = JsonWriter.fieldName("age");
+    private static final byte[] PHONE = JsonWriter.fieldName("phone");
+    private static final byte[] ADDRESS = JsonWriter.fieldName("address");
+
+    private User user;
+    private HtmlTemplate<User> template;
+    private BlackholeOutputStream out;
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws IOException {
+        user = new User();
+        user.setAddress("科技园B-114");
+        user.setAge(22);
+        user.setName("luliangwei");
+        user.setPhone("123xxxxoooo");
+        final Map<String, HtmlTemplate.Field<User>> fields = new HashMap<String, HtmlTemplate.Field<User>>();
+        fields.put("name", new HtmlTemplate.Field<User>() {
+            @Override
+            public Object value(User model) {
+                return model.getName();
+            }
+        });
+        fields.put("age", new HtmlTemplate.Field<User>() {
+            @Override
+            public Object value(User model) {
+                return model.getAge();
+            }
+        });
+        fields.put("phone", new HtmlTemplate.Field<User>() {
+            @Override
+            public Object value(User model) {
+                return model.getPhone();
+            }
+        });
+        fields.put("address", new HtmlTemplate.Field<User>() {
+            @Override
+            public Object value(User model) {
+                return model.getAddress();
+            }
+        });
+        template = HtmlTemplate.load("templates/user-info.html", fields);
+        out = new BlackholeOutputStream(blackhole);
+    }
+
+    @Benchmark
+    public byte[] concat() {
+        final String userInfo = "<html><title>User Infomation</title><body><div id= \"user\">"
+                + "<table bolder = \"1\" cellspacing=\"10\" cellpadding=\"10\" align=\"center\">"
+                + "<th>名称</th><th>值</th><tr><td>姓名</td><td>"+user.getName() + "</td>"
+                + "</tr><tr><td>年龄</td><td>" + user.getAge().intValue() + "</td>"
+                + "</tr><tr><td>联系方式</td><td>" + user.getPhone() + "</td>"
+                + "</tr><tr><td>地址</td><td>" + user.getAddress() +"</td>"
+                + "</tr></table></div></body></html>";
+        return userInfo.getBytes(UTF_8);
+    }
+
+    @Benchmark
+    public void template() throws IOException {
+        template.render(user, out);
+    }
+
+    @Benchmark
+    public void json() throws IOException {
+        final JsonWriter json = JsonWriter.open(out);
+        try {
+            json.beginObject().field(NAME, user.getName()).field(FOUND, true).field(AGE, user.getAge().intValue())
+                    .field(PHONE, user.getPhone()).field(ADDRESS, user.getAddress()).endObject();
+        } finally {
+            json.close();
+        }
+    }
+
+    private static final class BlackholeOutputStream extends OutputStream {
+
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+            blackhole.consume(len);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package cn.luliangwei.docker.demo.benchmark;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.repository.InMemoryUserRepository;
+import cn.luliangwei.docker.demo.repository.UserRepository;
+
+/**
+ * 用户数据源的基准测试.
+ * </p>
+ * <pre>
+ *  findHit / findMiss: 随机名称命中与未命中时的查询耗时.
+ *  store: columnar - 堆内数据页; offheap - 堆外数据页; hashmap - HashMap&lt;String, User&gt; 作为对照.
+ *  每组参数初始化后输出一行 footprint，为加载前后 Full GC 后的堆内存差值和堆外缓冲区用量.
+ *  10M 用户的 hashmap 对照需要较大的堆，因此 -Xmx 设为 8g.
+ *  运行: mvn -P benchmarks verify -Djmh.includes=UserRepositoryBenchmark
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms8g", "-Xmx8g" })
+@Threads(4)
+public class UserRepositoryBenchmark {
+
+    private static final int LOOKUP_KEYS = 1 << 12;
+
+    @Param({ "1000000", "10000000" })
+    public int users;
+
+    @Param({ "columnar", "offheap", "hashmap" })
+    public String store;
+
+    private UserRepository repository;
+    private String[] hits;
+    private String[] misses;
+
+    @Setup
+    public void setUp() {
+        final long heapBefore = usedHeap();
+        final long directBefore = usedDirect();
+        if ("hashmap".equals(store)) {
+            repository = new HashMapUserRepository(roster(users));
+        } else {
+            final InMemoryUserRepository columnar = new InMemoryUserRepository("offheap".equals(store));
+            columnar.replaceAll(roster(users));
+            repository = columnar;
+        }
+        System.out.printf("footprint: store=%s, users=%d, heap=%dMB, direct=%dMB%n", store, users,
+                (usedHeap() - heapBefore) >> 20, (usedDirect() - directBefore) >> 20);
+
+        final Random random = new Random(users);
+        hits = new String[LOOKUP_KEYS];
+        misses = new String[LOOKUP_KEYS];
+        for (int i = 0; i < LOOKUP_KEYS; i++) {
+            hits[i] = name(random.nextInt(users));
+            misses[i] = "missing-" + random.nextInt(users);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        int next() {
+            return next++ & (LOOKUP_KEYS - 1);
+        }
+    }
+
+    @Benchmark
+    public User findHit(Cursor cursor) {
+        return repository.findByName(hits[cursor.next()]);
+    }
+
+    @Benchmark
+    public User findMiss(Cursor cursor) {
+        return repository.findByName(misses[cursor.next()]);
+    }
+
+    private static String name(int id) {
+        return "user-" + id;
+    }
+
+    // 按需生成用户，避免为了加载而先在堆上持有全部 User
+    private static Iterable<User> roster(final int count) {
+        return new Iterable<User>() {
+            @Override
+            public Iterator<User> iterator() {
+                return new Iterator<User>() {
+                    private int id;
+
+                    @Override
+                    public boolean hasNext() {
+                        return id < count;
+                    }
+
+                    @Override
+                    public User next() {
+                        final User user = new User();
+                        user.setName(name(id));
+                        user.setAge(18 + id % 60);
+                        user.setPhone(String.format("1%010d", id));
+                        user.setAddress("科技园B-" + (id % 1000));
+                        id++;
+                        return user;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    private static final class HashMapUserRepository implements UserRepository {
+
+        private final Map<String, User> users = new HashMap<String, User>();
+
+        HashMapUserRepository(Iterable<User> roster) {
+            for (User user : roster) {
+                users.put(user.getName(), user);
+            }
+        }
+
+        @Override
+        public User findByName(String name) {
+            return users.get(name);
+        }
+
+        @Override
+        public int count() {
+            return users.size();
+        }
+
+        @Override
+        public long getVersion() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package cn.luliangwei.docker.demo.loadtest;
+
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import cn.luliangwei.docker.demo.filter.HmacAuthFilter;
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder;
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder.BuilderMode;
+
+/**
+ * 按 {@link HmacAuthFilter} 的规则为负载测试的GET请求签名.
+ * </p>
+ * <pre>
+ *  每个请求使用当前时间的 Date 与不重复的 X-Nonce，可以通过防重放校验.
+ *  签名在负载生成线程上计算，计入该请求的延迟.
+ *  非线程安全，只在负载生成线程上使用.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+final class HmacRequestSigner implements HttpLoadGenerator.RequestSigner {
+
+    private final String algorithm;
+    private final String charset;
+    private final String apiKey;
+    private final byte[] apiSecret;
+    private final String noncePrefix = Long.toString(System.nanoTime(), 36) + '-';
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+    private long nonce;
+    private long dateSecond = -1;
+    private String date;
+
+    HmacRequestSigner(String algorithm, String charset, String apiKey, String apiSecret) {
+        this.algorithm = algorithm;
+        this.charset = charset;
+        this.apiKey = apiKey;
+        this.apiSecret = apiSecret.getBytes(Charset.forName(charset));
+        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+    }
+
+    @Override
+    public String headers(String path, String host) {
+        final String requestNonce = noncePrefix + nonce++;
+        final String requestDate = currentDate();
+        final String signature = new HmacSignatureBuilder(algorithm, charset, HmacSignatureBuilder.DEFAULT_DELIMITER,
+                apiKey, apiSecret)
+                        .contentType("")
+                        .date(requestDate)
+                        .host(host)
+                        .method("GET")
+                        .nonce(requestNonce)
+                        .resource(path)
+                        .scheme("http")
+                        .buildAsBase64(BuilderMode.FULL);
+        return "Date: " + requestDate + "\r\n" + HmacAuthFilter.HEADER_API_KEY + ": " + apiKey + "\r\n"
+                + HmacAuthFilter.HEADER_NONCE + ": " + requestNonce + "\r\n" + HmacAuthFilter.HEADER_SIGNATURE + ": "
+                + signature + "\r\n";
+    }
+
+    // Date 精确到秒，每秒只格式化一次
+    private String currentDate() {
+        final long now = System.currentTimeMillis();
+        if (now / 1000 != dateSecond) {
+            dateSecond = now / 1000;
+            date = dateFormat.format(new Date(now));
+        }
+        return date;
+    }
+}
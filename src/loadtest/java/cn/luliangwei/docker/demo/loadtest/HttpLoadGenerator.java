@@ -0,0 +1,388 @@
+package cn.luliangwei.docker.demo.loadtest;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 基于NIO的HTTP/1.1负载生成器.
+ * </p>
+ * <pre>
+ *  单个线程通过一个 Selector 维持全部长连接，支持两种模型:
+ *    闭环 - rate 为0，每个连接收到完整响应后立即发出下一个请求，同时在途的请求数等于连接数.
+ *           延迟从开始写请求计到读完响应，只记录预热结束之后完成的请求.
+ *    开环 - 按固定速率 rate 安排请求，第 i 个请求的计划时间为 开始时间 + i / rate，由空闲连接发出.
+ *           服务端变慢时请求在客户端排队而不是减少发送，延迟从计划时间计起（校正协调遗漏），
+ *           连接数只是并发上限. 只记录计划时间在预热结束之后的请求；结束时仍在途或未能发出的请求
+ *           按截止时已等待的时间计入，作为其延迟的下限.
+ *  响应支持 Content-Length 与 chunked 两种方式；在途的请求所在连接被关闭或读写失败计为错误并重新建立连接.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+final class HttpLoadGenerator {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    // 同时发起的连接数，避免瞬间超出服务端的 accept 队列
+    private static final int CONNECT_BATCH = 500;
+
+    /**
+     * 提供每个请求的路径.
+     */
+    interface RequestSource {
+
+        /**
+         * @return 请求路径，包含查询参数
+         */
+        String nextPath();
+    }
+
+    /**
+     * 为请求追加请求头，如签名.
+     */
+    interface RequestSigner {
+
+        /**
+         * @param path
+         *            请求路径，包含查询参数
+         * @param host
+         *            Host 请求头
+         * @return 追加的请求头，每行以 \r\n 结尾
+         */
+        String headers(String path, String host);
+    }
+
+    /**
+     * 一次运行的结果.
+     */
+    static final class Result {
+
+        final LatencyHistogram latencies = new LatencyHistogram();
+        // 收到完整响应的请求数；latencies 中还包含截止时未完成请求的下限，不能用于计算吞吐量
+        long completed;
+        long unfinished;
+        long errors;
+        // 名称分布中包含不存在的用户，其 404 是预期结果，单独计数，不计入 non2xx
+        long notFound;
+        long non2xx;
+        long elapsedNanos;
+
+        double getThroughput() {
+            return elapsedNanos == 0 ? 0 : completed * 1e9 / elapsedNanos;
+        }
+    }
+
+    private final InetSocketAddress address;
+    private final String host;
+    private final String accept;
+    private final int connections;
+    private final double rate;
+    private final RequestSource requests;
+    private final RequestSigner signer;
+    // 开环模型下等待发出请求的连接，先进先出使各连接轮流使用
+    private final ArrayDeque<Connection> idle = new ArrayDeque<Connection>();
+    private long measureFrom;
+
+    HttpLoadGenerator(InetSocketAddress address, String accept, int connections, RequestSource requests) {
+        this(address, accept, connections, 0, requests, null);
+    }
+
+    /**
+     * @param rate
+     *            开环模型下每秒安排的请求数，为0时使用闭环模型
+     * @param signer
+     *            为请求追加请求头，可为 <code>null</code>
+     */
+    HttpLoadGenerator(InetSocketAddress address, String accept, int connections, double rate,
+            RequestSource requests, RequestSigner signer) {
+        this.address = address;
+        this.host = address.getHostString() + ":" + address.getPort();
+        this.accept = accept;
+        this.connections = connections;
+        this.rate = rate;
+        this.requests = requests;
+        this.signer = signer;
+    }
+
+    Result run(long warmupNanos, long durationNanos) throws IOException {
+        final Result result = new Result();
+        final Selector selector = Selector.open();
+        final List<Connection> all = new ArrayList<Connection>(connections);
+        idle.clear();
+        try {
+            final long start = System.nanoTime();
+            measureFrom = start + warmupNanos;
+            final long end = measureFrom + durationNanos;
+            long scheduled = 0;
+            int opened = 0;
+            for (long now = start; now < end; now = System.nanoTime()) {
+                for (int i = 0; i < CONNECT_BATCH && opened < connections; i++, opened++) {
+                    all.add(new Connection(selector));
+                }
+                long timeoutMillis = 10;
+                if (rate > 0) {
+                    long due = intended(start, scheduled);
+                    while (due <= now && !idle.isEmpty()) {
+                        idle.poll().send(due);
+                        due = intended(start, ++scheduled);
+                    }
+                    if (!idle.isEmpty()) {
+                        timeoutMillis = Math.min(timeoutMillis, (due - now) / 1000000);
+                    }
+                }
+                if (timeoutMillis > 0) {
+                    selector.select(timeoutMillis);
+                } else {
+                    // 下一个请求在1ms之内到期，不阻塞
+                    selector.selectNow();
+                }
+                final Result recording = rate > 0 || System.nanoTime() >= measureFrom ? result : null;
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    final Connection connection = (Connection) key.attachment();
+                    try {
+                        connection.handle(key, recording);
+                    } catch (IOException e) {
+                        if (recording != null && (rate == 0 || connection.isRecorded())) {
+                            recording.errors++;
+                        }
+                        connection.reconnect(selector);
+                    }
+                }
+            }
+            final long now = System.nanoTime();
+            result.elapsedNanos = now - measureFrom;
+            if (rate > 0) {
+                recordUnfinished(result, all, start, scheduled, now);
+            }
+            return result;
+        } finally {
+            for (Connection connection : all) {
+                connection.close();
+            }
+            selector.close();
+        }
+    }
+
+    private long intended(long start, long index) {
+        return start + (long) (index * 1e9 / rate);
+    }
+
+    // 截止时仍在途或已到计划时间却未能发出的请求，以已等待的时间作为延迟的下限
+    private void recordUnfinished(Result result, List<Connection> all, long start, long scheduled, long now) {
+        for (Connection connection : all) {
+            if (connection.isRecorded()) {
+                result.latencies.record((now - connection.startNanos) / 1000);
+                result.unfinished++;
+            }
+        }
+        for (long i = scheduled;; i++) {
+            final long due = intended(start, i);
+            if (due >= now) {
+                break;
+            }
+            if (due >= measureFrom) {
+                result.latencies.record((now - due) / 1000);
+                result.unfinished++;
+            }
+        }
+    }
+
+    private final class Connection {
+
+        private SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer request;
+        private ByteBuffer response = ByteBuffer.allocate(16 * 1024);
+        private boolean busy;
+        private long startNanos;
+
+        Connection(Selector selector) throws IOException {
+            open(selector);
+        }
+
+        /**
+         * @return 是否有在途且计入结果的请求
+         */
+        boolean isRecorded() {
+            return busy && (rate == 0 || startNanos >= measureFrom);
+        }
+
+        void handle(SelectionKey key, Result result) throws IOException {
+            if (key.isConnectable()) {
+                channel.finishConnect();
+                ready();
+                return;
+            }
+            if (key.isWritable()) {
+                write(key);
+                return;
+            }
+            if (key.isReadable()) {
+                if (!busy) {
+                    // 空闲连接上只可能读到关闭
+                    response.clear();
+                    if (channel.read(response) < 0) {
+                        throw new IOException("connection closed");
+                    }
+                    response.clear();
+                    return;
+                }
+                if (!response.hasRemaining()) {
+                    final ByteBuffer larger = ByteBuffer.allocate(response.capacity() * 2);
+                    response.flip();
+                    larger.put(response);
+                    response = larger;
+                }
+                if (channel.read(response) < 0) {
+                    throw new IOException("connection closed");
+                }
+                final int status = complete(response.array(), response.position());
+                if (status > 0) {
+                    final boolean recorded = isRecorded();
+                    busy = false;
+                    if (result != null && recorded) {
+                        result.latencies.record((System.nanoTime() - startNanos) / 1000);
+                        result.completed++;
+                        if (status >= 500) {
+                            result.errors++;
+                        } else if (status == 404) {
+                            result.notFound++;
+                        } else if (status >= 300) {
+                            result.non2xx++;
+                        }
+                    }
+                    response.clear();
+                    ready();
+                }
+            }
+        }
+
+        void reconnect(Selector selector) throws IOException {
+            idle.remove(this);
+            close();
+            open(selector);
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // 忽略关闭时的错误
+            }
+        }
+
+        private void open(Selector selector) throws IOException {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            response.clear();
+            busy = false;
+            if (channel.connect(address)) {
+                key = channel.register(selector, 0, this);
+                ready();
+            } else {
+                key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+            }
+        }
+
+        // 闭环模型下立即发出下一个请求，开环模型下等待计划时间；空闲时仍监听读事件以发现连接被关闭
+        private void ready() throws IOException {
+            if (rate > 0) {
+                key.interestOps(SelectionKey.OP_READ);
+                idle.add(this);
+            } else {
+                send(System.nanoTime());
+            }
+        }
+
+        void send(long intendedNanos) throws IOException {
+            final String path = requests.nextPath();
+            request = ByteBuffer.wrap(("GET " + path + " HTTP/1.1\r\nHost: " + host + "\r\nAccept: " + accept
+                    + "\r\n" + (signer == null ? "" : signer.headers(path, host)) + "\r\n").getBytes(US_ASCII));
+            startNanos = intendedNanos;
+            busy = true;
+            write(key);
+        }
+
+        private void write(SelectionKey key) throws IOException {
+            channel.write(request);
+            key.interestOps(request.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * @return 响应完整时返回状态码，否则返回 0
+     */
+    static int complete(byte[] data, int length) throws IOException {
+        final int headerEnd = indexOf(data, 0, length, "\r\n\r\n");
+        if (headerEnd < 0) {
+            return 0;
+        }
+        if (headerEnd < 12) {
+            throw new IOException("malformed status line");
+        }
+        final int status = (data[9] - '0') * 100 + (data[10] - '0') * 10 + (data[11] - '0');
+        final String headers = new String(data, 0, headerEnd, US_ASCII).toLowerCase();
+        final int bodyStart = headerEnd + 4;
+        final int contentLength = headers.indexOf("\r\ncontent-length:");
+        if (contentLength >= 0) {
+            final int valueStart = contentLength + "\r\ncontent-length:".length();
+            final int valueEnd = headers.indexOf("\r\n", valueStart);
+            final int size = Integer.parseInt(headers.substring(valueStart, valueEnd < 0 ? headers.length() : valueEnd)
+                    .trim());
+            return length >= bodyStart + size ? status : 0;
+        }
+        if (headers.contains("\r\ntransfer-encoding: chunked")) {
+            int position = bodyStart;
+            while (true) {
+                final int lineEnd = indexOf(data, position, length, "\r\n");
+                if (lineEnd < 0) {
+                    return 0;
+                }
+                String sizeLine = new String(data, position, lineEnd - position, US_ASCII);
+                final int extension = sizeLine.indexOf(';');
+                if (extension >= 0) {
+                    sizeLine = sizeLine.substring(0, extension);
+                }
+                final int size = Integer.parseInt(sizeLine.trim(), 16);
+                position = lineEnd + 2;
+                if (size == 0) {
+                    // 不支持 trailer
+                    return length >= position + 2 ? status : 0;
+                }
+                if (length < position + size + 2) {
+                    return 0;
+                }
+                position += size + 2;
+            }
+        }
+        // 无响应体，如 304
+        return status;
+    }
+
+    private static int indexOf(byte[] data, int from, int to, String pattern) {
+        final int last = to - pattern.length();
+        outer: for (int i = from; i <= last; i++) {
+            for (int j = 0; j < pattern.length(); j++) {
+                if (data[i + j] != pattern.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
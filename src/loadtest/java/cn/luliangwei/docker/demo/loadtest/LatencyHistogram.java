@@ -0,0 +1,79 @@
+package cn.luliangwei.docker.demo.loadtest;
+
+/**
+ * 以微秒记录的延迟分布.
+ * </p>
+ * <pre>
+ *  1ms 以内按微秒精确计数，1ms 以上按 1% 的相对精度对数分桶，最大约 1 小时.
+ *  非线程安全，只在负载生成线程上记录.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+final class LatencyHistogram {
+
+    private static final int LINEAR_LIMIT = 1000;
+    private static final double LOG_BASE = Math.log(1.01);
+    private static final int BUCKETS = LINEAR_LIMIT + 1600;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long sum;
+    private long max;
+
+    void record(long micros) {
+        final long value = Math.max(0, micros);
+        counts[index(value)]++;
+        total++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    long getCount() {
+        return total;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    /**
+     * @param percentile
+     *            百分位，如 99.9
+     * @return 该百分位的延迟（微秒），取所在桶的上界且不超过最大值
+     */
+    long getValueAtPercentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, upperBound(i));
+            }
+        }
+        return max;
+    }
+
+    private static int index(long micros) {
+        if (micros < LINEAR_LIMIT) {
+            return (int) micros;
+        }
+        final int index = LINEAR_LIMIT + (int) (Math.log((double) micros / LINEAR_LIMIT) / LOG_BASE);
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    private static long upperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        return (long) Math.ceil(LINEAR_LIMIT * Math.exp((index - LINEAR_LIMIT + 1) * LOG_BASE));
+    }
+}
@@ -0,0 +1,290 @@
+package cn.luliangwei.docker.demo.loadtest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import cn.luliangwei.docker.demo.Application;
+
+/**
+ * /users 的延迟回归测试.
+ * </p>
+ * <pre>
+ *  在本进程内以随机端口启动应用（数据源见 {@link SlowStoreConfiguration}，页面缓存等保持默认配置），
+ *  对每个场景用开环模型以固定速率 rate 施压，延迟从计划时间计起，服务端变慢时排队等待的时间也计入，
+ *  见 {@link HttpLoadGenerator}. 场景为用户分布与是否签名的组合:
+ *      uniform-unsigned, zipf-unsigned   - 未启用HMAC认证
+ *      uniform-signed, zipf-signed       - 启用HMAC认证，每个请求按 {@link HmacRequestSigner} 签名
+ *  签名与未签名的场景分别启动一次应用.
+ *  每个场景的 p50/p99/p99.9 与吞吐量和基线文件中的预算比较，超出预算或出现错误、非2xx响应时以退出码 1 结束
+ *  （约 10% 的请求查询不存在的用户，其 404 是预期结果，不计入），
+ *  使 mvn verify 失败. 基线文件为 properties 格式，每个场景四项:
+ *      zipf-signed.p50-ms=2.0
+ *      zipf-signed.p99-ms=10.0
+ *      zipf-signed.p999-ms=50.0
+ *      zipf-signed.min-throughput=1900
+ *  以 --update-baseline=true 运行时不做比较，按本次结果加上 headroom 的余量改写基线文件中运行过的场景.
+ *  基线与运行环境相关，应在固定的CI机器上生成并提交；改写时在文件头记录JVM、操作系统、CPU核数与运行参数.
+ *
+ *  运行: mvn -P loadtest verify -Dloadtest.main=cn.luliangwei.docker.demo.loadtest.LatencyRegressionSuite
+ *  参数（--名称=值）:
+ *      scenarios        逗号分隔的场景，默认全部
+ *      rate             每秒安排的请求数，默认 2000
+ *      connections      连接数，即同时在途请求的上限，默认 100
+ *      warmup           每个场景的预热秒数，默认 10
+ *      duration         每个场景的测量秒数，默认 30
+ *      users            用户数，默认 100000
+ *      zipf-exponent    zipf 分布的指数，默认 0.99
+ *      latency-ms       模拟的数据源延迟，默认 0
+ *      baseline         基线文件，默认 src/loadtest/latency-baseline.properties
+ *      update-baseline  是否改写基线文件，默认 false
+ *      headroom         改写基线时的余量，默认 0.3: 延迟预算为结果 * (1 + headroom)，
+ *                       吞吐量预算为结果 * (1 - headroom)
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public final class LatencyRegressionSuite {
+
+    private static final String PATH = "/users";
+    private static final String API_KEY = "loadtest";
+    private static final String API_SECRET = "loadtest-secret";
+    private static final String HMAC_ALGORITHM = "HmacSHA512";
+    private static final String HMAC_CHARSET = "UTF-8";
+    private static final String[] SCENARIOS = { "uniform-unsigned", "zipf-unsigned", "uniform-signed",
+            "zipf-signed" };
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private LatencyRegressionSuite() {
+    }
+
+    /**
+     * 一个场景的测量结果.
+     */
+    private static final class Measurement {
+
+        final double p50Millis;
+        final double p99Millis;
+        final double p999Millis;
+        final double throughput;
+        final long errors;
+
+        Measurement(HttpLoadGenerator.Result result) {
+            this.p50Millis = result.latencies.getValueAtPercentile(50) / 1000.0;
+            this.p99Millis = result.latencies.getValueAtPercentile(99) / 1000.0;
+            this.p999Millis = result.latencies.getValueAtPercentile(99.9) / 1000.0;
+            this.throughput = result.getThroughput();
+            this.errors = result.errors + result.non2xx;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        final Map<String, String> options = new HashMap<String, String>();
+        options.put("scenarios", String.join(",", SCENARIOS));
+        options.put("rate", "2000");
+        options.put("connections", "100");
+        options.put("warmup", "10");
+        options.put("duration", "30");
+        options.put("users", "100000");
+        options.put("zipf-exponent", "0.99");
+        options.put("latency-ms", "0");
+        options.put("baseline", "src/loadtest/latency-baseline.properties");
+        options.put("update-baseline", "false");
+        options.put("headroom", "0.3");
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("参数格式为 --名称=值: " + arg);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        final List<String> unsigned = new ArrayList<String>();
+        final List<String> signed = new ArrayList<String>();
+        for (String scenario : options.get("scenarios").split(",")) {
+            final String name = scenario.trim();
+            if (name.endsWith("-unsigned")) {
+                unsigned.add(name);
+            } else if (name.endsWith("-signed")) {
+                signed.add(name);
+            } else {
+                throw new IllegalArgumentException("未知的场景: " + name);
+            }
+        }
+
+        System.out.printf("rate=%s/s, connections=%s, users=%s, latency-ms=%s%n", options.get("rate"),
+                options.get("connections"), options.get("users"), options.get("latency-ms"));
+        System.out.printf("%-18s %10s %8s %9s %9s %9s%n", "scenario", "req/s", "errors", "p50(ms)", "p99(ms)",
+                "p99.9(ms)");
+        final Map<String, Measurement> measurements = new LinkedHashMap<String, Measurement>();
+        if (!unsigned.isEmpty()) {
+            measurements.putAll(run(unsigned, false, options));
+        }
+        if (!signed.isEmpty()) {
+            measurements.putAll(run(signed, true, options));
+        }
+
+        final File baseline = new File(options.get("baseline"));
+        if (Boolean.parseBoolean(options.get("update-baseline"))) {
+            updateBaseline(baseline, measurements, options);
+            System.out.printf("%n已改写基线: %s%n", baseline);
+            return;
+        }
+        final List<String> violations = check(load(baseline), measurements);
+        if (violations.isEmpty()) {
+            System.out.printf("%n所有场景均在基线 %s 的预算之内%n", baseline);
+            return;
+        }
+        System.out.printf("%n超出基线 %s 的预算:%n", baseline);
+        for (String violation : violations) {
+            System.out.println("  " + violation);
+        }
+        System.exit(1);
+    }
+
+    private static Map<String, Measurement> run(List<String> scenarios, boolean signed, Map<String, String> options)
+            throws IOException {
+        final int users = Integer.parseInt(options.get("users"));
+        final int connections = Integer.parseInt(options.get("connections"));
+        final SpringApplication application = new SpringApplication(Application.class, SlowStoreConfiguration.class);
+        final ConfigurableApplicationContext context = application.run("--server.port=0", "--management.port=-1",
+                "--hmac.auth.enabled=" + signed, "--hmac.auth.algorithm=" + HMAC_ALGORITHM,
+                "--hmac.auth.charset=" + HMAC_CHARSET, "--hmac.auth.credentials." + API_KEY + "=" + API_SECRET,
+                "--user.warmup.enabled=false", "--logging.level.root=WARN",
+                "--server.tomcat.max-connections=" + (connections + 1000), "--loadtest.users=" + users,
+                "--loadtest.latency-ms=" + options.get("latency-ms"));
+        try {
+            final InetSocketAddress address = new InetSocketAddress("127.0.0.1",
+                    Integer.parseInt(context.getEnvironment().getProperty("local.server.port")));
+            final Map<String, Measurement> measurements = new LinkedHashMap<String, Measurement>();
+            for (String scenario : scenarios) {
+                final NameDistribution names = scenario.startsWith("zipf-")
+                        ? NameDistribution.zipf(PATH, users, Double.parseDouble(options.get("zipf-exponent")), users)
+                        : NameDistribution.uniform(PATH, users, users);
+                final HttpLoadGenerator generator = new HttpLoadGenerator(address, "text/html", connections,
+                        Double.parseDouble(options.get("rate")), names,
+                        signed ? new HmacRequestSigner(HMAC_ALGORITHM, HMAC_CHARSET, API_KEY, API_SECRET) : null);
+                final Measurement measurement = new Measurement(generator.run(
+                        TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("warmup"))),
+                        TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("duration")))));
+                System.out.printf("%-18s %10.0f %8d %9.2f %9.2f %9.2f\n", scenario, measurement.throughput,
+                        measurement.errors, measurement.p50Millis, measurement.p99Millis, measurement.p999Millis);
+                measurements.put(scenario, measurement);
+            }
+            return measurements;
+        } finally {
+            context.close();
+        }
+    }
+
+    private static List<String> check(Properties baseline, Map<String, Measurement> measurements) {
+        final List<String> violations = new ArrayList<String>();
+        for (Map.Entry<String, Measurement> entry : measurements.entrySet()) {
+            final String scenario = entry.getKey();
+            final Measurement measurement = entry.getValue();
+            if (measurement.errors > 0) {
+                violations.add(String.format("%s: %d 个请求失败或返回非2xx", scenario, measurement.errors));
+            }
+            checkAtMost(violations, baseline, scenario + ".p50-ms", measurement.p50Millis);
+            checkAtMost(violations, baseline, scenario + ".p99-ms", measurement.p99Millis);
+            checkAtMost(violations, baseline, scenario + ".p999-ms", measurement.p999Millis);
+            final String key = scenario + ".min-throughput";
+            final double budget = budget(violations, baseline, key);
+            if (measurement.throughput < budget) {
+                violations.add(String.format("%s: %.0f < %.0f", key, measurement.throughput, budget));
+            }
+        }
+        return violations;
+    }
+
+    private static void checkAtMost(List<String> violations, Properties baseline, String key, double value) {
+        final double budget = budget(violations, baseline, key);
+        if (value > budget) {
+            violations.add(String.format("%s: %.2f > %.2f", key, value, budget));
+        }
+    }
+
+    // 缺少的预算本身也算作不通过，避免新增场景时忘记更新基线
+    private static double budget(List<String> violations, Properties baseline, String key) {
+        final String value = baseline.getProperty(key);
+        if (value == null) {
+            violations.add(key + ": 基线中没有该项");
+            return Double.NaN;
+        }
+        return Double.parseDouble(value.trim());
+    }
+
+    private static Properties load(File file) throws IOException {
+        final Properties properties = new Properties();
+        final InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+    // 只改写运行过的场景，其余场景保留原来的预算；文件头记录生成基线的环境与参数
+    private static void updateBaseline(File file, Map<String, Measurement> measurements, Map<String, String> options)
+            throws IOException {
+        final double headroom = Double.parseDouble(options.get("headroom"));
+        final Properties previous = file.exists() ? load(file) : new Properties();
+        final StringBuilder out = new StringBuilder();
+        out.append("# /users 延迟回归测试的预算，见 LatencyRegressionSuite\n");
+        out.append("# 延迟单位为毫秒，吞吐量单位为每秒请求数；以 --update-baseline=true 运行时改写\n");
+        out.append(String.format(Locale.ENGLISH, "# 生成于 %tF: %s %s, %s %s %s, %d 核, 最大堆 %d MB\n", new Date(),
+                System.getProperty("java.vm.name"), System.getProperty("java.version"), System.getProperty("os.name"),
+                System.getProperty("os.version"), System.getProperty("os.arch"),
+                Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() >> 20));
+        out.append(String.format("# 参数: rate=%s, connections=%s, warmup=%s, duration=%s, users=%s, zipf-exponent=%s, "
+                + "latency-ms=%s, headroom=%s\n", options.get("rate"), options.get("connections"),
+                options.get("warmup"), options.get("duration"), options.get("users"), options.get("zipf-exponent"),
+                options.get("latency-ms"), options.get("headroom")));
+        for (String scenario : SCENARIOS) {
+            final Measurement measurement = measurements.get(scenario);
+            out.append('\n');
+            if (measurement == null) {
+                for (String suffix : new String[] { ".p50-ms", ".p99-ms", ".p999-ms", ".min-throughput" }) {
+                    final String value = previous.getProperty(scenario + suffix);
+                    if (value != null) {
+                        out.append(scenario).append(suffix).append('=').append(value.trim()).append('\n');
+                    }
+                }
+                continue;
+            }
+            out.append(String.format(Locale.ENGLISH, "%s.p50-ms=%.2f\n", scenario,
+                    measurement.p50Millis * (1 + headroom)));
+            out.append(String.format(Locale.ENGLISH, "%s.p99-ms=%.2f\n", scenario,
+                    measurement.p99Millis * (1 + headroom)));
+            out.append(String.format(Locale.ENGLISH, "%s.p999-ms=%.2f\n", scenario,
+                    measurement.p999Millis * (1 + headroom)));
+            out.append(String.format(Locale.ENGLISH, "%s.min-throughput=%.0f\n", scenario,
+                    measurement.throughput * (1 - headroom)));
+        }
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8);
+        try {
+            writer.write(out.toString());
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package cn.luliangwei.docker.demo.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 负载测试中被查询用户的分布.
+ * </p>
+ * <pre>
+ *  uniform - 每个用户被查询的概率相同，缓存命中率最低
+ *  zipf    - 第 k 个用户被查询的概率正比于 1 / k^s，少数热门用户占大部分请求，接近真实流量
+ *  按分布取得用户编号后，约 1/10 的请求替换为不存在的名称，与 {@link UserLoadTest} 一致.
+ *  非线程安全，只在负载生成线程上使用.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+final class NameDistribution implements HttpLoadGenerator.RequestSource {
+
+    private final String path;
+    private final int users;
+    private final Random random;
+    // zipf 分布的累积概率，uniform 时为 null
+    private final double[] cumulative;
+
+    private NameDistribution(String path, int users, long seed, double[] cumulative) {
+        this.path = path;
+        this.users = users;
+        this.random = new Random(seed);
+        this.cumulative = cumulative;
+    }
+
+    static NameDistribution uniform(String path, int users, long seed) {
+        return new NameDistribution(path, users, seed, null);
+    }
+
+    static NameDistribution zipf(String path, int users, double exponent, long seed) {
+        final double[] cumulative = new double[users];
+        double sum = 0;
+        for (int i = 0; i < users; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < users; i++) {
+            cumulative[i] /= sum;
+        }
+        return new NameDistribution(path, users, seed, cumulative);
+    }
+
+    /**
+     * @return 下一个被查询的用户编号
+     */
+    int nextId() {
+        if (cumulative == null) {
+            return random.nextInt(users);
+        }
+        final int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(users - 1, index >= 0 ? index : -index - 1);
+    }
+
+    @Override
+    public String nextPath() {
+        final int id = nextId();
+        final String name = random.nextInt(10) == 0 ? "missing-" + id : SlowStoreConfiguration.name(id);
+        return path + "?name=" + name;
+    }
+}
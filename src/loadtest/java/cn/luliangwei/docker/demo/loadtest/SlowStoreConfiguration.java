@@ -0,0 +1,71 @@
+package cn.luliangwei.docker.demo.loadtest;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.repository.InMemoryUserRepository;
+import cn.luliangwei.docker.demo.repository.UserRepository;
+
+/**
+ * 负载测试使用的数据源配置，作为额外的配置源传给 SpringApplication.
+ * </p>
+ * <pre>
+ *  没有 @Configuration 注解，不会被应用的组件扫描加载.
+ *  loadtest.users 个用户 user-0 ... user-(n-1)，每次查询延迟 loadtest.latency-ms 毫秒.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class SlowStoreConfiguration {
+
+    @Bean
+    @Primary
+    public UserRepository slowUserRepository(@Value("${loadtest.users}") int users,
+            @Value("${loadtest.latency-ms}") long latencyMs) {
+        final InMemoryUserRepository repository = new InMemoryUserRepository();
+        repository.replaceAll(roster(users));
+        return new SlowUserRepository(repository, latencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    static String name(int id) {
+        return "user-" + id;
+    }
+
+    private static Iterable<User> roster(final int count) {
+        return new Iterable<User>() {
+            @Override
+            public Iterator<User> iterator() {
+                return new Iterator<User>() {
+                    private int id;
+
+                    @Override
+                    public boolean hasNext() {
+                        return id < count;
+                    }
+
+                    @Override
+                    public User next() {
+                        final User user = new User();
+                        user.setName(name(id));
+                        user.setAge(18 + id % 60);
+                        user.setPhone(String.format("1%010d", id));
+                        user.setAddress("科技园B-" + (id % 1000));
+                        id++;
+                        return user;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+}
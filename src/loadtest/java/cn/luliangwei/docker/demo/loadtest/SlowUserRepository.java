@@ -0,0 +1,73 @@
+package cn.luliangwei.docker.demo.loadtest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.repository.UserRepository;
+
+/**
+ * 模拟远程存储的用户数据源.
+ * </p>
+ * <pre>
+ *  每次查询固定延迟 latency:
+ *  findByName 在调用线程上等待，相当于阻塞式的客户端；
+ *  findByNameAsync 由定时器在延迟后完成，等待期间不占用任何线程，相当于非阻塞的客户端.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+final class SlowUserRepository implements UserRepository {
+
+    private final UserRepository delegate;
+    private final long latencyNanos;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            final Thread thread = new Thread(task, "slow-store");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    SlowUserRepository(UserRepository delegate, long latency, TimeUnit unit) {
+        this.delegate = delegate;
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    @Override
+    public User findByName(String name) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(latencyNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return delegate.findByName(name);
+    }
+
+    @Override
+    public CompletableFuture<User> findByNameAsync(final String name) {
+        final CompletableFuture<User> result = new CompletableFuture<User>();
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                result.complete(delegate.findByName(name));
+            }
+        }, latencyNanos, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    @Override
+    public int count() {
+        return delegate.count();
+    }
+
+    @Override
+    public long getVersion() {
+        return delegate.getVersion();
+    }
+}
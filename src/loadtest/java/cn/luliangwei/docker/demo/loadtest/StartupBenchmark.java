@@ -0,0 +1,228 @@
+package cn.luliangwei.docker.demo.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 应用启动耗时的基准测试.
+ * </p>
+ * <pre>
+ *  每次启动一个新的JVM进程运行 {@link cn.luliangwei.docker.demo.Application}，从创建进程开始计时，
+ *  每隔 10ms 请求一次 /users，直到第一次返回 200 为止，即容器扩容时新实例开始提供服务所需的时间.
+ *  每种启动方式运行 runs 次，输出最小值、中位数和最大值.
+ *
+ *  运行: mvn -P loadtest verify -Dloadtest.main=cn.luliangwei.docker.demo.loadtest.StartupBenchmark
+ *            -Dloadtest.args="--runs=10 --fast-jvm-args=-XX:SharedArchiveFile=target/app/app.jsa"
+ *  对比预热前后: -Dloadtest.args="--modes=default,warmup --requests=20000"
+ *  参数（--名称=值）:
+ *      runs           每种启动方式的次数，默认 5
+ *      modes          逗号分隔的启动方式，默认 default,fast-start
+ *                       default    - 默认配置，不预热
+ *                       fast-start - fast-start 配置（单例按需创建等），不预热，并追加 fast-jvm-args
+ *                       warmup     - 默认配置，启动后预热（user.warmup），就绪后才发送请求
+ *      requests       就绪后依次发送的请求数，默认 20000，为0时只统计启动耗时
+ *      fast-jvm-args  fast-start 方式追加的JVM参数，空格分隔，如 appcds.sh 生成的 jvm.opts 中的内容
+ *      jvm-args       所有方式共用的JVM参数，默认 -Xms256m -Xmx256m
+ *      classpath      应用的类路径，默认与本进程相同；使用类数据共享归档时必须与生成归档时一致
+ *      timeout        单次启动的最长等待秒数，默认 60
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public final class StartupBenchmark {
+
+    private static final String MAIN_CLASS = "cn.luliangwei.docker.demo.Application";
+    private static final long POLL_INTERVAL_MILLIS = 10;
+    private static final String USERS_PATH = "/users?name=luliangwei";
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<String, String>();
+        options.put("runs", "5");
+        options.put("modes", "default,fast-start");
+        options.put("fast-jvm-args", "");
+        options.put("jvm-args", "-Xms256m -Xmx256m");
+        options.put("classpath", System.getProperty("java.class.path"));
+        options.put("timeout", "60");
+        options.put("requests", "20000");
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("参数格式为 --名称=值: " + arg);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        final int runs = Integer.parseInt(options.get("runs"));
+        final long timeoutNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("timeout")));
+        final int requests = Integer.parseInt(options.get("requests"));
+
+        final Map<String, long[][]> results = new LinkedHashMap<String, long[][]>();
+        for (String mode : options.get("modes").split(",")) {
+            // 每次运行: 启动毫秒数，请求耗时 p50/p99/max（微秒）
+            final long[][] runResults = new long[4][runs];
+            for (int i = 0; i < runs; i++) {
+                final long[] run = run(mode.trim(), command(mode.trim(), options), timeoutNanos, requests);
+                for (int j = 0; j < run.length; j++) {
+                    runResults[j][i] = run[j];
+                }
+                System.out.printf("%-12s run %d: %d ms, requests p50 %d us, p99 %d us, max %d us%n", mode.trim(),
+                        i + 1, run[0], run[1], run[2], run[3]);
+            }
+            for (long[] column : runResults) {
+                Arrays.sort(column);
+            }
+            results.put(mode.trim(), runResults);
+        }
+        System.out.printf("%n%-12s %8s %8s %8s %10s %10s %10s%n", "mode", "min(ms)", "p50(ms)", "max(ms)",
+                "req50(us)", "req99(us)", "reqmax(us)");
+        for (Map.Entry<String, long[][]> result : results.entrySet()) {
+            final long[][] runResults = result.getValue();
+            final int median = runs / 2;
+            System.out.printf("%-12s %8d %8d %8d %10d %10d %10d%n", result.getKey(), runResults[0][0],
+                    runResults[0][median], runResults[0][runs - 1], runResults[1][median], runResults[2][median],
+                    runResults[3][median]);
+        }
+    }
+
+    private static List<String> command(String mode, Map<String, String> options) throws IOException {
+        final List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        addAll(command, options.get("jvm-args"));
+        if ("fast-start".equals(mode)) {
+            addAll(command, options.get("fast-jvm-args"));
+        } else if (!"default".equals(mode) && !"warmup".equals(mode)) {
+            throw new IllegalArgumentException("未知的启动方式: " + mode);
+        }
+        command.add("-cp");
+        command.add(options.get("classpath"));
+        command.add(MAIN_CLASS);
+        command.add("--server.port=" + freePort());
+        command.add("--management.port=" + ("warmup".equals(mode) ? freePort() : -1));
+        command.add("--logging.level.root=WARN");
+        command.add("--user.warmup.enabled=" + "warmup".equals(mode));
+        if ("fast-start".equals(mode)) {
+            command.add("--spring.profiles.active=fast-start");
+        }
+        return command;
+    }
+
+    /*
+     * 返回从创建进程到就绪的毫秒数，以及就绪后 requests 个请求耗时的 p50/p99/max（微秒）.
+     * 就绪指 /users 第一次返回 200，warmup 方式为管理端口上的 /ready 第一次返回 200.
+     */
+    private static long[] run(String mode, List<String> command, long timeoutNanos, int requests)
+            throws Exception {
+        final String port = option(command, "--server.port=");
+        final URL url = new URL("http://127.0.0.1:" + port + USERS_PATH);
+        final URL readyUrl = "warmup".equals(mode)
+                ? new URL("http://127.0.0.1:" + option(command, "--management.port=") + "/ready") : url;
+        final long start = System.nanoTime();
+        final Process process = new ProcessBuilder(command).inheritIO().start();
+        try {
+            while (System.nanoTime() - start < timeoutNanos) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("应用启动失败，退出码 " + process.exitValue());
+                }
+                if (ok(readyUrl)) {
+                    final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    final long[] latencies = latencies(url, requests);
+                    return new long[] { millis, percentile(latencies, 0.5), percentile(latencies, 0.99),
+                            percentile(latencies, 1) };
+                }
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            }
+            throw new IllegalStateException("应用未在超时时间内就绪: " + readyUrl);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    // 依次发送请求，返回排序后的耗时（微秒）；读完响应体以便复用连接
+    private static long[] latencies(URL url, int requests) throws IOException {
+        final long[] micros = new long[requests];
+        final byte[] buffer = new byte[8192];
+        for (int i = 0; i < requests; i++) {
+            final long start = System.nanoTime();
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IllegalStateException("请求失败: " + connection.getResponseCode());
+            }
+            final InputStream in = connection.getInputStream();
+            try {
+                while (in.read(buffer) >= 0) {
+                    continue;
+                }
+            } finally {
+                in.close();
+            }
+            micros[i] = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        }
+        Arrays.sort(micros);
+        return micros;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private static String option(List<String> command, String prefix) {
+        for (String arg : command) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        throw new IllegalArgumentException("缺少参数: " + prefix);
+    }
+
+    private static boolean ok(URL url) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(100);
+            connection.setReadTimeout(5000);
+            try {
+                return connection.getResponseCode() == HttpURLConnection.HTTP_OK;
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        final ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static void addAll(List<String> command, String args) {
+        for (String arg : args.trim().split("\\s+")) {
+            if (!arg.isEmpty()) {
+                command.add(arg);
+            }
+        }
+    }
+}
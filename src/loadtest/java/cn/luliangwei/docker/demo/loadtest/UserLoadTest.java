@@ -0,0 +1,123 @@
+package cn.luliangwei.docker.demo.loadtest;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import cn.luliangwei.docker.demo.Application;
+
+/**
+ * /users 阻塞与异步两种实现在高并发下的负载测试.
+ * </p>
+ * <pre>
+ *  默认在本进程内以随机端口启动应用，数据源替换为 {@link SlowUserRepository}（每次查询延迟 latency-ms），
+ *  并关闭页面缓存，使每个请求都访问数据源. 依次对每个路径用 connections 个长连接施压，输出吞吐量、
+ *  延迟分位数，以及压测期间应用的峰值线程数.
+ *  阻塞实现的吞吐量上限约为 Tomcat 线程数 / latency-ms，其余请求在连接上排队；
+ *  异步实现等待数据源时不占用线程，吞吐量只受CPU限制.
+ *
+ *  运行: mvn -P loadtest verify -Dloadtest.args="--connections=10000 --duration=30"
+ *  参数（--名称=值）:
+ *      connections  并发连接数，默认 10000
+ *      warmup       每个路径的预热秒数，默认 10
+ *      duration     每个路径的测量秒数，默认 30
+ *      paths        逗号分隔的路径，默认 /users,/users/async
+ *      accept       Accept 请求头，默认 text/html
+ *      latency-ms   模拟的数据源延迟，默认 50
+ *      users        用户数，默认 100000；请求中约 1/10 的名称不存在
+ *      target       已运行应用的地址，如 http://10.0.0.2:1874，此时不在本进程内启动应用
+ *  客户端与服务端在同一进程时需要约 2 * connections 个文件描述符，运行前调大 ulimit -n.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public final class UserLoadTest {
+
+    private UserLoadTest() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        final Map<String, String> options = new HashMap<String, String>();
+        options.put("connections", "10000");
+        options.put("warmup", "10");
+        options.put("duration", "30");
+        options.put("paths", "/users,/users/async");
+        options.put("accept", "text/html");
+        options.put("latency-ms", "50");
+        options.put("users", "100000");
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("参数格式为 --名称=值: " + arg);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        final int connections = Integer.parseInt(options.get("connections"));
+        final int users = Integer.parseInt(options.get("users"));
+
+        ConfigurableApplicationContext context = null;
+        final InetSocketAddress address;
+        if (options.containsKey("target")) {
+            final URI target = URI.create(options.get("target"));
+            address = new InetSocketAddress(target.getHost(), target.getPort());
+        } else {
+            final SpringApplication application = new SpringApplication(Application.class,
+                    SlowStoreConfiguration.class);
+            context = application.run("--server.port=0", "--management.port=-1", "--hmac.auth.enabled=false",
+                    "--user.cache.enabled=false", "--logging.level.root=WARN",
+                    "--server.tomcat.max-connections=" + (connections + 1000),
+                    "--loadtest.users=" + users, "--loadtest.latency-ms=" + options.get("latency-ms"));
+            address = new InetSocketAddress("127.0.0.1",
+                    Integer.parseInt(context.getEnvironment().getProperty("local.server.port")));
+        }
+
+        try {
+            System.out.printf("connections=%d, latency-ms=%s, accept=%s%n", connections,
+                    context == null ? "n/a" : options.get("latency-ms"), options.get("accept"));
+            System.out.printf("%-14s %10s %8s %8s %8s %9s %9s %9s %9s %9s %8s%n", "path", "req/s", "errors",
+                    "non-2xx", "404", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)", "threads");
+            final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            for (String path : options.get("paths").split(",")) {
+                threads.resetPeakThreadCount();
+                final HttpLoadGenerator generator = new HttpLoadGenerator(address, options.get("accept"),
+                        connections, names(path.trim(), users));
+                final HttpLoadGenerator.Result result = generator.run(
+                        TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("warmup"))),
+                        TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("duration"))));
+                final LatencyHistogram latencies = result.latencies;
+                System.out.printf("%-14s %10.0f %8d %8d %8d %9.1f %9.1f %9.1f %9.1f %9.1f %8s%n", path.trim(),
+                        result.getThroughput(), result.errors, result.non2xx, result.notFound,
+                        latencies.getValueAtPercentile(50) / 1000.0, latencies.getValueAtPercentile(90) / 1000.0,
+                        latencies.getValueAtPercentile(99) / 1000.0, latencies.getValueAtPercentile(99.9) / 1000.0,
+                        latencies.getMax() / 1000.0,
+                        context == null ? "n/a" : String.valueOf(threads.getPeakThreadCount()));
+            }
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private static HttpLoadGenerator.RequestSource names(final String path, final int users) {
+        final Random random = new Random(users);
+        return new HttpLoadGenerator.RequestSource() {
+            @Override
+            public String nextPath() {
+                final String name = random.nextInt(10) == 0 ? "missing-" + random.nextInt(users)
+                        : SlowStoreConfiguration.name(random.nextInt(users));
+                return path + "?name=" + name;
+            }
+        };
+    }
+}
@@ -0,0 +1,75 @@
+#!/bin/sh
+# 镜像构建时执行: 解压jar并生成类数据共享（CDS）归档，供 run 以 fast-start 方式启动
+#   用法: sh appcds.sh <jar文件> <输出目录>
+#   输出目录中生成:
+#     classpath - 启动时使用的类路径，必须与生成归档时完全一致
+#     jvm.opts  - 启动时追加的JVM参数
+#     app.jsa   - Java 10 及以上: 包含JDK、依赖和应用自身类的归档
+#   Java 8 只能共享JDK自身的类（-Xshare:dump 生成JRE的默认归档），应用类仍从jar加载.
+#   任何一步失败都不影响镜像构建，run 会退回到 java -jar 启动.
+
+JAR=$1
+APP_HOME=$2
+MAIN_CLASS=cn.luliangwei.docker.demo.Application
+TRAINING_PORT=18740
+
+mkdir -p ${APP_HOME}/exploded || exit 0
+cd ${APP_HOME} || exit 0
+unzip -q -o ${JAR} -d exploded || exit 0
+
+# 归档只能包含jar中的类，把 BOOT-INF/classes 重新打包为 app.jar
+CLASSES=exploded/BOOT-INF/classes
+if command -v jar > /dev/null 2>&1 && jar cf app.jar -C exploded/BOOT-INF/classes . ; then
+    CLASSES=${APP_HOME}/app.jar
+else
+    CLASSES=${APP_HOME}/${CLASSES}
+fi
+CP=${CLASSES}
+for lib in exploded/BOOT-INF/lib/*.jar; do
+    CP=${CP}:${APP_HOME}/${lib}
+done
+
+# java -version 输出 "1.8.0_144" 或 "11.0.2" 等
+VERSION=$(java -version 2>&1 | head -n 1 | sed -e 's/^[^"]*"//' -e 's/".*$//')
+MAJOR=$(echo ${VERSION} | cut -d. -f1)
+if [ "${MAJOR}" = "1" ]; then
+    MAJOR=$(echo ${VERSION} | cut -d. -f2)
+fi
+
+echo ${CP} > classpath
+echo "" > jvm.opts
+
+if [ "${MAJOR}" -lt 10 ] || [ "${CLASSES}" != "${APP_HOME}/app.jar" ]; then
+    java -Xshare:dump > /dev/null 2>&1 && echo "-Xshare:auto" > jvm.opts
+    exit 0
+fi
+
+UNLOCK=""
+if [ "${MAJOR}" = "10" ]; then
+    UNLOCK="-XX:+UseAppCDS"
+fi
+
+# 训练运行: 启动应用并访问主要接口，记录加载过的类
+java ${UNLOCK} -Xshare:off -XX:DumpLoadedClassList=classes.lst -cp ${CP} ${MAIN_CLASS} \
+    --server.port=${TRAINING_PORT} --management.port=-1 --logging.level.root=WARN &
+PID=$!
+URL="http://127.0.0.1:${TRAINING_PORT}/users?name=luliangwei"
+for i in $(seq 1 120); do
+    if wget -q -O /dev/null "${URL}"; then
+        wget -q -O /dev/null --header "Accept: application/json" "${URL}"
+        wget -q -O /dev/null --header "Accept-Encoding: gzip" "${URL}"
+        wget -q -O /dev/null "http://127.0.0.1:${TRAINING_PORT}/users/async?name=luliangwei"
+        break
+    fi
+    sleep 1
+done
+kill ${PID}
+wait ${PID}
+
+if java ${UNLOCK} -Xshare:dump -XX:SharedClassListFile=classes.lst -XX:SharedArchiveFile=app.jsa -cp ${CP} \
+        > dump.log 2>&1; then
+    echo "${UNLOCK} -Xshare:auto -XX:SharedArchiveFile=${APP_HOME}/app.jsa" > jvm.opts
+else
+    tail -n 20 dump.log
+fi
+rm -f classes.lst
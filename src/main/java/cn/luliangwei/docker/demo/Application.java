@@ -1,21 +1,49 @@
 package cn.luliangwei.docker.demo;
 
 import org.springframework.boot.SpringApplication;
-import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.context.annotation.Import;
+
+import cn.luliangwei.docker.demo.config.HmacAuthConfiguration;
+import cn.luliangwei.docker.demo.config.LazyInitializationContextInitializer;
+import cn.luliangwei.docker.demo.config.MetricsConfiguration;
+import cn.luliangwei.docker.demo.config.UserBatchConfiguration;
+import cn.luliangwei.docker.demo.config.UserCacheConfiguration;
+import cn.luliangwei.docker.demo.config.UserCoalescingConfiguration;
+import cn.luliangwei.docker.demo.config.UserHttpConfiguration;
+import cn.luliangwei.docker.demo.config.UserRepositoryConfiguration;
+import cn.luliangwei.docker.demo.config.UserWarmupConfiguration;
+import cn.luliangwei.docker.demo.controller.UserController;
+import cn.luliangwei.docker.demo.service.UserBatchService;
+import cn.luliangwei.docker.demo.service.UserService;
 
 /**
  * 
  * 启动类.
  * </p>
+ * <pre>
+ *  组件通过 @Import 显式注册，不做类路径扫描；新增的配置类、服务和控制器需要加入下面的列表.
+ *  user.startup.lazy-init=true 时单例按需创建，见 {@link LazyInitializationContextInitializer}.
+ *  启动完成后在后台预热，管理端口上的 /ready 在预热结束前返回 503，见 {@link UserWarmupConfiguration}.
+ *  容器中以 fast-start 配置启动，见 application-fast-start.yml 与 src/main/docker/appcds.sh.
+ * </pre>
  *
  * @author luliangwei
  * @since 1.0.0
  */
-@SpringBootApplication
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@Import({ HmacAuthConfiguration.class, MetricsConfiguration.class, UserBatchConfiguration.class,
+        UserCacheConfiguration.class, UserCoalescingConfiguration.class, UserHttpConfiguration.class,
+        UserRepositoryConfiguration.class, UserWarmupConfiguration.class, UserService.class,
+        UserBatchService.class, UserController.class })
 public class Application 
 {
     public static void main(String[] args) throws Exception {
-        SpringApplication.run(Application.class, args);
+        final SpringApplication application = new SpringApplication(Application.class);
+        application.addInitializers(new LazyInitializationContextInitializer());
+        application.run(args);
     }
 
 }
@@ -0,0 +1,110 @@
+package cn.luliangwei.docker.demo.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import cn.luliangwei.docker.demo.filter.HmacAuthFilter;
+import cn.luliangwei.docker.demo.metrics.LatencyTimer;
+import cn.luliangwei.docker.demo.repository.CredentialStore;
+import cn.luliangwei.docker.demo.repository.FileCredentialStore;
+import cn.luliangwei.docker.demo.repository.InMemoryCredentialStore;
+import cn.luliangwei.docker.demo.util.ApiKeyRateLimiter;
+import cn.luliangwei.docker.demo.util.NonceReplayCache;
+
+/**
+ *
+ * HMAC请求认证的配置.
+ * </p>
+ * <pre>
+ *  hmac.auth.enabled=true 时注册 {@link HmacAuthFilter}.
+ *  配置了 hmac.auth.credentials-file 时凭证由 {@link FileCredentialStore} 提供，
+ *  每隔 credentials-reload-seconds 检查文件变化；否则由 hmac.auth.credentials 构建 {@link InMemoryCredentialStore}.
+ *  hmac.auth.rate-limit.enabled=true 时创建 {@link ApiKeyRateLimiter}，在校验签名之前按apiKey限流.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@Configuration
+@EnableConfigurationProperties(HmacAuthProperties.class)
+@ConditionalOnProperty(prefix = "hmac.auth", name = "enabled", havingValue = "true")
+public class HmacAuthConfiguration {
+
+    @Bean
+    public HmacAuthFilter hmacAuthFilter(HmacAuthProperties properties, CredentialStore credentialStore,
+            @Qualifier("hmacAuthTimer") LatencyTimer hmacAuthTimer,
+            @Qualifier("hmacBuildTimer") LatencyTimer hmacBuildTimer,
+            @Qualifier("hmacVerifyTimer") LatencyTimer hmacVerifyTimer,
+            ObjectProvider<ApiKeyRateLimiter> apiKeyRateLimiter) {
+        final HmacAuthFilter filter = new HmacAuthFilter(properties, credentialStore, nonceReplayCache(properties));
+        filter.setAuthTimer(hmacAuthTimer);
+        filter.setBuildTimer(hmacBuildTimer);
+        filter.setVerifyTimer(hmacVerifyTimer);
+        filter.setRateLimiter(apiKeyRateLimiter.getIfAvailable());
+        return filter;
+    }
+
+    @Bean
+    public CredentialStore credentialStore(HmacAuthProperties properties) throws IOException {
+        if (properties.getCredentialsFile() == null || properties.getCredentialsFile().isEmpty()) {
+            final InMemoryCredentialStore store = new InMemoryCredentialStore(properties.getAlgorithm(),
+                    properties.getCharset());
+            store.replaceAll(properties.getCredentials());
+            return store;
+        }
+        final FileCredentialStore store = new FileCredentialStore(new File(properties.getCredentialsFile()),
+                properties.getAlgorithm(), properties.getCharset());
+        if (properties.getCredentialsReloadSeconds() > 0) {
+            store.watch(properties.getCredentialsReloadSeconds(), TimeUnit.SECONDS);
+        }
+        return store;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "hmac.auth.rate-limit", name = "enabled", havingValue = "true",
+            matchIfMissing = true)
+    public ApiKeyRateLimiter apiKeyRateLimiter(HmacAuthProperties properties) {
+        final HmacAuthProperties.RateLimit rateLimit = properties.getRateLimit();
+        final ApiKeyRateLimiter limiter = new ApiKeyRateLimiter(rateLimit.getPermitsPerSecond(),
+                rateLimit.getBurst(), rateLimit.getIdleTimeoutSeconds(), TimeUnit.SECONDS);
+        for (Map.Entry<String, HmacAuthProperties.Limit> limit : rateLimit.getLimits().entrySet()) {
+            limiter.setLimit(limit.getKey(), limit.getValue().getPermitsPerSecond(), limit.getValue().getBurst());
+        }
+        return limiter;
+    }
+
+    private static NonceReplayCache nonceReplayCache(HmacAuthProperties properties) {
+        if (properties.getNonceWindowSeconds() <= 0) {
+            return null;
+        }
+        final long clockSkewMillis = properties.getNonceWindowSeconds() * 1000;
+        if (properties.isNonceBloomFilter()) {
+            return new NonceReplayCache(clockSkewMillis, properties.getNonceExpectedCount(),
+                    properties.getNonceFalsePositiveRate());
+        }
+        return new NonceReplayCache(clockSkewMillis);
+    }
+
+    @Bean
+    public FilterRegistrationBean hmacAuthFilterRegistration(HmacAuthFilter hmacAuthFilter,
+            HmacAuthProperties properties) {
+        final FilterRegistrationBean registration = new FilterRegistrationBean(hmacAuthFilter);
+        registration.setName("hmacAuthFilter");
+        if (!properties.getUrlPatterns().isEmpty()) {
+            registration.setUrlPatterns(properties.getUrlPatterns());
+        }
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
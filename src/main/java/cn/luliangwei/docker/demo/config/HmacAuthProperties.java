@@ -0,0 +1,284 @@
+package cn.luliangwei.docker.demo.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder;
+
+/**
+ *
+ * HMAC请求认证的配置项.
+ * </p>
+ * <pre>
+ *  对应 application.yml 中 hmac.auth 下的配置.
+ *  hmac.auth.credentials-file 配置后从文件加载凭证并自动重新加载，否则使用 hmac.auth.credentials.
+ *  hmac.auth.rate-limit 控制按apiKey的限流，见 {@link RateLimit}.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "hmac.auth")
+public class HmacAuthProperties {
+
+    /**
+     * 是否开启HMAC请求认证.
+     */
+    private boolean enabled = false;
+    /**
+     * HMAC的算法.
+     */
+    private String algorithm = HmacSignatureBuilder.DEFAULT_ALGORITHM;
+    /**
+     * 加入运算的相关字符的字符集编码.
+     */
+    private String charset = HmacSignatureBuilder.DEFAULT_CHARSET;
+    /**
+     * 需要认证的请求地址.
+     */
+    private List<String> urlPatterns = new ArrayList<String>();
+    /**
+     * 允许的最大请求数据长度（字节）.
+     */
+    private int maxBodySize = 10 * 1024 * 1024;
+    /**
+     * apiKey与apiSecret的对应关系，未配置 credentials-file 时使用.
+     */
+    private Map<String, String> credentials = new LinkedHashMap<String, String>();
+    /**
+     * apiKey与apiSecret的凭证文件（properties格式），配置后忽略 credentials.
+     */
+    private String credentialsFile;
+    /**
+     * 检查凭证文件是否变化的间隔（秒），为0时不自动重新加载.
+     */
+    private long credentialsReloadSeconds = 10;
+    /**
+     * 防重放: 允许的请求时间偏差（秒），为0时不做防重放校验.
+     */
+    private long nonceWindowSeconds = 300;
+    /**
+     * 防重放: 是否使用布隆过滤器记录已使用的随机数.
+     */
+    private boolean nonceBloomFilter = false;
+    /**
+     * 防重放: 布隆过滤器模式下窗口内预计的请求数.
+     */
+    private long nonceExpectedCount = 1000000;
+    /**
+     * 防重放: 布隆过滤器模式下可接受的误判率.
+     */
+    private double nonceFalsePositiveRate = 0.0001;
+    /**
+     * 按apiKey的限流.
+     */
+    private final RateLimit rateLimit = new RateLimit();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public String getCharset() {
+        return charset;
+    }
+
+    public void setCharset(String charset) {
+        this.charset = charset;
+    }
+
+    public List<String> getUrlPatterns() {
+        return urlPatterns;
+    }
+
+    public void setUrlPatterns(List<String> urlPatterns) {
+        this.urlPatterns = urlPatterns;
+    }
+
+    public int getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(int maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    public Map<String, String> getCredentials() {
+        return credentials;
+    }
+
+    public void setCredentials(Map<String, String> credentials) {
+        this.credentials = credentials;
+    }
+
+    public String getCredentialsFile() {
+        return credentialsFile;
+    }
+
+    public void setCredentialsFile(String credentialsFile) {
+        this.credentialsFile = credentialsFile;
+    }
+
+    public long getCredentialsReloadSeconds() {
+        return credentialsReloadSeconds;
+    }
+
+    public void setCredentialsReloadSeconds(long credentialsReloadSeconds) {
+        this.credentialsReloadSeconds = credentialsReloadSeconds;
+    }
+
+    public long getNonceWindowSeconds() {
+        return nonceWindowSeconds;
+    }
+
+    public void setNonceWindowSeconds(long nonceWindowSeconds) {
+        this.nonceWindowSeconds = nonceWindowSeconds;
+    }
+
+    public boolean isNonceBloomFilter() {
+        return nonceBloomFilter;
+    }
+
+    public void setNonceBloomFilter(boolean nonceBloomFilter) {
+        this.nonceBloomFilter = nonceBloomFilter;
+    }
+
+    public long getNonceExpectedCount() {
+        return nonceExpectedCount;
+    }
+
+    public void setNonceExpectedCount(long nonceExpectedCount) {
+        this.nonceExpectedCount = nonceExpectedCount;
+    }
+
+    public double getNonceFalsePositiveRate() {
+        return nonceFalsePositiveRate;
+    }
+
+    public void setNonceFalsePositiveRate(double nonceFalsePositiveRate) {
+        this.nonceFalsePositiveRate = nonceFalsePositiveRate;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * 按apiKey限流的配置项，超出配额的请求在计算签名之前以 429 拒绝.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static class RateLimit {
+
+        /**
+         * 是否按apiKey限流.
+         */
+        private boolean enabled = true;
+        /**
+         * 每个apiKey默认每秒恢复的配额数.
+         */
+        private double permitsPerSecond = 1000;
+        /**
+         * 每个apiKey默认最多累积的配额数，即允许的突发请求数.
+         */
+        private int burst = 2000;
+        /**
+         * apiKey空闲多久后清理其限流状态（秒）.
+         */
+        private long idleTimeoutSeconds = 300;
+        /**
+         * 单个apiKey的限额，覆盖默认值.
+         */
+        private Map<String, Limit> limits = new LinkedHashMap<String, Limit>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getPermitsPerSecond() {
+            return permitsPerSecond;
+        }
+
+        public void setPermitsPerSecond(double permitsPerSecond) {
+            this.permitsPerSecond = permitsPerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public long getIdleTimeoutSeconds() {
+            return idleTimeoutSeconds;
+        }
+
+        public void setIdleTimeoutSeconds(long idleTimeoutSeconds) {
+            this.idleTimeoutSeconds = idleTimeoutSeconds;
+        }
+
+        public Map<String, Limit> getLimits() {
+            return limits;
+        }
+
+        public void setLimits(Map<String, Limit> limits) {
+            this.limits = limits;
+        }
+    }
+
+    /**
+     * 单个apiKey的限额.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static class Limit {
+
+        /**
+         * 每秒恢复的配额数.
+         */
+        private double permitsPerSecond;
+        /**
+         * 最多累积的配额数.
+         */
+        private int burst;
+
+        public double getPermitsPerSecond() {
+            return permitsPerSecond;
+        }
+
+        public void setPermitsPerSecond(double permitsPerSecond) {
+            this.permitsPerSecond = permitsPerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+    }
+}
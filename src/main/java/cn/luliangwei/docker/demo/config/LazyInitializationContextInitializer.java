@@ -0,0 +1,44 @@
+package cn.luliangwei.docker.demo.config;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ *
+ * 按需创建单例的上下文初始化器.
+ * </p>
+ * <pre>
+ *  user.startup.lazy-init=true 时把所有应用层的单例标记为延迟初始化，启动时只创建Tomcat、
+ *  DispatcherServlet、过滤器等处理请求必需的对象，控制器、服务与数据源在第一个用到它们的请求时才创建.
+ *  代价是第一批请求要承担这部分初始化，配置错误也要到第一次使用时才暴露.
+ *  基础设施定义（后置处理器等）保持不变.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class LazyInitializationContextInitializer
+        implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+    static final String PROPERTY = "user.startup.lazy-init";
+
+    @Override
+    public void initialize(ConfigurableApplicationContext applicationContext) {
+        if (applicationContext.getEnvironment().getProperty(PROPERTY, Boolean.class, Boolean.FALSE)) {
+            applicationContext.addBeanFactoryPostProcessor(new BeanFactoryPostProcessor() {
+                @Override
+                public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+                    for (String name : beanFactory.getBeanDefinitionNames()) {
+                        final BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                        if (definition.getRole() != BeanDefinition.ROLE_INFRASTRUCTURE) {
+                            definition.setLazyInit(true);
+                        }
+                    }
+                }
+            });
+        }
+    }
+}
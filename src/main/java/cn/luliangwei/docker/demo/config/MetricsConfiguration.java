@@ -0,0 +1,354 @@
+package cn.luliangwei.docker.demo.config;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.filter.HmacAuthFilter;
+import cn.luliangwei.docker.demo.metrics.LatencyPublicMetrics;
+import cn.luliangwei.docker.demo.metrics.LatencyTimer;
+import cn.luliangwei.docker.demo.metrics.MetricsRegistry;
+import cn.luliangwei.docker.demo.metrics.PrometheusMvcEndpoint;
+import cn.luliangwei.docker.demo.repository.CredentialStore;
+import cn.luliangwei.docker.demo.repository.FileCredentialStore;
+import cn.luliangwei.docker.demo.repository.InMemoryCredentialStore;
+import cn.luliangwei.docker.demo.util.ApiKeyRateLimiter;
+import cn.luliangwei.docker.demo.util.CompressedBodyCache;
+import cn.luliangwei.docker.demo.util.HmacFailureMonitor;
+import cn.luliangwei.docker.demo.util.HmacMacPool;
+import cn.luliangwei.docker.demo.util.HmacSignatureException.Reason;
+import cn.luliangwei.docker.demo.util.SingleFlight;
+import cn.luliangwei.docker.demo.util.TinyLfuCache;
+
+/**
+ *
+ * 应用指标的配置.
+ * </p>
+ * <pre>
+ *  耗时统计:
+ *    users.request       - GET /users 与 /users/async 的处理耗时，异步请求计到结果就绪为止
+ *    users.batch.request - POST /users/batch 的处理耗时
+ *    user.render         - 用户信息页面的模板渲染耗时，不含查询数据源
+ *    hmac.auth           - HMAC认证过滤器的总耗时，含查找凭证、限流、读取请求数据、签名与防重放校验；被拒绝与限流的请求同样记录
+ *    hmac.build          - 构建HMAC签名的耗时，含读取请求数据
+ *    hmac.verify         - 比较请求携带的签名与构建结果的耗时
+ *  缓存、合并查询、HMAC实例池、凭证与限流、批量查询线程池等组件的计数与当前值在应用启动完成后注册，
+ *  未启用的组件不注册；HMAC实例池为全局共享，未启用 hmac.auth 时同样注册；按需创建单例时（user.startup.lazy-init）事件监听器仍会被创建，注册不受影响.
+ *  指标通过actuator的 /metrics 与 /prometheus 端点输出.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@Configuration
+@EnableConfigurationProperties(MetricsProperties.class)
+public class MetricsConfiguration {
+
+    @Bean
+    public MetricsRegistry metricsRegistry(MetricsProperties properties) {
+        return new MetricsRegistry(properties.getWindowSeconds(), TimeUnit.SECONDS, properties.getPercentiles());
+    }
+
+    @Bean
+    public LatencyTimer userRequestTimer(MetricsRegistry registry) {
+        return registry.timer("users.request", "GET /users 的处理耗时");
+    }
+
+    @Bean
+    public LatencyTimer userBatchRequestTimer(MetricsRegistry registry) {
+        return registry.timer("users.batch.request", "POST /users/batch 的处理耗时");
+    }
+
+    @Bean
+    public LatencyTimer userRenderTimer(MetricsRegistry registry) {
+        return registry.timer("user.render", "用户信息页面的渲染耗时");
+    }
+
+    @Bean
+    public LatencyTimer hmacAuthTimer(MetricsRegistry registry) {
+        return registry.timer("hmac.auth", "HMAC认证耗时");
+    }
+
+    @Bean
+    public LatencyTimer hmacBuildTimer(MetricsRegistry registry) {
+        return registry.timer("hmac.build", "HMAC签名的构建耗时");
+    }
+
+    @Bean
+    public LatencyTimer hmacVerifyTimer(MetricsRegistry registry) {
+        return registry.timer("hmac.verify", "HMAC签名的比较耗时");
+    }
+
+    @Bean
+    public LatencyPublicMetrics latencyPublicMetrics(MetricsRegistry registry) {
+        return new LatencyPublicMetrics(registry);
+    }
+
+    @Bean
+    public PrometheusMvcEndpoint prometheusMvcEndpoint(MetricsRegistry registry) {
+        return new PrometheusMvcEndpoint(registry);
+    }
+
+    @Bean
+    public ApplicationListener<ApplicationReadyEvent> metricsGauges(final MetricsRegistry registry,
+            final ObjectProvider<TinyLfuCache<String, byte[]>> userInfoCache,
+            final ObjectProvider<CompressedBodyCache> compressedCache,
+            final ObjectProvider<SingleFlight<String, User>> userLookupFlight,
+            final ObjectProvider<HmacAuthFilter> hmacAuthFilter,
+            final ObjectProvider<ApiKeyRateLimiter> apiKeyRateLimiter,
+            final ObjectProvider<CredentialStore> credentialStore,
+            @Qualifier("userBatchExecutor") final ObjectProvider<ExecutorService> userBatchExecutor) {
+        return new ApplicationListener<ApplicationReadyEvent>() {
+            @Override
+            public void onApplicationEvent(ApplicationReadyEvent event) {
+                bindUserInfoCache(registry, userInfoCache.getIfAvailable());
+                bindCompressedCache(registry, compressedCache.getIfAvailable());
+                bindUserLookupFlight(registry, userLookupFlight.getIfAvailable());
+                bindHmac(registry, hmacAuthFilter.getIfAvailable());
+                bindMacPool(registry, HmacMacPool.getDefault());
+                bindRateLimiter(registry, apiKeyRateLimiter.getIfAvailable());
+                bindCredentialStore(registry, credentialStore.getIfAvailable());
+                bindExecutor(registry, userBatchExecutor.getIfAvailable());
+            }
+        };
+    }
+
+    private static void bindUserInfoCache(MetricsRegistry registry, final TinyLfuCache<String, byte[]> cache) {
+        if (cache == null) {
+            return;
+        }
+        registry.counter("user.cache.hits", "页面缓存命中次数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return cache.getHitCount();
+            }
+        });
+        registry.counter("user.cache.misses", "页面缓存未命中次数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return cache.getMissCount();
+            }
+        });
+        registry.counter("user.cache.evictions", "页面缓存因容量淘汰的条目数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return cache.getEvictionCount();
+            }
+        });
+        registry.gauge("user.cache.size", "页面缓存的条目数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return cache.size();
+            }
+        });
+        registry.gauge("user.cache.weight.bytes", "页面缓存占用的估算字节数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return cache.getWeight();
+            }
+        });
+    }
+
+    private static void bindCompressedCache(MetricsRegistry registry, final CompressedBodyCache cache) {
+        if (cache == null) {
+            return;
+        }
+        registry.counter("user.compression.saved.bytes", "返回预压缩页面节省的字节数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return cache.getBytesSaved();
+            }
+        });
+        registry.counter("user.compression.seconds", "压缩页面的累计耗时", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return cache.getCompressionNanos() / 1e9;
+            }
+        });
+        registry.counter("user.compression.compressions", "实际执行压缩的次数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return cache.getCompressionCount();
+            }
+        });
+        registry.counter("user.compression.responses", "返回预压缩页面的次数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return cache.getCompressedResponseCount();
+            }
+        });
+    }
+
+    private static void bindUserLookupFlight(MetricsRegistry registry, final SingleFlight<String, User> flight) {
+        if (flight == null) {
+            return;
+        }
+        registry.counter("user.lookup.executions", "实际访问数据源的查询次数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return flight.getExecutionCount();
+            }
+        });
+        registry.counter("user.lookup.coalesced", "合并到正在进行的查询的次数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return flight.getCoalescedCount();
+            }
+        });
+        registry.counter("user.lookup.timeouts", "等待合并的查询超时的次数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return flight.getTimeoutCount();
+            }
+        });
+        registry.gauge("user.lookup.in.flight", "正在进行的查询数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return flight.getInFlightCount();
+            }
+        });
+    }
+
+    private static void bindHmac(MetricsRegistry registry, final HmacAuthFilter filter) {
+        if (filter == null) {
+            return;
+        }
+        registry.counter("hmac.auth.accepted", "HMAC认证通过的请求数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return filter.getAcceptedCount();
+            }
+        });
+        registry.counter("hmac.auth.rejected", "HMAC认证失败的请求数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return filter.getRejectedCount();
+            }
+        });
+        for (Map.Entry<Reason, Long> failure : HmacFailureMonitor.getCounts().entrySet()) {
+            final Reason reason = failure.getKey();
+            registry.counter("hmac.auth.failures", "reason", reason.name(), "按原因统计的HMAC签名失败次数",
+                    new MetricsRegistry.Gauge() {
+                        @Override
+                        public double value() {
+                            return HmacFailureMonitor.getCount(reason);
+                        }
+                    });
+        }
+    }
+
+    private static void bindMacPool(MetricsRegistry registry, final HmacMacPool macPool) {
+        registry.counter("hmac.mac.pool.hits", "HMAC实例池命中次数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return macPool.getHitCount();
+            }
+        });
+        registry.counter("hmac.mac.pool.misses", "HMAC实例池未命中次数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return macPool.getMissCount();
+            }
+        });
+        registry.counter("hmac.mac.pool.evictions", "HMAC实例池因密钥轮换或组数已满淘汰的组数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return macPool.getEvictionCount();
+            }
+        });
+        registry.counter("hmac.mac.pool.overflows", "HMAC实例池组数已满未能入池的借出次数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return macPool.getOverflowCount();
+            }
+        });
+        registry.gauge("hmac.mac.pool.size", "HMAC实例池中空闲的实例数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return macPool.getPoolSize();
+            }
+        });
+    }
+
+    private static void bindRateLimiter(MetricsRegistry registry, final ApiKeyRateLimiter limiter) {
+        if (limiter == null) {
+            return;
+        }
+        registry.counter("hmac.ratelimit.allowed", "按apiKey限流放行的请求数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return limiter.getAllowedCount();
+            }
+        });
+        registry.counter("hmac.ratelimit.rejected", "配额不足以 429 拒绝的请求数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return limiter.getRejectedCount();
+            }
+        });
+        registry.gauge("hmac.ratelimit.keys", "保存限流状态的apiKey数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return limiter.size();
+            }
+        });
+    }
+
+    private static void bindCredentialStore(MetricsRegistry registry, CredentialStore credentialStore) {
+        if (!(credentialStore instanceof InMemoryCredentialStore)) {
+            return;
+        }
+        final InMemoryCredentialStore store = (InMemoryCredentialStore) credentialStore;
+        registry.gauge("hmac.credentials.keys", "已加载的凭证数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return store.size();
+            }
+        });
+        if (!(store instanceof FileCredentialStore)) {
+            return;
+        }
+        final FileCredentialStore fileStore = (FileCredentialStore) store;
+        registry.counter("hmac.credentials.reloads", "凭证文件成功加载的次数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return fileStore.getReloadCount();
+            }
+        });
+        registry.counter("hmac.credentials.reload.failures", "凭证文件重新加载失败的次数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return fileStore.getReloadFailureCount();
+            }
+        });
+    }
+
+    private static void bindExecutor(MetricsRegistry registry, ExecutorService executor) {
+        if (!(executor instanceof ThreadPoolExecutor)) {
+            return;
+        }
+        final ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+        registry.gauge("user.batch.executor.active", "批量查询线程池中正在执行任务的线程数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return pool.getActiveCount();
+            }
+        });
+        registry.gauge("user.batch.executor.queued", "批量查询线程池中排队的任务数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return pool.getQueue().size();
+            }
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package cn.luliangwei.docker.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *
+ * 应用指标的配置项.
+ * </p>
+ * <pre>
+ *  对应 application.yml 中 user.metrics 下的配置.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "user.metrics")
+public class MetricsProperties {
+
+    /**
+     * 计算耗时分位数的时间窗口（秒）.
+     */
+    private long windowSeconds = 60;
+    /**
+     * 导出的耗时分位数.
+     */
+    private double[] percentiles = { 0.5, 0.9, 0.99, 0.999 };
+
+    public long getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public void setWindowSeconds(long windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    public double[] getPercentiles() {
+        return percentiles;
+    }
+
+    public void setPercentiles(double[] percentiles) {
+        this.percentiles = percentiles;
+    }
+}
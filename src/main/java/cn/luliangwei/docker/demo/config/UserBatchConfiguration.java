@@ -0,0 +1,43 @@
+package cn.luliangwei.docker.demo.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.Assert;
+
+/**
+ *
+ * 批量查询用户的配置.
+ * </p>
+ * <pre>
+ *  查询使用独立的线程池，避免与 ForkJoinPool.commonPool 上的其他任务相互影响.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@Configuration
+@EnableConfigurationProperties(UserBatchProperties.class)
+public class UserBatchConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService userBatchExecutor(UserBatchProperties properties) {
+        Assert.isTrue(properties.getParallelism() > 0, "user.batch.parallelism must be positive");
+        Assert.isTrue(properties.getChunkSize() > 0, "user.batch.chunk-size must be positive");
+        return Executors.newFixedThreadPool(properties.getParallelism(), new ThreadFactory() {
+            private final AtomicInteger sequence = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                final Thread thread = new Thread(task, "user-batch-" + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -0,0 +1,45 @@
+package cn.luliangwei.docker.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *
+ * 批量查询用户的配置项.
+ * </p>
+ * <pre>
+ *  对应 application.yml 中 user.batch 下的配置.
+ *  名称按 chunk-size 分块交给 parallelism 个线程查询，同时最多保留 2 * parallelism 个未写出的分块，
+ *  因此内存占用只与分块大小和并行度有关，与请求中的名称数量无关.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "user.batch")
+public class UserBatchProperties {
+
+    /**
+     * 查询线程数，默认为可用处理器数.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    /**
+     * 每个分块包含的名称数，也是响应刷新的粒度.
+     */
+    private int chunkSize = 256;
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+}
@@ -0,0 +1,41 @@
+package cn.luliangwei.docker.demo.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import cn.luliangwei.docker.demo.util.TinyLfuCache;
+
+/**
+ *
+ * 用户信息页面缓存的配置.
+ * </p>
+ * <pre>
+ *  user.cache.enabled=false 时不创建缓存，每次请求都重新生成页面.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@Configuration
+@EnableConfigurationProperties(UserCacheProperties.class)
+@ConditionalOnProperty(prefix = "user.cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class UserCacheConfiguration {
+
+    // 键在堆上每个字符占2字节，另加对象头、数组头和缓存节点的开销
+    private static final int ENTRY_OVERHEAD = 96;
+
+    @Bean
+    public TinyLfuCache<String, byte[]> userInfoCache(UserCacheProperties properties) {
+        return new TinyLfuCache<String, byte[]>(properties.getMaximumBytes(), properties.getTtlSeconds(),
+                TimeUnit.SECONDS, new TinyLfuCache.Weigher<String, byte[]>() {
+                    @Override
+                    public int weigh(String key, byte[] value) {
+                        return 2 * key.length() + value.length + ENTRY_OVERHEAD;
+                    }
+                });
+    }
+}
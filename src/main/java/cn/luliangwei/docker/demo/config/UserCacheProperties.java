@@ -0,0 +1,55 @@
+package cn.luliangwei.docker.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *
+ * 用户信息页面缓存的配置项.
+ * </p>
+ * <pre>
+ *  对应 application.yml 中 user.cache 下的配置.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "user.cache")
+public class UserCacheProperties {
+
+    /**
+     * 是否缓存 /users 的响应.
+     */
+    private boolean enabled = true;
+    /**
+     * 缓存占用的最大字节数（按键的字符数和页面的字节数估算）.
+     */
+    private long maximumBytes = 16 * 1024 * 1024;
+    /**
+     * 缓存条目写入后的存活时间（秒）.
+     */
+    private long ttlSeconds = 60;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaximumBytes() {
+        return maximumBytes;
+    }
+
+    public void setMaximumBytes(long maximumBytes) {
+        this.maximumBytes = maximumBytes;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+}
@@ -0,0 +1,33 @@
+package cn.luliangwei.docker.demo.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.util.SingleFlight;
+
+/**
+ *
+ * 合并并发用户查询的配置.
+ * </p>
+ * <pre>
+ *  user.coalescing.enabled=false 时不创建 {@link SingleFlight}，每个请求各自访问数据源.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@Configuration
+@EnableConfigurationProperties(UserCoalescingProperties.class)
+@ConditionalOnProperty(prefix = "user.coalescing", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class UserCoalescingConfiguration {
+
+    @Bean
+    public SingleFlight<String, User> userLookupFlight(UserCoalescingProperties properties) {
+        return new SingleFlight<String, User>(properties.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,44 @@
+package cn.luliangwei.docker.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *
+ * 合并并发用户查询的配置项.
+ * </p>
+ * <pre>
+ *  对应 application.yml 中 user.coalescing 下的配置.
+ *  同一名称的并发查询只访问一次数据源，其余请求最多等待 timeout-millis，超时返回 504.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "user.coalescing")
+public class UserCoalescingProperties {
+
+    /**
+     * 是否合并同一名称的并发查询.
+     */
+    private boolean enabled = true;
+    /**
+     * 等待正在进行的查询的最长时间（毫秒）.
+     */
+    private long timeoutMillis = 5000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+}
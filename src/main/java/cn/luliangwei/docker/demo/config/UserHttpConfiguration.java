@@ -0,0 +1,35 @@
+package cn.luliangwei.docker.demo.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import cn.luliangwei.docker.demo.util.CompressedBodyCache;
+
+/**
+ *
+ * /users 响应的HTTP缓存与压缩配置.
+ * </p>
+ * <pre>
+ *  user.http.compression.enabled=false 时不创建预压缩缓存，页面只由连接器按 server.compression 压缩.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@Configuration
+@EnableConfigurationProperties(UserHttpProperties.class)
+public class UserHttpConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "user.http.compression", name = "enabled", havingValue = "true",
+            matchIfMissing = true)
+    public CompressedBodyCache userInfoCompressedCache(UserHttpProperties properties) {
+        final UserHttpProperties.Compression compression = properties.getCompression();
+        return new CompressedBodyCache(compression.getMaximumBytes(), compression.getTtlSeconds(), TimeUnit.SECONDS,
+                compression.getLevel(), compression.getMinSize());
+    }
+}
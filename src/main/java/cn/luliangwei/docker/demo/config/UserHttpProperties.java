@@ -0,0 +1,128 @@
+package cn.luliangwei.docker.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *
+ * /users 响应的HTTP缓存配置项.
+ * </p>
+ * <pre>
+ *  对应 application.yml 中 user.http 下的配置.
+ *  启用ETag时，If-None-Match 与当前ETag相同的请求直接返回 304，不读取也不渲染用户信息.
+ *  user.http.compression 控制HTML页面的预压缩缓存，见 {@link Compression}.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "user.http")
+public class UserHttpProperties {
+
+    /**
+     * 是否为存在的用户返回ETag并处理 If-None-Match.
+     */
+    private boolean etagEnabled = true;
+    /**
+     * 随ETag一起返回的 Cache-Control，为空时不设置.
+     */
+    private String cacheControl = "max-age=60";
+    /**
+     * HTML页面的预压缩缓存.
+     */
+    private final Compression compression = new Compression();
+
+    public boolean isEtagEnabled() {
+        return etagEnabled;
+    }
+
+    public void setEtagEnabled(boolean etagEnabled) {
+        this.etagEnabled = etagEnabled;
+    }
+
+    public String getCacheControl() {
+        return cacheControl;
+    }
+
+    public void setCacheControl(String cacheControl) {
+        this.cacheControl = cacheControl;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * HTML页面的预压缩缓存配置项.
+     * </p>
+     * <pre>
+     *  客户端接受 gzip 时返回 gzip 压缩的页面，压缩结果按用户缓存，相同的页面只压缩一次.
+     *  小于 minSize 的页面不压缩；连接器的 server.compression 只跳过 Content-Encoding 为 gzip 的响应，因此不返回 deflate.
+     * </pre>
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static class Compression {
+
+        /**
+         * 是否启用预压缩缓存.
+         */
+        private boolean enabled = true;
+        /**
+         * 页面小于该字节数时不压缩.
+         */
+        private int minSize = 256;
+        /**
+         * 压缩级别，0~9.
+         */
+        private int level = 6;
+        /**
+         * 每种编码的缓存占用的最大字节数，压缩前后的页面都计入.
+         */
+        private long maximumBytes = 8 * 1024 * 1024;
+        /**
+         * 缓存条目写入后的存活时间（秒）.
+         */
+        private long ttlSeconds = 300;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMinSize() {
+            return minSize;
+        }
+
+        public void setMinSize(int minSize) {
+            this.minSize = minSize;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        public long getMaximumBytes() {
+            return maximumBytes;
+        }
+
+        public void setMaximumBytes(long maximumBytes) {
+            this.maximumBytes = maximumBytes;
+        }
+
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package cn.luliangwei.docker.demo.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.repository.InMemoryUserRepository;
+import cn.luliangwei.docker.demo.repository.UserRepository;
+
+/**
+ *
+ * 用户数据源的配置.
+ * </p>
+ * <pre>
+ *  配置了 user.repository.roster 时从文件加载用户名单，否则只包含内置的演示用户.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@Configuration
+@EnableConfigurationProperties(UserRepositoryProperties.class)
+public class UserRepositoryConfiguration {
+
+    @Bean
+    public UserRepository userRepository(UserRepositoryProperties properties) throws IOException {
+        final InMemoryUserRepository repository = new InMemoryUserRepository(properties.isOffHeap());
+        if (StringUtils.hasText(properties.getRoster())) {
+            repository.load(new File(properties.getRoster()));
+        } else {
+            repository.replaceAll(Collections.singletonList(demoUser()));
+        }
+        return repository;
+    }
+
+    private static User demoUser() {
+        final User user = new User();
+        user.setAddress("科技园B-114");
+        user.setAge(22);
+        user.setName("luliangwei");
+        user.setPhone("123xxxxoooo");
+        return user;
+    }
+}
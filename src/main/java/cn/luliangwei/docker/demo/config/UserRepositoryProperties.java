@@ -0,0 +1,43 @@
+package cn.luliangwei.docker.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *
+ * 用户数据源的配置项.
+ * </p>
+ * <pre>
+ *  对应 application.yml 中 user.repository 下的配置.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "user.repository")
+public class UserRepositoryProperties {
+
+    /**
+     * 用户名单文件路径（.csv/.jsonl/.ndjson），为空时只包含内置的演示用户.
+     */
+    private String roster;
+    /**
+     * 用户数据页是否分配在堆外.
+     */
+    private boolean offHeap = false;
+
+    public String getRoster() {
+        return roster;
+    }
+
+    public void setRoster(String roster) {
+        this.roster = roster;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+}
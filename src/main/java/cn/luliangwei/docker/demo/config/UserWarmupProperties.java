@@ -0,0 +1,68 @@
+package cn.luliangwei.docker.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ *
+ * 启动预热的配置项.
+ * </p>
+ * <pre>
+ *  对应 application.yml 中 user.warmup 下的配置.
+ *  预热在完成 iterations 轮或用完 max-duration-millis 后结束，以先到者为准.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "user.warmup")
+public class UserWarmupProperties {
+
+    /**
+     * 是否在启动后预热，关闭时应用启动完成即就绪.
+     */
+    private boolean enabled = false;
+    /**
+     * 最多执行的轮数.
+     */
+    private long iterations = 50000;
+    /**
+     * 最长预热时间（毫秒）.
+     */
+    private long maxDurationMillis = 20000;
+    /**
+     * 合成的用户数.
+     */
+    private int users = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getIterations() {
+        return iterations;
+    }
+
+    public void setIterations(long iterations) {
+        this.iterations = iterations;
+    }
+
+    public long getMaxDurationMillis() {
+        return maxDurationMillis;
+    }
+
+    public void setMaxDurationMillis(long maxDurationMillis) {
+        this.maxDurationMillis = maxDurationMillis;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public void setUsers(int users) {
+        this.users = users;
+    }
+}
@@ -0,0 +1,51 @@
+package cn.luliangwei.docker.demo.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.mvc.AbstractMvcEndpoint;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import cn.luliangwei.docker.demo.service.UserWarmup;
+
+/**
+ *
+ * 就绪检查的actuator端点.
+ * </p>
+ * <pre>
+ *  路径为管理端口上的 /ready，供负载均衡或容器编排的就绪探针使用；/health 仍只反映实例是否存活.
+ *  应用启动完成且 {@link UserWarmup} 预热结束后返回 200，之前返回 503:
+ *      {"status":"UP","warmup":{"completed":50000,"iterations":50000,"elapsedMillis":8123}}
+ *      {"status":"WARMING_UP","warmup":{"completed":4210,"iterations":50000,"elapsedMillis":1730}}
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class ReadinessMvcEndpoint extends AbstractMvcEndpoint {
+
+    private final UserWarmup userWarmup;
+
+    public ReadinessMvcEndpoint(UserWarmup userWarmup) {
+        super("/ready", false);
+        this.userWarmup = userWarmup;
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> ready() {
+        final boolean ready = userWarmup.isReady();
+        final Map<String, Object> warmup = new LinkedHashMap<String, Object>();
+        warmup.put("completed", userWarmup.getCompleted());
+        warmup.put("iterations", userWarmup.getIterations());
+        warmup.put("elapsedMillis", userWarmup.getElapsedMillis());
+        final Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("status", ready ? "UP" : "WARMING_UP");
+        body.put("warmup", warmup);
+        return ResponseEntity.status(ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(body);
+    }
+}
@@ -1,11 +1,34 @@
 package cn.luliangwei.docker.demo.controller;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.config.UserHttpProperties;
+import cn.luliangwei.docker.demo.metrics.LatencyTimer;
+import cn.luliangwei.docker.demo.service.UserBatchService;
 import cn.luliangwei.docker.demo.service.UserService;
+import cn.luliangwei.docker.demo.util.CompressedBodyCache;
+import cn.luliangwei.docker.demo.util.SingleFlightTimeoutException;
 
 /**
  * 
@@ -22,11 +45,256 @@ import cn.luliangwei.docker.demo.service.UserService;
 @RestController
 public class UserController {
 
+    private static final String TEXT_HTML_UTF8 = "text/html;charset=UTF-8";
+    private static final String TEXT_PLAIN = "text/plain";
+    private static final String APPLICATION_JSON = "application/json";
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final MediaType TEXT_HTML_UTF8_TYPE = MediaType.parseMediaType(TEXT_HTML_UTF8);
+    private static final MediaType APPLICATION_JSON_UTF8_TYPE = MediaType.parseMediaType(
+            APPLICATION_JSON + ";charset=UTF-8");
+
     @Autowired
     UserService userService;
+
+    @Autowired
+    UserBatchService userBatchService;
+
+    @Autowired
+    UserHttpProperties userHttpProperties;
+
+    @Autowired(required = false)
+    CompressedBodyCache userInfoCompressedCache;
+
+    @Autowired
+    @Qualifier("userRequestTimer")
+    LatencyTimer userRequestTimer;
+
+    @Autowired
+    @Qualifier("userBatchRequestTimer")
+    LatencyTimer userBatchRequestTimer;
     
+    /**
+     * 查询单个用户.
+     * <p>
+     * 默认返回HTML页面；Accept 中 application/json 的优先级高于 text/html 时返回JSON对象.
+     * 用户不存在时两种格式的状态码均为 404，HTML返回提示信息，JSON返回 found 为 false 的对象.
+     * 用户存在时返回ETag和配置的 Cache-Control，If-None-Match 匹配时在读取和渲染之前返回 304.
+     * 启用预压缩缓存且 Accept-Encoding 接受 gzip 时，HTML页面返回缓存的 gzip 压缩结果，
+     * 压缩后的ETag带有编码后缀，与未压缩的表示区分.
+     * 不返回 deflate: Tomcat 的 server.compression 只跳过已标明 gzip 的响应，会把 deflate 的结果再压缩一次.
+     */
     @GetMapping("/users")
-    public String getUserInfoByName(@RequestParam(name = "name",required = true) String name) {
-        return userService.userInfo(name);
+    public void getUserInfoByName(@RequestParam(name = "name",required = true) String name,
+            @RequestHeader(name = "Accept", required = false) String accept,
+            @RequestHeader(name = "If-None-Match", required = false) String ifNoneMatch,
+            @RequestHeader(name = "Accept-Encoding", required = false) String acceptEncoding,
+            HttpServletResponse response) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            writeUserInfo(name, accept, ifNoneMatch, acceptEncoding, response);
+        } finally {
+            userRequestTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * {@link #getUserInfoByName} 的异步版本，响应格式相同.
+     * <p>
+     * 等待数据源期间不占用Tomcat的请求线程，结果就绪后再由容器派发线程写出响应；
+     * 超时时间为 spring.mvc.async.request-timeout.
+     */
+    @GetMapping("/users/async")
+    public CompletableFuture<ResponseEntity<byte[]>> getUserInfoByNameAsync(
+            @RequestParam(name = "name", required = true) final String name,
+            @RequestHeader(name = "Accept", required = false) String accept) {
+        final long start = System.nanoTime();
+        final CompletableFuture<ResponseEntity<byte[]>> result = userInfoAsync(name, accept);
+        result.whenComplete(new BiConsumer<ResponseEntity<byte[]>, Throwable>() {
+            @Override
+            public void accept(ResponseEntity<byte[]> response, Throwable failure) {
+                userRequestTimer.recordSince(start);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 批量查询用户信息，见 {@link UserBatchService}.
+     * <p>
+     * 请求体为 text/plain 时按行读取名称，否则按JSON数组读取；
+     * Accept 只接受 application/json 时输出JSON数组，否则输出 application/x-ndjson.
+     */
+    @PostMapping("/users/batch")
+    public void getUserInfoByNames(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            writeUserInfos(request, response);
+        } finally {
+            userBatchRequestTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * 等待同一名称正在进行的查询超时，数据源响应过慢，返回 504.
+     */
+    @ExceptionHandler(SingleFlightTimeoutException.class)
+    public void lookupTimedOut(SingleFlightTimeoutException e, HttpServletResponse response) throws IOException {
+        response.sendError(HttpServletResponse.SC_GATEWAY_TIMEOUT, e.getMessage());
+    }
+
+    private void writeUserInfo(String name, String accept, String ifNoneMatch, String acceptEncoding,
+            HttpServletResponse response) throws IOException {
+        final boolean json = prefersJson(accept);
+        final CompressedBodyCache compressedCache = json ? null : userInfoCompressedCache;
+        final boolean gzip = compressedCache != null && CompressedBodyCache.isGzipAccepted(acceptEncoding);
+        response.setHeader("Vary", compressedCache == null ? "Accept" : "Accept, Accept-Encoding");
+        if (userHttpProperties.isEtagEnabled()) {
+            String etag = userService.userInfoETag(name, json);
+            if (etag != null) {
+                if (gzip) {
+                    etag = etag.substring(0, etag.length() - 1) + '-' + CompressedBodyCache.GZIP + '"';
+                }
+                response.setHeader("ETag", etag);
+                if (StringUtils.hasText(userHttpProperties.getCacheControl())) {
+                    response.setHeader("Cache-Control", userHttpProperties.getCacheControl());
+                }
+                if (ifNoneMatch != null && etagMatches(ifNoneMatch, etag)) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            }
+        }
+        if (json) {
+            final User user = userService.findUser(name);
+            if (user == null) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            }
+            response.setContentType(APPLICATION_JSON + ";charset=UTF-8");
+            userService.writeUserJson(name, user, response.getOutputStream());
+            return;
+        }
+        response.setContentType(TEXT_HTML_UTF8);
+        if (!gzip) {
+            if (!userService.writeUserInfo(name, response.getOutputStream())) {
+                writeUserNotFound(response, userService.userNotFoundPage());
+            }
+            return;
+        }
+        final byte[] page = userService.userInfoPage(name);
+        if (userService.isUserNotFound(page)) {
+            writeUserNotFound(response, page);
+            return;
+        }
+        final byte[] compressed = compressedCache.get(name, page);
+        if (compressed == null) {
+            response.setContentLength(page.length);
+            response.getOutputStream().write(page);
+            return;
+        }
+        response.setHeader("Content-Encoding", CompressedBodyCache.GZIP);
+        response.setContentLength(compressed.length);
+        response.getOutputStream().write(compressed);
+    }
+
+    private static void writeUserNotFound(HttpServletResponse response, byte[] page) throws IOException {
+        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        response.setContentLength(page.length);
+        response.getOutputStream().write(page);
+    }
+
+    private CompletableFuture<ResponseEntity<byte[]>> userInfoAsync(final String name, String accept) {
+        if (prefersJson(accept)) {
+            return userService.findUserAsync(name).thenApply(new Function<User, ResponseEntity<byte[]>>() {
+                @Override
+                public ResponseEntity<byte[]> apply(User user) {
+                    final ByteArrayOutputStream json = new ByteArrayOutputStream(256);
+                    try {
+                        userService.writeUserJson(name, user, json);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return ResponseEntity.status(user == null ? HttpStatus.NOT_FOUND : HttpStatus.OK)
+                            .header("Vary", "Accept").contentType(APPLICATION_JSON_UTF8_TYPE)
+                            .body(json.toByteArray());
+                }
+            });
+        }
+        return userService.userInfoPageAsync(name).thenApply(new Function<byte[], ResponseEntity<byte[]>>() {
+            @Override
+            public ResponseEntity<byte[]> apply(byte[] page) {
+                return ResponseEntity.status(userService.isUserNotFound(page) ? HttpStatus.NOT_FOUND : HttpStatus.OK)
+                        .header("Vary", "Accept").contentType(TEXT_HTML_UTF8_TYPE).body(page);
+            }
+        });
+    }
+
+    private void writeUserInfos(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final String accept = request.getHeader("Accept");
+        final boolean jsonArray = accept != null && accept.contains(APPLICATION_JSON)
+                && !accept.contains(APPLICATION_NDJSON);
+        final String contentType = request.getContentType();
+        final boolean plainText = contentType != null && contentType.startsWith(TEXT_PLAIN);
+        response.setContentType((jsonArray ? APPLICATION_JSON : APPLICATION_NDJSON) + ";charset=UTF-8");
+        try {
+            userBatchService.resolve(request.getInputStream(), plainText, response.getOutputStream(), jsonArray);
+        } catch (IllegalArgumentException e) {
+            if (response.isCommitted()) {
+                throw e;
+            }
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * 比较 Accept 中 application/json 与 text/html 的 q 值，通配符只计入 text/html，
+     * 因此未指定或 Accept: *&#47;* 时仍返回HTML.
+     */
+    static boolean prefersJson(String accept) {
+        if (accept == null || accept.indexOf(APPLICATION_JSON) < 0) {
+            return false;
+        }
+        float json = 0;
+        float html = 0;
+        for (String range : accept.split(",")) {
+            final int semicolon = range.indexOf(';');
+            final String type = (semicolon < 0 ? range : range.substring(0, semicolon)).trim().toLowerCase();
+            final float quality = semicolon < 0 ? 1 : quality(range.substring(semicolon + 1));
+            if (APPLICATION_JSON.equals(type)) {
+                json = Math.max(json, quality);
+            } else if ("text/html".equals(type) || "text/*".equals(type) || "*/*".equals(type)) {
+                html = Math.max(html, quality);
+            }
+        }
+        return json > html;
+    }
+
+    /**
+     * If-None-Match 使用弱比较：忽略 W/ 前缀，* 匹配任何ETag.
+     */
+    static boolean etagMatches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || etag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static float quality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            final String trimmed = parameter.trim();
+            if (trimmed.startsWith("q=")) {
+                try {
+                    return Float.parseFloat(trimmed.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
     }
 }
@@ -0,0 +1,550 @@
+package cn.luliangwei.docker.demo.filter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import cn.luliangwei.docker.demo.config.HmacAuthProperties;
+import cn.luliangwei.docker.demo.metrics.LatencyTimer;
+import cn.luliangwei.docker.demo.repository.ApiCredential;
+import cn.luliangwei.docker.demo.repository.CredentialStore;
+import cn.luliangwei.docker.demo.repository.InMemoryCredentialStore;
+import cn.luliangwei.docker.demo.util.ApiKeyRateLimiter;
+import cn.luliangwei.docker.demo.util.HmacFailureMonitor;
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder;
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder.BuilderMode;
+import cn.luliangwei.docker.demo.util.HmacSignatureException;
+import cn.luliangwei.docker.demo.util.NonceReplayCache;
+import cn.luliangwei.docker.demo.util.SignatureCodec;
+
+/**
+ *
+ * HMAC请求认证过滤器.
+ * </p>
+ * <pre>
+ *  在请求分发到控制器之前校验签名，认证失败直接返回 401.
+ *  apiSecret 从 {@link CredentialStore} 中查找，使用其中预先构建的密钥，请求处理时不再编码 apiSecret.
+ *  若设置了限流器，apiKey有效时先按apiKey获取配额，配额不足直接返回 429 与 Retry-After，不再计算签名.
+ *  请求数据在读取的同时分块加入HMAC运算，并只保留一份副本供后续控制器读取；
+ *  Content-Length 超出 max-body-size 时直接返回 413，不读取请求数据.
+ *  容器的输入流已被读取，application/x-www-form-urlencoded 请求的表单参数改由保留的副本解析，
+ *  与查询串中的参数合并后通过 getParameter* 返回.
+ *  签名字段与请求的对应关系:
+ *    apiKey      - 请求头 X-Api-Key
+ *    nonce       - 请求头 X-Nonce
+ *    date        - 请求头 Date
+ *    contentType - 请求头 Content-Type
+ *    host        - 请求头 Host
+ *    method      - 请求方法
+ *    resource    - 请求URI（含查询串）
+ *    scheme      - 请求协议
+ *    signature   - 请求头 X-Signature（base64编码）
+ *  若配置了防重放缓存，签名通过后再校验 (apiKey, nonce) 在请求时间窗口内是否已使用过.
+ *  若设置了 authTimer，每次认证（无论成败，含限流返回 429）的耗时都记录到其中.
+ *  若设置了 buildTimer 与 verifyTimer，分别记录构建签名（含读取请求数据）与比较签名的耗时，
+ *  未走到签名构建的请求（缺少凭证、限流、请求数据过大）不记录.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class HmacAuthFilter extends OncePerRequestFilter {
+
+    public static final String HEADER_API_KEY = "X-Api-Key";
+    public static final String HEADER_NONCE = "X-Nonce";
+    public static final String HEADER_SIGNATURE = "X-Signature";
+
+    private static final Logger LOG = LoggerFactory.getLogger(HmacAuthFilter.class);
+    // Servlet 3.1 的 HttpServletResponse 中没有 429
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final int MAX_INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+    private final HmacAuthProperties properties;
+    private final CredentialStore credentialStore;
+    private final NonceReplayCache replayCache;
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong totalVerifyNanos = new AtomicLong();
+    private final AtomicLong maxVerifyNanos = new AtomicLong();
+    private volatile LatencyTimer authTimer;
+    private volatile LatencyTimer buildTimer;
+    private volatile LatencyTimer verifyTimer;
+    private volatile ApiKeyRateLimiter rateLimiter;
+
+    public HmacAuthFilter(HmacAuthProperties properties) {
+        this(properties, null);
+    }
+
+    public HmacAuthFilter(HmacAuthProperties properties, NonceReplayCache replayCache) {
+        this(properties, credentialStoreOf(properties), replayCache);
+    }
+
+    public HmacAuthFilter(HmacAuthProperties properties, CredentialStore credentialStore,
+            NonceReplayCache replayCache) {
+        this.properties = properties;
+        this.credentialStore = credentialStore;
+        this.replayCache = replayCache;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        final long start = System.nanoTime();
+        final String apiKey = request.getHeader(HEADER_API_KEY);
+        final String signature = request.getHeader(HEADER_SIGNATURE);
+        final ApiCredential credential = credentialStore.find(apiKey);
+        if (signature == null || credential == null) {
+            reject(response, HttpServletResponse.SC_UNAUTHORIZED, start);
+            return;
+        }
+        final ApiKeyRateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            final long waitNanos = limiter.tryAcquire(apiKey);
+            if (waitNanos > 0) {
+                // 向上取整到秒
+                response.setHeader("Retry-After",
+                        Long.toString(TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+                record(start);
+                response.sendError(SC_TOO_MANY_REQUESTS);
+                return;
+            }
+        }
+        if (request.getContentLengthLong() > properties.getMaxBodySize()) {
+            // 声明的长度已超出限制，不读取请求数据
+            reject(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, start);
+            return;
+        }
+        final HmacSignatureBuilder builder = new HmacSignatureBuilder(properties.getAlgorithm(),
+                properties.getCharset(), HmacSignatureBuilder.DEFAULT_DELIMITER)
+                        .apiKey(apiKey)
+                        .apiSecret(credential.getSecretKey())
+                        .contentType(nullToEmpty(request.getContentType()))
+                        .date(nullToEmpty(request.getHeader("Date")))
+                        .host(nullToEmpty(request.getHeader("Host")))
+                        .method(request.getMethod())
+                        .nonce(nullToEmpty(request.getHeader(HEADER_NONCE)))
+                        .resource(resourceOf(request))
+                        .scheme(request.getScheme());
+        BodyCapture body = null;
+        if (hasBody(request)) {
+            body = new BodyCapture(request.getInputStream(), request.getContentLength(), properties.getMaxBodySize());
+            builder.payload(body);
+        }
+        try {
+            final long buildStart = System.nanoTime();
+            final byte[] expected = builder.sign(BuilderMode.FULL);
+            final long verifyStart = System.nanoTime();
+            record(buildTimer, verifyStart - buildStart);
+            final boolean matches = SignatureCodec.matchesBase64(expected, signature);
+            record(verifyTimer, System.nanoTime() - verifyStart);
+            if (!matches) {
+                throw HmacSignatureException.signatureMismatch();
+            }
+        } catch (HmacSignatureException e) {
+            HmacFailureMonitor.record(e);
+            reject(response, statusOf(e, body), start);
+            return;
+        }
+        if (replayCache != null && !replayCache.checkAndRecord(apiKey, nullToEmpty(request.getHeader(HEADER_NONCE)),
+                requestTimeOf(request))) {
+            LOG.debug("重放或过期的请求: apiKey={}, uri={}", apiKey, request.getRequestURI());
+            reject(response, HttpServletResponse.SC_UNAUTHORIZED, start);
+            return;
+        }
+        record(start);
+        acceptedCount.incrementAndGet();
+        chain.doFilter(body == null ? request : new CachedBodyRequest(request, body), response);
+    }
+
+    /**
+     * 设置记录认证耗时的统计.
+     *
+     * @param authTimer
+     *            耗时统计，<code>null</code> 表示不记录
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void setAuthTimer(LatencyTimer authTimer) {
+        this.authTimer = authTimer;
+    }
+
+    /**
+     * 设置记录构建签名耗时的统计.
+     *
+     * @param buildTimer
+     *            耗时统计，<code>null</code> 表示不记录
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void setBuildTimer(LatencyTimer buildTimer) {
+        this.buildTimer = buildTimer;
+    }
+
+    /**
+     * 设置记录比较签名耗时的统计.
+     *
+     * @param verifyTimer
+     *            耗时统计，<code>null</code> 表示不记录
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void setVerifyTimer(LatencyTimer verifyTimer) {
+        this.verifyTimer = verifyTimer;
+    }
+
+    /**
+     * 设置按apiKey的限流器.
+     *
+     * @param rateLimiter
+     *            限流器，<code>null</code> 表示不限流
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void setRateLimiter(ApiKeyRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * 获取认证成功的请求数.
+     *
+     * @return 认证成功的请求数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    /**
+     * 获取认证失败被拒绝的请求数.
+     *
+     * @return 认证失败的请求数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * 获取签名校验累计耗时（纳秒）.
+     *
+     * @return 签名校验累计耗时
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getTotalVerifyNanos() {
+        return totalVerifyNanos.get();
+    }
+
+    /**
+     * 获取单次签名校验的最大耗时（纳秒）.
+     *
+     * @return 单次签名校验的最大耗时
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getMaxVerifyNanos() {
+        return maxVerifyNanos.get();
+    }
+
+    // 未指定凭证数据源时使用 hmac.auth.credentials
+    private static CredentialStore credentialStoreOf(HmacAuthProperties properties) {
+        final InMemoryCredentialStore store = new InMemoryCredentialStore(properties.getAlgorithm(),
+                properties.getCharset());
+        try {
+            store.replaceAll(properties.getCredentials());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalArgumentException("不支持的字符集: " + properties.getCharset(), e);
+        }
+        return store;
+    }
+
+    private void reject(HttpServletResponse response, int status, long start) throws IOException {
+        record(start);
+        rejectedCount.incrementAndGet();
+        response.sendError(status);
+    }
+
+    private void record(long start) {
+        final long elapsed = System.nanoTime() - start;
+        record(authTimer, elapsed);
+        totalVerifyNanos.addAndGet(elapsed);
+        long max;
+        while (elapsed > (max = maxVerifyNanos.get())) {
+            if (maxVerifyNanos.compareAndSet(max, elapsed)) {
+                break;
+            }
+        }
+    }
+
+    private static void record(LatencyTimer timer, long elapsed) {
+        if (timer != null) {
+            timer.record(elapsed);
+        }
+    }
+
+    private static int statusOf(HmacSignatureException e, BodyCapture body) {
+        if (body != null && body.isOverflowed()) {
+            return HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE;
+        }
+        switch (e.getReason()) {
+        case SIGNATURE_MISMATCH:
+        case MISSING_FIELD:
+            return HttpServletResponse.SC_UNAUTHORIZED;
+        case PAYLOAD_ERROR:
+            return HttpServletResponse.SC_BAD_REQUEST;
+        default:
+            // 算法、密钥、字符集等服务端配置错误
+            return HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        }
+    }
+
+    // 未携带或无法解析 Date 请求头时返回 Long.MIN_VALUE，必然超出时间窗口
+    private static long requestTimeOf(HttpServletRequest request) {
+        try {
+            final long date = request.getDateHeader("Date");
+            return date == -1 ? Long.MIN_VALUE : date;
+        } catch (IllegalArgumentException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static boolean hasBody(HttpServletRequest request) {
+        return request.getContentLength() > 0 || request.getHeader("Transfer-Encoding") != null;
+    }
+
+    private static String resourceOf(HttpServletRequest request) {
+        final String query = request.getQueryString();
+        return query == null ? request.getRequestURI() : request.getRequestURI() + '?' + query;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    // 读取请求数据并同时保存一份副本，供认证通过后的控制器再次读取
+    private static final class BodyCapture extends InputStream {
+
+        private final InputStream in;
+        private final int maxSize;
+        private byte[] buf;
+        private int count;
+        private boolean overflowed;
+
+        private BodyCapture(InputStream in, int contentLength, int maxSize) {
+            this.in = in;
+            this.maxSize = maxSize;
+            // Content-Length 由客户端声明，签名校验前只按上限分配，不足时再扩容
+            this.buf = new byte[contentLength > 0 ? Math.min(contentLength, Math.min(maxSize, MAX_INITIAL_BUFFER_SIZE))
+                    : 1024];
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = in.read();
+            if (b != -1) {
+                ensureCapacity(1);
+                buf[count++] = (byte) b;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = in.read(b, off, len);
+            if (read > 0) {
+                ensureCapacity(read);
+                System.arraycopy(b, off, buf, count, read);
+                count += read;
+            }
+            return read;
+        }
+
+        private void ensureCapacity(int read) throws IOException {
+            if (count + read > maxSize) {
+                overflowed = true;
+                throw new IOException("request body exceeds " + maxSize + " bytes");
+            }
+            if (count + read > buf.length) {
+                final byte[] grown = new byte[Math.min(maxSize, Math.max(count + read, buf.length << 1))];
+                System.arraycopy(buf, 0, grown, 0, count);
+                buf = grown;
+            }
+        }
+
+        private boolean isOverflowed() {
+            return overflowed;
+        }
+    }
+
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final BodyCapture body;
+        private Map<String, String[]> parameters;
+
+        private CachedBodyRequest(HttpServletRequest request, BodyCapture body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public String getParameter(String name) {
+            final String[] values = parameters().get(name);
+            return values == null ? null : values[0];
+        }
+
+        @Override
+        public Map<String, String[]> getParameterMap() {
+            return parameters();
+        }
+
+        @Override
+        public Enumeration<String> getParameterNames() {
+            return Collections.enumeration(parameters().keySet());
+        }
+
+        @Override
+        public String[] getParameterValues(String name) {
+            final String[] values = parameters().get(name);
+            return values == null ? null : values.clone();
+        }
+
+        // 容器只能解析到查询串中的参数，表单参数从保留的副本中解析并追加在其后
+        private Map<String, String[]> parameters() {
+            if (parameters == null) {
+                final Map<String, String[]> containerParameters = super.getParameterMap();
+                if (!isForm()) {
+                    parameters = containerParameters;
+                    return parameters;
+                }
+                final Map<String, List<String>> merged = new LinkedHashMap<String, List<String>>();
+                for (Map.Entry<String, String[]> e : containerParameters.entrySet()) {
+                    final List<String> values = new ArrayList<String>(e.getValue().length);
+                    Collections.addAll(values, e.getValue());
+                    merged.put(e.getKey(), values);
+                }
+                parseForm(merged);
+                final Map<String, String[]> result = new LinkedHashMap<String, String[]>(merged.size() * 2);
+                for (Map.Entry<String, List<String>> e : merged.entrySet()) {
+                    result.put(e.getKey(), e.getValue().toArray(new String[e.getValue().size()]));
+                }
+                parameters = Collections.unmodifiableMap(result);
+            }
+            return parameters;
+        }
+
+        // 与容器一致，只解析 POST 请求的表单
+        private boolean isForm() {
+            final String contentType = getContentType();
+            if (!"POST".equalsIgnoreCase(getMethod()) || contentType == null) {
+                return false;
+            }
+            final int semicolon = contentType.indexOf(';');
+            return FORM_CONTENT_TYPE
+                    .equalsIgnoreCase((semicolon == -1 ? contentType : contentType.substring(0, semicolon)).trim());
+        }
+
+        private void parseForm(Map<String, List<String>> merged) {
+            final String encoding = getCharacterEncoding() == null ? "ISO-8859-1" : getCharacterEncoding();
+            // 百分号编码后的表单只含ASCII字符
+            final String form;
+            try {
+                form = new String(body.buf, 0, body.count, "ISO-8859-1");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+            for (String pair : form.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                final int eq = pair.indexOf('=');
+                final String name;
+                final String value;
+                try {
+                    name = URLDecoder.decode(eq == -1 ? pair : pair.substring(0, eq), encoding);
+                    value = eq == -1 ? "" : URLDecoder.decode(pair.substring(eq + 1), encoding);
+                } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                    // 与容器一致，跳过无法解码的参数
+                    LOG.debug("忽略无法解码的表单参数: {}", e.getMessage());
+                    continue;
+                }
+                List<String> values = merged.get(name);
+                if (values == null) {
+                    values = new ArrayList<String>(1);
+                    merged.put(name, values);
+                }
+                values.add(value);
+            }
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            final ByteArrayInputStream in = new ByteArrayInputStream(body.buf, 0, body.count);
+            return new ServletInputStream() {
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    // 数据已全部缓存在内存中，立即通知可读与读取完毕
+                    try {
+                        readListener.onDataAvailable();
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            final String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(), encoding == null ? "ISO-8859-1" : encoding));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package cn.luliangwei.docker.demo.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ *
+ * 将 {@link MetricsRegistry} 中的指标加入actuator的 /metrics 端点.
+ * </p>
+ * <pre>
+ *  耗时统计以毫秒输出，如:
+ *    timer.users.request.count, timer.users.request.mean, timer.users.request.max,
+ *    timer.users.request.p50, timer.users.request.p99, timer.users.request.p99.9
+ *  gauge 与 counter 按注册的名称输出，带标签时为 名称.标签值.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class LatencyPublicMetrics implements PublicMetrics {
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final MetricsRegistry registry;
+
+    public LatencyPublicMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final double[] percentiles = registry.getPercentiles();
+        final List<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        for (LatencyTimer timer : registry.getTimers()) {
+            final String prefix = "timer." + timer.getName() + '.';
+            final LatencyTimer.Snapshot snapshot = timer.snapshot(percentiles);
+            metrics.add(new Metric<Long>(prefix + "count", snapshot.getCount()));
+            metrics.add(new Metric<Double>(prefix + "mean", snapshot.getCount() == 0 ? 0
+                    : snapshot.getTotalNanos() / NANOS_PER_MILLI / snapshot.getCount()));
+            metrics.add(new Metric<Double>(prefix + "max", snapshot.getMaxNanos() / NANOS_PER_MILLI));
+            for (int i = 0; i < percentiles.length; i++) {
+                metrics.add(new Metric<Double>(prefix + percentileName(percentiles[i]),
+                        snapshot.getValueAt(i) / NANOS_PER_MILLI));
+            }
+        }
+        for (Map.Entry<String, Double> value : registry.values().entrySet()) {
+            metrics.add(new Metric<Double>(value.getKey(), value.getValue()));
+        }
+        return metrics;
+    }
+
+    // 0.5 -> p50, 0.999 -> p99.9
+    static String percentileName(double percentile) {
+        final String value = Double.toString(percentile * 100);
+        return 'p' + (value.endsWith(".0") ? value.substring(0, value.length() - 2) : value);
+    }
+}
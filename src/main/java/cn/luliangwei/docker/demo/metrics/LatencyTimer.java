@@ -0,0 +1,199 @@
+package cn.luliangwei.docker.demo.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.util.Assert;
+
+/**
+ *
+ * 基于HdrHistogram的耗时统计.
+ * </p>
+ * <pre>
+ *  记录时只写入 {@link Recorder}，无锁且不分配内存，读取统计结果不会阻塞记录.
+ *  分位数按最近一个窗口计算: 窗口分为 {@value #SLOTS} 段轮转，读取时把新记录的值并入当前段，
+ *  因此长时间没有读取时，期间的记录都计入读取时所在的段.
+ *  次数与累计耗时从创建开始累计，不受窗口影响.
+ *  精度为2位有效数字（误差不超过1%），超过 {@value #HIGHEST_TRACKABLE_SECONDS} 秒的耗时按上限记录.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class LatencyTimer {
+
+    static final int SLOTS = 3;
+    static final long HIGHEST_TRACKABLE_SECONDS = 60;
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.SECONDS.toNanos(HIGHEST_TRACKABLE_SECONDS);
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final String name;
+    private final String description;
+    private final long slotNanos;
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    // 以下字段只在持有锁时访问
+    private final Histogram[] slots = new Histogram[SLOTS];
+    private final Histogram window = new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    private Histogram interval;
+    private int current;
+    private long slotStart;
+
+    /**
+     * @param name
+     *            名称，如 users.request
+     * @param description
+     *            说明
+     * @param window
+     *            计算分位数的时间窗口
+     * @param unit
+     *            时间窗口的单位
+     */
+    public LatencyTimer(String name, String description, long window, TimeUnit unit) {
+        Assert.hasText(name, "name must not be empty");
+        Assert.isTrue(unit.toNanos(window) >= SLOTS, "window is too short");
+        this.name = name;
+        this.description = description;
+        this.slotNanos = unit.toNanos(window) / SLOTS;
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+        }
+        this.slotStart = System.nanoTime();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * 记录一次耗时.
+     *
+     * @param nanos
+     *            耗时（纳秒），负数按0记录
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void record(long nanos) {
+        final long value = nanos < 0 ? 0 : nanos;
+        recorder.recordValue(value < HIGHEST_TRACKABLE_NANOS ? value : HIGHEST_TRACKABLE_NANOS);
+        count.increment();
+        totalNanos.add(value);
+    }
+
+    /**
+     * 记录从 start 到现在的耗时.
+     *
+     * @param start
+     *            开始时的 {@link System#nanoTime()}
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void recordSince(long start) {
+        record(System.nanoTime() - start);
+    }
+
+    /**
+     * 获取当前的统计结果.
+     *
+     * @param percentiles
+     *            需要计算的分位数，如 0.99
+     * @return 统计结果
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public synchronized Snapshot snapshot(double... percentiles) {
+        rotate(System.nanoTime());
+        interval = recorder.getIntervalHistogram(interval);
+        slots[current].add(interval);
+        window.reset();
+        for (Histogram slot : slots) {
+            window.add(slot);
+        }
+        final long[] values = new long[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            values[i] = window.getTotalCount() == 0 ? 0 : window.getValueAtPercentile(percentiles[i] * 100);
+        }
+        return new Snapshot(count.sum(), totalNanos.sum(), window.getMaxValue(), percentiles.clone(), values);
+    }
+
+    // 丢弃窗口之外的段
+    private void rotate(long now) {
+        final long elapsed = now - slotStart;
+        if (elapsed < slotNanos) {
+            return;
+        }
+        final long steps = elapsed / slotNanos;
+        for (long i = 0; i < Math.min(steps, SLOTS); i++) {
+            current = (current + 1) % SLOTS;
+            slots[current].reset();
+        }
+        slotStart += steps * slotNanos;
+    }
+
+    /**
+     * 耗时统计结果，耗时单位均为纳秒.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static final class Snapshot {
+
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final double[] percentiles;
+        private final long[] values;
+
+        Snapshot(long count, long totalNanos, long maxNanos, double[] percentiles, long[] values) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.percentiles = percentiles;
+            this.values = values;
+        }
+
+        /**
+         * @return 累计次数
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return 累计耗时
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return 窗口内的最大耗时
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @return 计算的分位数，与 {@link #getValueAt(int)} 的下标对应
+         */
+        public double[] getPercentiles() {
+            return percentiles.clone();
+        }
+
+        /**
+         * @param index
+         *            分位数的下标
+         * @return 窗口内该分位数的耗时，窗口内没有记录时为0
+         */
+        public long getValueAt(int index) {
+            return values[index];
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package cn.luliangwei.docker.demo.metrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+
+/**
+ *
+ * 应用指标的注册表.
+ * </p>
+ * <pre>
+ *  指标分为三类，名称使用点分隔的小写单词，如 users.request:
+ *    timer   - {@link LatencyTimer}，导出为 summary: 窗口内的分位数、累计次数与累计耗时（秒）
+ *    gauge   - 读取时计算的当前值，如缓存占用的字节数
+ *    counter - 读取时计算的单调递增值，如缓存命中次数
+ *  gauge 与 counter 可带一个标签，如 hmac.auth.failures{reason="SIGNATURE_MISMATCH"}.
+ *  {@link #writePrometheus(Appendable)} 按Prometheus文本格式（0.0.4）输出所有指标.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class MetricsRegistry {
+
+    /**
+     * 读取时计算的指标值.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public interface Gauge {
+
+        /**
+         * @return 当前值
+         */
+        double value();
+    }
+
+    private enum Type {
+        GAUGE, COUNTER
+    }
+
+    private static final class Meter {
+
+        final String name;
+        final String tag;
+        final String tagValue;
+        final String description;
+        final Type type;
+        final Gauge gauge;
+
+        Meter(String name, String tag, String tagValue, String description, Type type, Gauge gauge) {
+            this.name = name;
+            this.tag = tag;
+            this.tagValue = tagValue;
+            this.description = description;
+            this.type = type;
+            this.gauge = gauge;
+        }
+    }
+
+    private final ConcurrentMap<String, LatencyTimer> timers = new ConcurrentSkipListMap<String, LatencyTimer>();
+    private final ConcurrentMap<String, Meter> meters = new ConcurrentSkipListMap<String, Meter>();
+    private final long windowNanos;
+    private final double[] percentiles;
+
+    /**
+     * @param window
+     *            计算分位数的时间窗口
+     * @param unit
+     *            时间窗口的单位
+     * @param percentiles
+     *            导出的分位数，如 0.5, 0.99
+     */
+    public MetricsRegistry(long window, TimeUnit unit, double... percentiles) {
+        for (double percentile : percentiles) {
+            Assert.isTrue(percentile > 0 && percentile <= 1, "percentile must be in (0, 1]");
+        }
+        this.windowNanos = unit.toNanos(window);
+        this.percentiles = percentiles.clone();
+    }
+
+    /**
+     * 获取或创建耗时统计.
+     *
+     * @param name
+     *            名称
+     * @param description
+     *            说明，名称已存在时忽略
+     * @return 耗时统计
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public LatencyTimer timer(String name, String description) {
+        LatencyTimer timer = timers.get(name);
+        if (timer == null) {
+            final LatencyTimer created = new LatencyTimer(name, description, windowNanos, TimeUnit.NANOSECONDS);
+            timer = timers.putIfAbsent(name, created);
+            if (timer == null) {
+                timer = created;
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * 注册当前值指标，同名同标签的指标会被替换.
+     *
+     * @param name
+     *            名称
+     * @param description
+     *            说明
+     * @param gauge
+     *            读取时计算当前值
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void gauge(String name, String description, Gauge gauge) {
+        register(name, null, null, description, Type.GAUGE, gauge);
+    }
+
+    /**
+     * 注册单调递增的计数指标，同名同标签的指标会被替换.
+     *
+     * @param name
+     *            名称
+     * @param description
+     *            说明
+     * @param gauge
+     *            读取时计算当前计数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void counter(String name, String description, Gauge gauge) {
+        register(name, null, null, description, Type.COUNTER, gauge);
+    }
+
+    /**
+     * 注册带一个标签的计数指标，同名同标签的指标会被替换.
+     *
+     * @param name
+     *            名称
+     * @param tag
+     *            标签名
+     * @param tagValue
+     *            标签值
+     * @param description
+     *            说明，同名的指标应使用相同的说明
+     * @param gauge
+     *            读取时计算当前计数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void counter(String name, String tag, String tagValue, String description, Gauge gauge) {
+        Assert.hasText(tag, "tag must not be empty");
+        register(name, tag, tagValue, description, Type.COUNTER, gauge);
+    }
+
+    /**
+     * @return 所有耗时统计，按名称排序
+     */
+    public List<LatencyTimer> getTimers() {
+        return Collections.unmodifiableList(new ArrayList<LatencyTimer>(timers.values()));
+    }
+
+    /**
+     * @return 导出的分位数
+     */
+    public double[] getPercentiles() {
+        return percentiles.clone();
+    }
+
+    /**
+     * 读取所有 gauge 与 counter 的当前值.
+     *
+     * @return 指标名（带标签时为 名称.标签值）与当前值，按名称排序
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public Map<String, Double> values() {
+        final Map<String, Double> values = new ConcurrentSkipListMap<String, Double>();
+        for (Meter meter : meters.values()) {
+            values.put(meter.tag == null ? meter.name : meter.name + '.' + meter.tagValue, meter.gauge.value());
+        }
+        return values;
+    }
+
+    /**
+     * 按Prometheus文本格式输出所有指标.
+     * <p>
+     * 名称中的点替换为下划线，耗时统计以秒为单位并追加 _seconds 后缀，计数指标追加 _total 后缀.
+     *
+     * @param out
+     *            输出目标
+     * @throws IOException
+     *             写入失败
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void writePrometheus(Appendable out) throws IOException {
+        for (LatencyTimer timer : timers.values()) {
+            final String name = prometheusName(timer.getName()) + "_seconds";
+            final LatencyTimer.Snapshot snapshot = timer.snapshot(percentiles);
+            header(out, name, timer.getDescription(), "summary");
+            for (int i = 0; i < percentiles.length; i++) {
+                out.append(name).append("{quantile=\"").append(Double.toString(percentiles[i])).append("\"} ")
+                        .append(seconds(snapshot.getValueAt(i))).append('\n');
+            }
+            out.append(name).append("_count ").append(Long.toString(snapshot.getCount())).append('\n');
+            out.append(name).append("_sum ").append(seconds(snapshot.getTotalNanos())).append('\n');
+            header(out, name + "_max", timer.getDescription() + "，窗口内的最大值", "gauge");
+            out.append(name).append("_max ").append(seconds(snapshot.getMaxNanos())).append('\n');
+        }
+        String previous = null;
+        for (Meter meter : meters.values()) {
+            final String name = prometheusName(meter.name) + (meter.type == Type.COUNTER ? "_total" : "");
+            if (!name.equals(previous)) {
+                header(out, name, meter.description, meter.type == Type.COUNTER ? "counter" : "gauge");
+                previous = name;
+            }
+            out.append(name);
+            if (meter.tag != null) {
+                out.append('{').append(meter.tag).append("=\"").append(escapeLabel(meter.tagValue)).append("\"}");
+            }
+            out.append(' ').append(number(meter.gauge.value())).append('\n');
+        }
+    }
+
+    private void register(String name, String tag, String tagValue, String description, Type type, Gauge gauge) {
+        Assert.hasText(name, "name must not be empty");
+        Assert.notNull(gauge, "gauge must not be null");
+        // 同名的指标在有序表中相邻，输出时共用一组 HELP/TYPE
+        meters.put(tag == null ? name : name + '\u0000' + tagValue,
+                new Meter(name, tag, tagValue, description, type, gauge));
+    }
+
+    private static void header(Appendable out, String name, String description, String type) throws IOException {
+        if (description != null) {
+            out.append("# HELP ").append(name).append(' ')
+                    .append(description.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        }
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    static String prometheusName(String name) {
+        final StringBuilder result = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            result.append((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9' && i > 0)
+                    || c == '_' || c == ':' ? c : '_');
+        }
+        return result.toString().toLowerCase(Locale.ENGLISH);
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String number(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value)
+                : Double.toString(value);
+    }
+}
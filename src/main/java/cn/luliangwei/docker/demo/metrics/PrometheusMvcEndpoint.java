@@ -0,0 +1,44 @@
+package cn.luliangwei.docker.demo.metrics;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.springframework.boot.actuate.endpoint.mvc.AbstractMvcEndpoint;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ *
+ * 以Prometheus文本格式输出 {@link MetricsRegistry} 中指标的actuator端点.
+ * </p>
+ * <pre>
+ *  路径为管理端口上的 /prometheus，输出格式见 {@link MetricsRegistry#writePrometheus(Appendable)}.
+ *  指标说明为中文，按UTF-8编码后输出，不经过默认字符集为ISO-8859-1的字符串转换.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class PrometheusMvcEndpoint extends AbstractMvcEndpoint {
+
+    static final String CONTENT_TYPE = "text/plain;version=0.0.4;charset=UTF-8";
+    private static final MediaType CONTENT_MEDIA_TYPE = MediaType.parseMediaType(CONTENT_TYPE);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final MetricsRegistry registry;
+
+    public PrometheusMvcEndpoint(MetricsRegistry registry) {
+        super("/prometheus", false);
+        this.registry = registry;
+    }
+
+    @GetMapping(produces = CONTENT_TYPE)
+    @ResponseBody
+    public ResponseEntity<byte[]> scrape() throws IOException {
+        final StringBuilder out = new StringBuilder(8192);
+        registry.writePrometheus(out);
+        return ResponseEntity.ok().contentType(CONTENT_MEDIA_TYPE).body(out.toString().getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,46 @@
+package cn.luliangwei.docker.demo.repository;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ *
+ * 一组 apiKey 与 apiSecret 的凭证.
+ * </p>
+ * <pre>
+ *  apiSecret 在加载时按配置的字符集编码，并构建为指定算法的 {@link SecretKeySpec}，
+ *  请求处理时不再重复编码和构建. 凭证不可变，轮换 apiSecret 时创建新的对象.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public final class ApiCredential {
+
+    private final String apiKey;
+    private final SecretKeySpec secretKey;
+
+    /**
+     * @param apiKey
+     *            服务器授权给客户端的唯一公开标识
+     * @param secretKey
+     *            由 apiSecret 构建的密钥
+     */
+    public ApiCredential(String apiKey, SecretKeySpec secretKey) {
+        this.apiKey = apiKey;
+        this.secretKey = secretKey;
+    }
+
+    /**
+     * @return 服务器授权给客户端的唯一公开标识
+     */
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    /**
+     * @return 由 apiSecret 构建的密钥
+     */
+    public SecretKeySpec getSecretKey() {
+        return secretKey;
+    }
+}
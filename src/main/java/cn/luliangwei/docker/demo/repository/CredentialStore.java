@@ -0,0 +1,30 @@
+package cn.luliangwei.docker.demo.repository;
+
+/**
+ *
+ * apiKey 与 apiSecret 对应关系的数据源.
+ * </p>
+ * <pre>
+ *  {@link cn.luliangwei.docker.demo.filter.HmacAuthFilter} 每个请求都要查找一次，实现必须在内存中完成查找，
+ *  不能在调用线程上访问文件或远程存储.
+ *  返回的 {@link ApiCredential} 中已按配置的算法构建好密钥，可直接交给
+ *  {@link cn.luliangwei.docker.demo.util.HmacSignatureBuilder#apiSecret(javax.crypto.spec.SecretKeySpec)}.
+ *  默认实现为 {@link InMemoryCredentialStore}，从文件加载并自动重新加载的实现为 {@link FileCredentialStore}.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public interface CredentialStore {
+
+    /**
+     * 根据 apiKey 查找凭证.
+     *
+     * @param apiKey
+     *            服务器授权给客户端的唯一公开标识
+     * @return 凭证，apiKey 为 <code>null</code> 或不存在时返回 <code>null</code>
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    ApiCredential find(String apiKey);
+}
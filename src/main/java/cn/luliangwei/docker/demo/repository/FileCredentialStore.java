@@ -0,0 +1,195 @@
+package cn.luliangwei.docker.demo.repository;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ *
+ * 从文件加载并在文件变化后自动重新加载的凭证数据源.
+ * </p>
+ * <pre>
+ *  文件为UTF-8编码的properties格式，每行一个 apiKey=apiSecret，# 开头的行为注释.
+ *  创建时加载一次，加载失败直接抛出异常；之后调用 {@link #watch(long, TimeUnit)} 由后台线程定期检查
+ *  文件的修改时间和长度，变化后重新加载并整体替换快照（见 {@link InMemoryCredentialStore}），请求线程从不读取文件.
+ *  重新加载失败时记录日志并保留原有凭证，文件再次变化后才会重试.
+ *  轮换 apiSecret 后，HMAC实例池在下一次借出时发现密钥变化并淘汰旧实例；被删除的 apiKey 查找不到，
+ *  其缓存的实例不会再被借出.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class FileCredentialStore extends InMemoryCredentialStore implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileCredentialStore.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final AtomicLong reloadCount = new AtomicLong();
+    private final AtomicLong reloadFailureCount = new AtomicLong();
+    private volatile long lastModified;
+    private volatile long length;
+    private ScheduledThreadPoolExecutor watcher;
+
+    /**
+     * @param file
+     *            凭证文件
+     * @param algorithm
+     *            构建密钥使用的HMAC算法，应与 hmac.auth.algorithm 一致
+     * @param charset
+     *            apiSecret 的字符集编码，应与 hmac.auth.charset 一致
+     * @throws IOException
+     *             首次加载失败
+     */
+    public FileCredentialStore(File file, String algorithm, String charset) throws IOException {
+        super(algorithm, charset);
+        Assert.notNull(file, "file not null");
+        this.file = file;
+        load();
+    }
+
+    /**
+     * 立即从文件重新加载全部凭证.
+     *
+     * @return 加载的凭证数
+     * @throws IOException
+     *             读取失败或格式错误，此时保留原有凭证
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public synchronized int load() throws IOException {
+        final long start = System.nanoTime();
+        // 先记录文件状态再读取，读取期间的修改会在下一次检查时发现
+        lastModified = file.lastModified();
+        length = file.length();
+        final Properties properties = new Properties();
+        final InputStream in = new FileInputStream(file);
+        try {
+            properties.load(new InputStreamReader(in, UTF_8));
+        } finally {
+            in.close();
+        }
+        final Map<String, String> credentials = new HashMap<String, String>();
+        for (String apiKey : properties.stringPropertyNames()) {
+            credentials.put(apiKey, properties.getProperty(apiKey));
+        }
+        final int loaded;
+        try {
+            loaded = replaceAll(credentials);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("凭证文件格式错误: " + file + ", " + e.getMessage(), e);
+        }
+        reloadCount.incrementAndGet();
+        LOG.info("已从{}加载{}个凭证, 耗时{}ms", file, loaded, (System.nanoTime() - start) / 1000000);
+        return loaded;
+    }
+
+    /**
+     * 文件的修改时间或长度变化时重新加载.
+     *
+     * @return 是否重新加载成功
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public boolean reloadIfModified() {
+        if (file.lastModified() == lastModified && file.length() == length) {
+            return false;
+        }
+        try {
+            load();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            reloadFailureCount.incrementAndGet();
+            LOG.warn("重新加载凭证文件失败，继续使用原有的{}个凭证: {}", size(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 在名为 credential-reload 的后台线程中定期检查文件是否变化.
+     *
+     * @param interval
+     *            检查间隔
+     * @param unit
+     *            interval 的单位
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public synchronized void watch(long interval, TimeUnit unit) {
+        Assert.isTrue(interval > 0, "interval must be positive");
+        Assert.state(watcher == null, "already watching " + file);
+        watcher = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                final Thread thread = new Thread(task, "credential-reload");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        watcher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                reloadIfModified();
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * 停止检查文件变化，已加载的凭证仍然可用.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    @Override
+    public synchronized void close() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+    }
+
+    /**
+     * 获取成功加载的次数（含首次加载）.
+     *
+     * @return 加载次数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getReloadCount() {
+        return reloadCount.get();
+    }
+
+    /**
+     * 获取重新加载失败的次数.
+     *
+     * @return 失败次数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getReloadFailureCount() {
+        return reloadFailureCount.get();
+    }
+
+    /**
+     * @return 凭证文件
+     */
+    public File getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,112 @@
+package cn.luliangwei.docker.demo.repository;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.util.Assert;
+
+/**
+ *
+ * 基于内存快照的凭证数据源.
+ * </p>
+ * <pre>
+ *  全部凭证保存在一个只读的 Map 快照中，{@link #find(String)} 只读取 volatile 引用后做一次哈希查找，不加锁.
+ *  {@link #replaceAll(Map)} 在新的 Map 上构建全部凭证后整体替换引用（写时复制），
+ *  查找不会被阻塞，也不会看到替换到一半的数据；替换前已开始的查找仍按旧快照返回.
+ *  apiSecret 未变化的凭证沿用原来的对象，HMAC实例池按对象判断密钥未变，不需要重新比较.
+ *  快照包含全部凭证，未知的 apiKey 与已知的一样只需一次内存查找即可拒绝，
+ *  且不会为其记录任何状态，猜测 apiKey 的请求无法让内存增长.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class InMemoryCredentialStore implements CredentialStore {
+
+    private final String algorithm;
+    private final String charset;
+    private final AtomicLong version = new AtomicLong();
+    private volatile Map<String, ApiCredential> snapshot = Collections.emptyMap();
+
+    /**
+     * @param algorithm
+     *            构建密钥使用的HMAC算法，应与 hmac.auth.algorithm 一致
+     * @param charset
+     *            apiSecret 的字符集编码，应与 hmac.auth.charset 一致
+     */
+    public InMemoryCredentialStore(String algorithm, String charset) {
+        Assert.hasText(algorithm, "algorithm not empty");
+        Assert.hasText(charset, "charset not empty");
+        this.algorithm = algorithm;
+        this.charset = charset;
+    }
+
+    /**
+     * 以给定的对应关系替换当前的全部凭证.
+     *
+     * @param credentials
+     *            apiKey 与 apiSecret 的对应关系，apiSecret 不能为空
+     * @return 替换后的凭证数
+     * @throws UnsupportedEncodingException
+     *             不支持的字符集
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public int replaceAll(Map<String, String> credentials) throws UnsupportedEncodingException {
+        Assert.notNull(credentials, "credentials not null");
+        final Map<String, ApiCredential> current = snapshot;
+        final Map<String, ApiCredential> replaced = new HashMap<String, ApiCredential>(
+                Math.max(16, (int) (credentials.size() / 0.75f) + 1));
+        for (Map.Entry<String, String> entry : credentials.entrySet()) {
+            final String apiKey = entry.getKey();
+            Assert.hasLength(apiKey, "apiKey not empty");
+            Assert.hasLength(entry.getValue(), "apiSecret of " + apiKey + " not empty");
+            final byte[] secret = entry.getValue().getBytes(charset);
+            final ApiCredential previous = current.get(apiKey);
+            if (previous != null && MessageDigest.isEqual(previous.getSecretKey().getEncoded(), secret)) {
+                replaced.put(apiKey, previous);
+            } else {
+                replaced.put(apiKey, new ApiCredential(apiKey, new SecretKeySpec(secret, algorithm)));
+            }
+        }
+        snapshot = Collections.unmodifiableMap(replaced);
+        version.incrementAndGet();
+        return replaced.size();
+    }
+
+    @Override
+    public ApiCredential find(String apiKey) {
+        if (apiKey == null) {
+            return null;
+        }
+        return snapshot.get(apiKey);
+    }
+
+    /**
+     * 获取当前的凭证数.
+     *
+     * @return 凭证数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * 获取凭证被替换的次数.
+     *
+     * @return 替换次数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getVersion() {
+        return version.get();
+    }
+}
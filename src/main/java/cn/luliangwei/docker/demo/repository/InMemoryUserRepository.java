@@ -0,0 +1,231 @@
+package cn.luliangwei.docker.demo.repository;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import cn.luliangwei.docker.demo.beans.User;
+
+/**
+ *
+ * 基于内存紧凑存储的用户数据源.
+ * </p>
+ * <pre>
+ *  数据保存在只读的 {@link UserTable} 中，每个用户在名称索引中约占用11~21字节，
+ *  各字段以UTF-8编码紧凑地存放在数据页中（可选堆外），百万级用户也不会产生百万个对象.
+ *  重新加载时在新表上完成解析和建索引，再整体替换，查询不会看到加载到一半的数据.
+ *  {@link #findByName(String)} 每次返回新创建的 {@link User}，调用方可以自由修改.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class InMemoryUserRepository implements UserRepository {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InMemoryUserRepository.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 用户名单文件的格式.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static enum Format {
+        /**
+         * 带表头的CSV.
+         *
+         * @since 1.0.0
+         */
+        CSV,
+        /**
+         * 每行一个JSON对象.
+         *
+         * @since 1.0.0
+         */
+        JSONL;
+
+        /**
+         * 根据文件扩展名判断格式.
+         *
+         * @param fileName
+         *            文件名称
+         * @return 文件格式
+         * @author luliangwei
+         * @since 1.0.0
+         */
+        public static Format of(String fileName) {
+            final String lower = fileName.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".csv")) {
+                return CSV;
+            }
+            if (lower.endsWith(".jsonl") || lower.endsWith(".ndjson")) {
+                return JSONL;
+            }
+            throw new IllegalArgumentException("不支持的用户名单文件格式: " + fileName);
+        }
+    }
+
+    private final boolean offHeap;
+    private final AtomicLong version = new AtomicLong();
+    private volatile UserTable table;
+
+    /**
+     * 数据页分配在堆内的构造方法.
+     *
+     */
+    public InMemoryUserRepository() {
+        this(false);
+    }
+
+    /**
+     * @param offHeap
+     *            数据页是否分配在堆外
+     */
+    public InMemoryUserRepository(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.table = new UserTable.Builder(offHeap).build();
+    }
+
+    /**
+     * 从文件加载用户名单，替换当前的全部用户，格式由扩展名决定（.csv/.jsonl/.ndjson）.
+     *
+     * @param file
+     *            用户名单文件
+     * @return 加载的用户数
+     * @throws IOException
+     *             读取失败或格式错误
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public int load(File file) throws IOException {
+        Assert.notNull(file, "file not null");
+        final InputStream in = new FileInputStream(file);
+        try {
+            return load(in, Format.of(file.getName()));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 从输入流加载UTF-8编码的用户名单，替换当前的全部用户.
+     *
+     * @param in
+     *            输入流，由调用方负责关闭
+     * @param format
+     *            文件格式
+     * @return 加载的用户数
+     * @throws IOException
+     *             读取失败或格式错误
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public int load(InputStream in, Format format) throws IOException {
+        Assert.notNull(in, "in not null");
+        Assert.notNull(format, "format not null");
+        final long start = System.nanoTime();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8), READ_BUFFER_SIZE);
+        final UserTable.Builder builder = new UserTable.Builder(offHeap);
+        switch (format) {
+        case CSV:
+            UserRosterParser.parseCsv(reader, builder);
+            break;
+        case JSONL:
+            UserRosterParser.parseJsonLines(reader, builder);
+            break;
+        default:
+            throw new IllegalArgumentException("不支持的用户名单文件格式: " + format);
+        }
+        final UserTable loaded = builder.build();
+        table = loaded;
+        version.incrementAndGet();
+        LOG.info("已加载{}个用户, 耗时{}ms, 占用约{}字节(堆外{}字节)", loaded.size(),
+                (System.nanoTime() - start) / 1000000, loaded.footprintBytes(), loaded.offHeapBytes());
+        return loaded.size();
+    }
+
+    /**
+     * 以给定的用户替换当前的全部用户.
+     *
+     * @param users
+     *            用户列表，名称不能为 <code>null</code>
+     * @return 替换后的用户数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public int replaceAll(Iterable<User> users) {
+        Assert.notNull(users, "users not null");
+        final UserTable.Builder builder = new UserTable.Builder(offHeap);
+        for (User user : users) {
+            builder.add(user.getName(), user.getAge(), user.getPhone(), user.getAddress());
+        }
+        final UserTable replaced = builder.build();
+        table = replaced;
+        version.incrementAndGet();
+        return replaced.size();
+    }
+
+    @Override
+    public User findByName(String name) {
+        if (name == null) {
+            return null;
+        }
+        final UserTable current = table;
+        final int ref = current.find(name);
+        return ref == -1 ? null : current.get(ref);
+    }
+
+    @Override
+    public long findContentHash(String name) {
+        if (name == null) {
+            return 0;
+        }
+        final UserTable current = table;
+        final int ref = current.find(name);
+        return ref == -1 ? 0 : current.contentHash(ref);
+    }
+
+    @Override
+    public int count() {
+        return table.size();
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * 获取当前用户表占用的内存（名称索引与数据页，不含对象头）.
+     *
+     * @return 占用的字节数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getFootprintBytes() {
+        return table.footprintBytes();
+    }
+
+    /**
+     * 判断数据页是否分配在堆外.
+     *
+     * @return <code>true</code> - 堆外; <code>false</code> - 堆内
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+}
@@ -0,0 +1,87 @@
+package cn.luliangwei.docker.demo.repository;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+import cn.luliangwei.docker.demo.beans.User;
+
+/**
+ *
+ * 用户信息的数据源.
+ * </p>
+ * <pre>
+ *  {@link cn.luliangwei.docker.demo.service.UserService} 只依赖该接口，
+ *  默认实现为 {@link InMemoryUserRepository}.
+ *  访问远程存储的实现应覆盖 {@link #findByNameAsync(String)}，在结果返回前不占用调用线程.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public interface UserRepository {
+
+    /**
+     * 根据用户名称查找用户.
+     *
+     * @param name
+     *            用户名称
+     * @return 用户信息，不存在时返回 <code>null</code>
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    User findByName(String name);
+
+    /**
+     * 根据用户名称异步查找用户.
+     * <p>
+     * 默认在调用线程上执行 {@link #findByName(String)}，适用于内存中的实现.
+     *
+     * @param name
+     *            用户名称
+     * @return 查找结果，用户不存在时为 <code>null</code>
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    default CompletableFuture<User> findByNameAsync(String name) {
+        return CompletableFuture.completedFuture(findByName(name));
+    }
+
+    /**
+     * 获取用户信息的内容hash，用户的任一字段变化时随之变化，用于生成ETag.
+     * <p>
+     * 默认由 {@link #findByName(String)} 的结果计算，{@link InMemoryUserRepository} 使用构建时预先计算的值.
+     *
+     * @param name
+     *            用户名称
+     * @return 非0的内容hash，用户不存在时返回 0
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    default long findContentHash(String name) {
+        final User user = findByName(name);
+        if (user == null) {
+            return 0;
+        }
+        final long hash = (long) Objects.hash(user.getName(), user.getAge(), user.getPhone()) << 32
+                ^ (Objects.hashCode(user.getAddress()) & 0xffffffffL);
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * 获取用户总数.
+     *
+     * @return 用户总数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    int count();
+
+    /**
+     * 获取数据版本，用户数据发生变化时递增，供缓存判断是否需要失效.
+     *
+     * @return 数据版本
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    long getVersion();
+}
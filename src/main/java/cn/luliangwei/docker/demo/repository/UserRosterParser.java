@@ -0,0 +1,198 @@
+package cn.luliangwei.docker.demo.repository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ *
+ * 用户名单文件的解析.
+ * </p>
+ * <pre>
+ *  CSV: 首行为表头，列名不区分大小写、顺序任意，必须包含 name，可选 age/phone/address，
+ *       字段可用双引号包裹，引号内的 "" 表示一个双引号，允许换行.
+ *  JSONL: 每行一个JSON对象，字段同上，未知字段被忽略.
+ *  解析结果直接写入 {@link UserTable.Builder}，不创建中间的 User 对象.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+final class UserRosterParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private UserRosterParser() {
+    }
+
+    /**
+     * 解析CSV格式的用户名单.
+     *
+     * @param reader
+     *            字符输入
+     * @param builder
+     *            用户表构建器
+     * @throws IOException
+     *             读取失败或格式错误
+     */
+    static void parseCsv(BufferedReader reader, UserTable.Builder builder) throws IOException {
+        final List<String> fields = new ArrayList<String>();
+        final StringBuilder field = new StringBuilder();
+        if (!readCsvRecord(reader, fields, field)) {
+            return;
+        }
+        int nameColumn = -1;
+        int ageColumn = -1;
+        int phoneColumn = -1;
+        int addressColumn = -1;
+        for (int i = 0; i < fields.size(); i++) {
+            final String column = fields.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+            if ("name".equals(column)) {
+                nameColumn = i;
+            } else if ("age".equals(column)) {
+                ageColumn = i;
+            } else if ("phone".equals(column)) {
+                phoneColumn = i;
+            } else if ("address".equals(column)) {
+                addressColumn = i;
+            }
+        }
+        if (nameColumn < 0) {
+            throw new IOException("CSV表头缺少name列: " + fields);
+        }
+        long record = 1;
+        while (readCsvRecord(reader, fields, field)) {
+            record++;
+            if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                continue;
+            }
+            final String name = column(fields, nameColumn);
+            if (name == null || name.isEmpty()) {
+                throw new IOException("第" + record + "条记录缺少name");
+            }
+            builder.add(name, parseAge(column(fields, ageColumn), record), column(fields, phoneColumn),
+                    column(fields, addressColumn));
+        }
+    }
+
+    /**
+     * 解析JSONL格式的用户名单.
+     *
+     * @param reader
+     *            字符输入
+     * @param builder
+     *            用户表构建器
+     * @throws IOException
+     *             读取失败或格式错误
+     */
+    static void parseJsonLines(Reader reader, UserTable.Builder builder) throws IOException {
+        // 根级别的多个JSON值以空白分隔，同一个解析器即可顺序读出每一行
+        final JsonParser parser = JSON_FACTORY.createParser(reader);
+        try {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                final long line = parser.getCurrentLocation().getLineNr();
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException("第" + line + "行不是JSON对象");
+                }
+                String name = null;
+                Integer age = null;
+                String phone = null;
+                String address = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String field = parser.getCurrentName();
+                    final JsonToken value = parser.nextToken();
+                    if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                    } else if (value == JsonToken.VALUE_NULL) {
+                        continue;
+                    } else if ("name".equals(field)) {
+                        name = parser.getText();
+                    } else if ("age".equals(field)) {
+                        age = value == JsonToken.VALUE_NUMBER_INT ? Integer.valueOf(parser.getIntValue())
+                                : parseAge(parser.getText(), line);
+                    } else if ("phone".equals(field)) {
+                        phone = parser.getText();
+                    } else if ("address".equals(field)) {
+                        address = parser.getText();
+                    }
+                }
+                if (name == null || name.isEmpty()) {
+                    throw new IOException("第" + line + "行缺少name");
+                }
+                builder.add(name, age, phone, address);
+            }
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static String column(List<String> fields, int column) {
+        return column < 0 || column >= fields.size() ? null : fields.get(column);
+    }
+
+    private static Integer parseAge(String age, long record) throws IOException {
+        if (age == null || age.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(age.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("第" + record + "条记录的age不是整数: " + age, e);
+        }
+    }
+
+    // 读取一条CSV记录，引号内的换行会继续读取下一行
+    private static boolean readCsvRecord(BufferedReader reader, List<String> fields, StringBuilder field)
+            throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return false;
+        }
+        fields.clear();
+        field.setLength(0);
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) {
+                    break;
+                }
+                line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("CSV引号未闭合");
+                }
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            final char c = line.charAt(i++);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return true;
+    }
+}
@@ -0,0 +1,375 @@
+package cn.luliangwei.docker.demo.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+import cn.luliangwei.docker.demo.beans.User;
+
+/**
+ *
+ * 紧凑存储的只读用户表.
+ * </p>
+ * <pre>
+ *  每个用户编码为一条记录: 8字节的内容hash，varint(age+1)，再接 name/phone/address 三个
+ *  "varint(长度+1) + UTF-8字节" 字段，0 表示 null. 内容hash在构建时按hash之后的全部字节计算，
+ *  字段不变则hash不变，可直接用作HTTP缓存的ETag. 记录顺序写入16MB大小的数据页，数据页可以是堆内数组，也可以是堆外的直接缓冲区.
+ *  记录的位置用一个int表示: 高8位为页号，低24位为页内偏移.
+ *  名称索引为线性探测的开放寻址long数组，每个槽位保存 (名称hashCode &lt;&lt; 32 | 记录位置)，0 表示空槽.
+ *  查询时先在槽位内比较hashCode，相等后才读取数据页中的名称，命中一次查询只访问一个槽位和一条记录；
+ *  按名称查询总是读取整条记录，因此字段按行而非按列存放.
+ *  构建完成后不再改变，可被多线程共享.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+final class UserTable {
+
+    static final int PAGE_SHIFT = 24;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int MAX_PAGES = 1 << (Integer.SIZE - PAGE_SHIFT);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long REF_MASK = 0xffffffffL;
+    private static final int HASH_BYTES = 8;
+
+    private final ByteBuffer[] pages;
+    private final long[] index;
+    private final int size;
+
+    private UserTable(ByteBuffer[] pages, int[] hashes, int[] refs, int count) {
+        this.pages = pages;
+        this.index = new long[tableSizeFor(count)];
+        // 重名时后出现的记录覆盖先出现的记录
+        final int mask = index.length - 1;
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            final long entry = (long) hashes[i] << 32 | (refs[i] & REF_MASK);
+            for (int slot = mix(hashes[i]) & mask;; slot = (slot + 1) & mask) {
+                final long existing = index[slot];
+                if (existing == 0) {
+                    index[slot] = entry;
+                    distinct++;
+                    break;
+                }
+                if ((int) (existing >>> 32) == hashes[i] && nameEquals((int) existing, readName(refs[i]))) {
+                    index[slot] = entry;
+                    break;
+                }
+            }
+        }
+        this.size = distinct;
+    }
+
+    /**
+     * 根据名称查找用户记录.
+     *
+     * @param name
+     *            用户名称
+     * @return 记录位置，不存在时返回 <code>-1</code>
+     */
+    int find(String name) {
+        final int hash = name.hashCode();
+        final int mask = index.length - 1;
+        for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+            final long entry = index[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if ((int) (entry >>> 32) == hash && nameEquals((int) entry, name)) {
+                return (int) entry;
+            }
+        }
+    }
+
+    /**
+     * 读取用户记录的内容hash.
+     *
+     * @param ref
+     *            {@link #find(String)} 返回的记录位置
+     * @return 非0的内容hash
+     */
+    long contentHash(int ref) {
+        return pages[ref >>> PAGE_SHIFT].getLong(ref & (PAGE_SIZE - 1));
+    }
+
+    /**
+     * 读取指定位置的用户记录.
+     *
+     * @param ref
+     *            {@link #find(String)} 返回的记录位置
+     * @return 新创建的用户信息
+     */
+    User get(int ref) {
+        final ByteBuffer page = pages[ref >>> PAGE_SHIFT];
+        int position = (ref & (PAGE_SIZE - 1)) + HASH_BYTES;
+        final int age = readVarint(page, position);
+        position += varintSize(age);
+        final User user = new User();
+        user.setAge(age == 0 ? null : Integer.valueOf(age - 1));
+        for (int i = 0; i < 3; i++) {
+            final int length = readVarint(page, position);
+            position += varintSize(length);
+            final String field = length == 0 ? null : decode(page, position, length - 1);
+            position += Math.max(length - 1, 0);
+            if (i == 0) {
+                user.setName(field);
+            } else if (i == 1) {
+                user.setPhone(field);
+            } else {
+                user.setAddress(field);
+            }
+        }
+        return user;
+    }
+
+    /**
+     * @return 不重名的用户数
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return 名称索引与数据页占用的字节数（不含对象头）
+     */
+    long footprintBytes() {
+        long bytes = 8L * index.length;
+        for (ByteBuffer page : pages) {
+            bytes += page.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return 数据页占用的堆外字节数
+     */
+    long offHeapBytes() {
+        long bytes = 0;
+        for (ByteBuffer page : pages) {
+            if (page.isDirect()) {
+                bytes += page.capacity();
+            }
+        }
+        return bytes;
+    }
+
+    private String readName(int ref) {
+        final ByteBuffer page = pages[ref >>> PAGE_SHIFT];
+        int position = (ref & (PAGE_SIZE - 1)) + HASH_BYTES;
+        position += varintSize(readVarint(page, position));
+        final int length = readVarint(page, position);
+        return decode(page, position + varintSize(length), length - 1);
+    }
+
+    // ASCII名称逐字符直接与数据页比较，不必先编码查询的名称
+    private boolean nameEquals(int ref, String name) {
+        final ByteBuffer page = pages[ref >>> PAGE_SHIFT];
+        int position = (ref & (PAGE_SIZE - 1)) + HASH_BYTES;
+        position += varintSize(readVarint(page, position));
+        final int length = readVarint(page, position) - 1;
+        position += varintSize(length + 1);
+        if (length < name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c >= 0x80) {
+                return bytesEqual(page, position, length, name.getBytes(UTF_8));
+            }
+            if (page.get(position + i) != c) {
+                return false;
+            }
+        }
+        return length == name.length();
+    }
+
+    private static boolean bytesEqual(ByteBuffer page, int position, int length, byte[] bytes) {
+        if (length != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (page.get(position + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readVarint(ByteBuffer page, int position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = page.get(position++);
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int varintSize(int value) {
+        return (Integer.SIZE - Integer.numberOfLeadingZeros(value | 1) + 6) / 7;
+    }
+
+    private static String decode(ByteBuffer page, int position, int length) {
+        if (page.hasArray()) {
+            return new String(page.array(), page.arrayOffset() + position, length, UTF_8);
+        }
+        final byte[] bytes = new byte[length];
+        final ByteBuffer source = page.duplicate();
+        source.position(position);
+        source.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    // murmur3 fmix32，打散 String.hashCode 低位的聚集，适合2的幂大小的线性探测表
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+
+    // 装载因子不超过0.75
+    private static int tableSizeFor(int count) {
+        final long minimum = Math.max(2L, (long) count * 4 / 3 + 1);
+        Assert.isTrue(minimum <= (1 << 30), "too many users: " + count);
+        return Integer.highestOneBit((int) minimum - 1) << 1;
+    }
+
+    /**
+     * 用户表的构建器，非线程安全.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    static final class Builder {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final boolean offHeap;
+        private final List<ByteBuffer> pages = new ArrayList<ByteBuffer>();
+        private ByteBuffer current;
+        private int[] hashes = new int[INITIAL_CAPACITY];
+        private int[] refs = new int[INITIAL_CAPACITY];
+        private int count;
+
+        /**
+         * @param offHeap
+         *            数据页是否分配在堆外
+         */
+        Builder(boolean offHeap) {
+            this.offHeap = offHeap;
+        }
+
+        /**
+         * 追加一个用户.
+         *
+         * @param name
+         *            用户名称，不能为 <code>null</code>
+         * @param age
+         *            年龄，不能为负数
+         * @param phone
+         *            联系方式
+         * @param address
+         *            地址
+         * @return 当前构建器
+         */
+        Builder add(String name, Integer age, String phone, String address) {
+            Assert.notNull(name, "name not null");
+            Assert.isTrue(age == null || (age >= 0 && age < Integer.MAX_VALUE), "age out of range: " + age);
+            final int ageValue = age == null ? 0 : age + 1;
+            final byte[] nameBytes = name.getBytes(UTF_8);
+            final byte[] phoneBytes = phone == null ? null : phone.getBytes(UTF_8);
+            final byte[] addressBytes = address == null ? null : address.getBytes(UTF_8);
+            final long length = HASH_BYTES + varintSize(ageValue) + encodedLength(nameBytes) + encodedLength(phoneBytes)
+                    + encodedLength(addressBytes);
+            Assert.isTrue(length < PAGE_SIZE, "user record too large: " + name);
+            if (current == null || current.remaining() < length) {
+                Assert.state(pages.size() < MAX_PAGES, "user table is full");
+                current = offHeap ? ByteBuffer.allocateDirect(PAGE_SIZE) : ByteBuffer.allocate(PAGE_SIZE);
+                if (pages.isEmpty()) {
+                    // 记录位置0保留给索引的空槽
+                    current.put((byte) 0);
+                }
+                pages.add(current);
+            }
+            if (count == refs.length) {
+                hashes = Arrays.copyOf(hashes, count + (count >>> 1));
+                refs = Arrays.copyOf(refs, hashes.length);
+            }
+            hashes[count] = name.hashCode();
+            refs[count] = (pages.size() - 1) << PAGE_SHIFT | current.position();
+            count++;
+            final int start = current.position();
+            current.putLong(0);
+            writeVarint(ageValue);
+            write(nameBytes);
+            write(phoneBytes);
+            write(addressBytes);
+            current.putLong(start, contentHash(current, start + HASH_BYTES, current.position()));
+            return this;
+        }
+
+        /**
+         * 构建只读用户表，构建后当前构建器不可再使用.
+         *
+         * @return 用户表
+         */
+        UserTable build() {
+            final ByteBuffer[] built = pages.toArray(new ByteBuffer[pages.size()]);
+            if (current != null) {
+                // 最后一页按实际长度收缩
+                final ByteBuffer last = offHeap ? ByteBuffer.allocateDirect(current.position())
+                        : ByteBuffer.allocate(current.position());
+                current.flip();
+                last.put(current);
+                built[built.length - 1] = last;
+                current = null;
+            }
+            return new UserTable(built, hashes, refs, count);
+        }
+
+        // null 写为长度0，其余写为 length+1
+        private void write(byte[] bytes) {
+            writeVarint(bytes == null ? 0 : bytes.length + 1);
+            if (bytes != null) {
+                current.put(bytes);
+            }
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7f) != 0) {
+                current.put((byte) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            current.put((byte) value);
+        }
+
+        // FNV-1a 后再经 murmur3 fmix64 打散，0 保留
+        private static long contentHash(ByteBuffer page, int from, int to) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = from; i < to; i++) {
+                hash ^= page.get(i) & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash == 0 ? 1 : hash;
+        }
+
+        private static long encodedLength(byte[] bytes) {
+            return bytes == null ? 1 : varintSize(bytes.length + 1) + bytes.length;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package cn.luliangwei.docker.demo.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.config.UserBatchProperties;
+import cn.luliangwei.docker.demo.template.JsonWriter;
+
+/**
+ *
+ * 批量查询用户信息.
+ * </p>
+ * <pre>
+ *  请求体为JSON字符串数组 ["a","b"]，或每行一个名称的纯文本；均以流的方式读取.
+ *  名称按分块交给 userBatchExecutor 并行查询，结果按请求中的顺序逐个写出，每写完一个分块刷新一次，
+ *  响应以 chunked 方式传输. 同时在途的分块数有上限，因此请求再大内存占用也保持不变.
+ *  每个名称输出一个与 GET /users 的JSON格式相同的对象，见 {@link UserService}.
+ *  默认每行一个对象（NDJSON），也可以输出为一个JSON数组.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+@Service
+public class UserBatchService {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final byte[] ERROR = JsonWriter.fieldName("error");
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserBatchProperties userBatchProperties;
+
+    @Autowired
+    @Qualifier("userBatchExecutor")
+    ExecutorService userBatchExecutor;
+
+    /**
+     * 查询请求中的全部名称并写出结果.
+     * <p>
+     * 请求格式错误且尚未写出任何结果时抛出 {@link IllegalArgumentException}；
+     * 已经开始写出后才发现格式错误时，以 {"error":"..."} 结束响应.
+     *
+     * @param in
+     *            请求体
+     * @param plainText
+     *            请求体是否为每行一个名称的纯文本，否则为JSON字符串数组
+     * @param out
+     *            响应输出流，不会被关闭
+     * @param jsonArray
+     *            是否输出为JSON数组，否则每行一个对象
+     * @return 查询的名称数
+     * @throws IOException
+     *             读取请求或写出响应失败
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public int resolve(InputStream in, boolean plainText, OutputStream out, boolean jsonArray) throws IOException {
+        final NameReader names = plainText ? new LineNameReader(in) : new JsonNameReader(in);
+        final int chunkSize = userBatchProperties.getChunkSize();
+        final String[] first = new String[chunkSize];
+        final int firstSize = names.read(first);
+
+        final JsonWriter json = JsonWriter.open(out);
+        try {
+            if (jsonArray) {
+                json.beginArray();
+            }
+            int total = firstSize;
+            if (firstSize < chunkSize) {
+                // 不足一个分块，直接在当前线程上查询，省去线程切换
+                write(json, resolveChunk(new Chunk(first, firstSize)), jsonArray);
+            } else {
+                total = resolveParallel(names, new Chunk(first, firstSize), json, jsonArray);
+            }
+            if (jsonArray) {
+                json.endArray();
+            }
+            return total;
+        } finally {
+            json.close();
+        }
+    }
+
+    private int resolveParallel(NameReader names, Chunk first, JsonWriter json, boolean jsonArray)
+            throws IOException {
+        final int chunkSize = userBatchProperties.getChunkSize();
+        final int maxInFlight = 2 * userBatchProperties.getParallelism();
+        final Deque<Future<Chunk>> inFlight = new ArrayDeque<Future<Chunk>>(maxInFlight);
+        int total = 0;
+        try {
+            Chunk chunk = first;
+            while (chunk != null) {
+                total += chunk.size;
+                inFlight.addLast(submit(chunk));
+                chunk = null;
+                if (inFlight.size() >= maxInFlight) {
+                    write(json, await(inFlight.pollFirst()), jsonArray);
+                }
+                final String[] next = new String[chunkSize];
+                final int size;
+                try {
+                    size = names.read(next);
+                } catch (IllegalArgumentException e) {
+                    drain(inFlight, json, jsonArray);
+                    writeError(json, e.getMessage(), jsonArray);
+                    return total;
+                }
+                if (size > 0) {
+                    chunk = new Chunk(next, size);
+                }
+            }
+            drain(inFlight, json, jsonArray);
+            return total;
+        } finally {
+            for (Future<Chunk> pending : inFlight) {
+                pending.cancel(true);
+            }
+        }
+    }
+
+    private Future<Chunk> submit(final Chunk chunk) {
+        return userBatchExecutor.submit(new Callable<Chunk>() {
+            @Override
+            public Chunk call() {
+                return resolveChunk(chunk);
+            }
+        });
+    }
+
+    private Chunk resolveChunk(Chunk chunk) {
+        for (int i = 0; i < chunk.size; i++) {
+            chunk.users[i] = userService.findUser(chunk.names[i]);
+        }
+        return chunk;
+    }
+
+    private void drain(Deque<Future<Chunk>> inFlight, JsonWriter json, boolean jsonArray) throws IOException {
+        while (!inFlight.isEmpty()) {
+            write(json, await(inFlight.pollFirst()), jsonArray);
+        }
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("批量查询被中断");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("批量查询失败: " + cause, cause);
+        }
+    }
+
+    private static void write(JsonWriter json, Chunk chunk, boolean jsonArray) throws IOException {
+        for (int i = 0; i < chunk.size; i++) {
+            UserService.writeJson(json, chunk.names[i], chunk.users[i]);
+            if (!jsonArray) {
+                json.newLine();
+            }
+        }
+        json.flush();
+    }
+
+    private static void writeError(JsonWriter json, String message, boolean jsonArray) throws IOException {
+        json.beginObject().field(ERROR, message).endObject();
+        if (!jsonArray) {
+            json.newLine();
+        }
+    }
+
+    /**
+     * 一组待查询的名称及其查询结果.
+     */
+    private static final class Chunk {
+
+        final String[] names;
+        final User[] users;
+        final int size;
+
+        Chunk(String[] names, int size) {
+            this.names = names;
+            this.users = new User[size];
+            this.size = size;
+        }
+    }
+
+    /**
+     * 从请求体中依次读取名称.
+     */
+    private interface NameReader {
+
+        /**
+         * @param chunk
+         *            读取的名称存入该数组
+         * @return 读取的名称数，小于数组长度说明已读完
+         * @throws IllegalArgumentException
+         *             请求格式错误
+         */
+        int read(String[] chunk) throws IOException;
+    }
+
+    private static final class JsonNameReader implements NameReader {
+
+        private final JsonParser parser;
+        private boolean finished;
+
+        JsonNameReader(InputStream in) throws IOException {
+            this.parser = JSON_FACTORY.createParser(in);
+            this.parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("请求体必须是名称的JSON数组");
+            }
+        }
+
+        @Override
+        public int read(String[] chunk) throws IOException {
+            int size = 0;
+            while (!finished && size < chunk.length) {
+                final JsonToken token = nextToken();
+                if (token == JsonToken.END_ARRAY) {
+                    finished = true;
+                } else if (token == JsonToken.VALUE_STRING) {
+                    chunk[size++] = parser.getText();
+                } else if (token == JsonToken.VALUE_NULL) {
+                    chunk[size++] = null;
+                } else {
+                    finished = true;
+                    throw new IllegalArgumentException("名称必须是字符串: " + token);
+                }
+            }
+            return size;
+        }
+
+        private JsonToken nextToken() throws IOException {
+            try {
+                final JsonToken token = parser.nextToken();
+                if (token == null) {
+                    finished = true;
+                    throw new IllegalArgumentException("JSON数组未结束");
+                }
+                return token;
+            } catch (JsonProcessingException e) {
+                finished = true;
+                throw new IllegalArgumentException("请求体不是合法的JSON: " + e.getOriginalMessage(), e);
+            }
+        }
+    }
+
+    private static final class LineNameReader implements NameReader {
+
+        private final BufferedReader reader;
+
+        LineNameReader(InputStream in) {
+            this.reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+        }
+
+        @Override
+        public int read(String[] chunk) throws IOException {
+            int size = 0;
+            while (size < chunk.length) {
+                final String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                final String name = line.trim();
+                if (!name.isEmpty()) {
+                    chunk[size++] = name;
+                }
+            }
+            return size;
+        }
+    }
+}
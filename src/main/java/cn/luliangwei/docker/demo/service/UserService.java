@@ -1,13 +1,41 @@
 package cn.luliangwei.docker.demo.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.metrics.LatencyTimer;
+import cn.luliangwei.docker.demo.repository.UserRepository;
+import cn.luliangwei.docker.demo.template.HtmlTemplate;
+import cn.luliangwei.docker.demo.template.JsonWriter;
+import cn.luliangwei.docker.demo.util.SingleFlight;
+import cn.luliangwei.docker.demo.util.TinyLfuCache;
 
 /**
  * 
  * 根据不同名称返回用户的信息.
  * </p>
+ * <pre>
+ *  页面由预编译的 templates/user-info.html 渲染为UTF-8字节.
+ *  配置了 userInfoCache 时按名称缓存渲染结果，数据源版本变化时清空缓存.
+ *  *Async 方法基于 {@link UserRepository#findByNameAsync(String)}，等待数据源期间不占用调用线程.
+ *  配置了 userLookupFlight 时，同一名称的并发查询合并为一次数据源访问，见 {@link SingleFlight}.
+ *  依赖通常由Spring注入；在容器之外使用时通过带参数的构造方法传入.
+ *  用户不存在时页面为固定的提示信息，可通过 {@link #isUserNotFound(byte[])} 判断，以便调用方返回 404.
+ *  JSON格式由 {@link JsonWriter} 直接写出，不经过HTML渲染，也不缓存:
+ *      {"name":"luliangwei","found":true,"age":22,"phone":"123xxxxoooo","address":"科技园B-114"}
+ *      {"name":"nobody","found":false}
+ * </pre>
  *
  * @author luliangwei
  * @since 1.0.0
@@ -15,40 +43,366 @@ import cn.luliangwei.docker.demo.beans.User;
 @Service
 public class UserService {
 
-    public String userInfo(String name) {
-        String userInfo = null;
-        User user = null;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] NAME_REQUIRED = "用户名称必须填...".getBytes(UTF_8);
+    private static final byte[] USER_NOT_FOUND = "用户不存在...".getBytes(UTF_8);
+    private static final HtmlTemplate<User> USER_INFO_TEMPLATE = loadTemplate();
+    private static final byte[] JSON_NAME = JsonWriter.fieldName("name");
+    private static final byte[] JSON_FOUND = JsonWriter.fieldName("found");
+    private static final byte[] JSON_AGE = JsonWriter.fieldName("age");
+    private static final byte[] JSON_PHONE = JsonWriter.fieldName("phone");
+    private static final byte[] JSON_ADDRESS = JsonWriter.fieldName("address");
+    // JSON格式变化时修改，使客户端缓存的旧格式失效
+    private static final long JSON_FORMAT_VERSION = 1;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired(required = false)
+    TinyLfuCache<String, byte[]> userInfoCache;
+
+    @Autowired(required = false)
+    SingleFlight<String, User> userLookupFlight;
+
+    @Autowired(required = false)
+    @Qualifier("userRenderTimer")
+    LatencyTimer userRenderTimer;
+
+    private volatile long cachedVersion;
+
+    /**
+     * 由Spring创建并注入依赖的构造方法.
+     */
+    public UserService() {
+    }
+
+    /**
+     * 在Spring容器之外使用的构造方法，例如启动预热.
+     *
+     * @param userRepository
+     *            用户数据源
+     * @param userInfoCache
+     *            页面缓存，<code>null</code> 表示不缓存
+     * @param userLookupFlight
+     *            合并并发查询，<code>null</code> 表示不合并
+     * @param userRenderTimer
+     *            渲染耗时统计，<code>null</code> 表示不记录
+     */
+    public UserService(UserRepository userRepository, TinyLfuCache<String, byte[]> userInfoCache,
+            SingleFlight<String, User> userLookupFlight, LatencyTimer userRenderTimer) {
+        this.userRepository = userRepository;
+        this.userInfoCache = userInfoCache;
+        this.userLookupFlight = userLookupFlight;
+        this.userRenderTimer = userRenderTimer;
+    }
+
+    /**
+     * 根据名称查找用户.
+     *
+     * @param name
+     *            用户名称
+     * @return 用户信息，名称为 <code>null</code> 或用户不存在时返回 <code>null</code>
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public User findUser(String name) {
+        return name == null ? null : lookup(name);
+    }
+
+    /**
+     * 获取用户信息页面.
+     *
+     * @param name
+     *            用户名称
+     * @return UTF-8编码的页面，可能被缓存共享，调用方不能修改
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public byte[] userInfoPage(String name) {
+        if(name == null) {
+            return NAME_REQUIRED;
+        }
+        if(userInfoCache == null) {
+            return render(name);
+        }
+        final long version = currentVersion();
+        byte[] userInfo = userInfoCache.get(name);
+        if(userInfo == null) {
+            userInfo = render(name);
+            cache(name, userInfo, version);
+        }
+        return userInfo;
+    }
+
+    /**
+     * 异步获取用户信息页面，缓存命中时返回已完成的结果.
+     *
+     * @param name
+     *            用户名称
+     * @return UTF-8编码的页面，可能被缓存共享，调用方不能修改
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public CompletableFuture<byte[]> userInfoPageAsync(final String name) {
+        if(name == null) {
+            return CompletableFuture.completedFuture(NAME_REQUIRED);
+        }
+        final long version;
+        if(userInfoCache != null) {
+            version = currentVersion();
+            final byte[] userInfo = userInfoCache.get(name);
+            if(userInfo != null) {
+                return CompletableFuture.completedFuture(userInfo);
+            }
+        } else {
+            version = 0;
+        }
+        return lookupAsync(name).thenApply(new Function<User, byte[]>() {
+            @Override
+            public byte[] apply(User user) {
+                final byte[] userInfo = user == null ? USER_NOT_FOUND : renderPage(user);
+                if(userInfoCache != null) {
+                    cache(name, userInfo, version);
+                }
+                return userInfo;
+            }
+        });
+    }
+
+    /**
+     * 异步查找用户.
+     *
+     * @param name
+     *            用户名称
+     * @return 用户信息，名称为 <code>null</code> 或用户不存在时为 <code>null</code>
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public CompletableFuture<User> findUserAsync(String name) {
+        return name == null ? CompletableFuture.<User>completedFuture(null) : lookupAsync(name);
+    }
+
+    /**
+     * 将用户信息页面写入输出流；未启用缓存时直接渲染到输出流，不生成中间结果.<br/>
+     * 用户不存在时不写入任何内容，调用方可在写出 {@link #userNotFoundPage()} 之前设置响应状态.
+     *
+     * @param name
+     *            用户名称
+     * @param out
+     *            输出流，不会被关闭
+     * @return 用户存在并已写入页面时返回 <code>true</code>；名称为 <code>null</code> 或用户不存在时返回 <code>false</code>
+     * @throws IOException
+     *             写入失败
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public boolean writeUserInfo(String name, OutputStream out) throws IOException {
+        if(name == null) {
+            return false;
+        }
+        if(userInfoCache != null) {
+            final byte[] page = userInfoPage(name);
+            if(isUserNotFound(page)) {
+                return false;
+            }
+            out.write(page);
+            return true;
+        }
+        final User user = lookup(name);
+        if(user == null) {
+            return false;
+        }
+        final long start = System.nanoTime();
+        USER_INFO_TEMPLATE.render(user, out);
+        recordRender(start);
+        return true;
+    }
+
+    /**
+     * 判断页面是否为名称为空或用户不存在时返回的提示信息.
+     *
+     * @param page
+     *            {@link #userInfoPage(String)} 或 {@link #userInfoPageAsync(String)} 的结果
+     * @return 是提示信息时返回 <code>true</code>
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public boolean isUserNotFound(byte[] page) {
+        return page == USER_NOT_FOUND || page == NAME_REQUIRED;
+    }
+
+    /**
+     * 获取用户不存在时的提示信息.
+     *
+     * @return UTF-8编码的提示信息，调用方不能修改
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public byte[] userNotFoundPage() {
+        return USER_NOT_FOUND;
+    }
+
+    /**
+     * 将用户信息以JSON对象写入输出流.
+     *
+     * @param name
+     *            查询的用户名称
+     * @param user
+     *            {@link #findUser(String)} 的结果，<code>null</code> 表示用户不存在
+     * @param out
+     *            输出流，不会被关闭
+     * @throws IOException
+     *             写入失败
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void writeUserJson(String name, User user, OutputStream out) throws IOException {
+        final JsonWriter json = JsonWriter.open(out);
+        try {
+            writeJson(json, name, user);
+        } finally {
+            json.close();
+        }
+    }
+
+    /**
+     * 获取用户信息的ETag，由数据源预先计算的内容hash与输出格式组合而成，不需要读取或渲染用户信息.
+     *
+     * @param name
+     *            用户名称
+     * @param json
+     *            是否为JSON格式，否则为HTML页面
+     * @return 带引号的强ETag，名称为 <code>null</code> 或用户不存在时返回 <code>null</code>
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public String userInfoETag(String name, boolean json) {
         if(name == null) {
-            return "用户名称必须填...";
-        }
-        if(name.equals("luliangwei")) {
-            user = new User();
-            user.setAddress("科技园B-114");
-            user.setAge(22);
-            user.setName("luliangwei");
-            user.setPhone("123xxxxoooo");
-            userInfo = "<html><title>User Infomation</title><body><div id= \"user\">"
-                    + "<table bolder = \"1\" cellspacing=\"10\" cellpadding=\"10\" align=\"center\">"
-                    + "<th>名称</th><th>值</th><tr><td>姓名</td><td>"+user.getName() + "</td>" 
-                    + "</tr><tr><td>年龄</td><td>" + user.getAge().intValue() + "</td>"
-                    + "</tr><tr><td>联系方式</td><td>" + user.getPhone() + "</td>"
-                    + "</tr><tr><td>地址</td><td>" + user.getAddress() +"</td>"
-                    + "</tr></table></div></body></html>";
-            return userInfo;
-        }else  {
-            user = new User();
-            user.setAddress("科技园B-114");
-            user.setAge(22);
-            user.setName(name);
-            user.setPhone("123xxxxoooo");
-            userInfo = "<html><title>User Infomation</title><body><div id= \"user\">"
-                    + "<table bolder = \"1\" cellspacing=\"10\" cellpadding=\"10\" align=\"center\">"
-                    + "<th>名称</th><th>值</th><tr><td>姓名</td><td>"+user.getName() + "</td>" 
-                    + "</tr><tr><td>年龄</td><td>" + user.getAge().intValue() + "</td>"
-                    + "</tr><tr><td>联系方式</td><td>" + user.getPhone() + "</td>"
-                    + "</tr><tr><td>地址</td><td>" + user.getAddress() +"</td>"
-                    + "</tr></table></div></body></html>";
-            return userInfo;
+            return null;
+        }
+        final long hash = userRepository.findContentHash(name);
+        if(hash == 0) {
+            return null;
+        }
+        return json ? "\"j" + Long.toHexString(hash ^ JSON_FORMAT_VERSION) + '"'
+                : "\"h" + Long.toHexString(hash ^ USER_INFO_TEMPLATE.getFingerprint()) + '"';
+    }
+
+    /**
+     * 用户信息变化后使其缓存的页面失效.
+     *
+     * @param name
+     *            用户名称
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void evictUserInfo(String name) {
+        if(userInfoCache != null && name != null) {
+            userInfoCache.invalidate(name);
+        }
+    }
+
+    static void writeJson(JsonWriter json, String name, User user) throws IOException {
+        json.beginObject().field(JSON_NAME, name).field(JSON_FOUND, user != null);
+        if(user != null) {
+            if(user.getAge() != null) {
+                json.field(JSON_AGE, user.getAge().intValue());
+            }
+            json.field(JSON_PHONE, user.getPhone()).field(JSON_ADDRESS, user.getAddress());
+        }
+        json.endObject();
+    }
+
+    // 数据源版本变化时清空缓存，返回当前版本
+    private long currentVersion() {
+        final long version = userRepository.getVersion();
+        if(version != cachedVersion) {
+            cachedVersion = version;
+            userInfoCache.invalidateAll();
+        }
+        return version;
+    }
+
+    private void cache(String name, byte[] userInfo, long version) {
+        userInfoCache.put(name, userInfo);
+        // 生成页面期间数据源发生了变化，页面可能已过时
+        if(userRepository.getVersion() != version) {
+            userInfoCache.invalidate(name);
+        }
+    }
+
+    private byte[] render(String name) {
+        final User user = lookup(name);
+        return user == null ? USER_NOT_FOUND : renderPage(user);
+    }
+
+    private byte[] renderPage(User user) {
+        final long start = System.nanoTime();
+        final byte[] page = USER_INFO_TEMPLATE.render(user);
+        recordRender(start);
+        return page;
+    }
+
+    private void recordRender(long start) {
+        if(userRenderTimer != null) {
+            userRenderTimer.recordSince(start);
+        }
+    }
+
+    private User lookup(final String name) {
+        if(userLookupFlight == null) {
+            return userRepository.findByName(name);
+        }
+        return userLookupFlight.execute(name, new Supplier<User>() {
+            @Override
+            public User get() {
+                return userRepository.findByName(name);
+            }
+        });
+    }
+
+    private CompletableFuture<User> lookupAsync(final String name) {
+        if(userLookupFlight == null) {
+            return userRepository.findByNameAsync(name);
+        }
+        return userLookupFlight.executeAsync(name, new Supplier<CompletableFuture<User>>() {
+            @Override
+            public CompletableFuture<User> get() {
+                return userRepository.findByNameAsync(name);
+            }
+        });
+    }
+
+    private static HtmlTemplate<User> loadTemplate() {
+        final Map<String, HtmlTemplate.Field<User>> fields = new HashMap<String, HtmlTemplate.Field<User>>();
+        fields.put("name", new HtmlTemplate.Field<User>() {
+            @Override
+            public Object value(User user) {
+                return user.getName();
+            }
+        });
+        fields.put("age", new HtmlTemplate.Field<User>() {
+            @Override
+            public Object value(User user) {
+                return user.getAge();
+            }
+        });
+        fields.put("phone", new HtmlTemplate.Field<User>() {
+            @Override
+            public Object value(User user) {
+                return user.getPhone();
+            }
+        });
+        fields.put("address", new HtmlTemplate.Field<User>() {
+            @Override
+            public Object value(User user) {
+                return user.getAddress();
+            }
+        });
+        try {
+            return HtmlTemplate.load("templates/user-info.html", fields);
+        } catch (IOException e) {
+            throw new IllegalStateException("未能加载用户信息模板: " + e.getMessage(), e);
         }
     }
 }
@@ -0,0 +1,250 @@
+package cn.luliangwei.docker.demo.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.repository.InMemoryCredentialStore;
+import cn.luliangwei.docker.demo.repository.InMemoryUserRepository;
+import cn.luliangwei.docker.demo.util.CompressedBodyCache;
+import cn.luliangwei.docker.demo.util.HmacMacPool;
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder;
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder.BuilderMode;
+import cn.luliangwei.docker.demo.util.SingleFlight;
+import cn.luliangwei.docker.demo.util.TinyLfuCache;
+
+/**
+ *
+ * 启动后的JIT预热.
+ * </p>
+ * <pre>
+ *  刚启动的实例中 {@link UserService} 的渲染、缓存与JSON输出以及 {@link HmacSignatureBuilder} 的签名都还在解释执行，
+ *  直接接收流量时最初的几千个请求耗时明显偏高. 预热在后台线程中用合成的数据反复调用这些方法，
+ *  直到完成 iterations 次或用完 maxDuration，期间 {@link #isReady()} 为 <code>false</code>.
+ *  预热使用独立的 {@link UserService}、数据源、缓存、合并查询、凭证与HMAC实例池，不影响线上的缓存内容和指标；
+ *  JIT按方法而不是按实例编译，参数类型与线上一致，编译结果对线上调用同样有效.
+ *  Spring MVC与Tomcat的请求处理不在预热范围内.
+ *  预热出错时记录日志并直接进入就绪状态，不阻止实例接收流量.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class UserWarmup {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UserWarmup.class);
+    // 缓存容量约为合成页面总量的四分之一，命中、未命中与淘汰都会被执行
+    private static final long CACHE_BYTES_PER_USER = 256;
+    private static final int MISSING_USERS_PERCENT = 10;
+    private static final String API_KEY = "warmup";
+
+    private final long iterations;
+    private final long maxDurationNanos;
+    private final int users;
+    private final String hmacAlgorithm;
+    private final String hmacCharset;
+    private volatile boolean ready;
+    private volatile long completed;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    /**
+     * @param iterations
+     *            最多执行的轮数，每轮各调用一次渲染、缓存、JSON输出与签名
+     * @param maxDuration
+     *            最长预热时间
+     * @param unit
+     *            maxDuration 的单位
+     * @param users
+     *            合成的用户数
+     * @param hmacAlgorithm
+     *            签名算法，应与 hmac.auth.algorithm 一致
+     * @param hmacCharset
+     *            签名字符集，应与 hmac.auth.charset 一致
+     */
+    public UserWarmup(long iterations, long maxDuration, TimeUnit unit, int users, String hmacAlgorithm,
+            String hmacCharset) {
+        Assert.isTrue(iterations >= 0, "iterations must not be negative");
+        Assert.isTrue(users > 0, "users must be positive");
+        this.iterations = iterations;
+        this.maxDurationNanos = unit.toNanos(maxDuration);
+        this.users = users;
+        this.hmacAlgorithm = hmacAlgorithm;
+        this.hmacCharset = hmacCharset;
+    }
+
+    /**
+     * 在名为 user-warmup 的后台线程中开始预热.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void start() {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                UserWarmup.this.run();
+            }
+        }, "user-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 跳过预热，直接进入就绪状态.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void skip() {
+        startNanos = endNanos = System.nanoTime();
+        ready = true;
+    }
+
+    /**
+     * 在当前线程中执行预热，完成后进入就绪状态.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void run() {
+        final long start = System.nanoTime();
+        startNanos = start;
+        try {
+            final Workload workload = new Workload();
+            for (long i = 0; i < iterations && System.nanoTime() - start < maxDurationNanos; i++) {
+                workload.exercise(i);
+                completed = i + 1;
+            }
+            LOG.info("预热完成: {} 轮，耗时 {} ms", completed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("预热在第 {} 轮失败，直接进入就绪状态: {}", completed, e.getMessage(), e);
+        } finally {
+            endNanos = System.nanoTime();
+            ready = true;
+        }
+    }
+
+    /**
+     * @return 预热是否已完成或已跳过
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return 已完成的轮数
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return 最多执行的轮数
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return 预热已用的时间（毫秒），尚未开始时为0
+     */
+    public long getElapsedMillis() {
+        if (startNanos == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis((ready ? endNanos : System.nanoTime()) - startNanos);
+    }
+
+    // 预热用的一组独立组件，只在预热线程中使用
+    private final class Workload {
+
+        final Random random = new Random(1874);
+        final String[] names = new String[users + users * MISSING_USERS_PERCENT / 100 + 1];
+        final UserService cached;
+        final UserService uncached;
+        final CompressedBodyCache compressed = new CompressedBodyCache(users * CACHE_BYTES_PER_USER, 1,
+                TimeUnit.MINUTES, 6, 256);
+        final HmacMacPool macPool = new HmacMacPool();
+        final InMemoryCredentialStore credentials = new InMemoryCredentialStore(hmacAlgorithm, hmacCharset);
+        final ByteArrayOutputStream sink = new ByteArrayOutputStream(4096);
+
+        Workload() throws IOException {
+            credentials.replaceAll(Collections.singletonMap(API_KEY, "warmup-secret"));
+            final List<User> roster = new ArrayList<User>(users);
+            for (int i = 0; i < users; i++) {
+                final User user = new User();
+                user.setName("warmup-" + i);
+                // 与线上数据一样存在未填写年龄的用户
+                user.setAge(i % 17 == 0 ? null : Integer.valueOf(18 + i % 60));
+                user.setPhone("1" + (3000000000L + i * 7919L));
+                user.setAddress("科技园B-" + (100 + i % 900));
+                roster.add(user);
+                names[i] = user.getName();
+            }
+            for (int i = users; i < names.length; i++) {
+                names[i] = "warmup-missing-" + i;
+            }
+            final InMemoryUserRepository repository = new InMemoryUserRepository();
+            repository.replaceAll(roster);
+            cached = new UserService(repository, new TinyLfuCache<String, byte[]>(users * CACHE_BYTES_PER_USER, 1,
+                    TimeUnit.MINUTES, new TinyLfuCache.Weigher<String, byte[]>() {
+                        @Override
+                        public int weigh(String key, byte[] value) {
+                            return 2 * key.length() + value.length;
+                        }
+                    }), new SingleFlight<String, User>(5, TimeUnit.SECONDS), null);
+            uncached = new UserService(repository, null, null, null);
+        }
+
+        void exercise(long iteration) throws IOException {
+            final String name = names[random.nextInt(names.length)];
+            sink.reset();
+            final byte[] page = cached.userInfoPage(name);
+            if ((iteration & 1) == 0) {
+                cached.userInfoPageAsync(name).join();
+            } else {
+                uncached.writeUserInfo(name, sink);
+            }
+            cached.writeUserJson(name, cached.findUser(name), sink);
+            cached.userInfoETag(name, (iteration & 1) == 0);
+            if ((iteration & 7) == 0) {
+                compressed.get(name, page);
+            }
+            final String nonce = Long.toString(iteration);
+            final String signature = signedRequest(name, nonce, (iteration & 3) == 0 ? page : null)
+                    .buildAsBase64(BuilderMode.FULL);
+            signedRequest(name, nonce, (iteration & 3) == 0 ? page : null).verifyWithBase64(signature,
+                    BuilderMode.FULL);
+        }
+
+        // 与 HmacAuthFilter 为每个请求创建的建造器相同
+        private HmacSignatureBuilder signedRequest(String name, String nonce, byte[] payload) {
+            final HmacSignatureBuilder builder = new HmacSignatureBuilder(hmacAlgorithm, hmacCharset,
+                    HmacSignatureBuilder.DEFAULT_DELIMITER)
+                            .apiKey(API_KEY)
+                            .apiSecret(credentials.find(API_KEY).getSecretKey())
+                            .macPool(macPool)
+                            .contentType(payload == null ? "" : "application/json")
+                            .date("Wed, 02 Nov 2016 03:25:54 GMT")
+                            .host("127.0.0.1:1874")
+                            .method(payload == null ? "GET" : "POST")
+                            .nonce(nonce)
+                            .resource("/users?name=" + name)
+                            .scheme("http");
+            if (payload != null) {
+                builder.payload(payload);
+            }
+            return builder;
+        }
+    }
+}
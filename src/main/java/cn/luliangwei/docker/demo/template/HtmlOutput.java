@@ -0,0 +1,205 @@
+package cn.luliangwei.docker.demo.template;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ *
+ * 模板渲染使用的UTF-8输出缓冲区.
+ * </p>
+ * <pre>
+ *  静态片段直接复制，字段值在编码为UTF-8的同时完成HTML转义，写满后才调用一次 OutputStream.write，
+ *  渲染过程中不创建中间字符串或字节数组.
+ *  实例与线程绑定，非线程安全，通过 {@link #open(OutputStream)} 获取，用完必须 {@link #close()}.
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+final class HtmlOutput {
+
+    static final int BUFFER_SIZE = 8 * 1024;
+
+    // 单个字符编码或转义后的最大字节数（"&quot;"）
+    private static final int MAX_CHAR_BYTES = 6;
+
+    private static final ThreadLocal<HtmlOutput> CURRENT = new ThreadLocal<HtmlOutput>();
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private OutputStream out;
+    private int length;
+
+    private HtmlOutput() {
+    }
+
+    /**
+     * 获取当前线程的输出缓冲区并绑定输出流.
+     *
+     * @param out
+     *            输出流
+     * @return 输出缓冲区
+     */
+    static HtmlOutput open(OutputStream out) {
+        HtmlOutput output = CURRENT.get();
+        if (output == null || output.out != null) {
+            // 首次使用，或同一线程上嵌套渲染
+            output = new HtmlOutput();
+            if (CURRENT.get() == null) {
+                CURRENT.set(output);
+            }
+        }
+        output.out = out;
+        output.length = 0;
+        return output;
+    }
+
+    /**
+     * 写入已编码的静态片段.
+     *
+     * @param bytes
+     *            UTF-8字节
+     * @throws IOException
+     *             写入失败
+     */
+    void writeRaw(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - length) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /**
+     * 转义并写入字段值，<code>null</code> 不输出任何内容.
+     *
+     * @param value
+     *            字段值
+     * @throws IOException
+     *             写入失败
+     */
+    void writeValue(Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+            writeLong(((Number) value).longValue());
+        } else if (value instanceof CharSequence) {
+            writeEscaped((CharSequence) value);
+        } else {
+            writeEscaped(value.toString());
+        }
+    }
+
+    /**
+     * 将缓冲内容写入输出流并解除绑定.
+     *
+     * @throws IOException
+     *             写入失败
+     */
+    void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out = null;
+        }
+    }
+
+    private void writeEscaped(CharSequence value) throws IOException {
+        final int size = value.length();
+        for (int i = 0; i < size; i++) {
+            if (buffer.length - length < MAX_CHAR_BYTES) {
+                flushBuffer();
+            }
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                case '&':
+                    put('&', 'a', 'm', 'p', ';');
+                    break;
+                case '<':
+                    put('&', 'l', 't', ';');
+                    break;
+                case '>':
+                    put('&', 'g', 't', ';');
+                    break;
+                case '"':
+                    put('&', 'q', 'u', 'o', 't', ';');
+                    break;
+                case '\'':
+                    put('&', '#', '3', '9', ';');
+                    break;
+                default:
+                    buffer[length++] = (byte) c;
+                    break;
+                }
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xc0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[length++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[length++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // 与 String.getBytes 一致，不成对的代理字符以 '?' 代替
+                buffer[length++] = '?';
+            } else {
+                buffer[length++] = (byte) (0xe0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[length++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (buffer.length - length < 20) {
+            flushBuffer();
+        }
+        if (value == Long.MIN_VALUE) {
+            writeEscaped(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void put(char c1, char c2, char c3, char c4) {
+        buffer[length++] = (byte) c1;
+        buffer[length++] = (byte) c2;
+        buffer[length++] = (byte) c3;
+        buffer[length++] = (byte) c4;
+    }
+
+    private void put(char c1, char c2, char c3, char c4, char c5) {
+        put(c1, c2, c3, c4);
+        buffer[length++] = (byte) c5;
+    }
+
+    private void put(char c1, char c2, char c3, char c4, char c5, char c6) {
+        put(c1, c2, c3, c4, c5);
+        buffer[length++] = (byte) c6;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (length > 0) {
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package cn.luliangwei.docker.demo.template;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.Assert;
+
+/**
+ *
+ * 预编译的HTML模板.
+ * </p>
+ * <pre>
+ *  模板中以 ${字段名} 标记字段，编译时按字段位置切分为已编码的UTF-8静态片段:
+ *      片段0 字段0 片段1 字段1 ... 片段n
+ *  渲染时静态片段直接复制到输出缓冲区，字段值经HTML转义后编码写入，整数直接写出数字，
+ *  除模型本身的取值外不产生其他分配. 编译后不再改变，可被多线程共享.
+ *
+ *  HtmlTemplate&lt;User&gt; template = HtmlTemplate.compile("&lt;td&gt;${name}&lt;/td&gt;", fields);
+ *  template.render(user, response.getOutputStream());
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public final class HtmlTemplate<T> {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String FIELD_START = "${";
+    private static final String FIELD_END = "}";
+
+    /**
+     * 从模型中取出字段值.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public interface Field<T> {
+
+        /**
+         * @param model
+         *            模型
+         * @return 字段值，<code>null</code> 不输出任何内容；整数不经过字符串转换
+         */
+        Object value(T model);
+    }
+
+    private final byte[][] chunks;
+    private final Field<? super T>[] fields;
+    private final int staticLength;
+    private final long fingerprint;
+
+    private HtmlTemplate(byte[][] chunks, Field<? super T>[] fields) {
+        this.chunks = chunks;
+        this.fields = fields;
+        int total = 0;
+        // FNV-1a，片段之间以片段长度分隔
+        long hash = 0xcbf29ce484222325L;
+        for (byte[] chunk : chunks) {
+            total += chunk.length;
+            for (byte b : chunk) {
+                hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+            }
+            hash = (hash ^ chunk.length) * 0x100000001b3L;
+        }
+        this.staticLength = total;
+        this.fingerprint = hash;
+    }
+
+    /**
+     * 编译模板.
+     *
+     * @param source
+     *            模板内容
+     * @param fields
+     *            字段名与取值方式的对应关系
+     * @return 编译后的模板
+     * @throws IllegalArgumentException
+     *             模板引用了未定义的字段或标记未闭合
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> HtmlTemplate<T> compile(String source, Map<String, ? extends Field<? super T>> fields) {
+        Assert.notNull(source, "source not null");
+        Assert.notNull(fields, "fields not null");
+        final List<byte[]> chunks = new ArrayList<byte[]>();
+        final List<Field<? super T>> bound = new ArrayList<Field<? super T>>();
+        int from = 0;
+        for (int start = source.indexOf(FIELD_START); start >= 0; start = source.indexOf(FIELD_START, from)) {
+            final int end = source.indexOf(FIELD_END, start + FIELD_START.length());
+            Assert.isTrue(end >= 0, "unclosed field at " + start);
+            final String name = source.substring(start + FIELD_START.length(), end).trim();
+            final Field<? super T> field = fields.get(name);
+            Assert.notNull(field, "undefined field: " + name);
+            chunks.add(source.substring(from, start).getBytes(UTF_8));
+            bound.add(field);
+            from = end + FIELD_END.length();
+        }
+        chunks.add(source.substring(from).getBytes(UTF_8));
+        return new HtmlTemplate<T>(chunks.toArray(new byte[chunks.size()][]),
+                bound.toArray(new Field[bound.size()]));
+    }
+
+    /**
+     * 从类路径加载UTF-8编码的模板并编译.
+     *
+     * @param resource
+     *            类路径下的模板位置，如 <code>templates/user-info.html</code>
+     * @param fields
+     *            字段名与取值方式的对应关系
+     * @return 编译后的模板
+     * @throws IOException
+     *             模板不存在或读取失败
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static <T> HtmlTemplate<T> load(String resource, Map<String, ? extends Field<? super T>> fields)
+            throws IOException {
+        final InputStream in = HtmlTemplate.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("模板不存在: " + resource);
+        }
+        try {
+            final ByteArrayOutputStream source = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                source.write(buffer, 0, n);
+            }
+            return compile(new String(source.toByteArray(), UTF_8), fields);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 获取模板静态内容的指纹，模板内容变化时随之变化，可与模型的hash组合为ETag.
+     *
+     * @return 指纹
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * 渲染模板并写入输出流，不关闭输出流.
+     *
+     * @param model
+     *            模型
+     * @param out
+     *            输出流
+     * @throws IOException
+     *             写入失败
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void render(T model, OutputStream out) throws IOException {
+        final HtmlOutput output = HtmlOutput.open(out);
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                output.writeRaw(chunks[i]);
+                output.writeValue(fields[i].value(model));
+            }
+            output.writeRaw(chunks[fields.length]);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * 渲染模板为UTF-8字节，适用于需要缓存渲染结果的场景.
+     *
+     * @param model
+     *            模型
+     * @return 渲染结果
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public byte[] render(T model) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(staticLength + 32 * fields.length);
+        try {
+            render(model, out);
+        } catch (IOException e) {
+            throw new IllegalStateException("渲染模板失败: " + e.getMessage(), e);
+        }
+        return out.toByteArray();
+    }
+}
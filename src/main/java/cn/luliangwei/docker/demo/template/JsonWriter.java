@@ -0,0 +1,349 @@
+package cn.luliangwei.docker.demo.template;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ *
+ * 直接写出UTF-8字节的JSON输出.
+ * </p>
+ * <pre>
+ *  与 {@link HtmlOutput} 相同，每个线程复用一个预先分配的 8KB 缓冲区，写满后才调用一次 OutputStream.write；
+ *  字段名在使用前通过 {@link #fieldName(String)} 编码为 "name": 的字节，写出时直接复制，
+ *  字符串在编码为UTF-8的同时完成转义，整数直接写出数字，不创建中间字符串或字节数组.
+ *  只负责按调用顺序写出并补充逗号，不校验对象和数组是否配对.
+ *
+ *  private static final byte[] AGE = JsonWriter.fieldName("age");
+ *  JsonWriter json = JsonWriter.open(response.getOutputStream());
+ *  try {
+ *      json.beginObject().field(AGE, 22).endObject();
+ *  } finally {
+ *      json.close();
+ *  }
+ * </pre>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public final class JsonWriter {
+
+    static final int BUFFER_SIZE = 8 * 1024;
+
+    // 单个字符编码或转义后的最大字节数（"\u001f"）
+    private static final int MAX_CHAR_BYTES = 6;
+    // 逗号状态按嵌套层级记录在 long 的各个位上
+    private static final int MAX_DEPTH = 63;
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final byte[] HEX = "0123456789abcdef".getBytes(US_ASCII);
+    private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+    private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+    private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+
+    private static final ThreadLocal<JsonWriter> CURRENT = new ThreadLocal<JsonWriter>();
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private OutputStream out;
+    private int length;
+    private int depth;
+    // 第 n 位为1表示第 n 层已经写过值，下一个值之前需要逗号
+    private long hasValue;
+
+    private JsonWriter() {
+    }
+
+    /**
+     * 将字段名编码为 <code>"name":</code> 的UTF-8字节，供 field 方法使用.
+     *
+     * @param field
+     *            字段名
+     * @return 编码后的字段名
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static byte[] fieldName(String field) {
+        final JsonWriter writer = new JsonWriter();
+        final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        writer.out = sink;
+        try {
+            writer.value(field);
+            writer.buffer[writer.length++] = ':';
+            writer.flushBuffer();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sink.toByteArray();
+    }
+
+    /**
+     * 获取当前线程的JSON输出并绑定输出流，用完必须 {@link #close()}.
+     *
+     * @param out
+     *            输出流
+     * @return JSON输出
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static JsonWriter open(OutputStream out) {
+        JsonWriter writer = CURRENT.get();
+        if (writer == null || writer.out != null) {
+            // 首次使用，或同一线程上嵌套输出
+            writer = new JsonWriter();
+            if (CURRENT.get() == null) {
+                CURRENT.set(writer);
+            }
+        }
+        writer.out = out;
+        writer.length = 0;
+        writer.depth = 0;
+        writer.hasValue = 0;
+        return writer;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        return begin('{');
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return end('}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        return begin('[');
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return end(']');
+    }
+
+    /**
+     * 写出字段名，随后应写出一个值或对象.
+     *
+     * @param name
+     *            {@link #fieldName(String)} 编码的字段名
+     * @return this
+     * @throws IOException
+     *             写入失败
+     */
+    public JsonWriter name(byte[] name) throws IOException {
+        separate();
+        writeRaw(name);
+        // 字段名之后的值不需要逗号
+        hasValue &= ~(1L << depth);
+        return this;
+    }
+
+    public JsonWriter field(byte[] name, CharSequence value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(byte[] name, long value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(byte[] name, boolean value) throws IOException {
+        return name(name).value(value);
+    }
+
+    /**
+     * 写出字符串值，<code>null</code> 写出为 null.
+     *
+     * @param value
+     *            字符串
+     * @return this
+     * @throws IOException
+     *             写入失败
+     */
+    public JsonWriter value(CharSequence value) throws IOException {
+        separate();
+        if (value == null) {
+            writeRaw(NULL);
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        writeLong(value);
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        writeRaw(value ? TRUE : FALSE);
+        return this;
+    }
+
+    /**
+     * 写出换行，用于每行一个JSON值的输出（NDJSON）.
+     *
+     * @return this
+     * @throws IOException
+     *             写入失败
+     */
+    public JsonWriter newLine() throws IOException {
+        ensure(1);
+        buffer[length++] = '\n';
+        return this;
+    }
+
+    /**
+     * 写出缓冲内容并刷新输出流.
+     *
+     * @throws IOException
+     *             写入失败
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * 写出缓冲内容并解除绑定，不关闭输出流.
+     *
+     * @throws IOException
+     *             写入失败
+     */
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out = null;
+        }
+    }
+
+    private JsonWriter begin(char bracket) throws IOException {
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("JSON nesting too deep");
+        }
+        separate();
+        ensure(1);
+        buffer[length++] = (byte) bracket;
+        depth++;
+        hasValue &= ~(1L << depth);
+        return this;
+    }
+
+    private JsonWriter end(char bracket) throws IOException {
+        ensure(1);
+        buffer[length++] = (byte) bracket;
+        depth--;
+        return this;
+    }
+
+    // 在同一层的第二个及之后的值之前写出逗号；顶层的值之间不加逗号
+    private void separate() throws IOException {
+        final long bit = 1L << depth;
+        if ((hasValue & bit) != 0 && depth > 0) {
+            ensure(1);
+            buffer[length++] = ',';
+        }
+        hasValue |= bit;
+    }
+
+    private void writeString(CharSequence value) throws IOException {
+        ensure(1);
+        buffer[length++] = '"';
+        final int size = value.length();
+        for (int i = 0; i < size; i++) {
+            ensure(MAX_CHAR_BYTES);
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    buffer[length++] = (byte) c;
+                    continue;
+                }
+                buffer[length++] = '\\';
+                switch (c) {
+                case '"':
+                case '\\':
+                    buffer[length++] = (byte) c;
+                    break;
+                case '\n':
+                    buffer[length++] = 'n';
+                    break;
+                case '\r':
+                    buffer[length++] = 'r';
+                    break;
+                case '\t':
+                    buffer[length++] = 't';
+                    break;
+                default:
+                    buffer[length++] = 'u';
+                    buffer[length++] = '0';
+                    buffer[length++] = '0';
+                    buffer[length++] = HEX[c >> 4];
+                    buffer[length++] = HEX[c & 0xf];
+                    break;
+                }
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xc0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[length++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[length++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // 与 String.getBytes 一致，不成对的代理字符以 '?' 代替
+                buffer[length++] = '?';
+            } else {
+                buffer[length++] = (byte) (0xe0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[length++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        ensure(1);
+        buffer[length++] = '"';
+    }
+
+    private void writeLong(long value) throws IOException {
+        ensure(20);
+        if (value == Long.MIN_VALUE) {
+            writeRaw(Long.toString(value).getBytes(US_ASCII));
+            return;
+        }
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void writeRaw(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - length) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.length - length < bytes) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (length > 0) {
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright © 2017 signit.cn. All rights reserved.
+ */
+package cn.luliangwei.docker.demo.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.util.Assert;
+
+/**
+ * 按 <code>apiKey</code> 限制请求速率的限流器.<br/>
+ * <br/>
+ * 采用GCRA（通用信元速率算法），与令牌桶等价，但每个 <code>apiKey</code> 只需保存一个时间戳：
+ * <ul>
+ * <li>1.每个请求消耗一个配额，配额按 <code>permitsPerSecond</code> 匀速恢复，最多累积 <code>burst</code> 个</li>
+ * <li>2.状态为下一个配额的理论到达时间（TAT），通过时以一次CAS推进，无锁；不同 <code>apiKey</code> 之间互不竞争</li>
+ * <li>3.被拒绝的请求不改变状态，并给出距离下一个可用配额的时间，可用于 Retry-After</li>
+ * <li>4.空闲超过 <code>idleTimeout</code> 的 <code>apiKey</code> 配额早已恢复满，其状态与新建时相同，
+ * 每隔 <code>idleTimeout</code> 由恰好触发的调用线程顺带清理一次</li>
+ * </ul>
+ * 单个 <code>apiKey</code> 的限额可通过 {@link #setLimit(String, double, int)} 覆盖默认值.
+ * 清理与并发的请求交错时，该 <code>apiKey</code> 的一个请求可能记到已移除的状态上，即最多多放行一个请求.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class ApiKeyRateLimiter {
+
+    private static final AtomicLongFieldUpdater<Bucket> TAT = AtomicLongFieldUpdater.newUpdater(Bucket.class,
+            "tat");
+
+    private final Limit defaultLimit;
+    private final long idleNanos;
+    private final Map<String, Limit> limits = new ConcurrentHashMap<String, Limit>();
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+    private final AtomicLong nextSweepNanos;
+    private final LongAdder allowedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    /**
+     * @param permitsPerSecond
+     *            默认每秒恢复的配额数
+     * @param burst
+     *            默认最多累积的配额数，即允许的突发请求数
+     * @param idleTimeout
+     *            清理空闲 <code>apiKey</code> 的时间
+     * @param unit
+     *            idleTimeout 的单位
+     */
+    public ApiKeyRateLimiter(double permitsPerSecond, int burst, long idleTimeout, TimeUnit unit) {
+        Assert.isTrue(idleTimeout > 0, "idleTimeout must be positive");
+        this.defaultLimit = new Limit(permitsPerSecond, burst);
+        this.idleNanos = unit.toNanos(idleTimeout);
+        this.nextSweepNanos = new AtomicLong(System.nanoTime() + idleNanos);
+    }
+
+    /**
+     * 覆盖指定 <code>apiKey</code> 的限额，立即生效.
+     *
+     * @param apiKey
+     *            服务器授权给客户端的唯一公开标识
+     * @param permitsPerSecond
+     *            每秒恢复的配额数
+     * @param burst
+     *            最多累积的配额数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void setLimit(String apiKey, double permitsPerSecond, int burst) {
+        Assert.notNull(apiKey, "apiKey not null");
+        limits.put(apiKey, new Limit(permitsPerSecond, burst));
+        // 已有的状态按旧限额计算，丢弃后按新限额从满配额开始
+        buckets.remove(apiKey);
+    }
+
+    /**
+     * 尝试为一个请求获取配额.
+     *
+     * @param apiKey
+     *            服务器授权给客户端的唯一公开标识
+     * @return 0 - 获取成功; 大于0 - 配额不足，为距离下一个可用配额的纳秒数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long tryAcquire(String apiKey) {
+        return tryAcquire(apiKey, System.nanoTime());
+    }
+
+    long tryAcquire(String apiKey, long now) {
+        Assert.notNull(apiKey, "apiKey not null");
+        final long nextSweep = nextSweepNanos.get();
+        if (now - nextSweep >= 0 && nextSweepNanos.compareAndSet(nextSweep, now + idleNanos)) {
+            sweep(now);
+        }
+        Bucket bucket = buckets.get(apiKey);
+        if (bucket == null) {
+            final Limit limit = limits.get(apiKey);
+            final Bucket created = new Bucket(limit == null ? defaultLimit : limit, now);
+            bucket = buckets.putIfAbsent(apiKey, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+        for (;;) {
+            final long tat = bucket.tat;
+            // 配额已满时从现在开始计算
+            final long next = (tat - now > 0 ? tat : now) + bucket.emissionNanos;
+            final long wait = next - now - bucket.toleranceNanos;
+            if (wait > 0) {
+                rejectedCount.increment();
+                return wait;
+            }
+            if (TAT.compareAndSet(bucket, tat, next)) {
+                allowedCount.increment();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 获取放行的请求数.
+     *
+     * @return 放行的请求数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getAllowedCount() {
+        return allowedCount.sum();
+    }
+
+    /**
+     * 获取因配额不足被拒绝的请求数.
+     *
+     * @return 被拒绝的请求数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 获取因空闲被清理的 <code>apiKey</code> 数.
+     *
+     * @return 被清理的 <code>apiKey</code> 数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    /**
+     * 获取当前保存状态的 <code>apiKey</code> 数.
+     *
+     * @return <code>apiKey</code> 数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    // TAT 早于 now - idleNanos 说明配额早已恢复满，移除后再次请求时按新建处理，结果相同
+    private void sweep(long now) {
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            final Bucket bucket = entry.getValue();
+            if (now - bucket.tat > idleNanos && buckets.remove(entry.getKey(), bucket)) {
+                evictedCount.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class Limit {
+
+        final long emissionNanos;
+        final long toleranceNanos;
+
+        Limit(double permitsPerSecond, int burst) {
+            Assert.isTrue(permitsPerSecond > 0, "permitsPerSecond must be positive");
+            Assert.isTrue(burst > 0, "burst must be positive");
+            this.emissionNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+            this.toleranceNanos = emissionNanos * burst;
+        }
+    }
+
+    private static final class Bucket {
+
+        final long emissionNanos;
+        final long toleranceNanos;
+        volatile long tat;
+
+        Bucket(Limit limit, long now) {
+            this.emissionNanos = limit.emissionNanos;
+            this.toleranceNanos = limit.toleranceNanos;
+            this.tat = now;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2017 signit.cn. All rights reserved.
+ */
+package cn.luliangwei.docker.demo.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.util.Assert;
+
+/**
+ * 预先压缩的响应体缓存.<br/>
+ * <br/>
+ * 相同的响应体只做一次 gzip 压缩，之后直接返回缓存的压缩结果：
+ * <ul>
+ * <li>1.由 {@link TinyLfuCache} 保存，只有被反复请求的热点响应体才能留在缓存中</li>
+ * <li>2.缓存条目同时保存压缩前的响应体，取出时与当前响应体比较，内容变化后自动重新压缩，不需要单独失效</li>
+ * <li>3.小于 minSize 的响应体，或压缩后没有变小的响应体不压缩，返回 <code>null</code></li>
+ * </ul>
+ * 统计压缩节省的字节数（按每次返回的压缩结果累计）和压缩耗时.<br/>
+ * 线程安全.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class CompressedBodyCache {
+
+    // 条目中键、数组头与缓存节点的估算开销
+    private static final int ENTRY_OVERHEAD = 128;
+
+    /**
+     * Content-Encoding 响应头的值.
+     */
+    public static final String GZIP = "gzip";
+
+    /**
+     * 判断 Accept-Encoding 是否接受 gzip（q 值大于0）.<br/>
+     * <br/>
+     * <code>x-gzip</code> 与 <code>*</code> 同样视为 gzip.
+     *
+     * @param acceptEncoding
+     *            Accept-Encoding 请求头
+     * @return 是否接受
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static boolean isGzipAccepted(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        float gzip = 0;
+        for (String coding : acceptEncoding.split(",")) {
+            final int semicolon = coding.indexOf(';');
+            final String token = (semicolon < 0 ? coding : coding.substring(0, semicolon)).trim()
+                    .toLowerCase(Locale.ENGLISH);
+            if (GZIP.equals(token) || "x-gzip".equals(token) || "*".equals(token)) {
+                gzip = Math.max(gzip, semicolon < 0 ? 1 : quality(coding.substring(semicolon + 1)));
+            }
+        }
+        return gzip > 0;
+    }
+
+    private static float quality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            final String trimmed = parameter.trim();
+            if (trimmed.startsWith("q=")) {
+                try {
+                    return Float.parseFloat(trimmed.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static final class Entry {
+
+        final byte[] source;
+        final byte[] compressed;
+
+        Entry(byte[] source, byte[] compressed) {
+            this.source = source;
+            this.compressed = compressed;
+        }
+    }
+
+    private final TinyLfuCache<String, Entry> cache;
+    private final int level;
+    private final int minSize;
+    private final AtomicLong compressions = new AtomicLong();
+    private final AtomicLong compressionNanos = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong compressedResponses = new AtomicLong();
+
+    /**
+     * @param maximumBytes
+     *            缓存占用的最大字节数（压缩前后的响应体之和）
+     * @param ttl
+     *            条目写入后的存活时间
+     * @param unit
+     *            存活时间的单位
+     * @param level
+     *            压缩级别，0~9
+     * @param minSize
+     *            压缩前的响应体小于该字节数时不压缩
+     */
+    public CompressedBodyCache(long maximumBytes, long ttl, TimeUnit unit, int level, int minSize) {
+        Assert.isTrue(level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION,
+                "level must be between 0 and 9");
+        Assert.isTrue(minSize >= 0, "minSize must not be negative");
+        this.level = level;
+        this.minSize = minSize;
+        this.cache = new TinyLfuCache<String, Entry>(maximumBytes, ttl, unit,
+                new TinyLfuCache.Weigher<String, Entry>() {
+                    @Override
+                    public int weigh(String key, Entry entry) {
+                        return 2 * key.length() + entry.source.length + entry.compressed.length + ENTRY_OVERHEAD;
+                    }
+                });
+    }
+
+    /**
+     * 获取响应体的 gzip 压缩结果，未缓存或响应体已变化时压缩并缓存.
+     *
+     * @param key
+     *            缓存键
+     * @param body
+     *            压缩前的响应体，不会被修改
+     * @return 压缩后的响应体，调用方不能修改；不值得压缩时返回 <code>null</code>
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public byte[] get(String key, byte[] body) {
+        if (body.length < minSize) {
+            return null;
+        }
+        Entry entry = cache.get(key);
+        if (entry == null || !Arrays.equals(entry.source, body)) {
+            final long start = System.nanoTime();
+            final byte[] compressed = compress(body);
+            compressionNanos.addAndGet(System.nanoTime() - start);
+            compressions.incrementAndGet();
+            entry = new Entry(body, compressed);
+            cache.put(key, entry);
+        }
+        if (entry.compressed.length >= body.length) {
+            return null;
+        }
+        compressedResponses.incrementAndGet();
+        bytesSaved.addAndGet(body.length - entry.compressed.length);
+        return entry.compressed;
+    }
+
+    /**
+     * 清空缓存.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return 实际执行压缩的次数
+     */
+    public long getCompressionCount() {
+        return compressions.get();
+    }
+
+    /**
+     * @return 压缩累计耗时（纳秒）
+     */
+    public long getCompressionNanos() {
+        return compressionNanos.get();
+    }
+
+    /**
+     * @return 返回压缩结果的次数
+     */
+    public long getCompressedResponseCount() {
+        return compressedResponses.get();
+    }
+
+    /**
+     * @return 返回压缩结果累计节省的字节数
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    /**
+     * @return 缓存命中率
+     */
+    public double getHitRate() {
+        return cache.getHitRate();
+    }
+
+    private byte[] compress(byte[] body) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2 + 32);
+        try {
+            final GZIPOutputStream compressor = new LevelGzipOutputStream(out, level);
+            try {
+                compressor.write(body);
+                compressor.finish();
+            } finally {
+                compressor.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("压缩响应体失败: " + e.getMessage(), e);
+        }
+        return out.toByteArray();
+    }
+
+    // GZIPOutputStream 不能在构造时指定压缩级别，在写入数据前设置其内部 Deflater 的级别
+    private static final class LevelGzipOutputStream extends GZIPOutputStream {
+
+        LevelGzipOutputStream(ByteArrayOutputStream out, int level) throws IOException {
+            super(out);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2017 signit.cn. All rights reserved.
+ */
+package cn.luliangwei.docker.demo.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import org.springframework.util.Assert;
+
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder.BuilderMode;
+
+/**
+ * HMAC签名批量校验器.<br/>
+ * <br/>
+ * 将一批 (请求字段, 期望摘要) 按固定大小分片，交给执行器并行校验，结果以位图形式返回：
+ * 第 <code>i</code> 位为 <code>true</code> 表示第 <code>i</code> 个请求认证成功.<br/>
+ * <ul>
+ * <li>1.每个请求仍按 {@link HmacSignatureBuilder#build(BuilderMode)} 的方式计算摘要，
+ * 但HMAC实例来自执行校验的线程独占的 {@link HmacMacPool}，而不是建造器设置的共享池：
+ * 同一线程上相同 (<code>algorithm</code>, <code>apiKey</code>) 的实例被复用，借还不与其他线程竞争；
+ * 每个线程最多保留 {@value #THREAD_POOL_MAX_KEYS} 组，超出时淘汰最久未使用的一组</li>
+ * <li>2.摘要比较与 {@link HmacSignatureBuilder#isHashEquals(byte[], BuilderMode)} 相同，
+ * 使用 <code>MessageDigest.isEqual</code> 保持常量时间比较的语义，失败原因同样计入 {@link HmacFailureMonitor}</li>
+ * <li>3.分片大小为64的整数倍，各分片写入结果位图中互不重叠的字，无需加锁</li>
+ * <li>4.请求数不超过一个分片时直接在调用线程上校验，不提交给执行器</li>
+ * </ul>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class HmacBatchVerifier {
+
+    public static final int DEFAULT_CHUNK_SIZE = 256;
+    public static final int THREAD_POOL_MAX_KEYS = 64;
+
+    // 同一线程依次校验，每组保留一个空闲实例即可
+    private static final ThreadLocal<HmacMacPool> THREAD_MAC_POOL = new ThreadLocal<HmacMacPool>() {
+        @Override
+        protected HmacMacPool initialValue() {
+            return new HmacMacPool(1, THREAD_POOL_MAX_KEYS);
+        }
+    };
+
+    private final ExecutorService executor;
+    private final int chunkSize;
+
+    /**
+     * 使用公共 {@link ForkJoinPool} 的构造方法.
+     *
+     */
+    public HmacBatchVerifier() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * 指定执行器和分片大小的构造方法.
+     *
+     * @param executor
+     *            执行校验任务的执行器
+     * @param chunkSize
+     *            每个校验任务处理的请求数，向上取整为64的整数倍
+     */
+    public HmacBatchVerifier(ExecutorService executor, int chunkSize) {
+        Assert.notNull(executor, "executor not null");
+        Assert.isTrue(chunkSize > 0, "chunkSize must be positive");
+        this.executor = executor;
+        this.chunkSize = (chunkSize + Long.SIZE - 1) / Long.SIZE * Long.SIZE;
+    }
+
+    /**
+     * 批量校验签名.
+     *
+     * @param requests
+     *            待校验的请求列表
+     * @return 校验结果位图，第 <code>i</code> 位对应 <code>requests</code> 中第 <code>i</code> 个请求
+     * @throws IllegalStateException
+     *             执行器拒绝或取消任务、任务执行失败或等待时被中断，此时不返回部分结果
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public BitSet verify(final List<Request> requests) {
+        Assert.notNull(requests, "requests not null");
+        final int size = requests.size();
+        final long[] words = new long[(size + Long.SIZE - 1) / Long.SIZE];
+        if (size <= chunkSize) {
+            verifyRange(requests, 0, size, words);
+            return BitSet.valueOf(words);
+        }
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(size / chunkSize + 1);
+        for (int from = 0; from < size; from += chunkSize) {
+            final int start = from;
+            final int end = Math.min(from + chunkSize, size);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    verifyRange(requests, start, end, words);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("批量校验被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("批量校验失败: " + e.getCause().getMessage(), e.getCause());
+        } catch (RejectedExecutionException | CancellationException e) {
+            throw new IllegalStateException("批量校验任务未能执行: " + e.getMessage(), e);
+        }
+        return BitSet.valueOf(words);
+    }
+
+    // 分片的起始位置均为64的整数倍，因此各分片只写入自己的字
+    private static void verifyRange(List<Request> requests, int from, int to, long[] words) {
+        final HmacMacPool macPool = threadMacPool();
+        for (int i = from; i < to; i++) {
+            if (requests.get(i).verify(macPool)) {
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * 获取当前线程校验时使用的HMAC实例池.
+     *
+     * @return 当前线程独占的HMAC实例池
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    static HmacMacPool threadMacPool() {
+        return THREAD_MAC_POOL.get();
+    }
+
+    /**
+     * 待校验的请求.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static final class Request {
+
+        private final HmacSignatureBuilder builder;
+        private final BuilderMode builderMode;
+        private final byte[] expectedSignature;
+
+        /**
+         * 默认采用：<code>BuilderMode.FULL</code> 方式构建加入运算的数据.
+         *
+         * @param builder
+         *            已设置请求字段的HMAC建造器
+         * @param expectedSignature
+         *            传入的期望摘要
+         */
+        public Request(HmacSignatureBuilder builder, byte[] expectedSignature) {
+            this(builder, BuilderMode.FULL, expectedSignature);
+        }
+
+        /**
+         * @param builder
+         *            已设置请求字段的HMAC建造器
+         * @param builderMode
+         *            采用的构建模式
+         * @param expectedSignature
+         *            传入的期望摘要
+         */
+        public Request(HmacSignatureBuilder builder, BuilderMode builderMode, byte[] expectedSignature) {
+            Assert.notNull(builder, "builder not null");
+            Assert.notNull(builderMode, "builderMode not null");
+            this.builder = builder;
+            this.builderMode = builderMode;
+            this.expectedSignature = expectedSignature;
+        }
+
+        private boolean verify(HmacMacPool macPool) {
+            return builder.isHashEquals(expectedSignature, builderMode, macPool);
+        }
+    }
+}
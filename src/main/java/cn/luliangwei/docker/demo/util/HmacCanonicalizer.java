@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2017 signit.cn. All rights reserved.
+ */
+package cn.luliangwei.docker.demo.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import javax.crypto.Mac;
+
+/**
+ * HMAC认证加入运算数据的规范化编码器.<br/>
+ * <br/>
+ * 将各字段按指定字符集编码后依次写入同一个可复用的暂存缓冲区，最终只调用一次 <code>Mac.update</code>，
+ * 避免每个字段 <code>String.getBytes(charsetName)</code> 带来的字符集查找和字节数组分配.<br/>
+ * 对于兼容ASCII的字符集，纯ASCII字符直接写入，其余字符才交给缓存的 {@link CharsetEncoder} 处理.<br/>
+ * 实例与线程绑定，非线程安全，通过 {@link #get(String)} 获取.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+final class HmacCanonicalizer {
+
+    private static final int INITIAL_CAPACITY = 512;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<HmacCanonicalizer> CURRENT = new ThreadLocal<HmacCanonicalizer>();
+
+    private final String charsetName;
+    private final CharsetEncoder encoder;
+    private final boolean asciiCompatible;
+    private byte[] scratch = new byte[INITIAL_CAPACITY];
+    private int length;
+
+    private HmacCanonicalizer(String charsetName) {
+        final Charset charset = Charset.forName(charsetName);
+        this.charsetName = charsetName;
+        // 与 String.getBytes 的行为保持一致：无法编码的字符以替换字节代替
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.asciiCompatible = StandardCharsets.UTF_8.equals(charset)
+                || StandardCharsets.US_ASCII.equals(charset)
+                || StandardCharsets.ISO_8859_1.equals(charset);
+    }
+
+    /**
+     * 获取当前线程上指定字符集的编码器，并清空其暂存内容.
+     *
+     * @param charsetName
+     *            字符集名称
+     * @return 当前线程的规范化编码器
+     */
+    static HmacCanonicalizer get(String charsetName) {
+        HmacCanonicalizer canonicalizer = CURRENT.get();
+        if (canonicalizer == null || !canonicalizer.charsetName.equals(charsetName)) {
+            canonicalizer = new HmacCanonicalizer(charsetName);
+            CURRENT.set(canonicalizer);
+        }
+        canonicalizer.length = 0;
+        return canonicalizer;
+    }
+
+    /**
+     * 追加一个分隔符.
+     *
+     * @param delimiter
+     *            分隔符
+     * @return 当前编码器
+     */
+    HmacCanonicalizer append(byte delimiter) {
+        ensureCapacity(1);
+        scratch[length++] = delimiter;
+        return this;
+    }
+
+    /**
+     * 以当前字符集编码并追加一个字段值.
+     *
+     * @param value
+     *            字段值
+     * @return 当前编码器
+     * @throws CharacterCodingException
+     *             编码失败
+     */
+    HmacCanonicalizer append(String value) throws CharacterCodingException {
+        final int size = value.length();
+        int i = 0;
+        if (asciiCompatible) {
+            ensureCapacity(size);
+            final byte[] bytes = scratch;
+            int pos = length;
+            for (; i < size; i++) {
+                final char c = value.charAt(i);
+                if (c >= 0x80) {
+                    break;
+                }
+                bytes[pos++] = (byte) c;
+            }
+            length = pos;
+        }
+        if (i < size) {
+            encode(CharBuffer.wrap(value, i, size));
+        }
+        return this;
+    }
+
+    /**
+     * 将暂存内容一次性加入HMAC运算，并清空暂存内容.
+     *
+     * @param digest
+     *            HMAC实例
+     */
+    void flushTo(Mac digest) {
+        if (length > 0) {
+            digest.update(scratch, 0, length);
+        }
+        length = 0;
+        if (scratch.length > MAX_RETAINED_CAPACITY) {
+            // 避免偶发的超大字段使线程长期持有大缓冲区
+            scratch = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    private void encode(CharBuffer chars) throws CharacterCodingException {
+        int reserve = (int) Math.ceil(chars.remaining() * (double) encoder.maxBytesPerChar()) + 8;
+        for (;;) {
+            ensureCapacity(reserve);
+            encoder.reset();
+            chars.mark();
+            final ByteBuffer out = ByteBuffer.wrap(scratch, length, scratch.length - length);
+            CoderResult result = encoder.encode(chars, out, true);
+            if (result.isUnderflow()) {
+                result = encoder.flush(out);
+            }
+            if (result.isUnderflow()) {
+                length = out.position();
+                return;
+            }
+            if (!result.isOverflow()) {
+                result.throwException();
+            }
+            // 预留空间不足（仅有状态的字符集可能出现），扩容后重新编码
+            chars.reset();
+            reserve <<= 1;
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        final int required = length + extra;
+        if (required > scratch.length) {
+            final byte[] grown = new byte[Math.max(required, scratch.length << 1)];
+            System.arraycopy(scratch, 0, grown, 0, length);
+            scratch = grown;
+        }
+    }
+}
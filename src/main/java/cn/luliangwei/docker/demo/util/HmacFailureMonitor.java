@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2017 signit.cn. All rights reserved.
+ */
+package cn.luliangwei.docker.demo.util;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cn.luliangwei.docker.demo.util.HmacSignatureException.Reason;
+
+/**
+ * HMAC签名失败的计数与限流日志.<br/>
+ * <br/>
+ * 按失败原因分别计数，便于直接基于计数告警；日志按原因限流，
+ * 每个原因在 {@link #LOG_INTERVAL_MILLIS} 内最多输出一条，并附带期间被抑制的条数，
+ * 避免攻击流量下日志写满磁盘.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public final class HmacFailureMonitor {
+
+    public static final long LOG_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final Logger LOG = LoggerFactory.getLogger(HmacFailureMonitor.class);
+    private static final Reason[] REASONS = Reason.values();
+    private static final AtomicLongArray COUNTS = new AtomicLongArray(REASONS.length);
+    private static final AtomicLongArray NEXT_LOG_MILLIS = new AtomicLongArray(REASONS.length);
+    private static final AtomicLong[] SUPPRESSED = new AtomicLong[REASONS.length];
+
+    static {
+        for (int i = 0; i < SUPPRESSED.length; i++) {
+            SUPPRESSED[i] = new AtomicLong();
+        }
+    }
+
+    private HmacFailureMonitor() {
+    }
+
+    /**
+     * 记录一次签名失败.
+     *
+     * @param e
+     *            签名失败的异常
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static void record(HmacSignatureException e) {
+        final int index = e.getReason().ordinal();
+        COUNTS.incrementAndGet(index);
+        final long now = System.currentTimeMillis();
+        final long next = NEXT_LOG_MILLIS.get(index);
+        if (now < next || !NEXT_LOG_MILLIS.compareAndSet(index, next, now + LOG_INTERVAL_MILLIS)) {
+            SUPPRESSED[index].incrementAndGet();
+            return;
+        }
+        final long suppressed = SUPPRESSED[index].getAndSet(0);
+        if (e.getReason() == Reason.SIGNATURE_MISMATCH || e.getReason() == Reason.MISSING_FIELD) {
+            // 客户端错误，不记录堆栈
+            LOG.warn("HMAC签名失败[{}]: {} (此前{}条同类日志已被抑制)", e.getReason(), e.getMessage(), suppressed);
+        } else {
+            LOG.error("HMAC签名失败[{}]: {} (此前{}条同类日志已被抑制)", e.getReason(), e.getMessage(), suppressed, e);
+        }
+    }
+
+    /**
+     * 获取指定原因的失败次数.
+     *
+     * @param reason
+     *            失败原因
+     * @return 失败次数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static long getCount(Reason reason) {
+        return COUNTS.get(reason.ordinal());
+    }
+
+    /**
+     * 获取所有原因的失败次数.
+     *
+     * @return 失败原因与失败次数的对应关系
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static Map<Reason, Long> getCounts() {
+        final Map<Reason, Long> counts = new EnumMap<Reason, Long>(Reason.class);
+        for (Reason reason : REASONS) {
+            counts.put(reason, COUNTS.get(reason.ordinal()));
+        }
+        return counts;
+    }
+}
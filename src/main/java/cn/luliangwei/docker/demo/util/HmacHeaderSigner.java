@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2017 signit.cn. All rights reserved.
+ */
+package cn.luliangwei.docker.demo.util;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.springframework.util.Assert;
+
+/**
+ * 基于预计算请求头前缀的HMAC签名器（仅适用于 <code>BuilderMode.ONLY_HEADER</code>）.<br/>
+ * <br/>
+ * 同一客户端的请求中，<code>apiKey</code> 和 <code>contentType</code> 通常保持不变.
+ * 按 {@link HmacSignatureBuilder} 的字段顺序，二者恰好位于最前面，因此：
+ * <ul>
+ * <li>1.构造时用密钥初始化HMAC，并将 "apiKey\ncontentType\n" 加入运算，保存为模板状态</li>
+ * <li>2.每次签名时 <code>clone()</code> 模板状态，只需继续加入 date/host/method/nonce/resource/scheme</li>
+ * <li>3.若算法提供者不支持 <code>clone()</code>，则退化为重新初始化并加入已编码好的前缀字节</li>
+ * </ul>
+ * 签名结果与 <code>HmacSignatureBuilder.build(BuilderMode.ONLY_HEADER)</code> 完全一致.<br/>
+ * 实例构造后不再改变，可被多线程共享.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class HmacHeaderSigner {
+
+    private final String algorithm;
+    private final String charset;
+    private final byte delimiter;
+    private final byte[] apiSecret;
+    private final byte[] prefix;
+    private final Mac template;
+
+    /**
+     * 使用默认算法、字符集和分隔符的构造方法.
+     *
+     * @param apiKey
+     *            服务器授权给客户端的唯一公开标识
+     * @param apiSecret
+     *            服务器授权给客户端的私密密钥
+     * @param contentType
+     *            请求内容类型（Content-Type）
+     * @throws GeneralSecurityException
+     *             不支持的算法或不合法的密钥
+     * @throws IOException
+     *             不支持的字符集
+     */
+    public HmacHeaderSigner(String apiKey, byte[] apiSecret, String contentType)
+            throws GeneralSecurityException, IOException {
+        this(HmacSignatureBuilder.DEFAULT_ALGORITHM, HmacSignatureBuilder.DEFAULT_CHARSET,
+                HmacSignatureBuilder.DEFAULT_DELIMITER, apiKey, apiSecret, contentType);
+    }
+
+    /**
+     * 完整参数的构造方法.
+     *
+     * @param algorithm
+     *            HMAC的算法
+     * @param charset
+     *            加入运算的相关字符的字符集编码
+     * @param delimiter
+     *            加入运算的字符间的分隔符
+     * @param apiKey
+     *            服务器授权给客户端的唯一公开标识
+     * @param apiSecret
+     *            服务器授权给客户端的私密密钥
+     * @param contentType
+     *            请求内容类型（Content-Type）
+     * @throws GeneralSecurityException
+     *             不支持的算法或不合法的密钥
+     * @throws IOException
+     *             不支持的字符集
+     */
+    public HmacHeaderSigner(String algorithm, String charset, byte delimiter, String apiKey, byte[] apiSecret,
+            String contentType) throws GeneralSecurityException, IOException {
+        Assert.notNull(algorithm, "algorithm not null");
+        Assert.notNull(apiKey, "apiKey not null");
+        Assert.notNull(apiSecret, "apiSecret not null");
+        Assert.notNull(contentType, "contentType not null");
+        this.algorithm = algorithm;
+        this.charset = charset;
+        this.delimiter = delimiter;
+        this.apiSecret = apiSecret.clone();
+        final byte[] apiKeyBytes = apiKey.getBytes(charset);
+        final byte[] contentTypeBytes = contentType.getBytes(charset);
+        this.prefix = new byte[apiKeyBytes.length + contentTypeBytes.length + 2];
+        System.arraycopy(apiKeyBytes, 0, prefix, 0, apiKeyBytes.length);
+        prefix[apiKeyBytes.length] = delimiter;
+        System.arraycopy(contentTypeBytes, 0, prefix, apiKeyBytes.length + 1, contentTypeBytes.length);
+        prefix[prefix.length - 1] = delimiter;
+        final Mac mac = newPrefixedMac();
+        this.template = isCloneable(mac) ? mac : null;
+    }
+
+    /**
+     * 判断当前算法提供者是否支持克隆HMAC状态.
+     *
+     * @return <code>true</code> - 支持，签名时直接克隆模板状态; <code>false</code> - 不支持，签名时重新初始化
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public boolean isCloneSupported() {
+        return template != null;
+    }
+
+    /**
+     * 对请求头的可变部分签名.
+     *
+     * @param date
+     *            请求时间（Date）
+     * @param host
+     *            主机名称
+     * @param method
+     *            请求方法
+     * @param nonce
+     *            随机数
+     * @param resource
+     *            请求资源地址（URI）
+     * @param scheme
+     *            协议名称
+     * @return HMAC原始签名摘要值
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public byte[] sign(String date, String host, String method, String nonce, String resource, String scheme) {
+        final Mac digest = startDigest();
+        try {
+            final HmacCanonicalizer canonical = HmacCanonicalizer.get(charset);
+            Assert.notNull(date, "date not null");
+            canonical.append(date).append(delimiter);
+            Assert.notNull(host, "host not null");
+            canonical.append(host).append(delimiter);
+            Assert.notNull(method, "method not null");
+            canonical.append(method).append(delimiter);
+            Assert.notNull(nonce, "nonce not null");
+            canonical.append(nonce).append(delimiter);
+            Assert.notNull(resource, "resource not null");
+            canonical.append(resource).append(delimiter);
+            Assert.notNull(scheme, "scheme not null");
+            canonical.append(scheme).append(delimiter);
+            canonical.flushTo(digest);
+        } catch (IOException e) {
+            throw new IllegalStateException("未能成功编码请求头: " + e.getMessage(), e);
+        }
+        return digest.doFinal();
+    }
+
+    /**
+     * 对请求头的可变部分签名，并获得base64编码表示的签名摘要值.
+     *
+     * @param date
+     *            请求时间（Date）
+     * @param host
+     *            主机名称
+     * @param method
+     *            请求方法
+     * @param nonce
+     *            随机数
+     * @param resource
+     *            请求资源地址（URI）
+     * @param scheme
+     *            协议名称
+     * @return HMAC的base64编码表示的签名摘要值字符串
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public String signAsBase64(String date, String host, String method, String nonce, String resource,
+            String scheme) {
+        return SignatureCodec.encodeBase64(sign(date, host, method, nonce, resource, scheme));
+    }
+
+    /**
+     * 对请求头的可变部分签名，并获得16进制编码表示的签名摘要值.
+     *
+     * @param date
+     *            请求时间（Date）
+     * @param host
+     *            主机名称
+     * @param method
+     *            请求方法
+     * @param nonce
+     *            随机数
+     * @param resource
+     *            请求资源地址（URI）
+     * @param scheme
+     *            协议名称
+     * @return HMAC的16进制编码表示的签名摘要值字符串
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public String signAsHex(String date, String host, String method, String nonce, String resource, String scheme) {
+        return SignatureCodec.encodeHex(sign(date, host, method, nonce, resource, scheme));
+    }
+
+    // 模板状态只读，多线程同时克隆是安全的
+    private Mac startDigest() {
+        try {
+            if (template != null) {
+                return (Mac) template.clone();
+            }
+            return newPrefixedMac();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("未能成功创建摘要: " + e.getMessage(), e);
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("未能成功克隆摘要: " + e.getMessage(), e);
+        }
+    }
+
+    private Mac newPrefixedMac() throws GeneralSecurityException {
+        final Mac mac = Mac.getInstance(algorithm);
+        mac.init(new SecretKeySpec(apiSecret, algorithm));
+        mac.update(prefix);
+        return mac;
+    }
+
+    private static boolean isCloneable(Mac mac) {
+        try {
+            mac.clone();
+            return true;
+        } catch (CloneNotSupportedException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright © 2017 signit.cn. All rights reserved.
+ */
+package cn.luliangwei.docker.demo.util;
+
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 已初始化（已绑定密钥）的HMAC实例池.<br/>
+ * <br/>
+ * 按 (<code>algorithm</code>, <code>apiKey</code>) 缓存已经完成 <code>Mac.init</code> 的实例，
+ * 避免每次构建签名时重复进行算法提供者查找和密钥编排.<br/>
+ * <ul>
+ * <li>1.每个 (<code>algorithm</code>, <code>apiKey</code>) 最多缓存 <code>maxIdlePerKey</code>
+ * 个空闲实例，最多缓存 <code>maxKeys</code> 组；组数已满时淘汰最久未借出的一组，为新的组腾出位置</li>
+ * <li>2.借出时比较密钥，若 <code>apiKey</code> 对应的 <code>apiSecret</code> 已轮换，则淘汰该组全部旧实例</li>
+ * <li>3.提供命中率、淘汰数、池大小等计数，便于观察池的效果</li>
+ * <li>4.以预先构建的 {@link SecretKeySpec} 借出时，新建实例直接使用该密钥；
+ * 与上次匹配的是同一个密钥对象时不再逐字节比较</li>
+ * </ul>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class HmacMacPool {
+
+    public static final int DEFAULT_MAX_IDLE_PER_KEY = 16;
+    public static final int DEFAULT_MAX_KEYS = 1024;
+
+    private static final HmacMacPool DEFAULT_POOL = new HmacMacPool(DEFAULT_MAX_IDLE_PER_KEY, DEFAULT_MAX_KEYS);
+
+    private final ConcurrentMap<PoolKey, Slot> slots = new ConcurrentHashMap<PoolKey, Slot>();
+    private final int maxIdlePerKey;
+    private final int maxKeys;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    /**
+     * 使用默认容量的构造方法.
+     *
+     */
+    public HmacMacPool() {
+        this(DEFAULT_MAX_IDLE_PER_KEY, DEFAULT_MAX_KEYS);
+    }
+
+    /**
+     * 指定容量的构造方法.
+     *
+     * @param maxIdlePerKey
+     *            每个 (<code>algorithm</code>, <code>apiKey</code>) 最多缓存的空闲实例数
+     * @param maxKeys
+     *            最多缓存的 (<code>algorithm</code>, <code>apiKey</code>) 组数
+     */
+    public HmacMacPool(int maxIdlePerKey, int maxKeys) {
+        if (maxIdlePerKey < 0 || maxKeys < 0) {
+            throw new IllegalArgumentException("pool capacity must not be negative");
+        }
+        this.maxIdlePerKey = maxIdlePerKey;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * 获取全局共享的默认实例池.
+     *
+     * @return 默认实例池
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static HmacMacPool getDefault() {
+        return DEFAULT_POOL;
+    }
+
+    /**
+     * 借出一个已用 <code>apiSecret</code> 初始化的HMAC实例.<br/>
+     * 使用完毕后必须调用 {@link Lease#release()} 归还.
+     *
+     * @param algorithm
+     *            HMAC的算法
+     * @param apiKey
+     *            服务器授权给客户端的唯一公开标识，为<code>null</code>时不入池
+     * @param apiSecret
+     *            服务器授权给客户端的私密密钥
+     * @return 借出的HMAC实例租约
+     * @throws NoSuchAlgorithmException
+     *             不支持的算法
+     * @throws InvalidKeyException
+     *             不合法的密钥
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public Lease borrow(String algorithm, String apiKey, byte[] apiSecret)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        return borrow(algorithm, apiKey, apiSecret, null);
+    }
+
+    /**
+     * 借出一个已用预先构建的密钥初始化的HMAC实例.<br/>
+     * 同一个 <code>apiKey</code> 反复使用同一个密钥对象时，既不复制也不比较密钥内容.
+     * 使用完毕后必须调用 {@link Lease#release()} 归还.
+     *
+     * @param algorithm
+     *            HMAC的算法
+     * @param apiKey
+     *            服务器授权给客户端的唯一公开标识，为<code>null</code>时不入池
+     * @param secretKey
+     *            由 <code>apiSecret</code> 构建的密钥
+     * @return 借出的HMAC实例租约
+     * @throws NoSuchAlgorithmException
+     *             不支持的算法
+     * @throws InvalidKeyException
+     *             不合法的密钥
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public Lease borrow(String algorithm, String apiKey, SecretKeySpec secretKey)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        if (secretKey == null) {
+            throw new InvalidKeyException("secretKey not null");
+        }
+        return borrow(algorithm, apiKey, null, secretKey);
+    }
+
+    // apiSecret 与 secretKey 二选一
+    private Lease borrow(String algorithm, String apiKey, byte[] apiSecret, SecretKeySpec secretKey)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        if (apiKey == null || (apiSecret == null && secretKey == null)) {
+            missCount.incrementAndGet();
+            return new Lease(null, newMac(algorithm, apiSecret, secretKey));
+        }
+        final PoolKey key = new PoolKey(algorithm, apiKey);
+        Slot slot = slots.get(key);
+        if (slot != null && !slot.matches(apiSecret, secretKey)) {
+            // apiSecret 已轮换，旧实例全部作废
+            retire(key, slot);
+            slot = null;
+        }
+        if (slot == null) {
+            if (slots.size() >= maxKeys) {
+                retireLeastRecentlyUsed();
+            }
+            if (slots.size() < maxKeys) {
+                final Slot created = new Slot(apiSecret, secretKey);
+                final Slot existing = slots.putIfAbsent(key, created);
+                slot = existing == null ? created : existing;
+                if (!slot.matches(apiSecret, secretKey)) {
+                    slot = null;
+                }
+            } else {
+                // 淘汰后仍被并发新建的组占满（或 maxKeys 为 0），本次不入池
+                overflowCount.incrementAndGet();
+            }
+        }
+        if (slot != null) {
+            slot.lastUsed = System.nanoTime();
+            final Mac mac = slot.poll();
+            if (mac != null) {
+                hitCount.incrementAndGet();
+                return new Lease(slot, mac);
+            }
+        }
+        missCount.incrementAndGet();
+        return new Lease(slot, newMac(algorithm, apiSecret, secretKey));
+    }
+
+    /**
+     * 淘汰指定 <code>apiKey</code> 在所有算法下缓存的实例（如：密钥轮换或吊销时调用）.
+     *
+     * @param apiKey
+     *            服务器授权给客户端的唯一公开标识
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void evict(String apiKey) {
+        for (Map.Entry<PoolKey, Slot> e : slots.entrySet()) {
+            if (e.getKey().apiKey.equals(apiKey)) {
+                retire(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /**
+     * 清空所有缓存的实例.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void clear() {
+        for (Map.Entry<PoolKey, Slot> e : slots.entrySet()) {
+            retire(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * 获取借出时命中空闲实例的次数.
+     *
+     * @return 命中次数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 获取借出时需新建实例的次数.
+     *
+     * @return 未命中次数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 获取因密钥轮换、主动淘汰或组数已满而作废的实例组数.
+     *
+     * @return 淘汰次数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 获取因组数已满而未能入池的借出次数.<br/>
+     * 持续增长说明 <code>maxKeys</code> 过小或 <code>apiKey</code> 变化过快，池已无法发挥作用.
+     *
+     * @return 未入池的借出次数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    /**
+     * 获取命中率.
+     *
+     * @return 命中率（0.0 ~ 1.0），尚无借出记录时返回 <code>0.0</code>
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public double getHitRate() {
+        final long hits = hitCount.get();
+        final long total = hits + missCount.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * 获取当前池中空闲实例的总数.
+     *
+     * @return 空闲实例总数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public int getPoolSize() {
+        int size = 0;
+        for (Slot slot : slots.values()) {
+            size += slot.idleCount.get();
+        }
+        return size;
+    }
+
+    /**
+     * 获取当前缓存的 (<code>algorithm</code>, <code>apiKey</code>) 组数.
+     *
+     * @return 组数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public int getKeyCount() {
+        return slots.size();
+    }
+
+    // 组数已满时淘汰最久未借出的一组；只在新建组时扫描，命中路径不受影响
+    private void retireLeastRecentlyUsed() {
+        Map.Entry<PoolKey, Slot> eldest = null;
+        for (Map.Entry<PoolKey, Slot> e : slots.entrySet()) {
+            if (eldest == null || e.getValue().lastUsed - eldest.getValue().lastUsed < 0) {
+                eldest = e;
+            }
+        }
+        if (eldest != null) {
+            retire(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private void retire(PoolKey key, Slot slot) {
+        if (slots.remove(key, slot)) {
+            evictionCount.incrementAndGet();
+        }
+        slot.retired = true;
+        slot.idle.clear();
+        slot.idleCount.set(0);
+    }
+
+    private static Mac newMac(String algorithm, byte[] apiSecret, SecretKeySpec secretKey)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        final Mac mac = Mac.getInstance(algorithm);
+        mac.init(secretKey != null ? secretKey : new SecretKeySpec(apiSecret, algorithm));
+        return mac;
+    }
+
+    /**
+     * HMAC实例的租约.<br/>
+     * 持有借出的实例，归还时重置其状态并放回所属的组（若该组未被淘汰且未满）.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public final class Lease {
+
+        private final Slot slot;
+        private final Mac mac;
+
+        private Lease(Slot slot, Mac mac) {
+            this.slot = slot;
+            this.mac = mac;
+        }
+
+        /**
+         * 获取借出的HMAC实例.
+         *
+         * @return 已初始化的HMAC实例
+         * @author luliangwei
+         * @since 1.0.0
+         */
+        public Mac getMac() {
+            return mac;
+        }
+
+        /**
+         * 归还HMAC实例.
+         *
+         * @author luliangwei
+         * @since 1.0.0
+         */
+        public void release() {
+            mac.reset();
+            if (slot != null) {
+                slot.offer(mac, maxIdlePerKey);
+            }
+        }
+    }
+
+    private static final class Slot {
+
+        private final byte[] secret;
+        private final Queue<Mac> idle = new ConcurrentLinkedQueue<Mac>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+        // 最近一次匹配成功的密钥对象
+        private volatile SecretKeySpec lastKey;
+        private volatile boolean retired;
+        // 最近一次借出的时间（System.nanoTime()），用于组数已满时的淘汰
+        private volatile long lastUsed = System.nanoTime();
+
+        private Slot(byte[] secret, SecretKeySpec secretKey) {
+            // getEncoded() 返回的已是副本
+            this.secret = secretKey != null ? secretKey.getEncoded() : secret.clone();
+            this.lastKey = secretKey;
+        }
+
+        private boolean matches(byte[] apiSecret, SecretKeySpec secretKey) {
+            if (secretKey == null) {
+                return MessageDigest.isEqual(secret, apiSecret);
+            }
+            if (secretKey == lastKey) {
+                return true;
+            }
+            if (MessageDigest.isEqual(secret, secretKey.getEncoded())) {
+                lastKey = secretKey;
+                return true;
+            }
+            return false;
+        }
+
+        private Mac poll() {
+            final Mac mac = idle.poll();
+            if (mac != null) {
+                idleCount.decrementAndGet();
+            }
+            return mac;
+        }
+
+        private void offer(Mac mac, int maxIdle) {
+            if (retired || idleCount.incrementAndGet() > maxIdle) {
+                idleCount.decrementAndGet();
+                return;
+            }
+            idle.offer(mac);
+        }
+    }
+
+    private static final class PoolKey {
+
+        private final String algorithm;
+        private final String apiKey;
+
+        private PoolKey(String algorithm, String apiKey) {
+            this.algorithm = algorithm;
+            this.apiKey = apiKey;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * algorithm.hashCode() + apiKey.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PoolKey)) {
+                return false;
+            }
+            final PoolKey other = (PoolKey) obj;
+            return algorithm.equals(other.algorithm) && apiKey.equals(other.apiKey);
+        }
+    }
+}
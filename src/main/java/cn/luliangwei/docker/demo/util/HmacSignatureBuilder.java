@@ -23,15 +23,25 @@
  */
 package cn.luliangwei.docker.demo.util;
 
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.security.InvalidKeyException;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
-import javax.xml.bind.DatatypeConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 
+import cn.luliangwei.docker.demo.util.HmacSignatureException.Reason;
+
 /**
  * HMAC认证请求相关构建按工具（包括摘要计算，摘要值比较等)类.<br/>
  * <br/>
@@ -77,6 +87,8 @@ public class HmacSignatureBuilder {
     public static final String DEFAULT_ALGORITHM = "HmacSHA512";
     public static final String DEFAULT_CHARSET = "UTF-8";
     public static final byte DEFAULT_DELIMITER = '\n';
+    public static final int PAYLOAD_CHUNK_SIZE = 8192;
+    private static final long PAYLOAD_MAPPING_WINDOW = 64L * 1024 * 1024;
     private byte delimiter = DEFAULT_DELIMITER;
     private String charset = DEFAULT_CHARSET;
     private String algorithm = DEFAULT_ALGORITHM;
@@ -87,9 +99,11 @@ public class HmacSignatureBuilder {
     private String nonce;
     private String apiKey;
     private byte[] apiSecret;
-    private byte[] payload;
+    private SecretKeySpec secretKey;
+    private PayloadSource payload;
     private String date;
     private String contentType;
+    private HmacMacPool macPool = HmacMacPool.getDefault();
 
     /**
      * 默认无参构造方法.
@@ -333,6 +347,24 @@ public class HmacSignatureBuilder {
      */
     public HmacSignatureBuilder apiSecret(byte[] apiSecret) {
         this.apiSecret = apiSecret;
+        this.secretKey = null;
+        return this;
+    }
+
+    /**
+     * 以预先构建的密钥设置服务器授权给客户端的私密密钥（如：{@link cn.luliangwei.docker.demo.repository.CredentialStore}
+     * 中缓存的密钥），构建时不再复制和编码 <code>apiSecret</code>.<br/>
+     * 与 {@link #apiSecret(byte[])} 互相覆盖.
+     *
+     * @param secretKey
+     *            由 <code>apiSecret</code> 构建的密钥
+     * @return 当前HMAC建造器对象
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public HmacSignatureBuilder apiSecret(SecretKeySpec secretKey) {
+        this.secretKey = secretKey;
+        this.apiSecret = null;
         return this;
     }
 
@@ -346,7 +378,74 @@ public class HmacSignatureBuilder {
      * @since 1.0.0
      */
     public HmacSignatureBuilder payload(byte[] payload) {
-        this.payload = payload;
+        this.payload = payload == null ? null : new BytesPayload(payload);
+        return this;
+    }
+
+    /**
+     * 设置需要加入运算的请求数据（流式）.<br/>
+     * 构建时按 {@link #PAYLOAD_CHUNK_SIZE} 分块读取并加入运算，不会将全部数据载入内存.<br/>
+     * 注意：数据流只能被读取一次，即只能构建一次，且不会被关闭.
+     *
+     * @param payload
+     *            请求数据的输入流
+     * @return 当前HMAC建造器对象
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public HmacSignatureBuilder payload(InputStream payload) {
+        this.payload = payload == null ? null : new StreamPayload(payload);
+        return this;
+    }
+
+    /**
+     * 设置需要加入运算的请求数据（支持直接内存缓冲区）.<br/>
+     * 运算范围为 <code>position</code> 至 <code>limit</code> 间的数据，构建时不会改变缓冲区的位置.
+     *
+     * @param payload
+     *            请求数据的缓冲区
+     * @return 当前HMAC建造器对象
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public HmacSignatureBuilder payload(ByteBuffer payload) {
+        this.payload = payload == null ? null : new BufferPayload(payload);
+        return this;
+    }
+
+    /**
+     * 设置需要加入运算的请求数据（文件的指定区域）.<br/>
+     * 构建时以只读方式分段内存映射该区域并加入运算.
+     *
+     * @param channel
+     *            请求数据所在的文件通道
+     * @param position
+     *            区域在文件中的起始位置
+     * @param size
+     *            区域的长度
+     * @return 当前HMAC建造器对象
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public HmacSignatureBuilder payload(FileChannel channel, long position, long size) {
+        Assert.notNull(channel, "channel not null");
+        Assert.isTrue(position >= 0 && size >= 0, "position and size must not be negative");
+        this.payload = new FileRegionPayload(channel, position, size);
+        return this;
+    }
+
+    /**
+     * 设置构建时使用的HMAC实例池（默认：{@link HmacMacPool#getDefault()}）.
+     *
+     * @param macPool
+     *            HMAC实例池
+     * @return 当前HMAC建造器对象
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public HmacSignatureBuilder macPool(HmacMacPool macPool) {
+        Assert.notNull(macPool, "macPool not null");
+        this.macPool = macPool;
         return this;
     }
 
@@ -363,7 +462,8 @@ public class HmacSignatureBuilder {
     }
 
     /**
-     * 完成HMAC认证消息的构建,并获得签名摘要值.
+     * 完成HMAC认证消息的构建,并获得签名摘要值.<br/>
+     * 构建失败时按原因计数并输出限流日志（见 {@link HmacFailureMonitor}）.
      *
      * @param builderMode
      *            构建模式的枚举
@@ -373,11 +473,51 @@ public class HmacSignatureBuilder {
      */
     public byte[] build(BuilderMode builderMode) {
         try {
-            LOG.debug("使用的摘要算法为:{}", algorithm);
-            Assert.notNull(algorithm, "algorithm not null");
-            final Mac digest = Mac.getInstance(algorithm);
-            SecretKeySpec secretKey = new SecretKeySpec(apiSecret, algorithm);
-            digest.init(secretKey);
+            return sign(builderMode);
+        } catch (RuntimeException e) {
+            recordFailure(e);
+            return null;
+        }
+    }
+
+    /**
+     * 完成HMAC认证消息的构建,并获得签名摘要值.<br/>
+     * 与 {@link #build(BuilderMode)} 不同，构建失败时抛出带有失败原因的异常.
+     *
+     * @param builderMode
+     *            构建模式的枚举
+     * @return HMAC原始签名摘要值的内存数据字节
+     * @throws HmacSignatureException
+     *             构建失败，通过 {@link HmacSignatureException#getReason()} 获取失败原因
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public byte[] sign(BuilderMode builderMode) throws HmacSignatureException {
+        return sign(builderMode, macPool);
+    }
+
+    // 从指定的实例池借出HMAC实例完成构建
+    private byte[] sign(BuilderMode builderMode, HmacMacPool macPool) throws HmacSignatureException {
+        if (builderMode == null) {
+            throw new HmacSignatureException(Reason.UNSUPPORTED_MODE, "builderMode not null");
+        }
+        requireField(algorithm, "algorithm");
+        requireField(charset, "charset");
+        if (secretKey == null) {
+            requireField(apiSecret, "apiSecret");
+        }
+        LOG.debug("使用的摘要算法为:{}", algorithm);
+        final HmacMacPool.Lease lease;
+        try {
+            lease = secretKey != null ? macPool.borrow(algorithm, apiKey, secretKey)
+                    : macPool.borrow(algorithm, apiKey, apiSecret);
+        } catch (NoSuchAlgorithmException e) {
+            throw new HmacSignatureException(Reason.UNKNOWN_ALGORITHM, "不支持的摘要算法: " + algorithm, e);
+        } catch (InvalidKeyException | IllegalArgumentException e) {
+            throw new HmacSignatureException(Reason.INVALID_KEY, "不合法的密钥: " + e.getMessage(), e);
+        }
+        try {
+            final Mac digest = lease.getMac();
             switch (builderMode) {
             case FULL:
                 updateFullBuildDigest(digest);
@@ -386,77 +526,79 @@ public class HmacSignatureBuilder {
                 updateOnlyHeaderBuildDigest(digest);
                 break;
             default:
-                LOG.error("不支持的参数类型: {}", builderMode);
-                return null;
+                throw new HmacSignatureException(Reason.UNSUPPORTED_MODE, "不支持的参数类型: " + builderMode);
             }
-            final byte[] signatureBytes = digest.doFinal();
-            digest.reset();
-            return signatureBytes;
-        } catch (Throwable e) {
-            LOG.error("未能成功创建摘要: " + e.getMessage());
-            return null;
+            return digest.doFinal();
+        } catch (CharacterCodingException | UnsupportedCharsetException | IllegalCharsetNameException e) {
+            throw new HmacSignatureException(Reason.UNSUPPORTED_CHARSET, "字符编码失败: " + charset, e);
+        } catch (IOException | IllegalStateException e) {
+            throw new HmacSignatureException(Reason.PAYLOAD_ERROR, "读取请求数据失败: " + e.getMessage(), e);
+        } finally {
+            lease.release();
+        }
+    }
+
+    private static void requireField(Object value, String name) {
+        if (value == null) {
+            throw new HmacSignatureException(Reason.MISSING_FIELD, name + " not null");
+        }
+    }
+
+    private static void recordFailure(RuntimeException e) {
+        if (e instanceof HmacSignatureException) {
+            HmacFailureMonitor.record((HmacSignatureException) e);
+        } else {
+            HmacFailureMonitor.record(new HmacSignatureException(Reason.INTERNAL_ERROR, String.valueOf(e.getMessage()), e));
         }
     }
 
     // 完整的数据运算
-    private void updateFullBuildDigest(Mac digest) throws IllegalStateException, UnsupportedEncodingException {
-        Assert.notNull(apiKey, "apiKey not null");
-        digest.update(apiKey.getBytes(charset));
-        digest.update(delimiter);
-        Assert.notNull(contentType, "contentType not null");
-        digest.update(contentType.getBytes(charset));
-        digest.update(delimiter);
-        Assert.notNull(date, "date not null");
-        digest.update((date.getBytes(charset)));
-        digest.update(delimiter);
-        Assert.notNull(host, "host not null");
-        digest.update(host.getBytes(charset));
-        digest.update(delimiter);
-        Assert.notNull(method, "method not null");
-        digest.update(method.getBytes(charset));
-        digest.update(delimiter);
-        Assert.notNull(nonce, "nonce not null");
-        digest.update(nonce.getBytes(charset));
+    private void updateFullBuildDigest(Mac digest) throws IllegalStateException, IOException {
+        final HmacCanonicalizer canonical = HmacCanonicalizer.get(charset);
+        requireField(apiKey, "apiKey");
+        canonical.append(apiKey).append(delimiter);
+        requireField(contentType, "contentType");
+        canonical.append(contentType).append(delimiter);
+        requireField(date, "date");
+        canonical.append(date).append(delimiter);
+        requireField(host, "host");
+        canonical.append(host).append(delimiter);
+        requireField(method, "method");
+        canonical.append(method).append(delimiter);
+        requireField(nonce, "nonce");
+        canonical.append(nonce);
         if (payload != null) {
-            digest.update(delimiter);
-            Assert.notNull(payload, "payload not empty");
-            digest.update(payload);
+            canonical.append(delimiter).flushTo(digest);
+            payload.update(digest);
         }
-        digest.update(delimiter);
-        Assert.notNull(resource, "resource not null");
-        digest.update(resource.getBytes(charset));
-        digest.update(delimiter);
-        Assert.notNull(scheme, "scheme not null");
-        digest.update(scheme.getBytes(charset));
-        digest.update(delimiter);
+        canonical.append(delimiter);
+        requireField(resource, "resource");
+        canonical.append(resource).append(delimiter);
+        requireField(scheme, "scheme");
+        canonical.append(scheme).append(delimiter);
+        canonical.flushTo(digest);
     }
 
     // 仅包含请求头的数据运算
-    private void updateOnlyHeaderBuildDigest(Mac digest) throws IllegalStateException, UnsupportedEncodingException {
-        Assert.notNull(apiKey, "apiKey not null");
-        digest.update(apiKey.getBytes(charset));
-        digest.update(delimiter);
-        Assert.notNull(contentType, "contentType not null");
-        digest.update(contentType.getBytes(charset));
-        digest.update(delimiter);
-        Assert.notNull(date, "date not null");
-        digest.update(date.getBytes(charset));
-        digest.update(delimiter);
-        Assert.notNull(host, "host not null");
-        digest.update(host.getBytes(charset));
-        digest.update(delimiter);
-        Assert.notNull(method, "method not null");
-        digest.update(method.getBytes(charset));
-        digest.update(delimiter);
-        Assert.notNull(nonce, "nonce not null");
-        digest.update(nonce.getBytes(charset));
-        digest.update(delimiter);
-        Assert.notNull(resource, "resource not null");
-        digest.update(resource.getBytes(charset));
-        digest.update(delimiter);
-        Assert.notNull(scheme, "scheme not null");
-        digest.update(scheme.getBytes(charset));
-        digest.update(delimiter);
+    private void updateOnlyHeaderBuildDigest(Mac digest) throws IllegalStateException, IOException {
+        final HmacCanonicalizer canonical = HmacCanonicalizer.get(charset);
+        requireField(apiKey, "apiKey");
+        canonical.append(apiKey).append(delimiter);
+        requireField(contentType, "contentType");
+        canonical.append(contentType).append(delimiter);
+        requireField(date, "date");
+        canonical.append(date).append(delimiter);
+        requireField(host, "host");
+        canonical.append(host).append(delimiter);
+        requireField(method, "method");
+        canonical.append(method).append(delimiter);
+        requireField(nonce, "nonce");
+        canonical.append(nonce).append(delimiter);
+        requireField(resource, "resource");
+        canonical.append(resource).append(delimiter);
+        requireField(scheme, "scheme");
+        canonical.append(scheme).append(delimiter);
+        canonical.flushTo(digest);
     }
 
     /**
@@ -485,7 +627,7 @@ public class HmacSignatureBuilder {
         if (ret == null) {
             return null;
         }
-        return DatatypeConverter.printHexBinary(ret);
+        return SignatureCodec.encodeHex(ret);
     }
 
     /**
@@ -514,7 +656,7 @@ public class HmacSignatureBuilder {
         if (ret == null) {
             return null;
         }
-        return DatatypeConverter.printBase64Binary(ret);
+        return SignatureCodec.encodeBase64(ret);
     }
 
     /**
@@ -697,8 +839,13 @@ public class HmacSignatureBuilder {
      * @since 1.0.0
      */
     public boolean isHashEquals(byte[] expectedSignature, BuilderMode builderMode) {
-        final byte[] signature = build(builderMode);
-        return MessageDigest.isEqual(signature, expectedSignature);
+        try {
+            verify(expectedSignature, builderMode);
+            return true;
+        } catch (RuntimeException e) {
+            recordFailure(e);
+            return false;
+        }
     }
 
     /**
@@ -730,10 +877,10 @@ public class HmacSignatureBuilder {
      */
     public boolean isHashEqualsWithHex(String expectedSignatureHex, BuilderMode builderMode) {
         try {
-            final byte[] signature = build(builderMode);
-            return MessageDigest.isEqual(signature, DatatypeConverter.parseHexBinary(expectedSignatureHex));
-        } catch (Throwable e) {
-            LOG.warn(e.getMessage());
+            verifyWithHex(expectedSignatureHex, builderMode);
+            return true;
+        } catch (RuntimeException e) {
+            recordFailure(e);
             return false;
         }
     }
@@ -767,11 +914,186 @@ public class HmacSignatureBuilder {
      */
     public boolean isHashEqualsWithBase64(String expectedSignatureBase64, BuilderMode builderMode) {
         try {
-            final byte[] signature = build(builderMode);
-            return MessageDigest.isEqual(signature, DatatypeConverter.parseBase64Binary(expectedSignatureBase64));
-        } catch (Throwable e) {
-            LOG.warn(e.getMessage());
+            verifyWithBase64(expectedSignatureBase64, builderMode);
+            return true;
+        } catch (RuntimeException e) {
+            recordFailure(e);
             return false;
         }
     }
+
+    /**
+     * 校验期望摘要是否与已构建的摘要相等.
+     *
+     * @param expectedSignature
+     *            传入的期望摘要
+     * @param builderMode
+     *            采用的构建模式
+     * @throws HmacSignatureException
+     *             构建失败或摘要不相等（原因为 <code>SIGNATURE_MISMATCH</code>）
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void verify(byte[] expectedSignature, BuilderMode builderMode) throws HmacSignatureException {
+        verify(expectedSignature, builderMode, macPool);
+    }
+
+    /**
+     * 使用指定的HMAC实例池判断期望摘要是否与已构建的摘要相等，不使用建造器自身设置的实例池.
+     *
+     * @param expectedSignature
+     *            传入的期望摘要
+     * @param builderMode
+     *            采用的构建模式
+     * @param macPool
+     *            本次构建使用的HMAC实例池
+     * @return <code>true</code> - 期望摘要与已构建的摘要相等; <code>false</code> -
+     *         期望摘要与已构建的摘要不相等
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    boolean isHashEquals(byte[] expectedSignature, BuilderMode builderMode, HmacMacPool macPool) {
+        try {
+            verify(expectedSignature, builderMode, macPool);
+            return true;
+        } catch (RuntimeException e) {
+            recordFailure(e);
+            return false;
+        }
+    }
+
+    private void verify(byte[] expectedSignature, BuilderMode builderMode, HmacMacPool macPool)
+            throws HmacSignatureException {
+        final byte[] signature = sign(builderMode, macPool);
+        if (expectedSignature == null || !MessageDigest.isEqual(signature, expectedSignature)) {
+            throw HmacSignatureException.signatureMismatch();
+        }
+    }
+
+    /**
+     * 校验期望摘要是否与已构建的摘要相等.
+     *
+     * @param expectedSignatureHex
+     *            传入的期望摘要16进制编码表示的字符串
+     * @param builderMode
+     *            采用的构建模式
+     * @throws HmacSignatureException
+     *             构建失败或摘要不相等（原因为 <code>SIGNATURE_MISMATCH</code>）
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void verifyWithHex(String expectedSignatureHex, BuilderMode builderMode) throws HmacSignatureException {
+        if (!SignatureCodec.matchesHex(sign(builderMode), expectedSignatureHex)) {
+            throw HmacSignatureException.signatureMismatch();
+        }
+    }
+
+    /**
+     * 校验期望摘要是否与已构建的摘要相等.
+     *
+     * @param expectedSignatureBase64
+     *            传入的期望摘要base64编码表示的字符串
+     * @param builderMode
+     *            采用的构建模式
+     * @throws HmacSignatureException
+     *             构建失败或摘要不相等（原因为 <code>SIGNATURE_MISMATCH</code>）
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void verifyWithBase64(String expectedSignatureBase64, BuilderMode builderMode)
+            throws HmacSignatureException {
+        if (!SignatureCodec.matchesBase64(sign(builderMode), expectedSignatureBase64)) {
+            throw HmacSignatureException.signatureMismatch();
+        }
+    }
+
+    // 加入运算的请求数据来源
+    private interface PayloadSource {
+
+        void update(Mac digest) throws IOException;
+    }
+
+    private static final class BytesPayload implements PayloadSource {
+
+        private final byte[] bytes;
+
+        private BytesPayload(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void update(Mac digest) {
+            digest.update(bytes);
+        }
+    }
+
+    private static final class StreamPayload implements PayloadSource {
+
+        private final InputStream in;
+        private boolean consumed;
+
+        private StreamPayload(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public void update(Mac digest) throws IOException {
+            Assert.state(!consumed, "payload stream already consumed");
+            consumed = true;
+            final byte[] chunk = new byte[PAYLOAD_CHUNK_SIZE];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                digest.update(chunk, 0, read);
+            }
+        }
+    }
+
+    private static final class BufferPayload implements PayloadSource {
+
+        private final ByteBuffer buffer;
+
+        private BufferPayload(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void update(Mac digest) {
+            final ByteBuffer view = buffer.duplicate();
+            if (view.hasArray()) {
+                digest.update(view);
+                return;
+            }
+            // 直接内存缓冲区按固定大小分块拷贝后加入运算
+            final byte[] chunk = new byte[Math.min(PAYLOAD_CHUNK_SIZE, view.remaining())];
+            while (view.hasRemaining()) {
+                final int length = Math.min(chunk.length, view.remaining());
+                view.get(chunk, 0, length);
+                digest.update(chunk, 0, length);
+            }
+        }
+    }
+
+    private static final class FileRegionPayload implements PayloadSource {
+
+        private final FileChannel channel;
+        private final long position;
+        private final long size;
+
+        private FileRegionPayload(FileChannel channel, long position, long size) {
+            this.channel = channel;
+            this.position = position;
+            this.size = size;
+        }
+
+        @Override
+        public void update(Mac digest) throws IOException {
+            long offset = 0;
+            while (offset < size) {
+                final long length = Math.min(PAYLOAD_MAPPING_WINDOW, size - offset);
+                final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position + offset, length);
+                new BufferPayload(mapped).update(digest);
+                offset += length;
+            }
+        }
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2017 signit.cn. All rights reserved.
+ */
+package cn.luliangwei.docker.demo.util;
+
+/**
+ * HMAC签名构建或认证失败的异常.<br/>
+ * 通过 {@link #getReason()} 区分失败原因，例如配置错误（算法、密钥、字符集）与签名不匹配.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class HmacSignatureException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 失败原因的枚举.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static enum Reason {
+        /**
+         * 缺少加入运算的字段.
+         *
+         * @since 1.0.0
+         */
+        MISSING_FIELD,
+        /**
+         * 不支持的HMAC算法.
+         *
+         * @since 1.0.0
+         */
+        UNKNOWN_ALGORITHM,
+        /**
+         * 不合法的密钥.
+         *
+         * @since 1.0.0
+         */
+        INVALID_KEY,
+        /**
+         * 不支持的字符集或字符编码失败.
+         *
+         * @since 1.0.0
+         */
+        UNSUPPORTED_CHARSET,
+        /**
+         * 读取请求数据失败.
+         *
+         * @since 1.0.0
+         */
+        PAYLOAD_ERROR,
+        /**
+         * 不支持的构建模式.
+         *
+         * @since 1.0.0
+         */
+        UNSUPPORTED_MODE,
+        /**
+         * 期望摘要与已构建的摘要不相等.
+         *
+         * @since 1.0.0
+         */
+        SIGNATURE_MISMATCH,
+        /**
+         * 其他未预期的错误.
+         *
+         * @since 1.0.0
+         */
+        INTERNAL_ERROR
+    }
+
+    // 签名不匹配是攻击流量下最常见的失败，共享一个不带堆栈的实例
+    private static final HmacSignatureException SIGNATURE_MISMATCH = new HmacSignatureException(
+            Reason.SIGNATURE_MISMATCH, "签名摘要不匹配", false);
+
+    private final Reason reason;
+
+    private HmacSignatureException(Reason reason, String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+        this.reason = reason;
+    }
+
+    public HmacSignatureException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public HmacSignatureException(Reason reason, String message, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+    }
+
+    /**
+     * 获取签名不匹配的异常.<br/>
+     * 返回共享的实例，不填充堆栈、不拼接消息，也不能再添加原因或被抑制的异常.
+     *
+     * @return 原因为 <code>SIGNATURE_MISMATCH</code> 的异常
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static HmacSignatureException signatureMismatch() {
+        return SIGNATURE_MISMATCH;
+    }
+
+    /**
+     * 获取失败原因.
+     *
+     * @return 失败原因
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public Reason getReason() {
+        return reason;
+    }
+}
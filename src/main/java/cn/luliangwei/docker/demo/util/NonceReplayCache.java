@@ -0,0 +1,253 @@
+/*
+ * Copyright © 2017 signit.cn. All rights reserved.
+ */
+package cn.luliangwei.docker.demo.util;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.springframework.util.Assert;
+
+/**
+ * HMAC认证请求的防重放缓存.<br/>
+ * <br/>
+ * 以 (<code>apiKey</code>, <code>nonce</code>) 为键记录已使用过的随机数，
+ * 仅在允许的时钟偏差窗口（请求时间 ± <code>clockSkew</code>）内保留：
+ * <ul>
+ * <li>1.按签名中的请求时间（<code>date</code>）将键放入所属的时间桶，窗口内共有 {@value #LIVE_BUCKETS} 个桶轮转使用</li>
+ * <li>2.时间桶过期时整桶替换为新桶（一次CAS），淘汰的代价为 O(1)，无需逐个清理</li>
+ * <li>3.窗口外的请求时间直接判定为过期，因此缓存大小只与窗口内的请求量有关</li>
+ * <li>4.可选布隆过滤器模式：每个桶只保存位图，内存占用固定，代价是按 <code>falsePositiveRate</code>
+ * 的概率误判未使用过的随机数为重放</li>
+ * </ul>
+ * 同一 (<code>apiKey</code>, <code>nonce</code>, <code>date</code>) 总是落在同一个桶中，
+ * 精确模式下并发的重复请求只有一个能通过.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class NonceReplayCache {
+
+    static final int LIVE_BUCKETS = 6;
+    private static final int SLOTS = LIVE_BUCKETS + 2;
+
+    private final long clockSkewMillis;
+    private final long bucketMillis;
+    private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<Bucket>(SLOTS);
+    private final boolean bloomFilter;
+    private final int bloomBits;
+    private final int bloomHashes;
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong replayedCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    /**
+     * 精确模式的构造方法.
+     *
+     * @param clockSkewMillis
+     *            允许的时钟偏差（毫秒）
+     */
+    public NonceReplayCache(long clockSkewMillis) {
+        this(clockSkewMillis, false, 0, 0);
+    }
+
+    /**
+     * 布隆过滤器模式的构造方法.
+     *
+     * @param clockSkewMillis
+     *            允许的时钟偏差（毫秒）
+     * @param expectedNonces
+     *            整个窗口内预计的请求数
+     * @param falsePositiveRate
+     *            可接受的误判率（0.0 ~ 1.0）
+     */
+    public NonceReplayCache(long clockSkewMillis, long expectedNonces, double falsePositiveRate) {
+        this(clockSkewMillis, true, expectedNonces, falsePositiveRate);
+    }
+
+    private NonceReplayCache(long clockSkewMillis, boolean bloomFilter, long expectedNonces, double falsePositiveRate) {
+        Assert.isTrue(clockSkewMillis > 0, "clockSkewMillis must be positive");
+        this.clockSkewMillis = clockSkewMillis;
+        this.bucketMillis = (2 * clockSkewMillis + LIVE_BUCKETS - 1) / LIVE_BUCKETS;
+        this.bloomFilter = bloomFilter;
+        if (bloomFilter) {
+            Assert.isTrue(expectedNonces > 0, "expectedNonces must be positive");
+            Assert.isTrue(falsePositiveRate > 0 && falsePositiveRate < 1, "falsePositiveRate must be in (0, 1)");
+            // 每个桶约承载窗口内 1/LIVE_BUCKETS 的请求
+            final double perBucket = Math.max(1.0, (double) expectedNonces / LIVE_BUCKETS);
+            final double bits = -perBucket * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+            this.bloomBits = (int) Math.min(Integer.MAX_VALUE - Long.SIZE, Math.max(Long.SIZE, Math.ceil(bits)));
+            this.bloomHashes = Math.max(1, (int) Math.round(bloomBits / perBucket * Math.log(2)));
+        } else {
+            this.bloomBits = 0;
+            this.bloomHashes = 0;
+        }
+    }
+
+    /**
+     * 检查随机数是否首次使用，若是则记录下来.
+     *
+     * @param apiKey
+     *            服务器授权给客户端的唯一公开标识
+     * @param nonce
+     *            随机数
+     * @param requestTimeMillis
+     *            请求签名中的请求时间（毫秒）
+     * @return <code>true</code> - 请求时间在窗口内且随机数首次使用; <code>false</code> - 重放或已过期的请求
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public boolean checkAndRecord(String apiKey, String nonce, long requestTimeMillis) {
+        return checkAndRecord(apiKey, nonce, requestTimeMillis, System.currentTimeMillis());
+    }
+
+    boolean checkAndRecord(String apiKey, String nonce, long requestTimeMillis, long nowMillis) {
+        Assert.notNull(apiKey, "apiKey not null");
+        Assert.notNull(nonce, "nonce not null");
+        if (requestTimeMillis < nowMillis - clockSkewMillis || requestTimeMillis > nowMillis + clockSkewMillis) {
+            expiredCount.incrementAndGet();
+            return false;
+        }
+        final Bucket bucket = bucketFor(Math.floorDiv(requestTimeMillis, bucketMillis));
+        if (bucket == null) {
+            expiredCount.incrementAndGet();
+            return false;
+        }
+        if (bucket.add(apiKey, nonce)) {
+            acceptedCount.incrementAndGet();
+            return true;
+        }
+        replayedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 获取首次使用而被接受的请求数.
+     *
+     * @return 被接受的请求数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    /**
+     * 获取被判定为重放的请求数（布隆过滤器模式下包含误判）.
+     *
+     * @return 重放的请求数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getReplayedCount() {
+        return replayedCount.get();
+    }
+
+    /**
+     * 获取请求时间超出允许窗口的请求数.
+     *
+     * @return 过期的请求数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    // 获取（必要时轮换出）指定时间片的桶；若该槽已被更新的时间片占用，说明请求已过期
+    private Bucket bucketFor(long epoch) {
+        final int slot = (int) Math.floorMod(epoch, (long) SLOTS);
+        for (;;) {
+            final Bucket current = buckets.get(slot);
+            if (current != null && current.epoch == epoch) {
+                return current;
+            }
+            if (current != null && current.epoch > epoch) {
+                return null;
+            }
+            final Bucket fresh = bloomFilter ? new BloomBucket(epoch, bloomBits, bloomHashes) : new ExactBucket(epoch);
+            if (buckets.compareAndSet(slot, current, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private abstract static class Bucket {
+
+        final long epoch;
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+
+        // 添加键，返回是否为首次添加
+        abstract boolean add(String apiKey, String nonce);
+    }
+
+    private static final class ExactBucket extends Bucket {
+
+        private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+        ExactBucket(long epoch) {
+            super(epoch);
+        }
+
+        @Override
+        boolean add(String apiKey, String nonce) {
+            return keys.add(apiKey + '\n' + nonce);
+        }
+    }
+
+    private static final class BloomBucket extends Bucket {
+
+        private final AtomicLongArray words;
+        private final int bits;
+        private final int hashes;
+
+        BloomBucket(long epoch, int bits, int hashes) {
+            super(epoch);
+            this.words = new AtomicLongArray((bits + Long.SIZE - 1) / Long.SIZE);
+            this.bits = bits;
+            this.hashes = hashes;
+        }
+
+        @Override
+        boolean add(String apiKey, String nonce) {
+            long h = hash(hash(0xcbf29ce484222325L, apiKey) ^ '\n', nonce);
+            final long h1 = mix(h);
+            final long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            boolean changed = false;
+            for (int i = 0; i < hashes; i++) {
+                final int index = (int) Math.floorMod(h1 + i * h2, (long) bits);
+                final int word = index >>> 6;
+                final long mask = 1L << index;
+                long prev;
+                do {
+                    prev = words.get(word);
+                    if ((prev & mask) != 0) {
+                        break;
+                    }
+                } while (!words.compareAndSet(word, prev, prev | mask));
+                changed |= (prev & mask) == 0;
+            }
+            return changed;
+        }
+
+        // FNV-1a
+        private static long hash(long h, String value) {
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+            z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return z ^ (z >>> 33);
+        }
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright © 2017 signit.cn. All rights reserved.
+ */
+package cn.luliangwei.docker.demo.util;
+
+import java.util.Arrays;
+
+/**
+ * 签名摘要值的16进制/base64编解码工具类.<br/>
+ * <br/>
+ * 基于查找表实现，可直接写入调用方提供的 <code>char[]</code>/<code>byte[]</code> 缓冲区，
+ * 不依赖 <code>javax.xml.bind.DatatypeConverter</code>（JDK 11 起已移除）.<br/>
+ * <ul>
+ * <li>1.16进制编码输出大写字母，解码同时接受大小写</li>
+ * <li>2.base64使用标准字母表（RFC 4648），编码输出带填充，解码时填充可省略</li>
+ * <li>3.<code>matchesHex</code>/<code>matchesBase64</code> 边解码边比较，不创建中间字符串或数组，
+ * 且不会在遇到第一个不同字节时提前返回</li>
+ * </ul>
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public final class SignatureCodec {
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final char[] BASE64_DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+            .toCharArray();
+    private static final byte[] HEX_VALUES = new byte[128];
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[HEX_DIGITS[i]] = (byte) i;
+            HEX_VALUES[Character.toLowerCase(HEX_DIGITS[i])] = (byte) i;
+        }
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        for (int i = 0; i < 64; i++) {
+            BASE64_VALUES[BASE64_DIGITS[i]] = (byte) i;
+        }
+    }
+
+    private SignatureCodec() {
+    }
+
+    /**
+     * 获取16进制编码后的字符数.
+     *
+     * @param length
+     *            原始字节数
+     * @return 编码后的字符数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static int hexLength(int length) {
+        return length << 1;
+    }
+
+    /**
+     * 获取base64编码后的字符数（含填充）.
+     *
+     * @param length
+     *            原始字节数
+     * @return 编码后的字符数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static int base64Length(int length) {
+        return (length + 2) / 3 * 4;
+    }
+
+    /**
+     * 16进制编码.
+     *
+     * @param src
+     *            原始字节
+     * @return 16进制编码表示的字符串
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static String encodeHex(byte[] src) {
+        final char[] dst = new char[hexLength(src.length)];
+        encodeHex(src, 0, src.length, dst, 0);
+        return new String(dst);
+    }
+
+    /**
+     * 16进制编码，写入调用方提供的缓冲区.
+     *
+     * @param src
+     *            原始字节
+     * @param srcOff
+     *            原始字节起始位置
+     * @param len
+     *            原始字节数
+     * @param dst
+     *            目标字符缓冲区，剩余空间不少于 {@link #hexLength(int)}
+     * @param dstOff
+     *            目标起始位置
+     * @return 写入的字符数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static int encodeHex(byte[] src, int srcOff, int len, char[] dst, int dstOff) {
+        int j = dstOff;
+        for (int i = srcOff; i < srcOff + len; i++) {
+            final int b = src[i] & 0xFF;
+            dst[j++] = HEX_DIGITS[b >>> 4];
+            dst[j++] = HEX_DIGITS[b & 0x0F];
+        }
+        return j - dstOff;
+    }
+
+    /**
+     * 16进制解码.
+     *
+     * @param hex
+     *            16进制编码表示的字符串
+     * @return 原始字节
+     * @throws IllegalArgumentException
+     *             不合法的16进制字符串
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static byte[] decodeHex(CharSequence hex) {
+        if ((hex.length() & 1) != 0) {
+            throw new IllegalArgumentException("hex string needs to be even-length: " + hex.length());
+        }
+        final byte[] dst = new byte[hex.length() >> 1];
+        if (decodeHex(hex, dst, 0) < 0) {
+            throw new IllegalArgumentException("illegal hex string");
+        }
+        return dst;
+    }
+
+    /**
+     * 16进制解码，写入调用方提供的缓冲区.
+     *
+     * @param hex
+     *            16进制编码表示的字符串
+     * @param dst
+     *            目标字节缓冲区，剩余空间不少于 <code>hex.length() / 2</code>
+     * @param dstOff
+     *            目标起始位置
+     * @return 写入的字节数；字符串不合法时返回 <code>-1</code>
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static int decodeHex(CharSequence hex, byte[] dst, int dstOff) {
+        final int length = hex.length();
+        if ((length & 1) != 0) {
+            return -1;
+        }
+        int j = dstOff;
+        for (int i = 0; i < length; i += 2) {
+            final int hi = hexValue(hex.charAt(i));
+            final int lo = hexValue(hex.charAt(i + 1));
+            if ((hi | lo) < 0) {
+                return -1;
+            }
+            dst[j++] = (byte) (hi << 4 | lo);
+        }
+        return j - dstOff;
+    }
+
+    /**
+     * base64编码.
+     *
+     * @param src
+     *            原始字节
+     * @return base64编码表示的字符串
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static String encodeBase64(byte[] src) {
+        final char[] dst = new char[base64Length(src.length)];
+        encodeBase64(src, 0, src.length, dst, 0);
+        return new String(dst);
+    }
+
+    /**
+     * base64编码，写入调用方提供的缓冲区.
+     *
+     * @param src
+     *            原始字节
+     * @param srcOff
+     *            原始字节起始位置
+     * @param len
+     *            原始字节数
+     * @param dst
+     *            目标字符缓冲区，剩余空间不少于 {@link #base64Length(int)}
+     * @param dstOff
+     *            目标起始位置
+     * @return 写入的字符数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static int encodeBase64(byte[] src, int srcOff, int len, char[] dst, int dstOff) {
+        final int end = srcOff + len;
+        final int fullEnd = srcOff + len / 3 * 3;
+        int i = srcOff;
+        int j = dstOff;
+        while (i < fullEnd) {
+            final int bits = (src[i++] & 0xFF) << 16 | (src[i++] & 0xFF) << 8 | (src[i++] & 0xFF);
+            dst[j++] = BASE64_DIGITS[bits >>> 18];
+            dst[j++] = BASE64_DIGITS[bits >>> 12 & 0x3F];
+            dst[j++] = BASE64_DIGITS[bits >>> 6 & 0x3F];
+            dst[j++] = BASE64_DIGITS[bits & 0x3F];
+        }
+        if (i < end) {
+            final int b0 = src[i++] & 0xFF;
+            dst[j++] = BASE64_DIGITS[b0 >>> 2];
+            if (i == end) {
+                dst[j++] = BASE64_DIGITS[b0 << 4 & 0x3F];
+                dst[j++] = '=';
+            } else {
+                final int b1 = src[i] & 0xFF;
+                dst[j++] = BASE64_DIGITS[(b0 << 4 | b1 >>> 4) & 0x3F];
+                dst[j++] = BASE64_DIGITS[b1 << 2 & 0x3F];
+            }
+            dst[j++] = '=';
+        }
+        return j - dstOff;
+    }
+
+    /**
+     * base64解码.
+     *
+     * @param base64
+     *            base64编码表示的字符串
+     * @return 原始字节
+     * @throws IllegalArgumentException
+     *             不合法的base64字符串
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static byte[] decodeBase64(CharSequence base64) {
+        final int length = base64DecodedLength(base64);
+        if (length < 0) {
+            throw new IllegalArgumentException("illegal base64 string");
+        }
+        final byte[] dst = new byte[length];
+        if (decodeBase64(base64, dst, 0) < 0) {
+            throw new IllegalArgumentException("illegal base64 string");
+        }
+        return dst;
+    }
+
+    /**
+     * base64解码，写入调用方提供的缓冲区.
+     *
+     * @param base64
+     *            base64编码表示的字符串
+     * @param dst
+     *            目标字节缓冲区
+     * @param dstOff
+     *            目标起始位置
+     * @return 写入的字节数；字符串不合法或缓冲区不足时返回 <code>-1</code>
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static int decodeBase64(CharSequence base64, byte[] dst, int dstOff) {
+        final int length = base64DecodedLength(base64);
+        if (length < 0 || dst.length - dstOff < length) {
+            return -1;
+        }
+        final int chars = unpaddedLength(base64);
+        int bits = 0;
+        int count = 0;
+        int j = dstOff;
+        for (int i = 0; i < chars; i++) {
+            final int value = base64Value(base64.charAt(i));
+            if (value < 0) {
+                return -1;
+            }
+            bits = bits << 6 | value;
+            if (++count == 4) {
+                dst[j++] = (byte) (bits >>> 16);
+                dst[j++] = (byte) (bits >>> 8);
+                dst[j++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 2) {
+            dst[j++] = (byte) (bits >>> 4);
+        } else if (count == 3) {
+            dst[j++] = (byte) (bits >>> 10);
+            dst[j++] = (byte) (bits >>> 2);
+        }
+        return j - dstOff;
+    }
+
+    /**
+     * 以常量时间比较摘要值与16进制编码表示的期望摘要，不创建中间对象.
+     *
+     * @param digest
+     *            摘要值
+     * @param expectedHex
+     *            期望摘要的16进制编码表示
+     * @return <code>true</code> - 相等; <code>false</code> - 不相等或期望摘要不合法
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static boolean matchesHex(byte[] digest, CharSequence expectedHex) {
+        if (digest == null || expectedHex == null || expectedHex.length() != hexLength(digest.length)) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < digest.length; i++) {
+            final int hi = hexValue(expectedHex.charAt(i << 1));
+            final int lo = hexValue(expectedHex.charAt((i << 1) + 1));
+            diff |= (hi | lo) & 0x100;
+            diff |= (digest[i] ^ (hi << 4 | lo)) & 0xFF;
+        }
+        return diff == 0;
+    }
+
+    /**
+     * 以常量时间比较摘要值与base64编码表示的期望摘要，不创建中间对象.
+     *
+     * @param digest
+     *            摘要值
+     * @param expectedBase64
+     *            期望摘要的base64编码表示
+     * @return <code>true</code> - 相等; <code>false</code> - 不相等或期望摘要不合法
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public static boolean matchesBase64(byte[] digest, CharSequence expectedBase64) {
+        if (digest == null || expectedBase64 == null || base64DecodedLength(expectedBase64) != digest.length) {
+            return false;
+        }
+        final int chars = unpaddedLength(expectedBase64);
+        int diff = 0;
+        int bits = 0;
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i < chars; i++) {
+            final int value = base64Value(expectedBase64.charAt(i));
+            diff |= value & 0x100;
+            bits = bits << 6 | (value & 0x3F);
+            if (++count == 4) {
+                diff |= (digest[j++] ^ bits >>> 16) & 0xFF;
+                diff |= (digest[j++] ^ bits >>> 8) & 0xFF;
+                diff |= (digest[j++] ^ bits) & 0xFF;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 2) {
+            diff |= (digest[j] ^ bits >>> 4) & 0xFF;
+        } else if (count == 3) {
+            diff |= (digest[j++] ^ bits >>> 10) & 0xFF;
+            diff |= (digest[j] ^ bits >>> 2) & 0xFF;
+        }
+        return diff == 0;
+    }
+
+    // 非法字符返回负数（低9位中含 0x100 标志位）
+    private static int hexValue(char c) {
+        return c < 128 ? HEX_VALUES[c] : -1;
+    }
+
+    private static int base64Value(char c) {
+        return c < 128 ? BASE64_VALUES[c] : -1;
+    }
+
+    private static int unpaddedLength(CharSequence base64) {
+        int length = base64.length();
+        int padding = 0;
+        while (length > 0 && padding < 2 && base64.charAt(length - 1) == '=') {
+            length--;
+            padding++;
+        }
+        return length;
+    }
+
+    // 解码后的字节数；长度不合法时返回 -1
+    private static int base64DecodedLength(CharSequence base64) {
+        final int length = base64.length();
+        final int chars = unpaddedLength(base64);
+        if (chars != length && (length & 3) != 0) {
+            return -1;
+        }
+        final int remainder = chars & 3;
+        if (remainder == 1) {
+            return -1;
+        }
+        return chars / 4 * 3 + (remainder == 0 ? 0 : remainder - 1);
+    }
+}
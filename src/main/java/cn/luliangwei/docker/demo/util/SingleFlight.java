@@ -0,0 +1,237 @@
+/*
+ * Copyright © 2017 signit.cn. All rights reserved.
+ */
+package cn.luliangwei.docker.demo.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.springframework.util.Assert;
+
+/**
+ * 合并同一个键的并发计算（single-flight）.<br/>
+ * <br/>
+ * 同一时刻每个键最多只有一个计算在进行，期间到达的调用方共享它的结果：
+ * <ul>
+ * <li>1.第一个调用方（leader）在自己的线程上执行计算，完成后把结果或异常交给所有等待者，并移除该键</li>
+ * <li>2.其他调用方（follower）最多等待 timeout，超时抛出 {@link SingleFlightTimeoutException}，计算不受影响</li>
+ * <li>3.计算完成后到达的调用方会发起新的计算，因此结果不会被缓存，需要缓存时由计算本身写入缓存</li>
+ * <li>4.异步方法合并 {@link CompletableFuture}，follower 得到的是独立的 future，取消它不会影响其他调用方</li>
+ * </ul>
+ * 统计实际执行的计算次数、被合并的调用次数和等待超时的次数.<br/>
+ * 线程安全.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ *
+ * @param <K>
+ *            键的类型
+ * @param <V>
+ *            结果的类型
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<K, CompletableFuture<V>>();
+    private final long timeoutNanos;
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * @param timeout
+     *            follower 等待结果的最长时间
+     * @param unit
+     *            等待时间的单位
+     */
+    public SingleFlight(long timeout, TimeUnit unit) {
+        Assert.isTrue(timeout > 0, "timeout must be positive");
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * 执行或加入键的计算，阻塞直到得到结果.
+     *
+     * @param key
+     *            键
+     * @param loader
+     *            计算，只在当前调用方成为 leader 时执行
+     * @return 计算结果
+     * @throws SingleFlightTimeoutException
+     *             作为 follower 等待超时
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public V execute(K key, Supplier<V> loader) {
+        final CompletableFuture<V> flight = new CompletableFuture<V>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(key, existing);
+        }
+        executions.incrementAndGet();
+        try {
+            final V value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } catch (Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * 执行或加入键的异步计算.
+     *
+     * @param key
+     *            键
+     * @param loader
+     *            异步计算，只在当前调用方成为 leader 时执行
+     * @return 计算结果；作为 follower 等待超时时以 {@link SingleFlightTimeoutException} 异常完成
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public CompletableFuture<V> executeAsync(final K key, Supplier<CompletableFuture<V>> loader) {
+        final CompletableFuture<V> flight = new CompletableFuture<V>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return follow(key, existing);
+        }
+        executions.incrementAndGet();
+        CompletableFuture<V> source;
+        try {
+            source = loader.get();
+        } catch (RuntimeException e) {
+            source = new CompletableFuture<V>();
+            source.completeExceptionally(e);
+        }
+        source.whenComplete(new BiConsumer<V, Throwable>() {
+            @Override
+            public void accept(V value, Throwable failure) {
+                inFlight.remove(key, flight);
+                if (failure == null) {
+                    flight.complete(value);
+                } else {
+                    flight.completeExceptionally(failure);
+                }
+            }
+        });
+        return follow(null, flight);
+    }
+
+    /**
+     * @return 实际执行的计算次数
+     */
+    public long getExecutionCount() {
+        return executions.get();
+    }
+
+    /**
+     * @return 加入已有计算、没有重复执行的调用次数
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return follower 等待超时的次数
+     */
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    /**
+     * @return 正在进行的计算数
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private V await(K key, CompletableFuture<V> flight) {
+        try {
+            return flight.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            throw timeout(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("等待合并的计算时被中断: " + key);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    // key 为 null 表示 leader 自己的结果，不设置超时
+    private CompletableFuture<V> follow(final K key, CompletableFuture<V> flight) {
+        final CompletableFuture<V> result = new CompletableFuture<V>();
+        final ScheduledFuture<?> timer = key == null ? null : Timer.INSTANCE.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (result.completeExceptionally(timeout(key))) {
+                    timeouts.incrementAndGet();
+                }
+            }
+        }, timeoutNanos, TimeUnit.NANOSECONDS);
+        flight.whenComplete(new BiConsumer<V, Throwable>() {
+            @Override
+            public void accept(V value, Throwable failure) {
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+                if (failure == null) {
+                    result.complete(value);
+                } else {
+                    result.completeExceptionally(failure);
+                }
+            }
+        });
+        return result;
+    }
+
+    private SingleFlightTimeoutException timeout(K key) {
+        return new SingleFlightTimeoutException(
+                "等待合并的计算超过 " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms: " + key);
+    }
+
+    // 异步 follower 的超时定时器，首次使用时创建
+    private static final class Timer {
+
+        static final ScheduledThreadPoolExecutor INSTANCE = create();
+
+        private static ScheduledThreadPoolExecutor create() {
+            final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable task) {
+                    final Thread thread = new Thread(task, "single-flight-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            timer.setRemoveOnCancelPolicy(true);
+            return timer;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ * Copyright © 2017 signit.cn. All rights reserved.
+ */
+package cn.luliangwei.docker.demo.util;
+
+/**
+ * 等待 {@link SingleFlight} 中同一个键正在进行的计算超时的异常.<br/>
+ * 计算本身不会因此中断，完成后的结果仍会交给其他仍在等待的调用方.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class SingleFlightTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SingleFlightTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,565 @@
+/*
+ * Copyright © 2017 signit.cn. All rights reserved.
+ */
+package cn.luliangwei.docker.demo.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按权重限制容量、按写入时间过期的W-TinyLFU缓存.<br/>
+ * <br/>
+ * 每个分段由三个LRU队列组成：
+ * <ul>
+ * <li>1.窗口区（约1%容量）：新写入的条目先进入窗口区，吸收突发的新键</li>
+ * <li>2.试用区：窗口区溢出的条目作为候选者进入试用区，
+ * 主区超出容量时候选者与试用区最久未访问的条目比较访问频率，频率低者被淘汰</li>
+ * <li>3.保护区（主区的80%）：试用区中再次被访问的条目晋升至保护区，保护区溢出时降级回试用区</li>
+ * </ul>
+ * 访问频率由每个分段的4位计数Count-Min Sketch近似，计数总量达到阈值后全部减半，使历史热度逐渐衰减.
+ * 对少数热点键占绝大多数访问的流量，热点不会被一次性的扫描请求挤出缓存.<br/>
+ * 分段之间相互独立，每个分段内部加锁.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class TinyLfuCache<K, V> {
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    // 用于估算频率计数器的数量
+    private static final int ESTIMATED_ENTRY_WEIGHT = 512;
+
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    /**
+     * 计算缓存条目的权重.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public interface Weigher<K, V> {
+
+        /**
+         * @param key
+         *            键
+         * @param value
+         *            值
+         * @return 条目的权重，不能为负数
+         */
+        int weigh(K key, V value);
+    }
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final long maximumWeight;
+    private final long ttlNanos;
+    private final Weigher<? super K, ? super V> weigher;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    /**
+     * 使用默认并发度的构造方法.
+     *
+     * @param maximumWeight
+     *            所有条目的权重之和的上限
+     * @param ttl
+     *            条目写入后的存活时间
+     * @param unit
+     *            存活时间的单位
+     * @param weigher
+     *            条目权重的计算方式
+     */
+    public TinyLfuCache(long maximumWeight, long ttl, TimeUnit unit, Weigher<? super K, ? super V> weigher) {
+        this(maximumWeight, ttl, unit, weigher, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * 完整参数的构造方法.
+     *
+     * @param maximumWeight
+     *            所有条目的权重之和的上限
+     * @param ttl
+     *            条目写入后的存活时间
+     * @param unit
+     *            存活时间的单位
+     * @param weigher
+     *            条目权重的计算方式
+     * @param concurrencyLevel
+     *            分段数，向上取整为2的幂
+     */
+    @SuppressWarnings("unchecked")
+    public TinyLfuCache(long maximumWeight, long ttl, TimeUnit unit, Weigher<? super K, ? super V> weigher,
+            int concurrencyLevel) {
+        if (maximumWeight <= 0 || ttl <= 0 || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("maximumWeight, ttl and concurrencyLevel must be positive");
+        }
+        if (unit == null || weigher == null) {
+            throw new IllegalArgumentException("unit and weigher must not be null");
+        }
+        final int segmentCount = Integer.highestOneBit(Math.min(concurrencyLevel, 1 << 16) * 2 - 1);
+        this.segments = (Segment[]) new TinyLfuCache.Segment[segmentCount];
+        this.segmentShift = Integer.SIZE - Integer.numberOfTrailingZeros(segmentCount);
+        this.maximumWeight = maximumWeight;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.weigher = weigher;
+        final long segmentWeight = Math.max(1, maximumWeight / segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentWeight);
+        }
+    }
+
+    /**
+     * 获取缓存的值.
+     *
+     * @param key
+     *            键
+     * @return 未过期的值，不存在时返回 <code>null</code>
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public V get(K key) {
+        return get(key, System.nanoTime());
+    }
+
+    V get(K key, long nowNanos) {
+        final int hash = hash(key);
+        return segmentFor(hash).get(key, hash, nowNanos);
+    }
+
+    /**
+     * 写入缓存，权重超过分段容量的条目不会被缓存.
+     *
+     * @param key
+     *            键
+     * @param value
+     *            值
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void put(K key, V value) {
+        put(key, value, System.nanoTime());
+    }
+
+    void put(K key, V value, long nowNanos) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("key and value must not be null");
+        }
+        final int weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("weight must not be negative: " + weight);
+        }
+        final int hash = hash(key);
+        segmentFor(hash).put(key, hash, value, weight, nowNanos);
+    }
+
+    /**
+     * 使指定的键失效.
+     *
+     * @param key
+     *            键
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void invalidate(K key) {
+        final int hash = hash(key);
+        segmentFor(hash).remove(key);
+    }
+
+    /**
+     * 使全部条目失效.
+     *
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * 获取命中次数.
+     *
+     * @return 命中次数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 获取未命中次数（包括已过期）.
+     *
+     * @return 未命中次数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 获取因容量不足被淘汰的条目数.
+     *
+     * @return 淘汰次数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 获取因过期被移除的条目数.
+     *
+     * @return 过期次数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * 获取命中率.
+     *
+     * @return 命中率（0.0 ~ 1.0），尚无访问记录时返回 <code>0.0</code>
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public double getHitRate() {
+        final long hits = hitCount.get();
+        final long total = hits + missCount.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * 获取当前条目数.
+     *
+     * @return 条目数
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * 获取当前所有条目的权重之和.
+     *
+     * @return 权重之和
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment segment : segments) {
+            weight += segment.weight();
+        }
+        return weight;
+    }
+
+    /**
+     * 获取权重之和的上限.
+     *
+     * @return 权重上限
+     * @author luliangwei
+     * @since 1.0.0
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    private static int hash(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must not be null");
+        }
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Node<K, V> {
+
+        final K key;
+        final int hash;
+        V value;
+        int weight;
+        long expireAt;
+        byte queue;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, int hash) {
+            this.key = key;
+            this.hash = hash;
+            this.prev = this;
+            this.next = this;
+        }
+    }
+
+    private final class Segment {
+
+        private final Map<K, Node<K, V>> nodes = new HashMap<K, Node<K, V>>();
+        // 各队列的哨兵节点，next 为最久未访问的条目
+        private final Node<K, V> window = new Node<K, V>(null, 0);
+        private final Node<K, V> probation = new Node<K, V>(null, 0);
+        private final Node<K, V> protect = new Node<K, V>(null, 0);
+        private final FrequencySketch sketch;
+        private final long maximum;
+        private final long windowMaximum;
+        private final long protectedMaximum;
+        private long windowWeight;
+        private long probationWeight;
+        private long protectedWeight;
+
+        Segment(long maximum) {
+            this.maximum = maximum;
+            this.windowMaximum = Math.max(1, maximum / 100);
+            this.protectedMaximum = (maximum - windowMaximum) * 4 / 5;
+            this.sketch = new FrequencySketch(maximum / ESTIMATED_ENTRY_WEIGHT);
+        }
+
+        synchronized V get(K key, int hash, long now) {
+            sketch.increment(hash);
+            final Node<K, V> node = nodes.get(key);
+            if (node == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            if (now - node.expireAt >= 0) {
+                evict(node);
+                expiredCount.incrementAndGet();
+                missCount.incrementAndGet();
+                return null;
+            }
+            hitCount.incrementAndGet();
+            onAccess(node);
+            return node.value;
+        }
+
+        synchronized void put(K key, int hash, V value, int weight, long now) {
+            Node<K, V> node = nodes.get(key);
+            if (weight > maximum) {
+                if (node != null) {
+                    evict(node);
+                }
+                return;
+            }
+            if (node == null) {
+                node = new Node<K, V>(key, hash);
+                nodes.put(key, node);
+                node.queue = WINDOW;
+                linkLast(window, node);
+            } else {
+                onAccess(node);
+            }
+            addWeight(node, weight - node.weight);
+            node.weight = weight;
+            node.value = value;
+            node.expireAt = now + ttlNanos;
+            evictOverflow(now);
+        }
+
+        synchronized void remove(K key) {
+            final Node<K, V> node = nodes.get(key);
+            if (node != null) {
+                evict(node);
+            }
+        }
+
+        synchronized void clear() {
+            nodes.clear();
+            window.prev = window.next = window;
+            probation.prev = probation.next = probation;
+            protect.prev = protect.next = protect;
+            windowWeight = probationWeight = protectedWeight = 0;
+        }
+
+        synchronized int size() {
+            return nodes.size();
+        }
+
+        synchronized long weight() {
+            return windowWeight + probationWeight + protectedWeight;
+        }
+
+        private void onAccess(Node<K, V> node) {
+            switch (node.queue) {
+            case WINDOW:
+                moveToLast(window, node);
+                break;
+            case PROBATION:
+                unlink(node);
+                probationWeight -= node.weight;
+                node.queue = PROTECTED;
+                linkLast(protect, node);
+                protectedWeight += node.weight;
+                while (protectedWeight > protectedMaximum) {
+                    final Node<K, V> demoted = protect.next;
+                    unlink(demoted);
+                    protectedWeight -= demoted.weight;
+                    demoted.queue = PROBATION;
+                    linkLast(probation, demoted);
+                    probationWeight += demoted.weight;
+                }
+                break;
+            default:
+                moveToLast(protect, node);
+                break;
+            }
+        }
+
+        private void evictOverflow(long now) {
+            // 窗口区溢出的条目成为候选者，按进入顺序排在试用区末尾
+            Node<K, V> candidate = null;
+            while (windowWeight > windowMaximum) {
+                final Node<K, V> node = window.next;
+                unlink(node);
+                windowWeight -= node.weight;
+                node.queue = PROBATION;
+                linkLast(probation, node);
+                probationWeight += node.weight;
+                if (candidate == null) {
+                    candidate = node;
+                }
+            }
+            while (windowWeight + probationWeight + protectedWeight > maximum) {
+                Node<K, V> victim = probation.next;
+                if (victim == probation) {
+                    victim = protect.next != protect ? protect.next : window.next;
+                }
+                if (candidate == null || victim.queue != PROBATION) {
+                    evict(victim);
+                } else if (candidate == victim) {
+                    candidate = victim.next == probation ? null : victim.next;
+                    evict(victim);
+                } else if (now - victim.expireAt < 0
+                        && sketch.frequency(candidate.hash) <= sketch.frequency(victim.hash)) {
+                    // 候选者不比受害者更热，拒绝候选者
+                    final Node<K, V> rejected = candidate;
+                    candidate = rejected.next == probation ? null : rejected.next;
+                    evict(rejected);
+                } else {
+                    evict(victim);
+                }
+                evictionCount.incrementAndGet();
+            }
+        }
+
+        private void evict(Node<K, V> node) {
+            unlink(node);
+            addWeight(node, -node.weight);
+            nodes.remove(node.key);
+        }
+
+        private void addWeight(Node<K, V> node, long delta) {
+            switch (node.queue) {
+            case WINDOW:
+                windowWeight += delta;
+                break;
+            case PROBATION:
+                probationWeight += delta;
+                break;
+            default:
+                protectedWeight += delta;
+                break;
+            }
+        }
+
+        private void moveToLast(Node<K, V> head, Node<K, V> node) {
+            unlink(node);
+            linkLast(head, node);
+        }
+
+        private void linkLast(Node<K, V> head, Node<K, V> node) {
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+        }
+
+        private void unlink(Node<K, V> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = node;
+            node.next = node;
+        }
+    }
+
+    /**
+     * 4位计数的Count-Min Sketch，每个键映射到4个计数器，频率取其中的最小值.
+     */
+    private static final class FrequencySketch {
+
+        private static final int[] SEEDS = { 0x97cb3127, 0xb5ad4ece, 0x7a0f8c79, 0x3c6ef372 };
+        private static final int MAX_COUNT = 15;
+
+        private final byte[] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(long expectedEntries) {
+            final int width = Integer.highestOneBit((int) Math.min(Math.max(expectedEntries, 16), 1 << 22) * 2 - 1);
+            this.counters = new byte[width * SEEDS.length];
+            this.mask = counters.length - 1;
+            this.sampleSize = width * 10;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                final int index = indexOf(hash, i);
+                if (counters[index] < MAX_COUNT) {
+                    counters[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < SEEDS.length; i++) {
+                frequency = Math.min(frequency, counters[indexOf(hash, i)]);
+            }
+            return frequency;
+        }
+
+        // 计数全部减半，让过去的热点逐渐让位于新的热点
+        private void reset() {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] >>= 1;
+            }
+            additions >>= 1;
+        }
+
+        private int indexOf(int hash, int i) {
+            int h = (hash + SEEDS[i]) * SEEDS[i];
+            h ^= h >>> 15;
+            return h & mask;
+        }
+    }
+}
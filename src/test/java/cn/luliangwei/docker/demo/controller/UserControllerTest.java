@@ -0,0 +1,204 @@
+package cn.luliangwei.docker.demo.controller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.config.UserHttpProperties;
+import cn.luliangwei.docker.demo.metrics.LatencyTimer;
+import cn.luliangwei.docker.demo.service.UserService;
+import cn.luliangwei.docker.demo.util.CompressedBodyCache;
+
+/**
+ * 用户信息控制器的单元测试，覆盖内容协商与条件请求.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class UserControllerTest {
+
+    private static final String NAME = "luliangwei";
+    private static final String HTML_ETAG = "\"html-1\"";
+    private static final String JSON_ETAG = "\"json-1\"";
+    private static final byte[] PAGE;
+    private static final byte[] JSON = "{\"name\":\"luliangwei\"}".getBytes();
+
+    static {
+        final StringBuilder page = new StringBuilder("<html><body>");
+        for (int i = 0; i < 100; i++) {
+            page.append("<p>luliangwei</p>");
+        }
+        PAGE = page.append("</body></html>").toString().getBytes();
+    }
+
+    private final AtomicInteger renders = new AtomicInteger();
+    private UserController controller;
+
+    // 只替换控制器用到的方法，统计读取与渲染的次数
+    private final class StubUserService extends UserService {
+
+        @Override
+        public String userInfoETag(String name, boolean json) {
+            return NAME.equals(name) ? (json ? JSON_ETAG : HTML_ETAG) : null;
+        }
+
+        @Override
+        public User findUser(String name) {
+            renders.incrementAndGet();
+            if (!NAME.equals(name)) {
+                return null;
+            }
+            final User user = new User();
+            user.setName(name);
+            return user;
+        }
+
+        @Override
+        public byte[] userInfoPage(String name) {
+            renders.incrementAndGet();
+            return NAME.equals(name) ? PAGE : userNotFoundPage();
+        }
+
+        @Override
+        public boolean writeUserInfo(String name, OutputStream out) throws IOException {
+            renders.incrementAndGet();
+            if (!NAME.equals(name)) {
+                return false;
+            }
+            out.write(PAGE);
+            return true;
+        }
+
+        @Override
+        public void writeUserJson(String name, User user, OutputStream out) throws IOException {
+            out.write(JSON);
+        }
+    }
+
+    @Before
+    public void createController() {
+        controller = new UserController();
+        controller.userService = new StubUserService();
+        controller.userHttpProperties = new UserHttpProperties();
+        controller.userRequestTimer = new LatencyTimer("users.request", "GET /users 的处理耗时", 60, TimeUnit.SECONDS);
+    }
+
+    private void enableCompressedCache() {
+        controller.userInfoCompressedCache = new CompressedBodyCache(1 << 20, 60, TimeUnit.SECONDS, 6, 256);
+    }
+
+    private MockHttpServletResponse get(String accept, String ifNoneMatch, String acceptEncoding) throws IOException {
+        return get(NAME, accept, ifNoneMatch, acceptEncoding);
+    }
+
+    private MockHttpServletResponse get(String name, String accept, String ifNoneMatch, String acceptEncoding)
+            throws IOException {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getUserInfoByName(name, accept, ifNoneMatch, acceptEncoding, response);
+        return response;
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void negotiatesHtmlOrJsonByAcceptQuality() throws Exception {
+        assertTrue(get(null, null, null).getContentType().startsWith("text/html"));
+        assertTrue(get("*/*", null, null).getContentType().startsWith("text/html"));
+        assertTrue(get("text/html, application/json;q=0.9", null, null).getContentType().startsWith("text/html"));
+        assertTrue(get("application/json, */*", null, null).getContentType().startsWith("text/html"));
+
+        final MockHttpServletResponse json = get("application/json;q=1, text/html;q=0.5", null, null);
+        assertTrue(json.getContentType().startsWith("application/json"));
+        assertEquals(JSON_ETAG, json.getHeader("ETag"));
+        assertArrayEquals(JSON, json.getContentAsByteArray());
+        assertEquals("Accept", json.getHeader("Vary"));
+    }
+
+    @Test
+    public void matchingIfNoneMatchReturnsNotModifiedWithoutBody() throws Exception {
+        final String[] matching = { "\"other\", " + HTML_ETAG, "W/" + HTML_ETAG, "*", " \"a\" ,W/\"html-1\"" };
+        for (String ifNoneMatch : matching) {
+            final MockHttpServletResponse response = get("text/html", ifNoneMatch, null);
+            assertEquals(ifNoneMatch, 304, response.getStatus());
+            assertEquals(0, response.getContentAsByteArray().length);
+            assertEquals(HTML_ETAG, response.getHeader("ETag"));
+            assertEquals("max-age=60", response.getHeader("Cache-Control"));
+        }
+        // 在读取和渲染之前返回
+        assertEquals(0, renders.get());
+
+        final MockHttpServletResponse modified = get("text/html", "\"other\", " + JSON_ETAG, null);
+        assertEquals(200, modified.getStatus());
+        assertArrayEquals(PAGE, modified.getContentAsByteArray());
+    }
+
+    @Test
+    public void encodedEtagDoesNotMatchIdentityRepresentation() throws Exception {
+        enableCompressedCache();
+        final String gzipEtag = "\"html-1-gzip\"";
+
+        final MockHttpServletResponse gzip = get("text/html", null, "gzip, deflate");
+        assertEquals(gzipEtag, gzip.getHeader("ETag"));
+        assertEquals("gzip", gzip.getHeader("Content-Encoding"));
+        assertEquals("Accept, Accept-Encoding", gzip.getHeader("Vary"));
+        assertArrayEquals(PAGE, gunzip(gzip.getContentAsByteArray()));
+        assertEquals(304, get("text/html", gzipEtag, "gzip").getStatus());
+
+        // 压缩表示的ETag不能用于未压缩的表示，反之亦然
+        final MockHttpServletResponse identity = get("text/html", gzipEtag, null);
+        assertEquals(200, identity.getStatus());
+        assertEquals(HTML_ETAG, identity.getHeader("ETag"));
+        assertNull(identity.getHeader("Content-Encoding"));
+        assertArrayEquals(PAGE, identity.getContentAsByteArray());
+        assertEquals(200, get("text/html", HTML_ETAG, "gzip").getStatus());
+
+        // 只接受 deflate 时不使用预压缩缓存，交给连接器处理
+        final MockHttpServletResponse deflate = get("text/html", HTML_ETAG, "deflate");
+        assertEquals(304, deflate.getStatus());
+        assertNull(deflate.getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void missingUserIsNotFoundInEveryFormat() throws Exception {
+        final byte[] notFound = controller.userService.userNotFoundPage();
+        final MockHttpServletResponse html = get("nobody", "text/html", null, null);
+        assertEquals(404, html.getStatus());
+        assertTrue(html.getContentType().startsWith("text/html"));
+        assertArrayEquals(notFound, html.getContentAsByteArray());
+        assertNull(html.getHeader("ETag"));
+
+        final MockHttpServletResponse json = get("nobody", "application/json", null, null);
+        assertEquals(404, json.getStatus());
+        assertTrue(json.getContentType().startsWith("application/json"));
+
+        // 预压缩缓存不保存提示信息
+        enableCompressedCache();
+        final MockHttpServletResponse gzip = get("nobody", "text/html", null, "gzip");
+        assertEquals(404, gzip.getStatus());
+        assertNull(gzip.getHeader("Content-Encoding"));
+        assertArrayEquals(notFound, gzip.getContentAsByteArray());
+    }
+}
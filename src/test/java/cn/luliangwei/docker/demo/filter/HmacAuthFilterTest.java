@@ -0,0 +1,267 @@
+package cn.luliangwei.docker.demo.filter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import cn.luliangwei.docker.demo.config.HmacAuthProperties;
+import cn.luliangwei.docker.demo.metrics.LatencyTimer;
+import cn.luliangwei.docker.demo.util.ApiKeyRateLimiter;
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder;
+import cn.luliangwei.docker.demo.util.HmacSignatureBuilder.BuilderMode;
+import cn.luliangwei.docker.demo.util.NonceReplayCache;
+
+/**
+ * HMAC请求认证过滤器的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class HmacAuthFilterTest {
+
+    private static final String API_KEY = "test-api-key";
+    private static final String API_SECRET = "test-api-secret";
+    private static final String HOST = "signit.cn";
+    private static final String CONTENT_TYPE = "application/json";
+
+    private HmacAuthProperties properties;
+    private HmacAuthFilter filter;
+
+    @Before
+    public void createFilter() {
+        properties = new HmacAuthProperties();
+        properties.setEnabled(true);
+        properties.setCredentials(Collections.singletonMap(API_KEY, API_SECRET));
+        properties.setMaxBodySize(1024);
+        filter = new HmacAuthFilter(properties, new NonceReplayCache(TimeUnit.SECONDS.toMillis(300)));
+    }
+
+    private static String now() {
+        final SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date());
+    }
+
+    // 按与过滤器相同的字段签名；body 为 null 时为不带请求数据的 GET
+    private static MockHttpServletRequest signedRequest(String nonce, byte[] body) {
+        return signedRequest(nonce, body, CONTENT_TYPE);
+    }
+
+    private static MockHttpServletRequest signedRequest(String nonce, byte[] body, String contentType) {
+        final String method = body == null ? "GET" : "POST";
+        final String date = now();
+        final MockHttpServletRequest request = new MockHttpServletRequest(method, "/users");
+        request.setQueryString("name=luliangwei");
+        request.addHeader("Host", HOST);
+        request.addHeader("Date", date);
+        request.addHeader(HmacAuthFilter.HEADER_API_KEY, API_KEY);
+        request.addHeader(HmacAuthFilter.HEADER_NONCE, nonce);
+        final HmacSignatureBuilder builder = new HmacSignatureBuilder()
+                .apiKey(API_KEY)
+                .apiSecret(API_SECRET.getBytes())
+                .contentType(body == null ? "" : contentType)
+                .date(date)
+                .host(HOST)
+                .method(method)
+                .nonce(nonce)
+                .resource("/users?name=luliangwei")
+                .scheme(request.getScheme());
+        if (body != null) {
+            request.setContentType(contentType);
+            request.setContent(body);
+            builder.payload(body);
+        }
+        request.addHeader(HmacAuthFilter.HEADER_SIGNATURE, builder.buildAsBase64(BuilderMode.FULL));
+        return request;
+    }
+
+    private MockHttpServletResponse filter(MockHttpServletRequest request, MockFilterChain chain) throws Exception {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[256];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void passesValidSignatureWithReadableBody() throws Exception {
+        final byte[] body = "{\"name\":\"luliangwei\"}".getBytes("UTF-8");
+        final MockFilterChain chain = new MockFilterChain();
+        final MockHttpServletResponse response = filter(signedRequest("nonce-1", body), chain);
+        assertEquals(200, response.getStatus());
+        assertEquals(1, filter.getAcceptedCount());
+
+        final HttpServletRequest forwarded = (HttpServletRequest) chain.getRequest();
+        assertNotNull(forwarded);
+        assertEquals(new String(body, "UTF-8"), new String(readFully(forwarded.getInputStream()), "UTF-8"));
+        assertEquals(new String(body, "UTF-8"), forwarded.getReader().readLine());
+        assertTrue(forwarded.getParameterMap().isEmpty());
+
+        // 数据已全部缓存，监听器立即收到可读与读取完毕的通知
+        final ServletInputStream in = forwarded.getInputStream();
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final boolean[] allRead = new boolean[1];
+        in.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                received.write(readFully(in));
+            }
+
+            @Override
+            public void onAllDataRead() {
+                allRead[0] = true;
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                throw new AssertionError(t);
+            }
+        });
+        assertTrue(allRead[0]);
+        assertEquals(new String(body, "UTF-8"), received.toString("UTF-8"));
+    }
+
+    @Test
+    public void parsesFormParametersFromCapturedBody() throws Exception {
+        final byte[] body = "nick=%E9%99%86+a&tag=x&tag=y&bad=%zz&flag".getBytes("UTF-8");
+        final MockHttpServletRequest request = signedRequest("nonce-form", body,
+                "application/x-www-form-urlencoded; charset=UTF-8");
+        request.setCharacterEncoding("UTF-8");
+        // 容器从查询串解析出的参数
+        request.addParameter("name", "luliangwei");
+        final MockFilterChain chain = new MockFilterChain();
+        assertEquals(200, filter(request, chain).getStatus());
+
+        final HttpServletRequest forwarded = (HttpServletRequest) chain.getRequest();
+        assertEquals("luliangwei", forwarded.getParameter("name"));
+        assertEquals("\u9646 a", forwarded.getParameter("nick"));
+        assertArrayEquals(new String[] { "x", "y" }, forwarded.getParameterValues("tag"));
+        assertEquals("", forwarded.getParameter("flag"));
+        assertNull(forwarded.getParameter("bad"));
+        assertEquals(Arrays.asList("name", "nick", "tag", "flag"), Collections.list(forwarded.getParameterNames()));
+        assertEquals(4, forwarded.getParameterMap().size());
+        // 解析表单不影响再次读取请求数据
+        assertArrayEquals(body, readFully(forwarded.getInputStream()));
+    }
+
+    @Test
+    public void rejectsBadSignature() throws Exception {
+        final MockHttpServletRequest request = signedRequest("nonce-1", null);
+        // 篡改签名覆盖的字段
+        request.setQueryString("name=other");
+        final MockFilterChain chain = new MockFilterChain();
+        assertEquals(401, filter(request, chain).getStatus());
+        assertNull(chain.getRequest());
+        assertEquals(1, filter.getRejectedCount());
+    }
+
+    @Test
+    public void timesBuildAndVerifySeparatelyFromWholeAuthentication() throws Exception {
+        final LatencyTimer auth = new LatencyTimer("hmac.auth", "", 60, TimeUnit.SECONDS);
+        final LatencyTimer build = new LatencyTimer("hmac.build", "", 60, TimeUnit.SECONDS);
+        final LatencyTimer verify = new LatencyTimer("hmac.verify", "", 60, TimeUnit.SECONDS);
+        filter.setAuthTimer(auth);
+        filter.setBuildTimer(build);
+        filter.setVerifyTimer(verify);
+
+        assertEquals(200, filter(signedRequest("nonce-1", null), new MockFilterChain()).getStatus());
+        final MockHttpServletRequest tampered = signedRequest("nonce-2", null);
+        tampered.setQueryString("name=other");
+        assertEquals(401, filter(tampered, new MockFilterChain()).getStatus());
+        // 缺少签名的请求不构建签名，只计入认证总耗时
+        final MockHttpServletRequest unsigned = new MockHttpServletRequest("GET", "/users");
+        unsigned.addHeader(HmacAuthFilter.HEADER_API_KEY, API_KEY);
+        assertEquals(401, filter(unsigned, new MockFilterChain()).getStatus());
+
+        assertEquals(3, auth.snapshot().getCount());
+        assertEquals(2, build.snapshot().getCount());
+        assertEquals(2, verify.snapshot().getCount());
+    }
+
+    @Test
+    public void rejectsMissingApiKeyOrSignature() throws Exception {
+        final MockHttpServletRequest unsigned = new MockHttpServletRequest("GET", "/users");
+        unsigned.addHeader(HmacAuthFilter.HEADER_API_KEY, API_KEY);
+        MockFilterChain chain = new MockFilterChain();
+        assertEquals(401, filter(unsigned, chain).getStatus());
+        assertNull(chain.getRequest());
+
+        final MockHttpServletRequest unknownKey = new MockHttpServletRequest("GET", "/users");
+        unknownKey.addHeader(HmacAuthFilter.HEADER_SIGNATURE, "AAAA");
+        chain = new MockFilterChain();
+        assertEquals(401, filter(unknownKey, chain).getStatus());
+        assertNull(chain.getRequest());
+        assertEquals(2, filter.getRejectedCount());
+    }
+
+    @Test
+    public void rejectsOversizedBodyBeforeReading() throws Exception {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/users") {
+            @Override
+            public ServletInputStream getInputStream() {
+                throw new AssertionError("body must not be read");
+            }
+        };
+        request.setContent(new byte[properties.getMaxBodySize() + 1]);
+        request.addHeader(HmacAuthFilter.HEADER_API_KEY, API_KEY);
+        request.addHeader(HmacAuthFilter.HEADER_SIGNATURE, "AAAA");
+        final MockFilterChain chain = new MockFilterChain();
+        assertEquals(413, filter(request, chain).getStatus());
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    public void rejectsReplayedNonce() throws Exception {
+        final MockHttpServletRequest request = signedRequest("nonce-1", null);
+        assertEquals(200, filter(request, new MockFilterChain()).getStatus());
+        final MockFilterChain chain = new MockFilterChain();
+        assertEquals(401, filter(request, chain).getStatus());
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    public void throttlesApiKeyWithRetryAfter() throws Exception {
+        // 每10秒恢复一个配额，最多累积2个：前两个请求通过，第三个被限流
+        filter.setRateLimiter(new ApiKeyRateLimiter(0.1, 2, 60, TimeUnit.SECONDS));
+        assertEquals(200, filter(signedRequest("nonce-1", null), new MockFilterChain()).getStatus());
+        assertEquals(200, filter(signedRequest("nonce-2", null), new MockFilterChain()).getStatus());
+
+        final MockFilterChain chain = new MockFilterChain();
+        final MockHttpServletResponse response = filter(signedRequest("nonce-3", null), chain);
+        assertEquals(429, response.getStatus());
+        assertNull(chain.getRequest());
+        final long retryAfter = Long.parseLong(response.getHeader("Retry-After"));
+        assertTrue(retryAfter >= 1 && retryAfter <= 10);
+    }
+}
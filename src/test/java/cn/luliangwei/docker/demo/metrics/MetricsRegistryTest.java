@@ -0,0 +1,73 @@
+package cn.luliangwei.docker.demo.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * 指标注册表与耗时统计的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void timerReportsWindowPercentilesAndTotals() {
+        final MetricsRegistry registry = new MetricsRegistry(60, TimeUnit.SECONDS, 0.5, 0.99);
+        final LatencyTimer timer = registry.timer("users.request", "GET /users");
+        assertSame(timer, registry.timer("users.request", "ignored"));
+        for (int i = 1; i <= 1000; i++) {
+            timer.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        timer.record(-1);
+        final LatencyTimer.Snapshot snapshot = timer.snapshot(0.5, 0.99);
+        assertEquals(1001, snapshot.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(500500), snapshot.getTotalNanos());
+        // 2位有效数字，误差不超过1%
+        assertEquals(500000, snapshot.getValueAt(0), 5000);
+        assertEquals(990000, snapshot.getValueAt(1), 10000);
+        assertEquals(1000000, snapshot.getMaxNanos(), 10000);
+
+        // 再次读取不会丢失已并入窗口的记录
+        assertEquals(snapshot.getValueAt(0), timer.snapshot(0.5).getValueAt(0));
+    }
+
+    @Test
+    public void writesPrometheusText() throws IOException {
+        final MetricsRegistry registry = new MetricsRegistry(60, TimeUnit.SECONDS, 0.5);
+        registry.timer("user.render", "渲染耗时").record(2000000);
+        registry.gauge("user.cache.size", "条目数", new MetricsRegistry.Gauge() {
+            @Override
+            public double value() {
+                return 3;
+            }
+        });
+        for (final String reason : new String[] { "SIGNATURE_MISMATCH", "MISSING_FIELD" }) {
+            registry.counter("hmac.auth.failures", "reason", reason, "失败次数", new MetricsRegistry.Gauge() {
+                @Override
+                public double value() {
+                    return reason.length();
+                }
+            });
+        }
+        final StringBuilder out = new StringBuilder();
+        registry.writePrometheus(out);
+        final String text = out.toString();
+        assertTrue(text, text.contains("# TYPE user_render_seconds summary\n"));
+        assertTrue(text, text.contains("user_render_seconds{quantile=\"0.5\"} 0.002"));
+        assertTrue(text, text.contains("user_render_seconds_count 1\n"));
+        assertTrue(text, text.contains("user_render_seconds_sum 0.002\n"));
+        assertTrue(text, text.contains("user_cache_size 3\n"));
+        assertEquals(text.indexOf("# TYPE hmac_auth_failures_total counter"),
+                text.lastIndexOf("# TYPE hmac_auth_failures_total counter"));
+        assertTrue(text, text.contains("hmac_auth_failures_total{reason=\"MISSING_FIELD\"} 13\n"));
+        assertTrue(text, text.contains("hmac_auth_failures_total{reason=\"SIGNATURE_MISMATCH\"} 18\n"));
+        assertEquals(Double.valueOf(3), registry.values().get("user.cache.size"));
+    }
+}
@@ -0,0 +1,91 @@
+package cn.luliangwei.docker.demo.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 文件凭证数据源的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class FileCredentialStoreTest {
+
+    private File file;
+
+    @Before
+    public void createFile() throws Exception {
+        file = File.createTempFile("credentials", ".properties");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    // 修改时间加上偏移，避免文件系统的时间精度掩盖修改
+    private void write(String text, long modifiedOffsetMillis) throws Exception {
+        final long lastModified = file.lastModified();
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        file.setLastModified(lastModified + modifiedOffsetMillis);
+    }
+
+    @Test
+    public void reloadsModifiedFileAndKeepsUnchangedCredentials() throws Exception {
+        write("# 测试凭证\nalice=secret-a\nbob=secret-b\n", 0);
+        final FileCredentialStore store = new FileCredentialStore(file, "HmacSHA512", "UTF-8");
+        assertEquals(2, store.size());
+        final ApiCredential alice = store.find("alice");
+        final ApiCredential bob = store.find("bob");
+        assertEquals("HmacSHA512", alice.getSecretKey().getAlgorithm());
+        assertNull(store.find("mallory"));
+        assertNull(store.find(null));
+        assertFalse(store.reloadIfModified());
+
+        write("alice=secret-a\nbob=rotated-b\ncarol=密钥-c\n", 2000);
+        assertTrue(store.reloadIfModified());
+        assertEquals(3, store.size());
+        assertSame(alice, store.find("alice"));
+        assertNotSame(bob, store.find("bob"));
+        assertEquals("rotated-b", new String(store.find("bob").getSecretKey().getEncoded(), "UTF-8"));
+        assertEquals("密钥-c", new String(store.find("carol").getSecretKey().getEncoded(), "UTF-8"));
+        assertEquals(2, store.getReloadCount());
+    }
+
+    @Test
+    public void keepsCredentialsWhenReloadFails() throws Exception {
+        write("alice=secret-a\n", 0);
+        final FileCredentialStore store = new FileCredentialStore(file, "HmacSHA256", "UTF-8");
+        final ApiCredential alice = store.find("alice");
+
+        write("alice=\n", 2000);
+        assertFalse(store.reloadIfModified());
+        assertEquals(1, store.getReloadFailureCount());
+        assertSame(alice, store.find("alice"));
+        // 文件没有再次变化时不重试
+        assertFalse(store.reloadIfModified());
+        assertEquals(1, store.getReloadFailureCount());
+
+        write("alice=secret-a\nbob=secret-b\n", 4000);
+        assertTrue(store.reloadIfModified());
+        assertSame(alice, store.find("alice"));
+        assertEquals(2, store.size());
+    }
+}
@@ -0,0 +1,101 @@
+package cn.luliangwei.docker.demo.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.repository.InMemoryUserRepository.Format;
+
+/**
+ * 内存用户数据源的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class InMemoryUserRepositoryTest {
+
+    private static InputStream utf8(String text) throws Exception {
+        return new ByteArrayInputStream(text.getBytes("UTF-8"));
+    }
+
+    @Test
+    public void loadsCsvWithQuotedFields() throws Exception {
+        final InMemoryUserRepository repository = new InMemoryUserRepository();
+        final String csv = "phone,Name,age,address\n"
+                + "123xxxxoooo,luliangwei,22,科技园B-114\n"
+                + "\"456,789\",\"张\"\"三\",,\"第一行\n第二行\"\n"
+                + "\n"
+                + "000,luliangwei,23,覆盖\n";
+        assertEquals(2, repository.load(utf8(csv), Format.CSV));
+        assertEquals(2, repository.count());
+
+        final User user = repository.findByName("luliangwei");
+        assertEquals(Integer.valueOf(23), user.getAge());
+        assertEquals("覆盖", user.getAddress());
+
+        final User quoted = repository.findByName("张\"三");
+        assertEquals("456,789", quoted.getPhone());
+        assertNull(quoted.getAge());
+        assertEquals("第一行\n第二行", quoted.getAddress());
+        assertNull(repository.findByName("张三"));
+    }
+
+    @Test
+    public void loadsJsonLinesOffHeap() throws Exception {
+        final InMemoryUserRepository repository = new InMemoryUserRepository(true);
+        final String jsonl = "{\"name\":\"luliangwei\",\"age\":22,\"phone\":\"123xxxxoooo\",\"tags\":[1,2]}\n"
+                + "{\"name\":\"李四\",\"age\":\"30\",\"address\":null,\"extra\":{\"a\":1}}\n";
+        assertEquals(2, repository.load(utf8(jsonl), Format.JSONL));
+
+        assertEquals("123xxxxoooo", repository.findByName("luliangwei").getPhone());
+        final User user = repository.findByName("李四");
+        assertEquals(Integer.valueOf(30), user.getAge());
+        assertNull(user.getAddress());
+    }
+
+    @Test
+    public void findsEveryUserOfLargeRoster() {
+        final int count = 100000;
+        final List<User> users = new ArrayList<User>(count);
+        for (int i = 0; i < count; i++) {
+            final User user = new User();
+            user.setName("user-" + i);
+            user.setAge(i % 100);
+            user.setAddress("address-" + i);
+            users.add(user);
+        }
+        final InMemoryUserRepository repository = new InMemoryUserRepository();
+        assertEquals(count, repository.replaceAll(users));
+        for (int i = 0; i < count; i++) {
+            final User user = repository.findByName("user-" + i);
+            assertEquals("address-" + i, user.getAddress());
+            assertEquals(Integer.valueOf(i % 100), user.getAge());
+            assertNull(user.getPhone());
+            assertNull(repository.findByName("missing-" + i));
+        }
+    }
+
+    @Test
+    public void contentHashFollowsFieldsAcrossReloads() throws Exception {
+        final InMemoryUserRepository repository = new InMemoryUserRepository(true);
+        final String csv = "name,age,phone,address\nluliangwei,22,123xxxxoooo,科技园B-114\n张三,30,456,一号楼\n";
+        repository.load(utf8(csv), Format.CSV);
+        final long hash = repository.findContentHash("luliangwei");
+        final long other = repository.findContentHash("张三");
+        assertTrue(hash != 0 && other != 0 && hash != other);
+        assertEquals(0, repository.findContentHash("missing"));
+
+        repository.load(utf8(csv.replace("一号楼", "二号楼")), Format.CSV);
+        assertEquals(hash, repository.findContentHash("luliangwei"));
+        assertTrue(other != repository.findContentHash("张三"));
+        assertEquals("二号楼", repository.findByName("张三").getAddress());
+    }
+}
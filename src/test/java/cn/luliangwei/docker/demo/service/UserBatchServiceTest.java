@@ -0,0 +1,112 @@
+package cn.luliangwei.docker.demo.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.config.UserBatchProperties;
+import cn.luliangwei.docker.demo.repository.InMemoryUserRepository;
+
+/**
+ * 批量查询用户的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class UserBatchServiceTest {
+
+    private ExecutorService executor;
+    private UserBatchService batchService;
+
+    @Before
+    public void setUp() {
+        final List<User> users = new ArrayList<User>();
+        for (int i = 0; i < 100; i++) {
+            final User user = new User();
+            user.setName("user-" + i);
+            user.setAge(i);
+            user.setPhone("phone-" + i);
+            user.setAddress("科技园B-" + i);
+            users.add(user);
+        }
+        final InMemoryUserRepository repository = new InMemoryUserRepository();
+        repository.replaceAll(users);
+        final UserService userService = new UserService(repository, null, null, null);
+
+        final UserBatchProperties properties = new UserBatchProperties();
+        properties.setParallelism(2);
+        properties.setChunkSize(3);
+        executor = Executors.newFixedThreadPool(properties.getParallelism());
+        batchService = new UserBatchService();
+        batchService.userService = userService;
+        batchService.userBatchProperties = properties;
+        batchService.userBatchExecutor = executor;
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static InputStream utf8(String text) throws Exception {
+        return new ByteArrayInputStream(text.getBytes("UTF-8"));
+    }
+
+    @Test
+    public void streamsResultsInRequestOrder() throws Exception {
+        final StringBuilder request = new StringBuilder("[");
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            final String name = i % 4 == 3 ? "missing-" + i : "user-" + (i * 5);
+            request.append(i == 0 ? "" : ",").append('"').append(name).append('"');
+            if (name.startsWith("missing")) {
+                expected.append("{\"name\":\"").append(name).append("\",\"found\":false}\n");
+            } else {
+                expected.append("{\"name\":\"").append(name).append("\",\"found\":true,\"age\":").append(i * 5)
+                        .append(",\"phone\":\"phone-").append(i * 5).append("\",\"address\":\"科技园B-")
+                        .append(i * 5).append("\"}\n");
+            }
+        }
+        request.append(']');
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(20, batchService.resolve(utf8(request.toString()), false, out, false));
+        assertEquals(expected.toString(), out.toString("UTF-8"));
+    }
+
+    @Test
+    public void readsPlainTextAndWritesJsonArray() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, batchService.resolve(utf8("user-1\n\n  nobody \n"), true, out, true));
+        assertEquals("[{\"name\":\"user-1\",\"found\":true,\"age\":1,\"phone\":\"phone-1\",\"address\":\"科技园B-1\"},"
+                + "{\"name\":\"nobody\",\"found\":false}]", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void malformedRequestIsRejectedBeforeWriting() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            batchService.resolve(utf8("{\"names\":[]}"), false, out, false);
+            throw new AssertionError("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(0, out.size());
+        }
+
+        assertEquals(6, batchService.resolve(utf8("[\"user-1\",\"user-2\",\"user-3\",\"a\",\"b\",\"c\",1]"),
+                false, out, false));
+        final String body = out.toString("UTF-8");
+        assertTrue(body, body.endsWith("{\"error\":\"名称必须是字符串: VALUE_NUMBER_INT\"}\n"));
+    }
+}
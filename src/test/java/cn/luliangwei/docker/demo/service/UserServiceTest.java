@@ -0,0 +1,88 @@
+package cn.luliangwei.docker.demo.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import cn.luliangwei.docker.demo.beans.User;
+import cn.luliangwei.docker.demo.repository.InMemoryUserRepository;
+import cn.luliangwei.docker.demo.util.TinyLfuCache;
+
+/**
+ * 用户服务的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class UserServiceTest {
+
+    private static UserService userService() {
+        final User user = new User();
+        user.setName("luliangwei");
+        user.setAge(22);
+        user.setPhone("123xxxxoooo");
+        user.setAddress("科技园B-114");
+        final InMemoryUserRepository repository = new InMemoryUserRepository();
+        repository.replaceAll(Collections.singletonList(user));
+        return new UserService(repository, new TinyLfuCache<String, byte[]>(1 << 20, 60, TimeUnit.SECONDS,
+                new TinyLfuCache.Weigher<String, byte[]>() {
+                    @Override
+                    public int weigh(String key, byte[] value) {
+                        return value.length;
+                    }
+                }), null, null);
+    }
+
+    private static UserService uncached(UserService userService) {
+        return new UserService(userService.userRepository, null, null, null);
+    }
+
+    @Test
+    public void asyncLookupsMatchBlockingOnesAndShareCache() throws Exception {
+        final UserService userService = userService();
+        final CompletableFuture<byte[]> page = userService.userInfoPageAsync("luliangwei");
+        assertTrue(page.isDone());
+        assertSame(page.get(), userService.userInfoPage("luliangwei"));
+        assertArrayEquals(userService.userInfoPage("nobody"), userService.userInfoPageAsync("nobody").get());
+
+        assertEquals("123xxxxoooo", userService.findUserAsync("luliangwei").get().getPhone());
+        assertNull(userService.findUserAsync(null).get());
+    }
+
+    @Test
+    public void writesNothingForMissingUser() throws Exception {
+        for (UserService userService : new UserService[] { userService(), uncached(userService()) }) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertFalse(userService.writeUserInfo("nobody", out));
+            assertFalse(userService.writeUserInfo(null, out));
+            assertEquals(0, out.size());
+            assertTrue(userService.writeUserInfo("luliangwei", out));
+            assertArrayEquals(userService.userInfoPage("luliangwei"), out.toByteArray());
+        }
+        final UserService userService = userService();
+        assertTrue(userService.isUserNotFound(userService.userInfoPage("nobody")));
+        assertTrue(userService.isUserNotFound(userService.userInfoPageAsync("nobody").get()));
+        assertTrue(userService.isUserNotFound(userService.userInfoPage(null)));
+        assertFalse(userService.isUserNotFound(userService.userInfoPage("luliangwei")));
+    }
+
+    @Test
+    public void etagDependsOnUserAndFormat() {
+        final UserService userService = userService();
+        final String html = userService.userInfoETag("luliangwei", false);
+        final String json = userService.userInfoETag("luliangwei", true);
+        assertTrue(html.startsWith("\"") && html.endsWith("\"") && !html.equals(json));
+        assertEquals(html, userService.userInfoETag("luliangwei", false));
+        assertNull(userService.userInfoETag("nobody", false));
+    }
+}
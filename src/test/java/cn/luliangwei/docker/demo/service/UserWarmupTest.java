@@ -0,0 +1,45 @@
+package cn.luliangwei.docker.demo.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * 启动预热的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class UserWarmupTest {
+
+    @Test
+    public void becomesReadyAfterIterationBudget() {
+        final UserWarmup warmup = new UserWarmup(500, 1, TimeUnit.MINUTES, 50, "HmacSHA512", "UTF-8");
+        assertFalse(warmup.isReady());
+        warmup.run();
+        assertTrue(warmup.isReady());
+        assertEquals(500, warmup.getCompleted());
+    }
+
+    @Test
+    public void stopsAtTimeBudget() {
+        final UserWarmup warmup = new UserWarmup(Long.MAX_VALUE, 200, TimeUnit.MILLISECONDS, 50, "HmacSHA256",
+                "UTF-8");
+        warmup.run();
+        assertTrue(warmup.isReady());
+        assertTrue(warmup.getCompleted() > 0);
+        assertTrue(warmup.getElapsedMillis() >= 200);
+    }
+
+    @Test
+    public void skipIsImmediatelyReady() {
+        final UserWarmup warmup = new UserWarmup(500, 1, TimeUnit.MINUTES, 50, "HmacSHA512", "UTF-8");
+        warmup.skip();
+        assertTrue(warmup.isReady());
+        assertEquals(0, warmup.getCompleted());
+    }
+}
@@ -0,0 +1,63 @@
+package cn.luliangwei.docker.demo.template;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * 预编译HTML模板的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class HtmlTemplateTest {
+
+    private static HtmlTemplate<Object[]> template(String source) {
+        final Map<String, HtmlTemplate.Field<Object[]>> fields = new HashMap<String, HtmlTemplate.Field<Object[]>>();
+        for (int i = 0; i < 2; i++) {
+            final int index = i;
+            fields.put("v" + i, new HtmlTemplate.Field<Object[]>() {
+                @Override
+                public Object value(Object[] model) {
+                    return model[index];
+                }
+            });
+        }
+        return HtmlTemplate.compile(source, fields);
+    }
+
+    private static String render(HtmlTemplate<Object[]> template, Object... model) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(model, out);
+        assertEquals(new String(template.render(model), "UTF-8"), new String(out.toByteArray(), "UTF-8"));
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+    @Test
+    public void escapesAndEncodesFieldValues() throws Exception {
+        final HtmlTemplate<Object[]> template = template("<td>${v0}</td><td>${ v1 }</td>");
+        assertEquals("<td>&lt;a href=&quot;x&quot;&gt;&amp;&#39;</td><td>-42</td>",
+                render(template, "<a href=\"x\">&'", -42));
+        assertEquals("<td>科技园😀?</td><td></td>", render(template, "科技园😀\uD800", null));
+        assertEquals("<td>" + Long.MIN_VALUE + "</td><td>0</td>", render(template, Long.MIN_VALUE, 0));
+    }
+
+    @Test
+    public void writesValuesLargerThanBuffer() throws Exception {
+        final StringBuilder value = new StringBuilder();
+        while (value.length() < HtmlOutput.BUFFER_SIZE * 3) {
+            value.append("地址abc");
+        }
+        final HtmlTemplate<Object[]> template = template("${v0}${v1}");
+        assertEquals(value.toString() + "1", render(template, value, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUndefinedField() {
+        template("<td>${missing}</td>");
+    }
+}
@@ -0,0 +1,78 @@
+package cn.luliangwei.docker.demo.template;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * JSON输出的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class JsonWriterTest {
+
+    private static final byte[] NAME = JsonWriter.fieldName("name");
+    private static final byte[] TAGS = JsonWriter.fieldName("ta\"gs");
+    private static final byte[] AGE = JsonWriter.fieldName("age");
+
+    @Test
+    public void writesNestedValuesWithCommas() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final JsonWriter json = JsonWriter.open(out);
+        try {
+            json.beginObject().field(NAME, "luliangwei").name(TAGS).beginArray().value(1).value(true)
+                    .value((String) null).beginObject().endObject().endArray().field(AGE, -22).endObject()
+                    .newLine();
+            json.beginArray().endArray().newLine();
+        } finally {
+            json.close();
+        }
+        assertEquals("{\"name\":\"luliangwei\",\"ta\\\"gs\":[1,true,null,{}],\"age\":-22}\n[]\n",
+                out.toString("UTF-8"));
+    }
+
+    @Test
+    public void escapesAndEncodesStrings() throws Exception {
+        final String text = "科技园B-114 \"\\\n\t\u0001 😀 \uD800";
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final JsonWriter json = JsonWriter.open(out);
+        try {
+            json.value(text);
+        } finally {
+            json.close();
+        }
+        assertEquals("\"科技园B-114 \\\"\\\\\\n\\t\\u0001 😀 ?\"", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void valuesLargerThanBufferAreParsable() throws Exception {
+        final StringBuilder large = new StringBuilder();
+        while (large.length() < 3 * JsonWriter.BUFFER_SIZE) {
+            large.append("用户\"").append(large.length());
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final JsonWriter json = JsonWriter.open(out);
+        try {
+            json.beginObject().field(NAME, large).field(AGE, Long.MIN_VALUE).endObject();
+        } finally {
+            json.close();
+        }
+
+        final JsonParser parser = new JsonFactory().createParser(out.toByteArray());
+        assertEquals(JsonToken.START_OBJECT, parser.nextToken());
+        assertEquals("name", parser.nextFieldName());
+        assertEquals(JsonToken.VALUE_STRING, parser.nextToken());
+        assertEquals(large.toString(), parser.getText());
+        assertEquals("age", parser.nextFieldName());
+        assertEquals(JsonToken.VALUE_NUMBER_INT, parser.nextToken());
+        assertEquals(Long.MIN_VALUE, parser.getLongValue());
+        assertEquals(JsonToken.END_OBJECT, parser.nextToken());
+    }
+}
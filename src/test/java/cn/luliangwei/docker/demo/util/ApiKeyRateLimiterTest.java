@@ -0,0 +1,60 @@
+package cn.luliangwei.docker.demo.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * 按apiKey限流的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class ApiKeyRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long NOW = 1000 * SECOND;
+
+    @Test
+    public void allowsBurstThenRefillsAtRate() {
+        final ApiKeyRateLimiter limiter = new ApiKeyRateLimiter(10, 5, 1, TimeUnit.HOURS);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("key", NOW));
+        }
+        // 第6个请求需要等待一个配额的恢复时间
+        assertEquals(SECOND / 10, limiter.tryAcquire("key", NOW));
+        assertEquals(0, limiter.tryAcquire("other-key", NOW));
+        assertEquals(0, limiter.tryAcquire("key", NOW + SECOND / 10));
+        assertTrue(limiter.tryAcquire("key", NOW + SECOND / 10) > 0);
+        assertEquals(7, limiter.getAllowedCount());
+        assertEquals(2, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void appliesPerKeyLimits() {
+        final ApiKeyRateLimiter limiter = new ApiKeyRateLimiter(10, 1, 1, TimeUnit.HOURS);
+        limiter.setLimit("partner", 1000, 100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.tryAcquire("partner", NOW));
+        }
+        assertTrue(limiter.tryAcquire("partner", NOW) > 0);
+        assertEquals(0, limiter.tryAcquire("key", NOW));
+        assertTrue(limiter.tryAcquire("key", NOW) > 0);
+    }
+
+    @Test
+    public void evictsIdleKeys() {
+        final ApiKeyRateLimiter limiter = new ApiKeyRateLimiter(10, 1, 10, TimeUnit.SECONDS);
+        final long now = System.nanoTime();
+        limiter.tryAcquire("idle", now);
+        limiter.tryAcquire("busy", now + 5 * SECOND);
+        assertEquals(2, limiter.size());
+        // 到达清理时间，只有 idle 空闲超过10秒
+        limiter.tryAcquire("busy", now + 11 * SECOND);
+        assertEquals(1, limiter.size());
+        assertEquals(1, limiter.getEvictedCount());
+    }
+}
@@ -0,0 +1,87 @@
+package cn.luliangwei.docker.demo.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+/**
+ * 预先压缩的响应体缓存的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class CompressedBodyCacheTest {
+
+    private static byte[] page(String name) {
+        final StringBuilder html = new StringBuilder("<html><body>");
+        for (int i = 0; i < 20; i++) {
+            html.append("<p>").append(name).append(" 科技园B-114</p>");
+        }
+        return html.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] inflate(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[512];
+        for (int n; (n = in.read(buffer)) > 0;) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void acceptsGzipByQuality() {
+        assertFalse(CompressedBodyCache.isGzipAccepted(null));
+        assertFalse(CompressedBodyCache.isGzipAccepted("identity, br, deflate"));
+        assertTrue(CompressedBodyCache.isGzipAccepted("deflate, gzip"));
+        assertTrue(CompressedBodyCache.isGzipAccepted("gzip;q=0.5, deflate"));
+        assertTrue(CompressedBodyCache.isGzipAccepted("x-gzip"));
+        assertTrue(CompressedBodyCache.isGzipAccepted("*"));
+        assertFalse(CompressedBodyCache.isGzipAccepted("deflate, gzip;q=0"));
+    }
+
+    @Test
+    public void compressesOnceAndRecompressesChangedBodies() throws IOException {
+        final CompressedBodyCache cache = new CompressedBodyCache(1 << 20, 1, TimeUnit.HOURS, 6, 64);
+        final byte[] page = page("luliangwei");
+
+        final byte[] gzip = cache.get("luliangwei", page);
+        assertArrayEquals(page, inflate(new GZIPInputStream(new ByteArrayInputStream(gzip))));
+        assertSame(gzip, cache.get("luliangwei", page.clone()));
+        assertEquals(1, cache.getCompressionCount());
+        assertEquals(0.5, cache.getHitRate(), 0.0);
+
+        final byte[] changed = page("lulw");
+        assertArrayEquals(changed, inflate(new GZIPInputStream(new ByteArrayInputStream(
+                cache.get("luliangwei", changed)))));
+        assertEquals(2, cache.getCompressionCount());
+        assertEquals(3, cache.getCompressedResponseCount());
+        assertTrue(cache.getBytesSaved() > 0 && cache.getCompressionNanos() > 0);
+    }
+
+    @Test
+    public void skipsSmallAndIncompressibleBodies() {
+        final CompressedBodyCache cache = new CompressedBodyCache(1 << 20, 1, TimeUnit.HOURS, 6, 64);
+        assertNull(cache.get("small", new byte[63]));
+        assertEquals(0, cache.getCompressionCount());
+
+        final byte[] random = new byte[256];
+        new Random(1874).nextBytes(random);
+        assertNull(cache.get("random", random));
+        assertEquals(0, cache.getBytesSaved());
+    }
+}
@@ -0,0 +1,209 @@
+package cn.luliangwei.docker.demo.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cn.luliangwei.docker.demo.util.HmacBatchVerifier.Request;
+
+/**
+ * HMAC签名批量校验器的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class HmacBatchVerifierTest {
+
+    private static final byte[] API_SECRET = "test-api-secret".getBytes();
+
+    private ExecutorService executor;
+
+    @Before
+    public void createExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    private static HmacSignatureBuilder newBuilder(int index) {
+        return new HmacSignatureBuilder()
+                .apiKey("test-api-key")
+                .apiSecret(API_SECRET)
+                .contentType("application/json")
+                .date("Wed, 02 Nov 2016 03:25:54 GMT")
+                .host("signit.cn")
+                .method("GET")
+                .nonce("nonce-" + index)
+                .resource("/v1/users")
+                .scheme("https");
+    }
+
+    // 第 i 个请求在 valid.get(i) 为 false 时携带另一个请求的签名
+    private static List<Request> requests(BitSet valid, int size) {
+        final List<Request> requests = new ArrayList<Request>(size);
+        for (int i = 0; i < size; i++) {
+            final byte[] signature = newBuilder(valid.get(i) ? i : i + 1).build();
+            requests.add(new Request(newBuilder(i), signature));
+        }
+        return requests;
+    }
+
+    // 一旦被使用就失败的执行器
+    private static final class UnusableExecutor extends AbstractExecutorService {
+
+        @Override
+        public void execute(Runnable command) {
+            throw new AssertionError("executor must not be used");
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+
+    @Test
+    public void bitmapFollowsRequestOrderAcrossChunks() {
+        final HmacBatchVerifier verifier = new HmacBatchVerifier(executor, 64);
+        // 不足一个分片、恰好一个分片、跨分片以及多个分片加零头
+        for (int size : new int[] { 63, 64, 65, 5 * 64 + 3 }) {
+            final BitSet valid = new BitSet(size);
+            for (int i = 0; i < size; i++) {
+                // 分片中间（第33位）与分片边界两侧都有不匹配的请求
+                if (i % 64 != 33 && i % 64 != 63 && i % 64 != 0 && i % 5 != 4) {
+                    valid.set(i);
+                }
+            }
+            assertEquals("size " + size, valid, verifier.verify(requests(valid, size)));
+        }
+    }
+
+    @Test
+    public void nullSignatureAndBuildFailureAreRejected() {
+        final List<Request> requests = new ArrayList<Request>();
+        requests.add(new Request(newBuilder(0), newBuilder(0).build()));
+        requests.add(new Request(newBuilder(1), null));
+        requests.add(new Request(newBuilder(2).host(null), newBuilder(2).build()));
+        requests.add(new Request(newBuilder(3).algorithm("HmacUnknown"), newBuilder(3).build()));
+
+        final BitSet result = new HmacBatchVerifier(executor, 64).verify(requests);
+        assertTrue(result.get(0));
+        assertFalse(result.get(1));
+        assertFalse(result.get(2));
+        assertFalse(result.get(3));
+    }
+
+    @Test
+    public void singleChunkRunsOnCallerThread() {
+        final Thread[] readers = new Thread[1];
+        final byte[] payload = "{}".getBytes();
+        final InputStream in = new ByteArrayInputStream(payload) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                readers[0] = Thread.currentThread();
+                return super.read(b, off, len);
+            }
+        };
+        final List<Request> requests = new ArrayList<Request>();
+        requests.add(new Request(newBuilder(0).payload(in), newBuilder(0).payload(payload).build()));
+        requests.addAll(requests(new BitSet(), 63));
+
+        final BitSet result = new HmacBatchVerifier(new UnusableExecutor(), 64).verify(requests);
+        assertTrue(result.get(0));
+        assertEquals(1, result.cardinality());
+        assertSame(Thread.currentThread(), readers[0]);
+    }
+
+    @Test
+    public void reusesMacInstancesPerThreadInsteadOfSharedPool() {
+        final HmacMacPool shared = new HmacMacPool();
+        final List<Request> requests = new ArrayList<Request>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(new Request(newBuilder(i).macPool(shared), newBuilder(i).build()));
+        }
+        final HmacMacPool threadPool = HmacBatchVerifier.threadMacPool();
+        final long hits = threadPool.getHitCount();
+        final long misses = threadPool.getMissCount();
+
+        assertEquals(10, new HmacBatchVerifier(new UnusableExecutor(), 64).verify(requests).cardinality());
+        // 不经过建造器设置的共享池，当前线程的实例最多新建一次
+        assertEquals(0, shared.getHitCount() + shared.getMissCount());
+        assertTrue(threadPool.getMissCount() - misses <= 1);
+        assertTrue(threadPool.getHitCount() - hits >= 9);
+    }
+
+    @Test
+    public void executorFailuresAreReported() {
+        final BitSet valid = new BitSet();
+        valid.set(0, 130);
+
+        final ExecutorService closed = Executors.newSingleThreadExecutor();
+        closed.shutdown();
+        try {
+            new HmacBatchVerifier(closed, 64).verify(requests(valid, 130));
+            fail("rejected tasks should fail the batch");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("批量校验任务未能执行"));
+        }
+
+        // 读取请求数据时抛出 Error，不会被当作签名失败吞掉
+        final List<Request> requests = requests(valid, 130);
+        final InputStream broken = new InputStream() {
+            @Override
+            public int read() {
+                throw new OutOfMemoryError("broken payload");
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return read();
+            }
+        };
+        requests.set(100, new Request(newBuilder(100).payload(broken), new byte[64]));
+        try {
+            new HmacBatchVerifier(executor, 64).verify(requests);
+            fail("failed tasks should fail the batch");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof OutOfMemoryError);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package cn.luliangwei.docker.demo.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+/**
+ * HMAC实例池的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class HmacMacPoolTest {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte[] SECRET = "secret-1".getBytes();
+    private static final byte[] DATA = "data".getBytes();
+
+    private static byte[] expected(byte[] secret) throws Exception {
+        final Mac mac = Mac.getInstance(ALGORITHM);
+        mac.init(new SecretKeySpec(secret, ALGORITHM));
+        return mac.doFinal(DATA);
+    }
+
+    private static byte[] sign(HmacMacPool.Lease lease) {
+        try {
+            return lease.getMac().doFinal(DATA);
+        } finally {
+            lease.release();
+        }
+    }
+
+    @Test
+    public void countsHitsAndMisses() throws Exception {
+        final HmacMacPool pool = new HmacMacPool();
+        final HmacMacPool.Lease first = pool.borrow(ALGORITHM, "a", SECRET);
+        final Mac mac = first.getMac();
+        assertArrayEquals(expected(SECRET), sign(first));
+
+        final HmacMacPool.Lease second = pool.borrow(ALGORITHM, "a", SECRET);
+        assertSame(mac, second.getMac());
+        // 归还时已重置，复用的实例结果不受上一次运算影响
+        assertArrayEquals(expected(SECRET), sign(second));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+        assertEquals(0.5, pool.getHitRate(), 0.0);
+
+        // 没有 apiKey 时不入池
+        pool.borrow(ALGORITHM, null, SECRET).release();
+        assertEquals(2, pool.getMissCount());
+        assertEquals(1, pool.getKeyCount());
+    }
+
+    @Test
+    public void capsIdleInstancesPerKey() throws Exception {
+        final HmacMacPool pool = new HmacMacPool(2, 16);
+        final HmacMacPool.Lease[] leases = new HmacMacPool.Lease[3];
+        for (int i = 0; i < leases.length; i++) {
+            leases[i] = pool.borrow(ALGORITHM, "a", SECRET);
+        }
+        for (HmacMacPool.Lease lease : leases) {
+            lease.release();
+        }
+        assertEquals(2, pool.getPoolSize());
+        assertEquals(3, pool.getMissCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedKeyWhenFull() throws Exception {
+        final HmacMacPool pool = new HmacMacPool(4, 2);
+        pool.borrow(ALGORITHM, "a", SECRET).release();
+        Thread.sleep(1);
+        pool.borrow(ALGORITHM, "b", SECRET).release();
+        Thread.sleep(1);
+        // 再次借出 a，b 成为最久未借出的一组
+        pool.borrow(ALGORITHM, "a", SECRET).release();
+        Thread.sleep(1);
+
+        final HmacMacPool.Lease c = pool.borrow(ALGORITHM, "c", SECRET);
+        assertArrayEquals(expected(SECRET), sign(c));
+        assertEquals(2, pool.getKeyCount());
+        assertEquals(1, pool.getEvictionCount());
+        assertEquals(0, pool.getOverflowCount());
+
+        // 新的组正常入池，被淘汰的 b 需要重新创建
+        pool.borrow(ALGORITHM, "c", SECRET).release();
+        pool.borrow(ALGORITHM, "a", SECRET).release();
+        assertEquals(3, pool.getHitCount());
+        pool.borrow(ALGORITHM, "b", SECRET).release();
+        assertEquals(3, pool.getHitCount());
+        assertEquals(2, pool.getEvictionCount());
+    }
+
+    @Test
+    public void countsBorrowsThatCannotBePooled() throws Exception {
+        final HmacMacPool pool = new HmacMacPool(4, 0);
+        assertArrayEquals(expected(SECRET), sign(pool.borrow(ALGORITHM, "a", SECRET)));
+        pool.borrow(ALGORITHM, "a", SECRET).release();
+        assertEquals(0, pool.getKeyCount());
+        assertEquals(0, pool.getPoolSize());
+        assertEquals(0, pool.getHitCount());
+        assertEquals(2, pool.getMissCount());
+        assertEquals(2, pool.getOverflowCount());
+    }
+
+    @Test
+    public void evictsInstancesWhenSecretIsRotated() throws Exception {
+        final HmacMacPool pool = new HmacMacPool();
+        pool.borrow(ALGORITHM, "a", SECRET).release();
+        final byte[] rotated = "secret-2".getBytes();
+        assertArrayEquals(expected(rotated), sign(pool.borrow(ALGORITHM, "a", rotated)));
+        assertEquals(1, pool.getEvictionCount());
+        assertEquals(0, pool.getHitCount());
+
+        // 轮换后的实例正常入池
+        assertArrayEquals(expected(rotated), sign(pool.borrow(ALGORITHM, "a", rotated)));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getPoolSize());
+    }
+
+    @Test
+    public void releaseAfterEvictionDoesNotRepool() throws Exception {
+        final HmacMacPool pool = new HmacMacPool();
+        final HmacMacPool.Lease lease = pool.borrow(ALGORITHM, "a", SECRET);
+        pool.evict("a");
+        lease.release();
+        assertEquals(0, pool.getPoolSize());
+        assertEquals(0, pool.getKeyCount());
+        assertEquals(1, pool.getEvictionCount());
+
+        pool.borrow(ALGORITHM, "a", SECRET).release();
+        assertEquals(0, pool.getHitCount());
+        assertEquals(1, pool.getPoolSize());
+    }
+}
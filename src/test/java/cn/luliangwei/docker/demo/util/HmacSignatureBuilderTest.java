@@ -0,0 +1,173 @@
+package cn.luliangwei.docker.demo.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+import cn.luliangwei.docker.demo.util.HmacSignatureException.Reason;
+
+/**
+ * HMAC认证请求构建工具的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class HmacSignatureBuilderTest {
+
+    private static final byte[] API_SECRET = "test-api-secret".getBytes();
+
+    private static HmacSignatureBuilder newBuilder() {
+        return new HmacSignatureBuilder()
+                .apiKey("test-api-key")
+                .apiSecret(API_SECRET)
+                .contentType("application/json")
+                .date("Wed, 02 Nov 2016 03:25:54 GMT")
+                .host("signit.cn")
+                .method("POST")
+                .nonce("6m0S4nyH1dg7K2gh")
+                .resource("/v1/users")
+                .scheme("https");
+    }
+
+    private static byte[] randomPayload(int size) {
+        final byte[] payload = new byte[size];
+        new Random(size).nextBytes(payload);
+        return payload;
+    }
+
+    @Test
+    public void streamingPayloadsMatchByteArrayPayload() throws Exception {
+        // 覆盖空数据、不足一个分块、恰好整块以及跨多个分块的情况
+        final int[] sizes = { 0, 1, HmacSignatureBuilder.PAYLOAD_CHUNK_SIZE,
+                3 * HmacSignatureBuilder.PAYLOAD_CHUNK_SIZE + 17 };
+        for (int size : sizes) {
+            final byte[] payload = randomPayload(size);
+            final byte[] expected = newBuilder().payload(payload).build();
+            assertNotNull(expected);
+
+            assertArrayEquals(expected, newBuilder().payload(new ByteArrayInputStream(payload)).build());
+            assertArrayEquals(expected, newBuilder().payload(ByteBuffer.wrap(payload)).build());
+
+            final ByteBuffer direct = ByteBuffer.allocateDirect(size);
+            direct.put(payload).flip();
+            assertArrayEquals(expected, newBuilder().payload(direct).build());
+
+            final File file = File.createTempFile("hmac-payload", ".bin");
+            file.deleteOnExit();
+            final FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(randomPayload(5));
+                out.write(payload);
+            } finally {
+                out.close();
+            }
+            final RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                final FileChannel channel = raf.getChannel();
+                assertArrayEquals(expected, newBuilder().payload(channel, 5, size).build());
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    @Test
+    public void bufferPayloadCanBeBuiltRepeatedly() {
+        final byte[] payload = randomPayload(1024);
+        final HmacSignatureBuilder builder = newBuilder().payload(ByteBuffer.wrap(payload));
+        assertArrayEquals(builder.build(), builder.build());
+    }
+
+    @Test
+    public void canonicalEncodingMatchesStringGetBytes() throws Exception {
+        final String[] charsets = { "UTF-8", "GBK", "UTF-16", "ISO-8859-1" };
+        for (String charset : charsets) {
+            final String host = "主机-signit.cn";
+            final byte[] signature = newBuilder().charset(charset).host(host).build(HmacSignatureBuilder.BuilderMode.ONLY_HEADER);
+
+            final Mac mac = Mac.getInstance(HmacSignatureBuilder.DEFAULT_ALGORITHM);
+            mac.init(new SecretKeySpec(API_SECRET, HmacSignatureBuilder.DEFAULT_ALGORITHM));
+            final String[] fields = { "test-api-key", "application/json", "Wed, 02 Nov 2016 03:25:54 GMT", host, "POST",
+                    "6m0S4nyH1dg7K2gh", "/v1/users", "https" };
+            for (String field : fields) {
+                mac.update(field.getBytes(charset));
+                mac.update(HmacSignatureBuilder.DEFAULT_DELIMITER);
+            }
+            assertArrayEquals(mac.doFinal(), signature);
+        }
+    }
+
+    @Test
+    public void headerSignerMatchesOnlyHeaderBuild() throws Exception {
+        final HmacHeaderSigner signer = new HmacHeaderSigner("test-api-key", API_SECRET, "application/json");
+        assertTrue(signer.isCloneSupported());
+        for (int i = 0; i < 3; i++) {
+            final String nonce = "nonce-" + i;
+            final byte[] expected = newBuilder().nonce(nonce).build(HmacSignatureBuilder.BuilderMode.ONLY_HEADER);
+            assertArrayEquals(expected, signer.sign("Wed, 02 Nov 2016 03:25:54 GMT", "signit.cn", "POST", nonce,
+                    "/v1/users", "https"));
+        }
+    }
+
+    @Test
+    public void prebuiltSecretKeyMatchesSecretBytes() throws Exception {
+        final HmacMacPool pool = new HmacMacPool();
+        final byte[] expected = newBuilder().macPool(pool).build();
+        final SecretKeySpec key = new SecretKeySpec(API_SECRET, HmacSignatureBuilder.DEFAULT_ALGORITHM);
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(expected, newBuilder().apiSecret(key).macPool(pool).build());
+        }
+        assertEquals(0, pool.getEvictionCount());
+
+        // 同一个apiKey换成不同的密钥后，旧实例作废
+        final SecretKeySpec rotated = new SecretKeySpec("rotated-secret".getBytes(),
+                HmacSignatureBuilder.DEFAULT_ALGORITHM);
+        assertFalse(Arrays.equals(expected, newBuilder().apiSecret(rotated).macPool(pool).build()));
+        assertEquals(1, pool.getEvictionCount());
+    }
+
+    @Test
+    public void failuresAreReportedWithReason() {
+        final long unknownAlgorithm = HmacFailureMonitor.getCount(Reason.UNKNOWN_ALGORITHM);
+        try {
+            newBuilder().algorithm("HmacUnknown").sign(HmacSignatureBuilder.BuilderMode.FULL);
+            fail("unknown algorithm should be rejected");
+        } catch (HmacSignatureException e) {
+            assertEquals(Reason.UNKNOWN_ALGORITHM, e.getReason());
+        }
+        assertFalse(newBuilder().algorithm("HmacUnknown").isHashEquals(new byte[32]));
+        assertEquals(unknownAlgorithm + 1, HmacFailureMonitor.getCount(Reason.UNKNOWN_ALGORITHM));
+
+        final long mismatch = HmacFailureMonitor.getCount(Reason.SIGNATURE_MISMATCH);
+        assertFalse(newBuilder().isHashEquals(new byte[32]));
+        assertEquals(mismatch + 1, HmacFailureMonitor.getCount(Reason.SIGNATURE_MISMATCH));
+        try {
+            newBuilder().verifyWithBase64("AAAA", HmacSignatureBuilder.BuilderMode.FULL);
+            fail("mismatched signature should be rejected");
+        } catch (HmacSignatureException e) {
+            // 不匹配时不填充堆栈
+            assertEquals(Reason.SIGNATURE_MISMATCH, e.getReason());
+            assertEquals(0, e.getStackTrace().length);
+        }
+
+        final long missingField = HmacFailureMonitor.getCount(Reason.MISSING_FIELD);
+        assertFalse(newBuilder().host(null).isHashEqualsWithBase64("AAAA"));
+        assertEquals(missingField + 1, HmacFailureMonitor.getCount(Reason.MISSING_FIELD));
+    }
+}
@@ -0,0 +1,66 @@
+package cn.luliangwei.docker.demo.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * 防重放缓存的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class NonceReplayCacheTest {
+
+    private static final long SKEW = 300000L;
+    private static final long NOW = 1500000000000L;
+
+    @Test
+    public void rejectsReplayWithinWindow() {
+        final NonceReplayCache cache = new NonceReplayCache(SKEW);
+        assertTrue(cache.checkAndRecord("key", "nonce-1", NOW, NOW));
+        assertFalse(cache.checkAndRecord("key", "nonce-1", NOW, NOW + SKEW / 2));
+        assertTrue(cache.checkAndRecord("other-key", "nonce-1", NOW, NOW));
+        assertEquals(1, cache.getReplayedCount());
+    }
+
+    @Test
+    public void rejectsRequestTimeOutsideWindow() {
+        final NonceReplayCache cache = new NonceReplayCache(SKEW);
+        assertFalse(cache.checkAndRecord("key", "nonce-1", NOW - SKEW - 1, NOW));
+        assertFalse(cache.checkAndRecord("key", "nonce-2", NOW + SKEW + 1, NOW));
+        assertFalse(cache.checkAndRecord("key", "nonce-3", Long.MIN_VALUE, NOW));
+        assertEquals(3, cache.getExpiredCount());
+    }
+
+    @Test
+    public void rotatesBucketsAcrossManyWindows() {
+        final NonceReplayCache cache = new NonceReplayCache(SKEW);
+        // 时间持续推进，每个随机数在其整个有效期内都应被识别为重放
+        for (long now = NOW; now < NOW + 20 * SKEW; now += SKEW / 7) {
+            final String nonce = "nonce-" + now;
+            assertTrue(cache.checkAndRecord("key", nonce, now - SKEW, now));
+            assertTrue(cache.checkAndRecord("key", nonce + "+", now + SKEW, now));
+            assertFalse(cache.checkAndRecord("key", nonce, now - SKEW, now));
+            assertFalse(cache.checkAndRecord("key", nonce + "+", now + SKEW, now + 2 * SKEW));
+        }
+    }
+
+    @Test
+    public void bloomFilterModeRejectsReplay() {
+        // 预计量按整个窗口计算，这里所有请求都落在同一个时间片内
+        final NonceReplayCache cache = new NonceReplayCache(SKEW, 10000L * NonceReplayCache.LIVE_BUCKETS, 0.001);
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (!cache.checkAndRecord("key", "nonce-" + i, NOW, NOW)) {
+                falsePositives++;
+            }
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertFalse(cache.checkAndRecord("key", "nonce-" + i, NOW, NOW));
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 50);
+    }
+}
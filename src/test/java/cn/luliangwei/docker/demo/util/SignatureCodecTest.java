@@ -0,0 +1,57 @@
+package cn.luliangwei.docker.demo.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * 签名摘要值编解码工具的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class SignatureCodecTest {
+
+    @Test
+    public void compatibleWithJdkEncoders() {
+        final Random random = new Random(0);
+        for (int length = 0; length <= 70; length++) {
+            final byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            final String hex = SignatureCodec.encodeHex(bytes);
+            final String base64 = SignatureCodec.encodeBase64(bytes);
+            assertEquals(length == 0 ? "" : String.format("%0" + (length * 2) + "X", new BigInteger(1, bytes)), hex);
+            assertEquals(Base64.getEncoder().encodeToString(bytes), base64);
+            assertArrayEquals(bytes, SignatureCodec.decodeHex(hex.toLowerCase()));
+            assertArrayEquals(bytes, SignatureCodec.decodeBase64(base64));
+            assertArrayEquals(bytes, SignatureCodec.decodeBase64(base64.replace("=", "")));
+        }
+    }
+
+    @Test
+    public void matchesComparesDecodedDigest() {
+        final byte[] digest = new byte[64];
+        new Random(1).nextBytes(digest);
+        final String hex = SignatureCodec.encodeHex(digest);
+        final String base64 = SignatureCodec.encodeBase64(digest);
+        assertTrue(SignatureCodec.matchesHex(digest, hex));
+        assertTrue(SignatureCodec.matchesHex(digest, hex.toLowerCase()));
+        assertTrue(SignatureCodec.matchesBase64(digest, base64));
+
+        final byte[] tampered = digest.clone();
+        tampered[63] ^= 1;
+        assertFalse(SignatureCodec.matchesHex(tampered, hex));
+        assertFalse(SignatureCodec.matchesBase64(tampered, base64));
+        assertFalse(SignatureCodec.matchesHex(digest, "G" + hex.substring(1)));
+        assertFalse(SignatureCodec.matchesBase64(digest, "!" + base64.substring(1)));
+        assertFalse(SignatureCodec.matchesHex(digest, hex.substring(2)));
+        assertFalse(SignatureCodec.matchesBase64(null, base64));
+    }
+}
@@ -0,0 +1,144 @@
+package cn.luliangwei.docker.demo.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+/**
+ * 合并并发计算的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class SingleFlightTest {
+
+    private static final int CALLERS = 16;
+
+    private static Supplier<String> blockingLoader(final CountDownLatch release) {
+        return new Supplier<String>() {
+            @Override
+            public String get() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new String("luliangwei");
+            }
+        };
+    }
+
+    private static void awaitCoalesced(SingleFlight<?, ?> flight, long count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (flight.getCoalescedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void concurrentCallersShareOneExecution() throws Exception {
+        final SingleFlight<String, String> flight = new SingleFlight<String, String>(10, TimeUnit.SECONDS);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        try {
+            final List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(callers.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return flight.execute("luliangwei", blockingLoader(release));
+                    }
+                }));
+            }
+            awaitCoalesced(flight, CALLERS - 1);
+            release.countDown();
+            final String first = results.get(0).get();
+            for (Future<String> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, flight.getExecutionCount());
+        assertEquals(CALLERS - 1, flight.getCoalescedCount());
+        assertEquals(0, flight.getInFlightCount());
+    }
+
+    @Test
+    public void followersTimeOutAndFailuresPropagate() throws Exception {
+        final SingleFlight<String, String> flight = new SingleFlight<String, String>(20, TimeUnit.MILLISECONDS);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread leader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flight.execute("slow", blockingLoader(release));
+            }
+        });
+        leader.start();
+        while (flight.getInFlightCount() == 0) {
+            Thread.sleep(1);
+        }
+        try {
+            flight.execute("slow", blockingLoader(release));
+            fail("follower should time out");
+        } catch (SingleFlightTimeoutException e) {
+            assertEquals(1, flight.getTimeoutCount());
+        }
+        release.countDown();
+        leader.join();
+
+        try {
+            flight.execute("broken", new Supplier<String>() {
+                @Override
+                public String get() {
+                    throw new IllegalStateException("store down");
+                }
+            });
+            fail("leader failure should propagate");
+        } catch (IllegalStateException e) {
+            assertEquals(0, flight.getInFlightCount());
+        }
+    }
+
+    @Test
+    public void asyncCallersShareOneExecution() throws Exception {
+        final SingleFlight<String, String> flight = new SingleFlight<String, String>(20, TimeUnit.MILLISECONDS);
+        final CompletableFuture<String> source = new CompletableFuture<String>();
+        final Supplier<CompletableFuture<String>> loader = new Supplier<CompletableFuture<String>>() {
+            @Override
+            public CompletableFuture<String> get() {
+                return source;
+            }
+        };
+        final CompletableFuture<String> leader = flight.executeAsync("luliangwei", loader);
+        final CompletableFuture<String> follower = flight.executeAsync("luliangwei", loader);
+        try {
+            follower.get(5, TimeUnit.SECONDS);
+            fail("async follower should time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SingleFlightTimeoutException);
+        }
+        final CompletableFuture<String> late = flight.executeAsync("luliangwei", loader);
+        source.complete("page");
+        assertEquals("page", leader.get());
+        assertEquals("page", late.get());
+        assertEquals(1, flight.getExecutionCount());
+        assertEquals(2, flight.getCoalescedCount());
+        assertEquals(0, flight.getInFlightCount());
+    }
+}
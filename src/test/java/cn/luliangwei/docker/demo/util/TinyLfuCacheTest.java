@@ -0,0 +1,85 @@
+package cn.luliangwei.docker.demo.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * W-TinyLFU缓存的单元测试.
+ *
+ * @author luliangwei
+ * @since 1.0.0
+ */
+public class TinyLfuCacheTest {
+
+    private static final TinyLfuCache.Weigher<String, String> LENGTH = new TinyLfuCache.Weigher<String, String>() {
+        @Override
+        public int weigh(String key, String value) {
+            return value.length();
+        }
+    };
+
+    @Test
+    public void hotKeysSurviveScan() {
+        final TinyLfuCache<String, String> cache = new TinyLfuCache<String, String>(1000, 1, TimeUnit.HOURS,
+                LENGTH, 1);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                final String key = "hot-" + i;
+                if (cache.get(key) == null) {
+                    cache.put(key, "0123456789");
+                }
+            }
+        }
+        // 一次性的键与热点键交替访问
+        for (int i = 0; i < 10000; i++) {
+            final String key = (i & 1) == 0 ? "scan-" + i : "hot-" + ((i >> 1) % 50);
+            if (cache.get(key) == null) {
+                cache.put(key, "0123456789");
+            }
+        }
+        int hotHits = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get("hot-" + i) != null) {
+                hotHits++;
+            }
+        }
+        assertEquals(50, hotHits);
+        assertTrue(cache.getWeight() <= 1000);
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    @Test
+    public void entriesExpireAfterTtl() {
+        final TinyLfuCache<String, String> cache = new TinyLfuCache<String, String>(1000, 10, TimeUnit.SECONDS,
+                LENGTH, 1);
+        final long now = 0;
+        cache.put("name", "page", now);
+        assertEquals("page", cache.get("name", now + TimeUnit.SECONDS.toNanos(9)));
+        assertNull(cache.get("name", now + TimeUnit.SECONDS.toNanos(10)));
+        assertEquals(1, cache.getExpiredCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void weightAndInvalidationAreTracked() {
+        final TinyLfuCache<String, String> cache = new TinyLfuCache<String, String>(100, 1, TimeUnit.HOURS,
+                LENGTH, 1);
+        cache.put("a", "0123456789");
+        cache.put("a", "01234");
+        cache.put("too-large", new String(new char[101]));
+        assertEquals(5, cache.getWeight());
+        assertNull(cache.get("too-large"));
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getWeight());
+        cache.put("b", "0123456789");
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMissCount());
+    }
+}